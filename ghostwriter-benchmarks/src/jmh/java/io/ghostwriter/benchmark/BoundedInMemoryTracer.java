@@ -0,0 +1,27 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.InMemoryTracer;
+import io.ghostwriter.message.Message;
+
+/**
+ * {@link InMemoryTracer} that drops the recorded messages once the limit is reached. The messages are still created
+ * and stored for every event, but a benchmark iteration cannot run out of heap.
+ */
+public class BoundedInMemoryTracer extends InMemoryTracer {
+
+    private static final int MESSAGE_LIMIT = 1 << 16;
+
+    public BoundedInMemoryTracer() {
+        enableValueChangeTracking();
+        enableEnteringExitingTracking();
+    }
+
+    @Override
+    public void pushMessage(Message<?> msg) {
+        if (numberOfMessages() >= MESSAGE_LIMIT) {
+            clearMessages();
+        }
+        super.pushMessage(msg);
+    }
+
+}
@@ -0,0 +1,42 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.CallTrees;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entering and exiting events of whole call trees: a recursion of 64 levels and a tree of 8 branches with 8 leaves
+ * each, 81 calls with a distinct call path each. The shapes stress the stack and the child lookup of the call tree tracer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CallTreeBenchmark {
+
+    private final CallTrees callTrees = new CallTrees();
+
+    private int depth = 64;
+
+    @Benchmark
+    public int deep(TracerState tracerState) {
+        return callTrees.deep(depth);
+    }
+
+    @Benchmark
+    public int wide(TracerState tracerState) {
+        return callTrees.wide();
+    }
+
+}
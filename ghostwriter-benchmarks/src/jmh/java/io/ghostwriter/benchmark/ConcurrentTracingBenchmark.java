@@ -0,0 +1,74 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.EmptyMethods;
+import io.ghostwriter.benchmark.workload.ValueChanges;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events reported by several threads at the same time. Only the tracers that can be shared between threads are
+ * measured, the {@code InMemoryTracer} is not thread safe. Compare the time per operation with the single threaded
+ * benchmarks to see how the tracer scales.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Thread)
+public class ConcurrentTracingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedTracerState {
+
+        @Param({TracerState.NOOP, TracerState.RING_BUFFER, TracerState.FLIGHT_RECORDER, TracerState.STATISTICS})
+        public String tracer;
+
+        private final TracerState tracerState = new TracerState();
+
+        @Setup
+        public void installTracer() {
+            tracerState.tracer = tracer;
+            tracerState.installTracer();
+        }
+
+        @TearDown
+        public void stopDrainer() {
+            tracerState.stopDrainer();
+        }
+
+    }
+
+    private final EmptyMethods emptyMethods = new EmptyMethods();
+
+    private final ValueChanges valueChanges = new ValueChanges();
+
+    private int intValue = 42;
+
+    private int limit = 100;
+
+    @Benchmark
+    public void oneParameter(SharedTracerState tracerState) {
+        emptyMethods.oneParameter(intValue);
+    }
+
+    @Benchmark
+    public int sum(SharedTracerState tracerState) {
+        return valueChanges.sum(limit);
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.EmptyMethods;
+import io.ghostwriter.benchmark.workload.ManyParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entering and exiting events: empty methods with and without parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnteringExitingBenchmark {
+
+    private final EmptyMethods emptyMethods = new EmptyMethods();
+
+    private final ManyParameters manyParameters = new ManyParameters();
+
+    private final String text = "benchmark";
+
+    private final Object object = new Object();
+
+    private int intValue = 42;
+
+    private long longValue = 42L;
+
+    @Benchmark
+    public void noParameters(TracerState tracerState) {
+        emptyMethods.noParameters();
+    }
+
+    @Benchmark
+    public void staticNoParameters(TracerState tracerState) {
+        EmptyMethods.staticNoParameters();
+    }
+
+    @Benchmark
+    public void oneParameter(TracerState tracerState) {
+        emptyMethods.oneParameter(intValue);
+    }
+
+    @Benchmark
+    public void fourParameters(TracerState tracerState) {
+        manyParameters.fourParameters(intValue, longValue, text, object);
+    }
+
+    @Benchmark
+    public void eightParameters(TracerState tracerState) {
+        manyParameters.eightParameters(intValue, longValue, text, object, intValue, longValue, text, object);
+    }
+
+}
@@ -0,0 +1,35 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.Tracer;
+
+/**
+ * Discards every event, measures the cost of the instrumentation itself: capturing the event arguments and
+ * dispatching them to the tracer.
+ */
+public class NoopTracer implements Tracer {
+
+    @Override
+    public void entering(Object source, String method, Object... params) {
+    }
+
+    @Override
+    public void exiting(Object source, String method) {
+    }
+
+    @Override
+    public void valueChange(Object source, String method, String variable, Object newValue) {
+    }
+
+    @Override
+    public <T> void returning(Object source, String method, T returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+    }
+
+}
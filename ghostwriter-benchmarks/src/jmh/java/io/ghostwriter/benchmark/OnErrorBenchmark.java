@@ -0,0 +1,37 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.ExceptionPaths;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error events: an exception that unwinds a call chain. The exception is preallocated, so the measurement does not
+ * include the stack trace filling of the exception creation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OnErrorBenchmark {
+
+    private final ExceptionPaths exceptionPaths = new ExceptionPaths();
+
+    private int depth = 16;
+
+    @Benchmark
+    public int exceptionPath(TracerState tracerState) {
+        return exceptionPaths.catchPreallocated(depth);
+    }
+
+}
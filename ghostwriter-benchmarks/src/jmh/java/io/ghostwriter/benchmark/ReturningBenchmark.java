@@ -0,0 +1,43 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.Recursion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Returning events: deep recursion, where every level reports its result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReturningBenchmark {
+
+    private final Recursion recursion = new Recursion();
+
+    private int depth = 64;
+
+    private int fibonacciIndex = 15;
+
+    @Benchmark
+    public int depth(TracerState tracerState) {
+        return recursion.depth(depth);
+    }
+
+    @Benchmark
+    public long fibonacci(TracerState tracerState) {
+        return recursion.fibonacci(fibonacciIndex);
+    }
+
+}
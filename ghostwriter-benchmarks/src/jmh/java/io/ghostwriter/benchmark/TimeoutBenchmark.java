@@ -0,0 +1,41 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.TimeoutMethods;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeout events: methods with a timeout threshold, with and without a reported timeout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeoutBenchmark {
+
+    private final TimeoutMethods timeoutMethods = new TimeoutMethods();
+
+    private int value = 42;
+
+    @Benchmark
+    public int withinThreshold(TracerState tracerState) {
+        return timeoutMethods.withinThreshold(value);
+    }
+
+    @Benchmark
+    public int exceeded(TracerState tracerState) {
+        return timeoutMethods.exceeded(value);
+    }
+
+}
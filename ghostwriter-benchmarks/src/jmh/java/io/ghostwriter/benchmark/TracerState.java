@@ -0,0 +1,111 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.Tracer;
+import io.ghostwriter.TracerProvider;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.runtime.CallTreeTracer;
+import io.ghostwriter.runtime.FlightRecordHandler;
+import io.ghostwriter.runtime.FlightRecorderTracer;
+import io.ghostwriter.runtime.RingBufferTracerProvider;
+import io.ghostwriter.runtime.StatisticsTracer;
+import io.ghostwriter.runtime.TraceRecord;
+import io.ghostwriter.runtime.TraceRecordHandler;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Installs the tracer that receives the events of the instrumented workload. The same benchmarks are executed
+ * against the plain workload as well, where the tracer is installed but never called.
+ */
+@State(Scope.Benchmark)
+public class TracerState {
+
+    public static final String NOOP = "noop";
+
+    public static final String IN_MEMORY = "inMemory";
+
+    public static final String RING_BUFFER = "ringBuffer";
+
+    public static final String FLIGHT_RECORDER = "flightRecorder";
+
+    public static final String STATISTICS = "statistics";
+
+    public static final String CALL_TREE = "callTree";
+
+    @Param({NOOP, IN_MEMORY, RING_BUFFER, FLIGHT_RECORDER, STATISTICS, CALL_TREE})
+    public String tracer;
+
+    private RingBufferTracerProvider ringBufferTracerProvider;
+
+    @Setup
+    public void installTracer() {
+        final Tracer installedTracer;
+        if (NOOP.equals(tracer)) {
+            installedTracer = new NoopTracer();
+        }
+        else if (IN_MEMORY.equals(tracer)) {
+            installedTracer = new BoundedInMemoryTracer();
+        }
+        else if (RING_BUFFER.equals(tracer)) {
+            // the drainer only reads the records, the benchmarks measure the cost of writing them
+            ringBufferTracerProvider = new RingBufferTracerProvider(new TraceRecordHandler() {
+                private long checksum;
+
+                @Override
+                public void handle(TraceRecord record) {
+                    checksum += record.getPayload();
+                }
+            });
+            installedTracer = ringBufferTracerProvider.getTracer();
+        }
+        else if (FLIGHT_RECORDER.equals(tracer)) {
+            // the dumps of the error paths are decoded, but not written anywhere
+            installedTracer = new FlightRecorderTracer(new FlightRecordHandler() {
+                private long checksum;
+
+                @Override
+                public void begin(long threadId, String trigger) {
+                    checksum += trigger.length();
+                }
+
+                @Override
+                public void handle(TraceRecord record) {
+                    checksum += record.getPayload();
+                }
+
+                @Override
+                public void end() {
+                }
+            });
+        }
+        else if (STATISTICS.equals(tracer)) {
+            installedTracer = new StatisticsTracer();
+        }
+        else if (CALL_TREE.equals(tracer)) {
+            installedTracer = new CallTreeTracer();
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported tracer: " + tracer);
+        }
+
+        GhostWriterHooks.setTracerProvider(new TracerProvider<Tracer>() {
+            @Override
+            public Tracer getTracer() {
+                return installedTracer;
+            }
+        });
+        GhostWriterHooks.setEnabled(true);
+    }
+
+    @TearDown
+    public void stopDrainer() {
+        if (ringBufferTracerProvider != null) {
+            ringBufferTracerProvider.close();
+            ringBufferTracerProvider = null;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package io.ghostwriter.benchmark;
+
+import io.ghostwriter.benchmark.workload.ValueChanges;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value change events: tight loops that update local variables on every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueChangeBenchmark {
+
+    private final ValueChanges valueChanges = new ValueChanges();
+
+    private int limit = 100;
+
+    @Benchmark
+    public int sum(TracerState tracerState) {
+        return valueChanges.sum(limit);
+    }
+
+    @Benchmark
+    public long mixed(TracerState tracerState) {
+        return valueChanges.mixed(limit);
+    }
+
+}
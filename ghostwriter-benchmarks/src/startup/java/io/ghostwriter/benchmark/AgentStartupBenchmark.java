@@ -0,0 +1,145 @@
+package io.ghostwriter.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the startup time of an application with the GhostWriter agent. Every measurement starts a new JVM, in three
+ * setups: without the agent, with the agent and an empty class cache (cold) and with the agent and a cache that was
+ * filled by a previous start (warm).
+ * <p>
+ * Arguments: number of measured starts, the main class of the application and its arguments. The agent jar and the
+ * classpath of the application are passed with the {@code ghostwriter.benchmark.agentJar} and
+ * {@code ghostwriter.benchmark.classpath} system properties, see the {@code agentStartupBenchmark} Gradle task.
+ */
+public final class AgentStartupBenchmark {
+
+    private static final String AGENT_JAR_PROPERTY = "ghostwriter.benchmark.agentJar";
+
+    private static final String CLASSPATH_PROPERTY = "ghostwriter.benchmark.classpath";
+
+    private static final int WARMUP_STARTS = 1;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private AgentStartupBenchmark() {
+        // entry point only
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: <measured starts> <main class> [application arguments]");
+        }
+        final int starts = Integer.parseInt(args[0]);
+        final List<String> application = Arrays.asList(args).subList(1, args.length);
+        final String agentJar = requiredProperty(AGENT_JAR_PROPERTY);
+        final String classpath = requiredProperty(CLASSPATH_PROPERTY);
+
+        final Path workingDirectory = Files.createTempDirectory("ghostwriter-startup-benchmark");
+        try {
+            final File log = workingDirectory.resolve("application.log").toFile();
+            final Path warmCache = workingDirectory.resolve("warm-cache");
+
+            for (int i = 0; i < WARMUP_STARTS; ++i) {
+                start(null, null, classpath, application, log);
+                // fills the warm cache as well
+                start(agentJar, warmCache, classpath, application, log);
+            }
+
+            final long[] noAgent = new long[starts];
+            final long[] coldCache = new long[starts];
+            final long[] warmCacheStarts = new long[starts];
+            for (int i = 0; i < starts; ++i) {
+                noAgent[i] = start(null, null, classpath, application, log);
+
+                final Path emptyCache = workingDirectory.resolve("cold-cache-" + i);
+                coldCache[i] = start(agentJar, emptyCache, classpath, application, log);
+                deleteRecursively(emptyCache);
+
+                warmCacheStarts[i] = start(agentJar, warmCache, classpath, application, log);
+                System.out.println("start " + i + ": no agent " + millis(noAgent[i]) + " ms, cold cache "
+                        + millis(coldCache[i]) + " ms, warm cache " + millis(warmCacheStarts[i]) + " ms");
+            }
+
+            System.out.println("median: no agent " + millis(median(noAgent)) + " ms, cold cache "
+                    + millis(median(coldCache)) + " ms, warm cache " + millis(median(warmCacheStarts)) + " ms");
+        }
+        finally {
+            deleteRecursively(workingDirectory);
+        }
+    }
+
+    /**
+     * @return wall clock time of the application run, including the JVM startup
+     */
+    private static long start(String agentJar, Path cacheDirectory, String classpath, List<String> application, File log)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (agentJar != null) {
+            command.add("-javaagent:" + agentJar);
+            command.add("-DGHOSTWRITER_CACHE_DIR=" + cacheDirectory);
+        }
+        command.add("-cp");
+        command.add(classpath);
+        command.addAll(application);
+
+        final ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log));
+        final long start = System.nanoTime();
+        final int exitCode = processBuilder.start().waitFor();
+        final long elapsed = System.nanoTime() - start;
+        if (exitCode != 0) {
+            throw new IllegalStateException("The application failed with exit code " + exitCode + ", see: " + log);
+        }
+        return elapsed;
+    }
+
+    private static String requiredProperty(String name) {
+        final String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("Missing system property: " + name);
+        }
+        return value;
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
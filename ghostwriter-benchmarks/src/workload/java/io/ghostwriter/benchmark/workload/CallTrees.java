@@ -0,0 +1,88 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Call trees of different shapes: a deep chain of recursive calls and a wide tree where each call has many distinct
+ * callees, every call reports entering and exiting events.
+ */
+public class CallTrees {
+
+    public int deep(int remaining) {
+        if (remaining == 0) {
+            return 0;
+        }
+        return deep(remaining - 1) + 1;
+    }
+
+    public int wide() {
+        return branch0() + branch1() + branch2() + branch3() + branch4() + branch5() + branch6() + branch7();
+    }
+
+    private int branch0() {
+        return leaves();
+    }
+
+    private int branch1() {
+        return leaves();
+    }
+
+    private int branch2() {
+        return leaves();
+    }
+
+    private int branch3() {
+        return leaves();
+    }
+
+    private int branch4() {
+        return leaves();
+    }
+
+    private int branch5() {
+        return leaves();
+    }
+
+    private int branch6() {
+        return leaves();
+    }
+
+    private int branch7() {
+        return leaves();
+    }
+
+    private int leaves() {
+        return leaf0() + leaf1() + leaf2() + leaf3() + leaf4() + leaf5() + leaf6() + leaf7();
+    }
+
+    private int leaf0() {
+        return 0;
+    }
+
+    private int leaf1() {
+        return 1;
+    }
+
+    private int leaf2() {
+        return 2;
+    }
+
+    private int leaf3() {
+        return 3;
+    }
+
+    private int leaf4() {
+        return 4;
+    }
+
+    private int leaf5() {
+        return 5;
+    }
+
+    private int leaf6() {
+        return 6;
+    }
+
+    private int leaf7() {
+        return 7;
+    }
+
+}
@@ -0,0 +1,17 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Methods without a body, the instrumented version only reports the entering and exiting events.
+ */
+public class EmptyMethods {
+
+    public void noParameters() {
+    }
+
+    public void oneParameter(int value) {
+    }
+
+    public static void staticNoParameters() {
+    }
+
+}
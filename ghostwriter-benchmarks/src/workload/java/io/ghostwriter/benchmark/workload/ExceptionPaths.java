@@ -0,0 +1,27 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Methods that leave with an exception, every level of the call chain reports an error event.
+ */
+public class ExceptionPaths {
+
+    private final IllegalStateException preallocated = new IllegalStateException("benchmark");
+
+    public void throwPreallocated(int depth) {
+        if (depth == 0) {
+            throw preallocated;
+        }
+        throwPreallocated(depth - 1);
+    }
+
+    public int catchPreallocated(int depth) {
+        try {
+            throwPreallocated(depth);
+            return 0;
+        }
+        catch (IllegalStateException e) {
+            return depth;
+        }
+    }
+
+}
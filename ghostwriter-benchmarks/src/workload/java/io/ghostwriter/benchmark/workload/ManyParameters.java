@@ -0,0 +1,16 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Methods with empty bodies and an increasing number of parameters. The entering event captures every parameter,
+ * methods above the fixed-arity limit of the runtime hooks fall back to the array based entering call.
+ */
+public class ManyParameters {
+
+    public void fourParameters(int first, long second, String third, Object fourth) {
+    }
+
+    public void eightParameters(int first, long second, String third, Object fourth,
+                                int fifth, long sixth, String seventh, Object eighth) {
+    }
+
+}
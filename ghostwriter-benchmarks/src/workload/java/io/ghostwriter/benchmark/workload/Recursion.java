@@ -0,0 +1,22 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Deep recursion, every level reports entering, returning and exiting events.
+ */
+public class Recursion {
+
+    public int depth(int remaining) {
+        if (remaining == 0) {
+            return 0;
+        }
+        return depth(remaining - 1) + 1;
+    }
+
+    public long fibonacci(int n) {
+        if (n < 2) {
+            return n;
+        }
+        return fibonacci(n - 1) + fibonacci(n - 2);
+    }
+
+}
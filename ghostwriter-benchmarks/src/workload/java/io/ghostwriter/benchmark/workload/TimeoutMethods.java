@@ -0,0 +1,21 @@
+package io.ghostwriter.benchmark.workload;
+
+import io.ghostwriter.annotation.Timeout;
+
+/**
+ * Methods with a timeout threshold. The instrumented version measures the elapsed time of every invocation.
+ * The threshold of {@link #exceeded(int)} is negative, so it reports a timeout event on every invocation.
+ */
+public class TimeoutMethods {
+
+    @Timeout(threshold = 1000)
+    public int withinThreshold(int value) {
+        return value + 1;
+    }
+
+    @Timeout(threshold = -1)
+    public int exceeded(int value) {
+        return value + 1;
+    }
+
+}
@@ -0,0 +1,28 @@
+package io.ghostwriter.benchmark.workload;
+
+/**
+ * Tight loops where every iteration reports value change events for the loop variable and the accumulators.
+ */
+public class ValueChanges {
+
+    public int sum(int limit) {
+        int total = 0;
+        for (int i = 0; i < limit; i++) {
+            total += i;
+        }
+        return total;
+    }
+
+    public long mixed(int limit) {
+        long product = 1;
+        int evens = 0;
+        for (int i = 1; i <= limit; i++) {
+            if (i % 2 == 0) {
+                evens++;
+            }
+            product = product * 31 + i;
+        }
+        return product + evens;
+    }
+
+}
@@ -0,0 +1,217 @@
+package io.ghostwriter.common;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Methods that were called too often in a previous run to be traced with every event, read from the file set by
+ * {@code GHOSTWRITER_HOT_METHODS}. Each line of the file is a method and a count, separated by whitespace:
+ * <pre>
+ * # duration=120.5
+ * com.example.Account#getBalance 1843200
+ * com/example/Main.main;com/example/Account.deposit;com/example/Account.validate_[j] 57
+ * </pre>
+ * The first form is written by {@code io.ghostwriter.openjdk.v7.runtime.InvocationCountingTracer}, its counts are
+ * invocations. The second form is the collapsed stack output of sampling profilers, its counts are samples that are
+ * assigned to the top frame of the stack.
+ * If the file has a duration (in seconds), {@code GHOSTWRITER_HOT_METHOD_THRESHOLD} is the number of calls per second,
+ * otherwise it is compared with the count itself. Counts of the same method are summed.
+ * <p>
+ * Class names are compared in their qualified form, nested classes of binary names are separated by '.' and the methods
+ * of anonymous classes belong to the enclosing class, the same way as the javac instrumenter names them.
+ */
+public final class HotMethodProfile {
+
+    /**
+     * The hot methods are not instrumented.
+     */
+    public static final String EXCLUDE_MODE = "exclude";
+
+    /**
+     * The hot methods are instrumented with the settings of the errors-only profile.
+     */
+    public static final String ERRORS_ONLY_MODE = "errors-only";
+
+    public static final int DEFAULT_THRESHOLD = 10000;
+
+    private static final HotMethodProfile EMPTY = new HotMethodProfile(Collections.<String>emptySet(), false);
+
+    private static final String DURATION_HEADER = "duration=";
+
+    private final Set<String> hotMethods;
+
+    private final boolean isDowngraded;
+
+    private HotMethodProfile(Set<String> hotMethods, boolean isDowngraded) {
+        this.hotMethods = Collections.unmodifiableSet(hotMethods);
+        this.isDowngraded = isDowngraded;
+    }
+
+    /**
+     * @return the hot methods of the file set by GHOSTWRITER_HOT_METHODS, or a profile without methods if it is not set
+     */
+    public static HotMethodProfile load(InstrumentationSettings settings) {
+        final String file = settings.getString(InstrumentationOption.GHOSTWRITER_HOT_METHODS);
+        if (file == null || file.trim().isEmpty()) {
+            return EMPTY;
+        }
+
+        final String mode = settings.getString(InstrumentationOption.GHOSTWRITER_HOT_METHOD_MODE);
+        final boolean isDowngraded;
+        if (mode == null || EXCLUDE_MODE.equals(mode.trim())) {
+            isDowngraded = false;
+        } else if (ERRORS_ONLY_MODE.equals(mode.trim())) {
+            isDowngraded = true;
+        } else {
+            throw new IllegalArgumentException("Unsupported " + InstrumentationOption.GHOSTWRITER_HOT_METHOD_MODE + ": " + mode
+                    + ", expected " + EXCLUDE_MODE + " or " + ERRORS_ONLY_MODE);
+        }
+
+        final Integer threshold = settings.getInteger(InstrumentationOption.GHOSTWRITER_HOT_METHOD_THRESHOLD);
+        try (Reader content = new InputStreamReader(new FileInputStream(file.trim()), StandardCharsets.UTF_8)) {
+            return new HotMethodProfile(parse(new BufferedReader(content), threshold == null ? DEFAULT_THRESHOLD : threshold), isDowngraded);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the GhostWriter hot method profile: " + file, e);
+        }
+    }
+
+    private static Set<String> parse(BufferedReader reader, int threshold) throws IOException {
+        final Map<String, Long> counts = new HashMap<>();
+        double duration = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("#")) {
+                final String comment = line.substring(1).trim();
+                if (comment.startsWith(DURATION_HEADER)) {
+                    duration = Double.parseDouble(comment.substring(DURATION_HEADER.length()).trim());
+                }
+                continue;
+            }
+
+            final int countSeparator = lastWhitespace(line);
+            if (countSeparator == -1) {
+                throw new IllegalArgumentException("Invalid line in the GhostWriter hot method profile, '<method> <count>' is expected: " + line);
+            }
+            final long count = Long.parseLong(line.substring(countSeparator + 1));
+            // collapsed stacks list the frames from the bottom, the top frame is the one that was running
+            final String frames = line.substring(0, countSeparator).trim();
+            final String method = methodKey(frames.substring(frames.lastIndexOf(';') + 1));
+            if (method != null) {
+                final Long previousCount = counts.get(method);
+                counts.put(method, previousCount == null ? count : previousCount + count);
+            }
+        }
+
+        final Set<String> hotMethods = new TreeSet<>();
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            final double rate = duration > 0 ? count.getValue() / duration : count.getValue();
+            if (rate >= threshold) {
+                hotMethods.add(count.getKey());
+            }
+        }
+        return hotMethods;
+    }
+
+    private static int lastWhitespace(String line) {
+        for (int i = line.length() - 1; i >= 0; i--) {
+            if (Character.isWhitespace(line.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param frame method in one of the forms {@code com.example.Account#deposit}, {@code com/example/Account.deposit_[j]}
+     *              or {@code com.example.Account::deposit}
+     * @return the method as class#method, or null if the frame is not a Java method
+     */
+    private static String methodKey(String frame) {
+        String method = frame;
+        // annotations of the frame type and the signature are added by some profilers
+        final int signature = method.indexOf('(');
+        if (signature != -1) {
+            method = method.substring(0, signature);
+        }
+        if (method.endsWith("]") && method.lastIndexOf("_[") != -1) {
+            method = method.substring(0, method.lastIndexOf("_["));
+        }
+
+        int separator = method.indexOf('#');
+        int separatorLength = 1;
+        if (separator == -1) {
+            separator = method.indexOf("::");
+            separatorLength = 2;
+        }
+        if (separator == -1) {
+            separator = method.lastIndexOf('.');
+            separatorLength = 1;
+        }
+        if (separator <= 0 || separator + separatorLength >= method.length()) {
+            return null;
+        }
+        return methodKey(method.substring(0, separator), method.substring(separator + separatorLength));
+    }
+
+    private static String methodKey(String className, String methodName) {
+        return qualifiedClassName(className) + "#" + methodName;
+    }
+
+    private static String qualifiedClassName(String className) {
+        String name = className.replace('/', '.').replace('$', '.');
+        // anonymous classes are numbered by the compiler
+        int lastSeparator = name.lastIndexOf('.');
+        while (lastSeparator > 0 && isNumber(name.substring(lastSeparator + 1))) {
+            name = name.substring(0, lastSeparator);
+            lastSeparator = name.lastIndexOf('.');
+        }
+        return name;
+    }
+
+    private static boolean isNumber(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param className qualified or binary name of the class
+     */
+    public boolean isHot(String className, String methodName) {
+        return !hotMethods.isEmpty() && hotMethods.contains(methodKey(className, methodName));
+    }
+
+    /**
+     * @return whether the hot methods are instrumented with the errors-only profile instead of being excluded
+     */
+    public boolean isDowngraded() {
+        return isDowngraded;
+    }
+
+    /**
+     * @return the hot methods as class#method, in alphabetical order
+     */
+    public Set<String> getHotMethods() {
+        return hotMethods;
+    }
+
+}
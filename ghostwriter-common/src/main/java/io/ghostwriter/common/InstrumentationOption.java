@@ -0,0 +1,29 @@
+package io.ghostwriter.common;
+
+/**
+ * Names of the GhostWriter options, read by the annotation processor and the bytecode instrumenter.
+ */
+public abstract class InstrumentationOption {
+    public static final String GHOSTWRITER_INCLUDE = "GHOSTWRITER_INCLUDE";
+    public static final String GHOSTWRITER_EXCLUDE = "GHOSTWRITER_EXCLUDE";
+    public static final String GHOSTWRITER_TRACE_VALUE_CHANGE = "GHOSTWRITER_TRACE_VALUE_CHANGE";
+    public static final String GHOSTWRITER_TRACE_ON_ERROR = "GHOSTWRITER_TRACE_ON_ERROR";
+    public static final String GHOSTWRITER_TRACE_RETURNING = "GHOSTWRITER_TRACE_RETURNING";
+    public static final String GHOSTWRITER_ANNOTATED_ONLY = "GHOSTWRITER_ANNOTATED_ONLY";
+    public static final String GHOSTWRITER_EXCLUDE_METHODS = "GHOSTWRITER_EXCLUDE_METHODS";
+    public static final String GHOSTWRITER_INSTRUMENT = "GHOSTWRITER_INSTRUMENT";
+    public static final String GHOSTWRITER_VERBOSE = "GHOSTWRITER_VERBOSE";
+    public static final String GHOSTWRITER_SHORT_METHOD_LIMIT = "GHOSTWRITER_SHORT_METHOD_LIMIT";
+    public static final String GHOSTWRITER_GUARD_EVENTS = "GHOSTWRITER_GUARD_EVENTS";
+    public static final String GHOSTWRITER_OUTLINE_EVENTS = "GHOSTWRITER_OUTLINE_EVENTS";
+    public static final String GHOSTWRITER_BYTECODE_BUDGET = "GHOSTWRITER_BYTECODE_BUDGET";
+    public static final String GHOSTWRITER_BYTECODE_REPORT = "GHOSTWRITER_BYTECODE_REPORT";
+    public static final String GHOSTWRITER_SINGLE_EXIT = "GHOSTWRITER_SINGLE_EXIT";
+    public static final String GHOSTWRITER_PROFILE = "GHOSTWRITER_PROFILE";
+    public static final String GHOSTWRITER_PROFILE_FILE = "GHOSTWRITER_PROFILE_FILE";
+    public static final String GHOSTWRITER_HOT_METHODS = "GHOSTWRITER_HOT_METHODS";
+    public static final String GHOSTWRITER_HOT_METHOD_THRESHOLD = "GHOSTWRITER_HOT_METHOD_THRESHOLD";
+    public static final String GHOSTWRITER_HOT_METHOD_MODE = "GHOSTWRITER_HOT_METHOD_MODE";
+    public static final String GHOSTWRITER_TRIVIAL_METHODS = "GHOSTWRITER_TRIVIAL_METHODS";
+    public static final String GHOSTWRITER_SAMPLING_INTERVAL = "GHOSTWRITER_SAMPLING_INTERVAL";
+}
@@ -0,0 +1,251 @@
+package io.ghostwriter.common;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable view of the GhostWriter options, resolved once per build. The annotation processor and the bytecode
+ * instrumenter read the same profile files.
+ * <p>
+ * The options can be given explicitly (compiler arguments, system properties or environment variables) or in a profile
+ * file set by {@code GHOSTWRITER_PROFILE_FILE}. The file uses the properties format:
+ * <pre>
+ * # profile of the classes without a package override, GHOSTWRITER_PROFILE takes precedence over it
+ * profile=light
+ * # the classes of a package (or a single class) use a different profile
+ * package.com.example.billing=full
+ * package.com.example.pricing=perf
+ * # custom profiles, or changes to the built-in ones
+ * profile.audit.GHOSTWRITER_TRACE_RETURNING=false
+ * # options of every class
+ * GHOSTWRITER_EXCLUDE=com.example.generated
+ * </pre>
+ * From lowest to highest precedence, the value of an option comes from the profile of the class, the options of the
+ * file, then the explicit options. Built-in profiles: {@code full}, {@code light} (no value changes),
+ * {@code errors-only} (no value changes and return values), {@code perf} (entering and exiting only, with the
+ * options that keep the instrumented methods small) and {@code off} (no instrumentation).
+ */
+public final class InstrumentationSettings {
+
+    /**
+     * Name of the built-in profile that is used for the methods that are downgraded by the instrumenter.
+     */
+    public static final String ERRORS_ONLY_PROFILE = "errors-only";
+
+    private static final String OPTION_PREFIX = "GHOSTWRITER_";
+
+    private static final String PROFILE_KEY = "profile";
+
+    private static final String PROFILE_PREFIX = "profile.";
+
+    private static final String PACKAGE_PREFIX = "package.";
+
+    private static final Map<String, Map<String, String>> BUILT_IN_PROFILES = builtInProfiles();
+
+    private final Map<String, String> values;
+
+    // settings of the packages with a profile override, only the settings of the build have them
+    private final Map<String, InstrumentationSettings> packageSettings;
+
+    private InstrumentationSettings(Map<String, String> values, Map<String, InstrumentationSettings> packageSettings) {
+        this.values = Collections.unmodifiableMap(values);
+        this.packageSettings = Collections.unmodifiableMap(packageSettings);
+    }
+
+    /**
+     * @param explicitOptions the options given explicitly, only the ones starting with GHOSTWRITER_ are used
+     */
+    public static InstrumentationSettings load(Map<String, String> explicitOptions) {
+        final Map<String, String> explicit = new HashMap<>();
+        for (Map.Entry<String, String> option : explicitOptions.entrySet()) {
+            if (option.getKey().startsWith(OPTION_PREFIX) && option.getValue() != null) {
+                explicit.put(option.getKey(), option.getValue());
+            }
+        }
+
+        final Properties file = new Properties();
+        final String profileFile = explicit.get(InstrumentationOption.GHOSTWRITER_PROFILE_FILE);
+        if (profileFile != null && !profileFile.trim().isEmpty()) {
+            try (InputStream content = new FileInputStream(profileFile.trim())) {
+                file.load(content);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read the GhostWriter profile file: " + profileFile, e);
+            }
+        }
+
+        final Map<String, Map<String, String>> profiles = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> profile : BUILT_IN_PROFILES.entrySet()) {
+            profiles.put(profile.getKey(), new HashMap<>(profile.getValue()));
+        }
+        final Map<String, String> fileOptions = new HashMap<>();
+        final Map<String, String> packageProfiles = new HashMap<>();
+        for (String key : file.stringPropertyNames()) {
+            final String value = file.getProperty(key).trim();
+            if (key.startsWith(PROFILE_PREFIX)) {
+                // profile.<name>.<option>, the name of a profile cannot contain a dot
+                final int separator = key.indexOf('.', PROFILE_PREFIX.length());
+                if (separator == -1) {
+                    throw new IllegalArgumentException("Invalid GhostWriter profile option, profile.<name>.<option> is expected: " + key);
+                }
+                final String profileName = key.substring(PROFILE_PREFIX.length(), separator);
+                if (!profiles.containsKey(profileName)) {
+                    profiles.put(profileName, new HashMap<String, String>());
+                }
+                profiles.get(profileName).put(key.substring(separator + 1), value);
+            } else if (key.startsWith(PACKAGE_PREFIX)) {
+                packageProfiles.put(key.substring(PACKAGE_PREFIX.length()), value);
+            } else if (key.startsWith(OPTION_PREFIX)) {
+                fileOptions.put(key, value);
+            } else if (!PROFILE_KEY.equals(key)) {
+                throw new IllegalArgumentException("Unknown GhostWriter profile file entry: " + key);
+            }
+        }
+
+        String profileName = explicit.get(InstrumentationOption.GHOSTWRITER_PROFILE);
+        if (profileName == null) {
+            profileName = file.getProperty(PROFILE_KEY);
+        }
+
+        final Map<String, InstrumentationSettings> packageSettings = new HashMap<>();
+        for (Map.Entry<String, String> packageProfile : packageProfiles.entrySet()) {
+            final Map<String, String> values = resolve(profiles, packageProfile.getValue(), fileOptions, explicit);
+            packageSettings.put(packageProfile.getKey(), new InstrumentationSettings(values, Collections.<String, InstrumentationSettings>emptyMap()));
+        }
+        return new InstrumentationSettings(resolve(profiles, profileName, fileOptions, explicit), packageSettings);
+    }
+
+    private static Map<String, String> resolve(Map<String, Map<String, String>> profiles, String profileName,
+                                               Map<String, String> fileOptions, Map<String, String> explicit) {
+        final Map<String, String> values = new HashMap<>();
+        if (profileName != null && !profileName.trim().isEmpty()) {
+            final Map<String, String> profile = profiles.get(profileName.trim());
+            if (profile == null) {
+                throw new IllegalArgumentException("Unknown GhostWriter profile: " + profileName + ", available profiles: " + new TreeSet<>(profiles.keySet()));
+            }
+            values.putAll(profile);
+        }
+        values.putAll(fileOptions);
+        values.putAll(explicit);
+        return values;
+    }
+
+    /**
+     * @param className qualified name of a class
+     * @return the settings of the class, which are different from the settings of the build if its package (or the
+     * class itself) has a profile override. The most specific override is used.
+     */
+    public InstrumentationSettings forClass(String className) {
+        if (packageSettings.isEmpty()) {
+            return this;
+        }
+
+        String name = className;
+        while (true) {
+            final InstrumentationSettings settings = packageSettings.get(name);
+            if (settings != null) {
+                return settings;
+            }
+            // nested classes of binary names belong to their outer class
+            final int lastSeparator = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+            if (lastSeparator <= 0) {
+                return this;
+            }
+            name = name.substring(0, lastSeparator);
+        }
+    }
+
+    /**
+     * @param profileName name of a built-in profile
+     * @return settings where the options of the built-in profile take precedence over these settings
+     */
+    public InstrumentationSettings withProfile(String profileName) {
+        final Map<String, String> profile = BUILT_IN_PROFILES.get(profileName);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown GhostWriter profile: " + profileName + ", available profiles: " + new TreeSet<>(BUILT_IN_PROFILES.keySet()));
+        }
+        final Map<String, String> profileValues = new HashMap<>(values);
+        profileValues.putAll(profile);
+        return new InstrumentationSettings(profileValues, Collections.<String, InstrumentationSettings>emptyMap());
+    }
+
+    /**
+     * @return the packages and classes with a profile override, in alphabetical order
+     */
+    public Set<String> getOverriddenPackages() {
+        return Collections.unmodifiableSet(new TreeSet<>(packageSettings.keySet()));
+    }
+
+    /**
+     * @return the value of the option, or null if it is not set
+     */
+    public String getString(String option) {
+        return values.get(option);
+    }
+
+    public boolean getBoolean(String option, boolean defaultValue) {
+        final String value = values.get(option);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * @return the value of the option, or null if it is not set
+     */
+    public Integer getInteger(String option) {
+        final String value = values.get(option);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid integer is provided for " + option + ". value = " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new TreeMap<>(values).toString();
+    }
+
+    private static Map<String, Map<String, String>> builtInProfiles() {
+        final Map<String, Map<String, String>> profiles = new HashMap<>();
+
+        final Map<String, String> full = new HashMap<>();
+        full.put(InstrumentationOption.GHOSTWRITER_TRACE_VALUE_CHANGE, "true");
+        full.put(InstrumentationOption.GHOSTWRITER_TRACE_RETURNING, "true");
+        full.put(InstrumentationOption.GHOSTWRITER_TRACE_ON_ERROR, "true");
+        profiles.put("full", full);
+
+        final Map<String, String> light = new HashMap<>(full);
+        light.put(InstrumentationOption.GHOSTWRITER_TRACE_VALUE_CHANGE, "false");
+        profiles.put("light", light);
+
+        // entering and exiting events are always traced, the error events are reported within them
+        final Map<String, String> errorsOnly = new HashMap<>(light);
+        errorsOnly.put(InstrumentationOption.GHOSTWRITER_TRACE_RETURNING, "false");
+        profiles.put(ERRORS_ONLY_PROFILE, errorsOnly);
+
+        final Map<String, String> perf = new HashMap<>(errorsOnly);
+        perf.put(InstrumentationOption.GHOSTWRITER_TRACE_ON_ERROR, "false");
+        perf.put(InstrumentationOption.GHOSTWRITER_SHORT_METHOD_LIMIT, "1");
+        perf.put(InstrumentationOption.GHOSTWRITER_GUARD_EVENTS, "true");
+        perf.put(InstrumentationOption.GHOSTWRITER_OUTLINE_EVENTS, "true");
+        perf.put(InstrumentationOption.GHOSTWRITER_SINGLE_EXIT, "true");
+        profiles.put("perf", perf);
+
+        final Map<String, String> off = new HashMap<>();
+        off.put(InstrumentationOption.GHOSTWRITER_INSTRUMENT, "false");
+        profiles.put("off", off);
+
+        return Collections.unmodifiableMap(profiles);
+    }
+
+}
@@ -0,0 +1,505 @@
+package io.ghostwriter.common;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides which classes and methods are instrumented based on include and exclude patterns, the annotation processor
+ * and the bytecode instrumenter match the names with the same rules.
+ * <p>
+ * The patterns are compiled into a trie of name segments, segments are separated by '.', '/' or '$', so binary and
+ * nested class names can be matched as well. The glob segments and the method globs of a trie node are compiled into a
+ * single automaton, which is built lazily one state at a time. A lookup walks the segments of a class name once and
+ * each character through a single automaton per active node, so the cost of a lookup depends on the length of the name
+ * and the number of the matching patterns, not on the number of patterns. Supported patterns:
+ * <ul>
+ * <li>{@code com.example} - the package or class and everything nested in it</li>
+ * <li>{@code com.example.*Dto} - '*' and '?' match characters of a single segment</li>
+ * <li>{@code com.example.**.internal} - '**' matches any number of segments</li>
+ * <li>{@code com.example.Account#get*} - methods of the matching classes, {@code #toString} matches the methods of every class</li>
+ * </ul>
+ * If multiple patterns match, the most specific one decides: the one with more segments, then the one with more
+ * literal characters. On a tie, exclusion wins. Classes that are not matched by any pattern are included if the
+ * matcher includes by default, methods that are not matched are included.
+ * <p>
+ * The matcher is configured before it is used, lookups can be done from multiple threads.
+ */
+public final class NameMatcher {
+
+    private static final String METHOD_SEPARATOR = "#";
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final boolean isIncludedByDefault;
+
+    private final Node root = new Node();
+
+    /**
+     * @param isIncludedByDefault whether the classes that are not matched by any pattern are included
+     */
+    public NameMatcher(boolean isIncludedByDefault) {
+        this.isIncludedByDefault = isIncludedByDefault;
+    }
+
+    public NameMatcher include(String pattern) {
+        add(pattern, true);
+        return this;
+    }
+
+    public NameMatcher exclude(String pattern) {
+        add(pattern, false);
+        return this;
+    }
+
+    public NameMatcher includeAll(Iterable<String> patterns) {
+        for (String pattern : patterns) {
+            include(pattern);
+        }
+        return this;
+    }
+
+    public NameMatcher excludeAll(Iterable<String> patterns) {
+        for (String pattern : patterns) {
+            exclude(pattern);
+        }
+        return this;
+    }
+
+    public boolean isIncluded(String className) {
+        return match(className).isIncluded();
+    }
+
+    public boolean isMethodIncluded(String className, String methodName) {
+        return match(className).isMethodIncluded(methodName);
+    }
+
+    /**
+     * @param className qualified or internal name of the class
+     * @return the decision for the class and its methods, the same match should be used for every method of a class
+     */
+    public Match match(String className) {
+        Set<Node> active = new LinkedHashSet<>();
+        addWithAnySegments(active, root);
+        // in the order of their first visit, which decides between the equally specific rules
+        final Set<Node> visited = new LinkedHashSet<>(active);
+
+        int start = 0;
+        while (start <= className.length() && !active.isEmpty()) {
+            final int end = nextSeparator(className, start);
+            final String segment = className.substring(start, end);
+            final Set<Node> next = new LinkedHashSet<>();
+            for (Node node : active) {
+                node.step(segment, next);
+            }
+            visited.addAll(next);
+            active = next;
+            start = end + 1;
+        }
+
+        Rule classRule = null;
+        final List<Node> methodRuleNodes = new ArrayList<>();
+        for (Node node : visited) {
+            if (node.classRule != null) {
+                classRule = Rule.moreSpecific(classRule, node.classRule);
+            }
+            if (node.hasMethodRules()) {
+                methodRuleNodes.add(node);
+            }
+        }
+        return new Match(classRule == null ? isIncludedByDefault : classRule.isInclude, classRule, methodRuleNodes);
+    }
+
+    private void add(String rawPattern, boolean isInclude) {
+        final String pattern = rawPattern.trim();
+        if (pattern.isEmpty()) {
+            return;
+        }
+
+        final int methodSeparator = pattern.indexOf(METHOD_SEPARATOR);
+        final String classPattern = stripPackageWildcard(methodSeparator == -1 ? pattern : pattern.substring(0, methodSeparator));
+        Node node = root;
+        int specificity = 0;
+        int literals = 0;
+        if (!classPattern.isEmpty()) {
+            int start = 0;
+            while (start <= classPattern.length()) {
+                final int end = nextSeparator(classPattern, start);
+                final String segment = classPattern.substring(start, end);
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Empty segment in pattern: " + rawPattern);
+                }
+                node = node.child(segment);
+                if (!ANY_SEGMENTS.equals(segment)) {
+                    specificity++;
+                    literals += literalCount(segment);
+                }
+                start = end + 1;
+            }
+        }
+
+        if (methodSeparator == -1) {
+            node.classRule = Rule.moreSpecific(node.classRule, new Rule(pattern, isInclude, specificity, literals));
+            return;
+        }
+
+        final String methodPattern = pattern.substring(methodSeparator + 1);
+        if (methodPattern.isEmpty()) {
+            throw new IllegalArgumentException("Missing method name in pattern: " + rawPattern);
+        }
+        final Rule methodRule = new Rule(pattern, isInclude, specificity, literals + literalCount(methodPattern));
+        if (isGlob(methodPattern)) {
+            node.methodGlobs.put(methodPattern, Rule.moreSpecific(node.methodGlobs.get(methodPattern), methodRule));
+            node.methodGlobAutomaton = null;
+        } else {
+            node.methodLiterals.put(methodPattern, Rule.moreSpecific(node.methodLiterals.get(methodPattern), methodRule));
+        }
+    }
+
+    private static String stripPackageWildcard(String classPattern) {
+        // "com.example.*" was the way to exclude a package before glob patterns were supported, it means "com.example"
+        if (classPattern.endsWith(".*")) {
+            return classPattern.substring(0, classPattern.length() - 2);
+        }
+        return classPattern;
+    }
+
+    private static int nextSeparator(String name, int start) {
+        for (int i = start; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c == '.' || c == '/' || c == '$') {
+                return i;
+            }
+        }
+        return name.length();
+    }
+
+    private static void addWithAnySegments(Set<Node> nodes, Node node) {
+        if (!nodes.add(node)) {
+            return;
+        }
+        // "**" matches zero segments as well
+        if (node.anySegments != null) {
+            addWithAnySegments(nodes, node.anySegments);
+        }
+    }
+
+    private static boolean isGlob(String pattern) {
+        return pattern.indexOf('*') != -1 || pattern.indexOf('?') != -1;
+    }
+
+    private static int literalCount(String pattern) {
+        int literals = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c != '*' && c != '?') {
+                literals++;
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * Decision for a single class and its methods.
+     */
+    public static final class Match {
+
+        private final boolean isIncluded;
+
+        private final Rule classRule;
+
+        private final List<Node> methodRuleNodes;
+
+        private Match(boolean isIncluded, Rule classRule, List<Node> methodRuleNodes) {
+            this.isIncluded = isIncluded;
+            this.classRule = classRule;
+            this.methodRuleNodes = methodRuleNodes;
+        }
+
+        public boolean isIncluded() {
+            return isIncluded;
+        }
+
+        /**
+         * @return the pattern that decided whether the class is included, or null if the default was used
+         */
+        public String getPattern() {
+            return classRule == null ? null : classRule.pattern;
+        }
+
+        public boolean isMethodIncluded(String methodName) {
+            final Rule methodRule = methodRule(methodName);
+            return methodRule == null || methodRule.isInclude;
+        }
+
+        /**
+         * @return the pattern that decided whether the method is included, or null if no method pattern matches it
+         */
+        public String getMethodPattern(String methodName) {
+            final Rule methodRule = methodRule(methodName);
+            return methodRule == null ? null : methodRule.pattern;
+        }
+
+        private Rule methodRule(String methodName) {
+            Rule methodRule = null;
+            for (Node node : methodRuleNodes) {
+                methodRule = Rule.moreSpecific(methodRule, node.methodLiterals.get(methodName));
+                for (Rule globRule : node.methodGlobAutomaton().matches(methodName)) {
+                    methodRule = Rule.moreSpecific(methodRule, globRule);
+                }
+            }
+            return methodRule;
+        }
+
+    }
+
+    // the nodes are compared by their identity
+    private static final class Node {
+
+        private final Map<String, Node> literals = new HashMap<>();
+
+        private final Map<String, Node> globs = new HashMap<>();
+
+        // the node after a "**" segment, it can be reached by consuming any number of segments
+        private Node anySegments;
+
+        private boolean isAnySegmentsLoop;
+
+        private Rule classRule;
+
+        private final Map<String, Rule> methodLiterals = new HashMap<>();
+
+        private final Map<String, Rule> methodGlobs = new HashMap<>();
+
+        // compiled from the globs on the first lookup, the matcher is not configured any more by then
+        private volatile GlobAutomaton<Node> globAutomaton;
+
+        private volatile GlobAutomaton<Rule> methodGlobAutomaton;
+
+        private Node child(String segment) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (anySegments == null) {
+                    anySegments = new Node();
+                    anySegments.isAnySegmentsLoop = true;
+                }
+                return anySegments;
+            }
+
+            final Map<String, Node> children = isGlob(segment) ? globs : literals;
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node();
+                children.put(segment, child);
+                globAutomaton = null;
+            }
+            return child;
+        }
+
+        private void step(String segment, Set<Node> next) {
+            final Node literal = literals.get(segment);
+            if (literal != null) {
+                addWithAnySegments(next, literal);
+            }
+            if (!globs.isEmpty()) {
+                for (Node glob : globAutomaton().matches(segment)) {
+                    addWithAnySegments(next, glob);
+                }
+            }
+            if (isAnySegmentsLoop) {
+                addWithAnySegments(next, this);
+            }
+        }
+
+        private GlobAutomaton<Node> globAutomaton() {
+            GlobAutomaton<Node> automaton = globAutomaton;
+            if (automaton == null) {
+                // a racing thread compiles an equal automaton
+                automaton = new GlobAutomaton<>(globs);
+                globAutomaton = automaton;
+            }
+            return automaton;
+        }
+
+        private GlobAutomaton<Rule> methodGlobAutomaton() {
+            GlobAutomaton<Rule> automaton = methodGlobAutomaton;
+            if (automaton == null) {
+                automaton = new GlobAutomaton<>(methodGlobs);
+                methodGlobAutomaton = automaton;
+            }
+            return automaton;
+        }
+
+        private boolean hasMethodRules() {
+            return !methodLiterals.isEmpty() || !methodGlobs.isEmpty();
+        }
+
+    }
+
+    /**
+     * Deterministic automaton of a set of globs, '*' matches any number of characters and '?' a single character. A
+     * state is the set of the glob positions that the characters read so far can reach, the states and their
+     * transitions are created when a character leads to them the first time. Matching a value reads each character
+     * once, regardless of the number of globs.
+     */
+    private static final class GlobAutomaton<T> {
+
+        private final String[] globs;
+
+        private final List<T> values;
+
+        // position of the first character of each glob, each glob has a position after its last character as well
+        private final int[] offsets;
+
+        // glob of each position
+        private final int[] owners;
+
+        private final ConcurrentMap<BitSet, GlobState<T>> states = new ConcurrentHashMap<>();
+
+        private final GlobState<T> start;
+
+        private GlobAutomaton(Map<String, T> globValues) {
+            globs = globValues.keySet().toArray(new String[globValues.size()]);
+            values = new ArrayList<>(globs.length);
+            offsets = new int[globs.length];
+            int positionCount = 0;
+            for (int i = 0; i < globs.length; i++) {
+                values.add(globValues.get(globs[i]));
+                offsets[i] = positionCount;
+                positionCount += globs[i].length() + 1;
+            }
+            owners = new int[positionCount];
+            for (int i = 0; i < globs.length; i++) {
+                for (int position = 0; position <= globs[i].length(); position++) {
+                    owners[offsets[i] + position] = i;
+                }
+            }
+
+            final BitSet initial = new BitSet(positionCount);
+            for (int i = 0; i < globs.length; i++) {
+                addPosition(initial, i, 0);
+            }
+            start = state(initial);
+        }
+
+        /**
+         * @return the values of the globs that match the whole value
+         */
+        private List<T> matches(String value) {
+            GlobState<T> state = start;
+            for (int i = 0; i < value.length() && !state.positions.isEmpty(); i++) {
+                state = next(state, value.charAt(i));
+            }
+            return state.matches;
+        }
+
+        private GlobState<T> next(GlobState<T> state, char character) {
+            final GlobState<T> known = state.transitions.get(character);
+            if (known != null) {
+                return known;
+            }
+
+            final BitSet positions = new BitSet(owners.length);
+            for (int position = state.positions.nextSetBit(0); position >= 0; position = state.positions.nextSetBit(position + 1)) {
+                final int glob = owners[position];
+                final int index = position - offsets[glob];
+                if (index == globs[glob].length()) {
+                    continue;
+                }
+                final char globCharacter = globs[glob].charAt(index);
+                if (globCharacter == '*') {
+                    addPosition(positions, glob, index);
+                } else if (globCharacter == '?' || globCharacter == character) {
+                    addPosition(positions, glob, index + 1);
+                }
+            }
+            final GlobState<T> next = state(positions);
+            state.transitions.put(character, next);
+            return next;
+        }
+
+        private void addPosition(BitSet positions, int glob, int index) {
+            int current = index;
+            positions.set(offsets[glob] + current);
+            // '*' matches no characters as well
+            while (current < globs[glob].length() && globs[glob].charAt(current) == '*') {
+                current++;
+                positions.set(offsets[glob] + current);
+            }
+        }
+
+        private GlobState<T> state(BitSet positions) {
+            final GlobState<T> known = states.get(positions);
+            if (known != null) {
+                return known;
+            }
+            final List<T> matches = new ArrayList<>();
+            for (int i = 0; i < globs.length; i++) {
+                if (positions.get(offsets[i] + globs[i].length())) {
+                    matches.add(values.get(i));
+                }
+            }
+            final GlobState<T> state = new GlobState<>(positions, Collections.unmodifiableList(matches));
+            final GlobState<T> racing = states.putIfAbsent(positions, state);
+            return racing == null ? state : racing;
+        }
+
+    }
+
+    private static final class GlobState<T> {
+
+        private final BitSet positions;
+
+        private final List<T> matches;
+
+        private final ConcurrentMap<Character, GlobState<T>> transitions = new ConcurrentHashMap<>();
+
+        private GlobState(BitSet positions, List<T> matches) {
+            this.positions = positions;
+            this.matches = matches;
+        }
+
+    }
+
+    private static final class Rule {
+
+        private final String pattern;
+
+        private final boolean isInclude;
+
+        private final int segments;
+
+        private final int literals;
+
+        private Rule(String pattern, boolean isInclude, int segments, int literals) {
+            this.pattern = pattern;
+            this.isInclude = isInclude;
+            this.segments = segments;
+            this.literals = literals;
+        }
+
+        private static Rule moreSpecific(Rule current, Rule candidate) {
+            if (current == null) {
+                return candidate;
+            }
+            if (candidate == null) {
+                return current;
+            }
+            if (candidate.segments != current.segments) {
+                return candidate.segments > current.segments ? candidate : current;
+            }
+            if (candidate.literals != current.literals) {
+                return candidate.literals > current.literals ? candidate : current;
+            }
+            return candidate.isInclude ? current : candidate;
+        }
+
+    }
+
+}
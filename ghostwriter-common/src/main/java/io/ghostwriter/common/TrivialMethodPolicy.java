@@ -0,0 +1,137 @@
+package io.ghostwriter.common;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * How the methods recognized as trivial are instrumented, set by {@code GHOSTWRITER_TRIVIAL_METHODS} as a comma
+ * separated list of category=action pairs, for example {@code accessor=skip,setter=skip,delegate=errors-only}.
+ * Categories that are not listed are fully instrumented. The annotation processor classifies the methods by their source
+ * code, the bytecode instrumenter by their instructions, into the same categories.
+ */
+public final class TrivialMethodPolicy {
+
+    public enum Category {
+        /**
+         * Returns a field, {@code return this.name;}
+         */
+        ACCESSOR("accessor"),
+        /**
+         * Assigns a parameter to a field, {@code this.name = name;}
+         */
+        SETTER("setter"),
+        /**
+         * Calls a single method with the parameters, fields and constants, {@code return delegate.find(id);}
+         */
+        DELEGATE("delegate"),
+        /**
+         * Returns a constant, {@code return 42;}
+         */
+        CONSTANT("constant"),
+        /**
+         * Assigns parameters to fields and returns itself, {@code this.name = name; return this;}
+         */
+        BUILDER("builder");
+
+        private final String optionName;
+
+        Category(String optionName) {
+            this.optionName = optionName;
+        }
+
+        @Override
+        public String toString() {
+            return optionName;
+        }
+    }
+
+    public enum Action {
+        SKIP("skip"),
+        ERRORS_ONLY("errors-only"),
+        FULL("full");
+
+        private final String optionName;
+
+        Action(String optionName) {
+            this.optionName = optionName;
+        }
+
+        @Override
+        public String toString() {
+            return optionName;
+        }
+    }
+
+    private final Map<Category, Action> actions;
+
+    private TrivialMethodPolicy(Map<Category, Action> actions) {
+        this.actions = Collections.unmodifiableMap(actions);
+    }
+
+    public static TrivialMethodPolicy load(InstrumentationSettings settings) {
+        final Map<Category, Action> actions = new EnumMap<>(Category.class);
+        final String rawPolicy = settings.getString(InstrumentationOption.GHOSTWRITER_TRIVIAL_METHODS);
+        if (rawPolicy == null || rawPolicy.trim().isEmpty()) {
+            return new TrivialMethodPolicy(actions);
+        }
+
+        for (String entry : rawPolicy.trim().split("[\\s,]+")) {
+            final int separator = entry.indexOf('=');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Invalid " + InstrumentationOption.GHOSTWRITER_TRIVIAL_METHODS
+                        + " entry, <category>=<action> is expected: " + entry);
+            }
+            actions.put(category(entry.substring(0, separator)), action(entry.substring(separator + 1)));
+        }
+        return new TrivialMethodPolicy(actions);
+    }
+
+    private static Category category(String name) {
+        for (Category category : Category.values()) {
+            if (category.optionName.equals(name)) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("Unknown trivial method category: " + name + ", supported categories: accessor, setter, delegate, constant, builder");
+    }
+
+    private static Action action(String name) {
+        for (Action action : Action.values()) {
+            if (action.optionName.equals(name)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Unknown trivial method action: " + name + ", supported actions: skip, errors-only, full");
+    }
+
+    /**
+     * @param category category of a trivial method, or null if the method is not trivial
+     */
+    public Action getAction(Category category) {
+        if (category == null) {
+            return Action.FULL;
+        }
+        final Action action = actions.get(category);
+        return action == null ? Action.FULL : action;
+    }
+
+    /**
+     * @return whether any category is instrumented differently from the other methods, the methods do not have to be
+     * classified otherwise
+     */
+    public boolean isEnabled() {
+        for (Action action : actions.values()) {
+            if (action != Action.FULL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return actions.toString();
+    }
+
+}
@@ -14,6 +14,7 @@ import java.util.Set;
 @SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_7)
 @SupportedOptions({Instrumenter.Option.GHOSTWRITER_ANNOTATED_ONLY,
+        Instrumenter.Option.GHOSTWRITER_INCLUDE,
         Instrumenter.Option.GHOSTWRITER_EXCLUDE,
         Instrumenter.Option.GHOSTWRITER_TRACE_ON_ERROR,
         Instrumenter.Option.GHOSTWRITER_TRACE_RETURNING,
@@ -21,7 +22,19 @@ import java.util.Set;
         Instrumenter.Option.GHOSTWRITER_EXCLUDE_METHODS,
         Instrumenter.Option.GHOSTWRITER_INSTRUMENT,
         Instrumenter.Option.GHOSTWRITER_VERBOSE,
-        Instrumenter.Option.GHOSTWRITER_SHORT_METHOD_LIMIT})
+        Instrumenter.Option.GHOSTWRITER_SHORT_METHOD_LIMIT,
+        Instrumenter.Option.GHOSTWRITER_GUARD_EVENTS,
+        Instrumenter.Option.GHOSTWRITER_OUTLINE_EVENTS,
+        Instrumenter.Option.GHOSTWRITER_BYTECODE_BUDGET,
+        Instrumenter.Option.GHOSTWRITER_BYTECODE_REPORT,
+        Instrumenter.Option.GHOSTWRITER_SINGLE_EXIT,
+        Instrumenter.Option.GHOSTWRITER_PROFILE,
+        Instrumenter.Option.GHOSTWRITER_PROFILE_FILE,
+        Instrumenter.Option.GHOSTWRITER_HOT_METHODS,
+        Instrumenter.Option.GHOSTWRITER_HOT_METHOD_THRESHOLD,
+        Instrumenter.Option.GHOSTWRITER_HOT_METHOD_MODE,
+        Instrumenter.Option.GHOSTWRITER_TRIVIAL_METHODS,
+        Instrumenter.Option.GHOSTWRITER_SAMPLING_INTERVAL})
 public class GhostWriterAnnotationProcessor extends AbstractProcessor {
 
     // part of the Annotation processor API. Since GhostWriter just hijacks the processor pipeline
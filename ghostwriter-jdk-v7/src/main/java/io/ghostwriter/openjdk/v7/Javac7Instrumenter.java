@@ -1,13 +1,21 @@
 package io.ghostwriter.openjdk.v7;
 
+import com.sun.source.tree.LineMap;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import io.ghostwriter.common.HotMethodProfile;
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.common.NameMatcher;
+import io.ghostwriter.common.TrivialMethodPolicy;
 import io.ghostwriter.openjdk.v7.ast.collector.Collector;
 import io.ghostwriter.openjdk.v7.ast.collector.MethodDeclarationCollector;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.ast.compiler.Javac;
+import io.ghostwriter.openjdk.v7.ast.compiler.TrivialMethodClassifier;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.ast.translator.MethodTranslator;
 import io.ghostwriter.openjdk.v7.ast.translator.Translator;
 import io.ghostwriter.openjdk.v7.common.Instrumenter;
@@ -19,9 +27,10 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * @author snorbi
@@ -34,8 +43,14 @@ public class Javac7Instrumenter implements Instrumenter {
     private JavaCompiler javac;
     private JavaCompilerHelper javacHelper;
     private boolean isAnnotatedOnlyMode;
-    private final Set<String> excludedClasses = new HashSet<>();
-    private final Set<String> excludedMethodNames = new HashSet<>();
+    private InstrumentationSettings settings;
+    private NameMatcher matcher;
+    // matches of the processed top level class and its nested classes, a match is used for every method of its class
+    private final Map<String, NameMatcher.Match> classMatches = new HashMap<>();
+    private HotMethodProfile hotMethods;
+    private final TrivialMethodClassifier trivialMethodClassifier = new TrivialMethodClassifier();
+    // anonymous classes and lambdas are matched with the name of the top level class being processed
+    private String processedClassName;
     private static final List<String> DEFAULT_EXCLUDED_METHODS = Collections.unmodifiableList(Arrays.asList("toString", "equals", "hashCode", "compareTo"));
 
     @Override
@@ -44,91 +59,106 @@ public class Javac7Instrumenter implements Instrumenter {
         setJavac(new Javac(processingEnv));
         setJavacHelper(new JavaCompilerHelper(javac));
 
-        Logger.initialize(processingEnv.getMessager(), Boolean.parseBoolean(javac.getOption(Option.GHOSTWRITER_VERBOSE)));
+        initializeSettings(processingEnv);
+        Logger.initialize(processingEnv.getMessager(), settings.getBoolean(Option.GHOSTWRITER_VERBOSE, false));
         Logger.note(getClass(), "init", "beginning!");
 
         initializeFromEnv(processingEnv);
     }
 
     protected void initializeFromEnv(ProcessingEnvironment processingEnv) {
+        initializeIncludedClasses(processingEnv);
         initializeExcludedClasses(processingEnv);
         initializeExcludedMethodNames(processingEnv);
         initializeAnnotationOnlyMode(processingEnv);
+        initializeHotMethods(processingEnv);
+    }
+
+    protected final void initializeSettings(ProcessingEnvironment processingEnv) {
+        // compiler arguments take precedence over the environment variables
+        final Map<String, String> explicitOptions = new HashMap<>(System.getenv());
+        explicitOptions.putAll(processingEnv.getOptions());
+        settings = InstrumentationSettings.load(explicitOptions);
+        Logger.note(getClass(), "initializeSettings", "settings: ", settings, ", package overrides: ", settings.getOverriddenPackages());
+    }
+
+    protected final void initializeIncludedClasses(ProcessingEnvironment processingEnv) {
+        final List<String> includedNames = splitNames(settings.getString(Option.GHOSTWRITER_INCLUDE));
+        // without included names every class is instrumented, otherwise only the included ones
+        matcher = new NameMatcher(includedNames.isEmpty()).includeAll(includedNames);
+        Logger.note(getClass(), "initializeIncludedClasses", Option.GHOSTWRITER_INCLUDE, " initialized to ", includedNames);
     }
 
     protected final void initializeExcludedClasses(ProcessingEnvironment processingEnv) {
-        String rawExcludedNames = javac.getOption(Option.GHOSTWRITER_EXCLUDE);
-        if (rawExcludedNames != null) {
-            for (String excludedName : rawExcludedNames.split("[\\s,]+")) {
-                if (excludedName.endsWith(".*")) { // exclusion of a package or of internal classes
-                    excludedClasses.add(excludedName.substring(0,excludedName.length()-2));
-                }
-                else {
-                    excludedClasses.add(excludedName);
-                }
-            }
-        }
-        Logger.note(getClass(),"initializeExcludedNames",Option.GHOSTWRITER_EXCLUDE + " initialized to "+ this.excludedClasses);
+        final List<String> excludedNames = splitNames(settings.getString(Option.GHOSTWRITER_EXCLUDE));
+        matcher.excludeAll(excludedNames);
+        Logger.note(getClass(), "initializeExcludedNames", Option.GHOSTWRITER_EXCLUDE, " initialized to ", excludedNames);
     }
 
     protected final void initializeExcludedMethodNames(ProcessingEnvironment processingEnv) {
-        String rawExcludedMethodNames = javac.getOption(Option.GHOSTWRITER_EXCLUDE_METHODS);
+        String rawExcludedMethodNames = settings.getString(Option.GHOSTWRITER_EXCLUDE_METHODS);
+        final List<String> excludedMethodNames;
         if (rawExcludedMethodNames != null) {
-            String[] names = rawExcludedMethodNames.split("[\\s,]+");
-            excludedMethodNames.addAll(Arrays.asList(names));
-            Logger.note(getClass(), "initializeExcludedMethodNames", "custom exclude methods: " + excludedMethodNames);
+            excludedMethodNames = splitNames(rawExcludedMethodNames);
+            Logger.note(getClass(), "initializeExcludedMethodNames", "custom exclude methods: ", excludedMethodNames);
         }
         else {
-            excludedMethodNames.addAll(DEFAULT_EXCLUDED_METHODS);
-            Logger.note(getClass(), "initializeExcludedMethodNames", "default exclude methods: " + excludedMethodNames);
+            excludedMethodNames = DEFAULT_EXCLUDED_METHODS;
+            Logger.note(getClass(), "initializeExcludedMethodNames", "default exclude methods: ", excludedMethodNames);
+        }
+        for (String excludedMethodName : excludedMethodNames) {
+            // method names without a class apply to every class
+            matcher.exclude(excludedMethodName.contains("#") ? excludedMethodName : "#" + excludedMethodName);
         }
     }
 
-    protected final void initializeAnnotationOnlyMode(ProcessingEnvironment processingEnv) {
-        final String rawEnvAnnotatedOnly = javac.getOption(Instrumenter.Option.GHOSTWRITER_ANNOTATED_ONLY);
-        isAnnotatedOnlyMode = rawEnvAnnotatedOnly != null && Boolean.parseBoolean(rawEnvAnnotatedOnly);
-        Logger.note(getClass(), "initializeAnnotationOnlyMode", "annotated only mode enabled: " + isAnnotatedOnlyMode);
+    private static List<String> splitNames(String rawNames) {
+        if (rawNames == null || rawNames.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(rawNames.trim().split("[\\s,]+"));
     }
 
-    private String getExclusionRule(String qualifiedName) {
-        if (excludedClasses.isEmpty()) {
-            return null;
-        }
+    protected final void initializeAnnotationOnlyMode(ProcessingEnvironment processingEnv) {
+        isAnnotatedOnlyMode = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_ANNOTATED_ONLY, false);
+        Logger.note(getClass(), "initializeAnnotationOnlyMode", "annotated only mode enabled: ", isAnnotatedOnlyMode);
+    }
 
-        while (!excludedClasses.contains(qualifiedName)) {
-            int lastDot = qualifiedName.lastIndexOf('.');
-            if (lastDot <= 0) {
-                return  null;
-            }
-            qualifiedName = qualifiedName.substring(0, lastDot);
-        }
-        return qualifiedName;
+    protected final void initializeHotMethods(ProcessingEnvironment processingEnv) {
+        hotMethods = HotMethodProfile.load(settings);
+        Logger.note(getClass(), "initializeHotMethods", "hot methods: ", hotMethods.getHotMethods(), ", downgraded to errors-only: ", hotMethods.isDowngraded());
     }
 
     @Override
     public void process(Element element) {
+        classMatches.clear();
         if (element instanceof TypeElement) {
             String qualifiedName = ((TypeElement)element).getQualifiedName().toString();
-            String exclusionRule = getExclusionRule(qualifiedName);
-            if (exclusionRule != null) {
-                Logger.note(getClass(), "process", "not instrumenting class '" + qualifiedName + "', '"+exclusionRule+"' is excluded");
+            NameMatcher.Match match = matcher.match(qualifiedName);
+            if (!match.isIncluded()) {
+                Logger.note(getClass(), "process", "not instrumenting class '", qualifiedName, "', excluded by '", match.getPattern(), "'");
                 return;
             }
+            classMatches.put(qualifiedName, match);
         }
 
         JCClassDecl klass = toJCClassDecl(element);
         final String className = klass.getSimpleName().toString();
-        Logger.note(getClass(), "process", "instrumenting class: " + className);
+        Logger.note(getClass(), "process", "instrumenting class: ", className);
 
         // NOTE(snorbi07): IMPORTANT: this only does the processing of TOP LEVEL classes (class source files)!
         // Inner classes are part of the parent classes source tree and processed as such.
-        processClass(klass);
+        processClass(klass, lineMapOf(element));
+    }
+
+    protected LineMap lineMapOf(Element element) {
+        final TreePath path = trees.getPath(element);
+        return path == null ? null : path.getCompilationUnit().getLineMap();
     }
 
     @Override
     public boolean doInstrument() {
-        final String doInstrument = javac.getOption(Option.GHOSTWRITER_INSTRUMENT);
-        return doInstrument == null ? true : Boolean.parseBoolean(doInstrument);
+        return settings.getBoolean(Option.GHOSTWRITER_INSTRUMENT, true);
     }
 
     protected JCClassDecl toJCClassDecl(Element element) {
@@ -150,40 +180,113 @@ public class Javac7Instrumenter implements Instrumenter {
         return klass;
     }
 
-    protected void processClass(JCClassDecl klass) {
-        Logger.note(getClass(), "processClass", klass.getSimpleName().toString());
+    protected void processClass(JCClassDecl klass, LineMap lineMap) {
+        Logger.note(getClass(), "processClass", klass.getSimpleName());
+        processedClassName = klass.sym == null ? klass.getSimpleName().toString() : klass.sym.getQualifiedName().toString();
+        // the package of the class can use a different profile
+        InstrumentationSettings classSettings = settings.forClass(processedClassName);
+        if (!classSettings.getBoolean(Option.GHOSTWRITER_INSTRUMENT, true)) {
+            Logger.note(getClass(), "processClass", "instrumentation of the class is disabled by its profile: ", processedClassName);
+            return;
+        }
         Collector<Method> methodCollector = new MethodDeclarationCollector(javac, klass);
-        instrumentMethods(methodCollector.toList());
+        // static metadata of all (nested) classes is collected in a single holder that belongs to the top level class
+        MetadataHolder metadata = new MetadataHolder(javac, javacHelper, klass, lineMap);
+        instrumentMethods(methodCollector.toList(), metadata, classSettings);
+        metadata.inject();
     }
 
-    protected void instrumentMethods(List<Method> methodModels) {
-        Translator<Method> translator = getMethodTranslator();
+    protected void instrumentMethods(List<Method> methodModels, MetadataHolder metadata, InstrumentationSettings classSettings) {
+        Translator<Method> translator = getMethodTranslator(metadata, classSettings);
+        // created on demand, most classes do not have downgraded methods
+        Translator<Method> errorsOnlyTranslator = null;
+        TrivialMethodPolicy trivialMethodPolicy = TrivialMethodPolicy.load(classSettings);
+        // number of trivial methods by category and action, logged for each class
+        Map<String, Integer> trivialMethodCounts = new TreeMap<>();
 
         for (Method method : methodModels) {
-            if (!isMethodExcluded(method)) {
+            if (isMethodExcluded(method)) {
+                continue;
+            }
+            TrivialMethodPolicy.Action trivialMethodAction = getTrivialMethodAction(method, trivialMethodPolicy, trivialMethodCounts);
+            if (trivialMethodAction == TrivialMethodPolicy.Action.SKIP) {
+                Logger.note(getClass(), "instrumentMethods", "skipping instrumentation of trivial method: ", method.getName());
+                continue;
+            }
+            if (trivialMethodAction == TrivialMethodPolicy.Action.ERRORS_ONLY || isHotMethod(method)) {
+                Logger.note(getClass(), "instrumentMethods", "instrumenting method with the errors-only profile: ", method.getName());
+                if (errorsOnlyTranslator == null) {
+                    errorsOnlyTranslator = getMethodTranslator(metadata, classSettings.withProfile(InstrumentationSettings.ERRORS_ONLY_PROFILE));
+                }
+                errorsOnlyTranslator.translate(method);
+            }
+            else {
                 translator.translate(method);
             }
         }
+
+        if (!trivialMethodCounts.isEmpty()) {
+            Logger.note(getClass(), "instrumentMethods", "trivial methods of ", processedClassName, ": ", trivialMethodCounts);
+        }
+    }
+
+    private TrivialMethodPolicy.Action getTrivialMethodAction(Method method, TrivialMethodPolicy policy, Map<String, Integer> counts) {
+        if (!policy.isEnabled()) {
+            return TrivialMethodPolicy.Action.FULL;
+        }
+        final TrivialMethodPolicy.Category category = trivialMethodClassifier.classify(method.representation());
+        final TrivialMethodPolicy.Action action = policy.getAction(category);
+        if (category != null) {
+            final String key = category + "=" + action;
+            final Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+        return action;
     }
 
     protected final boolean isMethodExcluded(Method method) {
         if (isMethodExcludedByEnv(method)) {
-            Logger.note(getClass(), "isMethodExcluded", "skipping instrumentation of method (env): " + method.getName());
+            Logger.note(getClass(), "isMethodExcluded", "skipping instrumentation of method (env): ", method.getName());
+            return true;
+        }
+        if (isHotMethod(method) && !hotMethods.isDowngraded()) {
+            Logger.note(getClass(), "isMethodExcluded", "skipping instrumentation of method (hot method profile): ", method.getName());
             return true;
         }
         if (isMethodExcludedByAnnotation(method)) {
-            Logger.note(getClass(), "isMethodExcluded", "skipping instrumentation of method (annotation): " + method.getName());
+            Logger.note(getClass(), "isMethodExcluded", "skipping instrumentation of method (annotation): ", method.getName());
             return true;
         }
         if (isAnnotatedOnlyMode() && !isIncludedClassOrMethod(method)) {
-            Logger.note(getClass(), "isMethodExcluded", "skipping un-annotated method: " + method.getName());
+            Logger.note(getClass(), "isMethodExcluded", "skipping un-annotated method: ", method.getName());
             return true;
         }
         return false;
     }
 
     protected final boolean isMethodExcludedByEnv(Method model) {
-        return excludedMethodNames.contains(model.getName());
+        String className = model.getClazz().getFullyQualifiedClassName();
+        if (className.isEmpty()) {
+            className = processedClassName;
+        }
+        return !classMatch(className).isMethodIncluded(model.getName());
+    }
+
+    private NameMatcher.Match classMatch(String className) {
+        NameMatcher.Match match = classMatches.get(className);
+        if (match == null) {
+            match = matcher.match(className);
+            classMatches.put(className, match);
+        }
+        return match;
+    }
+
+    protected final boolean isHotMethod(Method model) {
+        String className = model.getClazz().getFullyQualifiedClassName();
+        if (className.isEmpty()) {
+            className = processedClassName;
+        }
+        return hotMethods.isHot(className, model.getName());
     }
 
     protected final boolean isMethodExcludedByAnnotation(Method model) {
@@ -231,7 +334,11 @@ public class Javac7Instrumenter implements Instrumenter {
         this.trees = trees;
     }
 
-    protected Translator<Method> getMethodTranslator() {
-        return new MethodTranslator(javac, javacHelper);
+    protected InstrumentationSettings getSettings() {
+        return settings;
+    }
+
+    protected Translator<Method> getMethodTranslator(MetadataHolder metadata, InstrumentationSettings classSettings) {
+        return new MethodTranslator(javac, javacHelper, metadata, classSettings);
     }
 }
@@ -1,12 +1,14 @@
 package io.ghostwriter.openjdk.v7.ast.collector;
 
 
+import com.sun.source.tree.Tree;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCAssign;
 import com.sun.tools.javac.tree.JCTree.JCNewClass;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -20,18 +22,72 @@ public class BlockBasedMutatedVariableCollector extends Collector<JCTree.JCExpre
 
     final private JavaCompilerHelper helper;
 
+    final private MutatedVariableAnalysis analysis;
+
+    // expressions traversed by this collector, they are annotated with their mutations once the collection is done
+    final private List<TraversedExpression> traversedExpressions = new ArrayList<>();
+
     public BlockBasedMutatedVariableCollector(JCTree rootElement, JavaCompiler javac, JavaCompilerHelper helper) {
+        this(rootElement, javac, helper, null);
+    }
+
+    /**
+     * @param rootElement statement or expression to collect the mutated variables of
+     * @param javac       compiler abstraction used for creating the variable expressions
+     * @param helper      helper for checking exclusions
+     * @param analysis    shared analysis that contains the already known mutations of expressions, or {@code null}
+     */
+    public BlockBasedMutatedVariableCollector(JCTree rootElement, JavaCompiler javac, JavaCompilerHelper helper,
+                                              MutatedVariableAnalysis analysis) {
         super(rootElement);
         this.javac = Objects.requireNonNull(javac);
         this.helper = Objects.requireNonNull(helper);
+        this.analysis = analysis;
+    }
+
+    @Override
+    protected Collector<JCTree.JCExpression> execute() {
+        super.execute();
+        if (analysis != null) {
+            for (TraversedExpression traversed : traversedExpressions) {
+                analysis.annotate(traversed.expression, collectedItems(traversed.fromIndex, traversed.toIndex));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public <T extends JCTree> T translate(T tree) {
+        if (analysis == null || !(tree instanceof JCTree.JCExpression)) {
+            return super.translate(tree);
+        }
+
+        final JCTree.JCExpression expression = (JCTree.JCExpression) tree;
+        final List<JCTree.JCExpression> knownMutations = analysis.annotation(expression);
+        if (knownMutations != null) {
+            // already analysed as part of another statement, no need to traverse it again
+            collectAll(knownMutations);
+            return tree;
+        }
+
+        final int fromIndex = collectedItemCount();
+        final T result = super.translate(tree);
+        traversedExpressions.add(new TraversedExpression(expression, fromIndex, collectedItemCount()));
+        return result;
     }
 
     @Override
     public void visitAssign(JCAssign assignment) {
-        // super call comes first in order to ensure the correct sequence of valueChange triggers
-        super.visitAssign(assignment);
+        // the variable and the value are traversed first in order to ensure the correct sequence of valueChange triggers
+        final int itemCountBeforeVariable = collectedItemCount();
+        assignment.lhs = translate(assignment.lhs);
+        // the mutations of the assignment target are known after its traversal, no need for a separate collector
+        final boolean doesVariableContainMutation = collectedItemCount() > itemCountBeforeVariable;
+        assignment.rhs = translate(assignment.rhs);
+        result = assignment;
+
         final JCTree.JCExpression assignmentVariable = assignment.getVariable();
-        if (doesContainMutation(assignmentVariable)) {
+        if (doesVariableContainMutation) {
             // for example in case of an array access we only need the array[index] combination instead of array[++index]
             // so we can pass it to the GW.valueChange hook without producing side effects and altering the original behaviour
             collect(extractAssignmentTarget(assignmentVariable));
@@ -79,11 +135,6 @@ public class BlockBasedMutatedVariableCollector extends Collector<JCTree.JCExpre
         return javac.arrayAccess(arrayAccess.indexed, sideEffectFreeIndex);
     }
 
-    private boolean doesContainMutation(JCTree.JCExpression expression) {
-        final List<JCTree.JCExpression> mutations = new BlockBasedMutatedVariableCollector(expression, javac, helper).toList();
-        return !mutations.isEmpty();
-    }
-
     @Override
     public void visitAssignop(JCTree.JCAssignOp assignment) {
         // Capture operators such as +=
@@ -158,47 +209,24 @@ public class BlockBasedMutatedVariableCollector extends Collector<JCTree.JCExpre
     }
 
     protected boolean isMutableUnaryOperator(JCTree.JCExpression unary) {
-        final String expression = unary.toString();
-        final boolean doesContainIncrementOp = expression.contains("++");
-        final boolean doesContainDecrementOp = expression.contains("--");
-
-        return doesContainDecrementOp || doesContainIncrementOp;
+        return isPreIncrementOperator(unary) || isPreDecrementOperator(unary)
+                || isPostIncrementOperator(unary) || isPostDecrementOperator(unary);
     }
 
     protected boolean isPostIncrementOperator(JCTree.JCExpression unary) {
-        if (!(unary instanceof JCTree.JCUnary)) {
-            return false;
-        }
-        final String expression = unary.toString();
-
-        return expression.endsWith("++");
+        return unary.getKind() == Tree.Kind.POSTFIX_INCREMENT;
     }
 
     protected boolean isPostDecrementOperator(JCTree.JCExpression unary) {
-        if (!(unary instanceof JCTree.JCUnary)) {
-            return false;
-        }
-        final String expression = unary.toString();
-
-        return expression.endsWith("--");
+        return unary.getKind() == Tree.Kind.POSTFIX_DECREMENT;
     }
 
     protected boolean isPreIncrementOperator(JCTree.JCExpression unary) {
-        if (!(unary instanceof JCTree.JCUnary)) {
-            return false;
-        }
-        final String expression = unary.toString();
-
-        return expression.startsWith("++");
+        return unary.getKind() == Tree.Kind.PREFIX_INCREMENT;
     }
 
     protected boolean isPreDecrementOperator(JCTree.JCExpression unary) {
-        if (!(unary instanceof JCTree.JCUnary)) {
-            return false;
-        }
-        final String expression = unary.toString();
-
-        return expression.startsWith("--");
+        return unary.getKind() == Tree.Kind.PREFIX_DECREMENT;
     }
 
     @Override
@@ -220,4 +248,20 @@ public class BlockBasedMutatedVariableCollector extends Collector<JCTree.JCExpre
         // For this reason try-with expressions are handled similarly to other scope creating constructs such as 'for' loops.
         result = tree;
     }
+
+    private static final class TraversedExpression {
+
+        private final JCTree.JCExpression expression;
+
+        private final int fromIndex;
+
+        private final int toIndex;
+
+        private TraversedExpression(JCTree.JCExpression expression, int fromIndex, int toIndex) {
+            this.expression = expression;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+    }
+
 }
@@ -22,6 +22,7 @@ public class Collector<T> extends TreeTranslator implements Iterable<T> {
     
     protected Collector<T> execute() {
         rootElement.accept(this);
+        hasExecuted = true;
         return this;
     }
 
@@ -41,6 +42,19 @@ public class Collector<T> extends TreeTranslator implements Iterable<T> {
         }
     }
 
+    protected int collectedItemCount() {
+        return items.size();
+    }
+
+    /**
+     * @param fromIndex index of the first item, inclusive
+     * @param toIndex   index of the last item, exclusive
+     * @return read-only view of the items collected in the given range, valid as long as no further items are collected
+     */
+    protected List<T> collectedItems(int fromIndex, int toIndex) {
+        return Collections.unmodifiableList(items.subList(fromIndex, toIndex));
+    }
+
     @Override
     public Iterator<T> iterator() {
         // toList() assures that the collecting was executed.
@@ -54,7 +54,7 @@ public class MethodDeclarationCollector extends Collector<Method> {
 
         final Clazz enclosingClass = new Clazz(klass);
         Method method = new Method(methodName, enclosingClass, parameters, methodDeclaration);
-        Logger.note(getClass(), "buildMethodModel", method.toString());
+        Logger.note(getClass(), "buildMethodModel", method);
         return method;
     }
 
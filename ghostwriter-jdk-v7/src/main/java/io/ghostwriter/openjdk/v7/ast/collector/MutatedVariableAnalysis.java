@@ -0,0 +1,56 @@
+package io.ghostwriter.openjdk.v7.ast.collector;
+
+
+import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shared result of the {@link BlockBasedMutatedVariableCollector} runs of a method body. Every expression that a
+ * collector traverses is annotated with the variables it mutates, so later queries on the same expression - or on a
+ * statement containing it - reuse the result instead of traversing the expression again. This way the mutation
+ * analysis of a method body is linear in the size of the body, even if the translation steps query nested expressions
+ * repeatedly.
+ * Only expressions are annotated: statements are rewritten by the translation steps (return statements for example),
+ * while the expressions of the original method body are moved around, but not modified.
+ */
+public class MutatedVariableAnalysis {
+
+    private final JavaCompiler javac;
+
+    private final JavaCompilerHelper helper;
+
+    private final Map<JCTree, List<JCTree.JCExpression>> mutatedVariables = new IdentityHashMap<>();
+
+    public MutatedVariableAnalysis(JavaCompiler javac, JavaCompilerHelper helper) {
+        this.javac = Objects.requireNonNull(javac);
+        this.helper = Objects.requireNonNull(helper);
+    }
+
+    /**
+     * @param tree statement or expression of the method body
+     * @return variables mutated by the tree, in the order of the value change events, see {@link BlockBasedMutatedVariableCollector}
+     */
+    public List<JCTree.JCExpression> mutatedVariables(JCTree tree) {
+        final List<JCTree.JCExpression> annotated = mutatedVariables.get(tree);
+        if (annotated != null) {
+            return annotated;
+        }
+
+        return new BlockBasedMutatedVariableCollector(tree, javac, helper, this).toList();
+    }
+
+    List<JCTree.JCExpression> annotation(JCTree.JCExpression expression) {
+        return mutatedVariables.get(expression);
+    }
+
+    void annotate(JCTree.JCExpression expression, List<JCTree.JCExpression> variables) {
+        mutatedVariables.put(expression, variables);
+    }
+
+}
@@ -40,7 +40,7 @@ public class ParameterCollector extends Collector<Parameter> {
         final String type = javac.fullyQualifiedNameForTypeExpression(jcExpression);
 
         Parameter parameter = new Parameter(name, type, param);
-        Logger.note(getClass(), "buildParameterModel", parameter.toString());
+        Logger.note(getClass(), "buildParameterModel", parameter);
 
         return parameter;
     }
@@ -0,0 +1,451 @@
+package io.ghostwriter.openjdk.v7.ast.compiler;
+
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Name;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Estimates the size of the bytecode that javac generates for a method body, based on the AST alone.
+ * Annotation processing runs before attribution, so the estimation does not know whether an identifier is a local
+ * variable or a field, which overload is called or whether boxing takes place. The numbers are approximations that
+ * are good enough for comparing the size of a method before and after instrumentation, and against the inlining
+ * thresholds of HotSpot ({@code MaxInlineSize}, {@code FreqInlineSize}).
+ * The body of a {@code finally} block is counted once for every path leaving the {@code try} block, since javac
+ * duplicates it for each of them.
+ */
+public class BytecodeSizeEstimator extends TreeScanner {
+
+    private static final int LOCAL = 1;
+
+    private static final int CONSTANT = 2;
+
+    private static final int OPERATOR = 1;
+
+    private static final int INVOKE = 3;
+
+    private static final int FIELD = 3;
+
+    private static final int BRANCH = 3;
+
+    private static final int JUMP = 3;
+
+    private static final int INCREMENT = 3;
+
+    private static final int NEW_INSTANCE = 7;
+
+    private static final int NEW_ARRAY = 4;
+
+    private static final int ARRAY_ELEMENT = 3;
+
+    private static final int TYPE_CHECK = 3;
+
+    private static final int SWITCH = 16;
+
+    private static final int SWITCH_CASE = 8;
+
+    private static final int ITERATOR_LOOP = 20;
+
+    private static final int MONITOR = 12;
+
+    // storing, reloading and rethrowing the pending exception before the exceptional copy of a finally block
+    private static final int EXCEPTIONAL_FINALLY = 3;
+
+    private int size;
+
+    /**
+     * @param method method declaration
+     * @return estimated bytecode size of the method body in bytes, 0 if the method has no body
+     */
+    public int estimate(JCTree.JCMethodDecl method) {
+        return estimate(method.body);
+    }
+
+    /**
+     * @param tree statement or expression
+     * @return estimated bytecode size of the tree in bytes
+     */
+    public int estimate(JCTree tree) {
+        if (tree == null) {
+            return 0;
+        }
+
+        final int previousSize = size;
+        size = 0;
+        scan(tree);
+        final int estimation = size;
+        size = previousSize;
+        return estimation;
+    }
+
+    protected void add(int bytes) {
+        size += bytes;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+        // nested classes are compiled into a separate class file
+    }
+
+    @Override
+    public void visitMethodDef(JCTree.JCMethodDecl jcMethodDecl) {
+        scan(jcMethodDecl.body);
+    }
+
+    @Override
+    public void visitVarDef(JCTree.JCVariableDecl jcVariableDecl) {
+        if (jcVariableDecl.init != null) {
+            add(LOCAL);
+            scan(jcVariableDecl.init);
+        }
+    }
+
+    @Override
+    public void visitIf(JCTree.JCIf jcIf) {
+        add(BRANCH);
+        scan(jcIf.cond);
+        scan(jcIf.thenpart);
+        if (jcIf.elsepart != null) {
+            add(JUMP);
+            scan(jcIf.elsepart);
+        }
+    }
+
+    @Override
+    public void visitForLoop(JCTree.JCForLoop jcForLoop) {
+        add(BRANCH + JUMP);
+        super.visitForLoop(jcForLoop);
+    }
+
+    @Override
+    public void visitForeachLoop(JCTree.JCEnhancedForLoop jcEnhancedForLoop) {
+        add(ITERATOR_LOOP);
+        scan(jcEnhancedForLoop.expr);
+        scan(jcEnhancedForLoop.body);
+    }
+
+    @Override
+    public void visitWhileLoop(JCTree.JCWhileLoop jcWhileLoop) {
+        add(BRANCH + JUMP);
+        super.visitWhileLoop(jcWhileLoop);
+    }
+
+    @Override
+    public void visitDoLoop(JCTree.JCDoWhileLoop jcDoWhileLoop) {
+        add(BRANCH);
+        super.visitDoLoop(jcDoWhileLoop);
+    }
+
+    @Override
+    public void visitSwitch(JCTree.JCSwitch jcSwitch) {
+        add(SWITCH + SWITCH_CASE * jcSwitch.cases.size());
+        scan(jcSwitch.selector);
+        for (JCTree.JCCase jcCase : jcSwitch.cases) {
+            scan(jcCase.stats);
+        }
+    }
+
+    @Override
+    public void visitSynchronized(JCTree.JCSynchronized jcSynchronized) {
+        add(MONITOR);
+        super.visitSynchronized(jcSynchronized);
+    }
+
+    @Override
+    public void visitTry(JCTree.JCTry jcTry) {
+        scan(jcTry.body);
+        add(JUMP);
+        for (JCTree.JCCatch jcCatch : jcTry.catchers) {
+            add(LOCAL + JUMP);
+            scan(jcCatch.body);
+        }
+
+        if (jcTry.finalizer != null) {
+            // one copy for the normal completion, one for every jump out of the try and catch blocks
+            // and one for the exceptional completion
+            final int copies = 1 + exits(jcTry) + 1;
+            add(copies * estimate(jcTry.finalizer) + EXCEPTIONAL_FINALLY);
+        }
+    }
+
+    @Override
+    public void visitLabelled(JCTree.JCLabeledStatement jcLabeledStatement) {
+        scan(jcLabeledStatement.body);
+    }
+
+    @Override
+    public void visitBreak(JCTree.JCBreak jcBreak) {
+        add(JUMP);
+    }
+
+    @Override
+    public void visitContinue(JCTree.JCContinue jcContinue) {
+        add(JUMP);
+    }
+
+    @Override
+    public void visitReturn(JCTree.JCReturn jcReturn) {
+        add(OPERATOR);
+        scan(jcReturn.expr);
+    }
+
+    @Override
+    public void visitThrow(JCTree.JCThrow jcThrow) {
+        add(OPERATOR);
+        scan(jcThrow.expr);
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation jcMethodInvocation) {
+        add(INVOKE);
+        final JCTree.JCExpression method = jcMethodInvocation.meth;
+        if (method instanceof JCTree.JCFieldAccess) {
+            final JCTree.JCExpression receiver = ((JCTree.JCFieldAccess) method).selected;
+            if (isQualifiedName(receiver)) {
+                // either the class of a static call or a local/field receiver, counted as a single load
+                add(LOCAL);
+            }
+            else {
+                scan(receiver);
+            }
+        }
+        else {
+            // implicit 'this' receiver
+            add(LOCAL);
+        }
+        scan(jcMethodInvocation.args);
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass jcNewClass) {
+        // the body of anonymous classes is compiled into a separate class file
+        add(NEW_INSTANCE);
+        scan(jcNewClass.encl);
+        scan(jcNewClass.args);
+    }
+
+    @Override
+    public void visitNewArray(JCTree.JCNewArray jcNewArray) {
+        add(NEW_ARRAY);
+        scan(jcNewArray.dims);
+        if (jcNewArray.elems != null) {
+            add(ARRAY_ELEMENT * jcNewArray.elems.size());
+            scan(jcNewArray.elems);
+        }
+    }
+
+    @Override
+    public void visitParens(JCTree.JCParens jcParens) {
+        scan(jcParens.expr);
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign jcAssign) {
+        add(LOCAL);
+        if (!(jcAssign.lhs instanceof JCTree.JCIdent)) {
+            scan(jcAssign.lhs);
+        }
+        scan(jcAssign.rhs);
+    }
+
+    @Override
+    public void visitAssignop(JCTree.JCAssignOp jcAssignOp) {
+        add(OPERATOR + LOCAL);
+        super.visitAssignop(jcAssignOp);
+    }
+
+    @Override
+    public void visitUnary(JCTree.JCUnary jcUnary) {
+        final Tree.Kind kind = jcUnary.getKind();
+        final boolean isIncrementOrDecrement = kind == Tree.Kind.PREFIX_INCREMENT || kind == Tree.Kind.POSTFIX_INCREMENT
+                || kind == Tree.Kind.PREFIX_DECREMENT || kind == Tree.Kind.POSTFIX_DECREMENT;
+        add(isIncrementOrDecrement ? INCREMENT : OPERATOR);
+        scan(jcUnary.arg);
+    }
+
+    @Override
+    public void visitBinary(JCTree.JCBinary jcBinary) {
+        final Tree.Kind kind = jcBinary.getKind();
+        final boolean isShortCircuit = kind == Tree.Kind.CONDITIONAL_AND || kind == Tree.Kind.CONDITIONAL_OR;
+        add(isShortCircuit ? BRANCH : OPERATOR);
+        super.visitBinary(jcBinary);
+    }
+
+    @Override
+    public void visitConditional(JCTree.JCConditional jcConditional) {
+        add(BRANCH + JUMP);
+        super.visitConditional(jcConditional);
+    }
+
+    @Override
+    public void visitTypeCast(JCTree.JCTypeCast jcTypeCast) {
+        add(TYPE_CHECK);
+        scan(jcTypeCast.expr);
+    }
+
+    @Override
+    public void visitTypeTest(JCTree.JCInstanceOf jcInstanceOf) {
+        add(TYPE_CHECK);
+        scan(jcInstanceOf.expr);
+    }
+
+    @Override
+    public void visitIndexed(JCTree.JCArrayAccess jcArrayAccess) {
+        add(OPERATOR);
+        super.visitIndexed(jcArrayAccess);
+    }
+
+    @Override
+    public void visitSelect(JCTree.JCFieldAccess jcFieldAccess) {
+        add(FIELD);
+        if (!isQualifiedName(jcFieldAccess)) {
+            scan(jcFieldAccess.selected);
+        }
+        // otherwise a field of a local/this, a static field or a class literal, a single instruction in each case
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent jcIdent) {
+        add(LOCAL);
+    }
+
+    @Override
+    public void visitLiteral(JCTree.JCLiteral jcLiteral) {
+        add(CONSTANT);
+    }
+
+    @Override
+    public void visitTypeIdent(JCTree.JCPrimitiveTypeTree jcPrimitiveTypeTree) {
+        // types do not generate code
+    }
+
+    @Override
+    public void visitTypeArray(JCTree.JCArrayTypeTree jcArrayTypeTree) {
+        // types do not generate code
+    }
+
+    @Override
+    public void visitTypeApply(JCTree.JCTypeApply jcTypeApply) {
+        // types do not generate code
+    }
+
+    @Override
+    public void visitAnnotation(JCTree.JCAnnotation jcAnnotation) {
+        // annotations do not generate code
+    }
+
+    private static boolean isQualifiedName(JCTree.JCExpression expression) {
+        JCTree.JCExpression current = expression;
+        while (current instanceof JCTree.JCFieldAccess) {
+            current = ((JCTree.JCFieldAccess) current).selected;
+        }
+        return current instanceof JCTree.JCIdent;
+    }
+
+    private static int exits(JCTree.JCTry jcTry) {
+        final ExitCounter exitCounter = new ExitCounter();
+        exitCounter.scan(jcTry.body);
+        exitCounter.scan(jcTry.catchers);
+        return exitCounter.exits;
+    }
+
+    /**
+     * Counts the statements that leave a try block before its normal completion: return statements and jumps to
+     * statements outside of the try block.
+     */
+    private static final class ExitCounter extends TreeScanner {
+
+        private final Set<Name> labels = new HashSet<>();
+
+        private int exits = 0;
+
+        // number of enclosing loops and switch statements inside the try block
+        private int breakTargets = 0;
+
+        // number of enclosing loops inside the try block
+        private int continueTargets = 0;
+
+        @Override
+        public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+            // returns of nested classes do not leave the try block
+        }
+
+        @Override
+        public void visitReturn(JCTree.JCReturn jcReturn) {
+            ++exits;
+        }
+
+        @Override
+        public void visitLabelled(JCTree.JCLabeledStatement jcLabeledStatement) {
+            labels.add(jcLabeledStatement.label);
+            super.visitLabelled(jcLabeledStatement);
+            labels.remove(jcLabeledStatement.label);
+        }
+
+        @Override
+        public void visitBreak(JCTree.JCBreak jcBreak) {
+            final boolean hasTarget = jcBreak.label == null ? breakTargets > 0 : labels.contains(jcBreak.label);
+            if (!hasTarget) {
+                ++exits;
+            }
+        }
+
+        @Override
+        public void visitContinue(JCTree.JCContinue jcContinue) {
+            final boolean hasTarget = jcContinue.label == null ? continueTargets > 0 : labels.contains(jcContinue.label);
+            if (!hasTarget) {
+                ++exits;
+            }
+        }
+
+        @Override
+        public void visitForLoop(JCTree.JCForLoop jcForLoop) {
+            enterLoop();
+            super.visitForLoop(jcForLoop);
+            exitLoop();
+        }
+
+        @Override
+        public void visitForeachLoop(JCTree.JCEnhancedForLoop jcEnhancedForLoop) {
+            enterLoop();
+            super.visitForeachLoop(jcEnhancedForLoop);
+            exitLoop();
+        }
+
+        @Override
+        public void visitWhileLoop(JCTree.JCWhileLoop jcWhileLoop) {
+            enterLoop();
+            super.visitWhileLoop(jcWhileLoop);
+            exitLoop();
+        }
+
+        @Override
+        public void visitDoLoop(JCTree.JCDoWhileLoop jcDoWhileLoop) {
+            enterLoop();
+            super.visitDoLoop(jcDoWhileLoop);
+            exitLoop();
+        }
+
+        @Override
+        public void visitSwitch(JCTree.JCSwitch jcSwitch) {
+            ++breakTargets;
+            super.visitSwitch(jcSwitch);
+            --breakTargets;
+        }
+
+        private void enterLoop() {
+            ++breakTargets;
+            ++continueTargets;
+        }
+
+        private void exitLoop() {
+            --breakTargets;
+            --continueTargets;
+        }
+
+    }
+
+}
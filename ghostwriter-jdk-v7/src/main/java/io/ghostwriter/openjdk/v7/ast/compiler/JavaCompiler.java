@@ -121,6 +121,17 @@ public interface JavaCompiler {
      */
     JCVariableDecl finalVariable(JCExpression type, String name, JCExpression value, JCTree parent);
 
+    /**
+     * Create a non-final variable declaration
+     *
+     * @param type   type of the variable
+     * @param name   name of the variable
+     * @param value  initializer of the variable, or {@code null} for a declaration without initializer
+     * @param parent tree element used for positioning the generated declaration
+     * @return compiler representation of the variable declaration
+     */
+    JCVariableDecl variable(JCExpression type, String name, JCExpression value, JCTree parent);
+
 
     /**
      * @param identifier left hand side of the assign operation
@@ -174,6 +185,19 @@ public interface JavaCompiler {
 
     JCStatement ifCondition(JCExpression condition, JCStatement then);
 
+    /**
+     * @param label name of the label
+     * @param body  labeled statement
+     * @return compiler representation of the labeled statement, such as {@code label: { ... }}
+     */
+    JCLabeledStatement labelled(String label, JCStatement body);
+
+    /**
+     * @param label name of the label to break to
+     * @return compiler representation of the statement {@code break label;}
+     */
+    JCBreak breakStatement(String label);
+
     JCExpression notEqualExpression(JCExpression lhs, JCExpression rhs);
 
     JCTree.JCExpression nullLiteral();
@@ -196,5 +220,61 @@ public interface JavaCompiler {
 
     JCArrayAccess arrayAccess(JCExpression indexed, JCExpression index);
 
+    /**
+     * @param elementType type of the array elements
+     * @return compiler representation of the array type, such as {@code java.lang.String[]}
+     */
+    JCArrayTypeTree arrayType(JCExpression elementType);
+
+    /**
+     * Create a static final field declaration
+     *
+     * @param type   type of the field
+     * @param name   name of the field
+     * @param value  initializer of the field
+     * @param parent tree element used for positioning the generated declaration
+     * @return compiler representation of the field declaration
+     */
+    JCVariableDecl staticFinalField(JCExpression type, String name, JCExpression value, JCTree parent);
+
+    /**
+     * Create a static nested class declaration without type parameters, super class or implemented interfaces.
+     *
+     * @param name    simple name of the class
+     * @param members fields and methods of the class
+     * @param parent  tree element used for positioning the generated declaration
+     * @return compiler representation of the class declaration
+     */
+    JCClassDecl staticNestedClass(String name, List<JCTree> members, JCTree parent);
+
+    /**
+     * Create a static method declaration without type parameters and thrown exceptions.
+     *
+     * @param returnType result type of the method
+     * @param name       name of the method
+     * @param parameters parameters of the method
+     * @param body       body of the method
+     * @param parent     tree element used for positioning the generated declaration
+     * @return compiler representation of the method declaration
+     */
+    JCMethodDecl staticMethod(JCExpression returnType, String name, List<JCVariableDecl> parameters, JCBlock body, JCTree parent);
+
+    /**
+     * Create a method parameter declaration
+     *
+     * @param type   type of the parameter
+     * @param name   name of the parameter
+     * @param parent tree element used for positioning the generated declaration
+     * @return compiler representation of the parameter declaration
+     */
+    JCVariableDecl parameter(JCExpression type, String name, JCTree parent);
+
+    /**
+     * @param tree tree to copy
+     * @param <T>  type of the tree
+     * @return deep copy of the given tree
+     */
+    <T extends JCTree> T copy(T tree);
+
     String getOption(String option);
 }
@@ -1,9 +1,15 @@
 package io.ghostwriter.openjdk.v7.ast.compiler;
 
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
 import io.ghostwriter.openjdk.v7.model.Method;
+import io.ghostwriter.openjdk.v7.model.Parameter;
+import io.ghostwriter.openjdk.v7.runtime.Sampled;
 
+import javax.lang.model.type.TypeKind;
+import java.util.ArrayList;
 import java.util.Objects;
 
 
@@ -20,6 +26,10 @@ public class JavaCompilerHelper {
 
     private static final String INCLUDE_ANNOTATION_TYPE = "io.ghostwriter.annotation.Include";
 
+    private static final String SAMPLED_ANNOTATION_TYPE = Sampled.class.getName();
+
+    private static final String VOID_WRAPPER_TYPE = "java.lang.Void";
+
     private final JavaCompiler javac;
 
     public JavaCompilerHelper(JavaCompiler javac) {
@@ -51,28 +61,22 @@ public class JavaCompilerHelper {
 
     public boolean hasResult(JCTree.JCMethodDecl methodDecl) {
         JCTree.JCExpression type = methodDecl.restype;
-        boolean result = false;
+        if (type == null) {
+            // constructor
+            return false;
+        }
 
-        if (type != null) {
-            String typeName = type.toString();
-            result = !"void".equals(typeName) && !"java.lang.Void".equals(typeName);
+        if (type instanceof JCTree.JCPrimitiveTypeTree) {
+            return ((JCTree.JCPrimitiveTypeTree) type).getPrimitiveTypeKind() != TypeKind.VOID;
         }
 
-        return result;
+        final Name typeName = TreeInfo.fullName(type);
+        return typeName == null || !typeName.contentEquals(VOID_WRAPPER_TYPE);
     }
 
     public boolean isStatementSuperOrThisCall(JCTree.JCStatement statement) {
-        final String THIS = "this(";
-        final String SUPER = "super(";
-        String expressionStatement = statement.toString();
-        boolean result = false;
-        boolean isThisCall = expressionStatement.startsWith(THIS);
-        boolean isSuperCall = expressionStatement.startsWith(SUPER);
-        if (isThisCall || isSuperCall) {
-            result = true;
-        }
-
-        return result;
+        // decided on the called method name of the statement, printing the statement would be proportional to its size
+        return TreeInfo.isSelfCall(statement);
     }
 
     private static JCTree.JCAnnotation getExcludeAnnotation(JCTree.JCClassDecl classDecl) {
@@ -124,36 +128,81 @@ public class JavaCompilerHelper {
         return getExcludeAnnotation(variableDecl) != null;
     }
 
+    /**
+     * @param parameters parameters of a method or lambda
+     * @return parameters that are not annotated with Exclude, in declaration order
+     */
+    public java.util.List<Parameter> tracedParameters(java.util.List<Parameter> parameters) {
+        java.util.List<Parameter> tracedParameters = new ArrayList<>();
+        for (Parameter parameter : parameters) {
+            final JCTree.JCVariableDecl representation = parameter.representation();
+            if (!isExcluded(representation)) {
+                tracedParameters.add(parameter);
+            }
+        }
+
+        return tracedParameters;
+    }
+
     public JCTree.JCAnnotation getTimeoutAnnotation(JCTree.JCMethodDecl methodDecl) {
         final List<JCTree.JCAnnotation> annotations = methodDecl.mods.annotations;
         return findFirstAnnotation(annotations, TIMEOUT_ANNOTATION_TYPE);
     }
 
+    /**
+     * @return the sampling interval of the {@link Sampled} annotation of the method, or null if it is not annotated
+     */
+    public Integer getSamplingInterval(JCTree.JCMethodDecl methodDecl) {
+        final JCTree.JCAnnotation sampledAnnotation = findFirstAnnotation(methodDecl.mods.annotations, SAMPLED_ANNOTATION_TYPE);
+        if (sampledAnnotation == null) {
+            return null;
+        }
+
+        final List<JCTree.JCExpression> arguments = sampledAnnotation.getArguments();
+        if (arguments.size() != 1) {
+            throw new IllegalStateException("Unexpected number of annotation attributes on: " + String.valueOf(sampledAnnotation));
+        }
+        // both @Sampled(100) and @Sampled(value = 100) are supported
+        JCTree.JCExpression interval = arguments.get(0);
+        if (interval instanceof JCTree.JCAssign) {
+            interval = ((JCTree.JCAssign) interval).rhs;
+        }
+        try {
+            final int samplingInterval = Integer.parseInt(interval.toString());
+            if (samplingInterval < 1) {
+                throw new IllegalStateException("Sampling interval has to be at least 1: " + String.valueOf(sampledAnnotation));
+            }
+            return samplingInterval;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalStateException("Sampling interval has to be an integer literal: " + String.valueOf(sampledAnnotation), e);
+        }
+    }
+
     private static JCTree.JCAnnotation findFirstAnnotation(List<JCTree.JCAnnotation> annotations, String targetAnnotationType) {
         if (targetAnnotationType != null && targetAnnotationType.isEmpty()) {
             throw new IllegalArgumentException("Specified annotation type is not valid: " + targetAnnotationType);
         }
 
+        final String targetAnnotationSimpleName = simpleNameOfAnnotation(targetAnnotationType);
         JCTree.JCAnnotation resultAnnotation = null;
         for (JCTree.JCAnnotation annotation : annotations) {
             // NOTE(snorbi07): annotated local variables do not have a type specified for whatever reason...
             // Example: @io.ghostwriter.annotation.Exclude int someVariable = 3;
             boolean isAnnotatedLocalVariable = annotation.type == null;
-            String actualAnnotationType;
-            String expectedAnnotationType;
+            boolean isMatching;
 
             if (!isAnnotatedLocalVariable) {
-                final String annotationFullyQualifiedName = annotation.type.toString();
-                actualAnnotationType = annotationFullyQualifiedName;
-                expectedAnnotationType = targetAnnotationType;
+                // the names are compared in place, without converting the annotation type to a string
+                final Name annotationFullyQualifiedName = annotation.type.tsym.getQualifiedName();
+                isMatching = annotationFullyQualifiedName.contentEquals(targetAnnotationType);
             }
             else {
-                final String annotationType = annotation.getAnnotationType().toString();
-                actualAnnotationType = simpleNameOfAnnotation(annotationType);
-                expectedAnnotationType = simpleNameOfAnnotation(targetAnnotationType);
+                final Name annotationType = TreeInfo.name(annotation.getAnnotationType());
+                isMatching = annotationType != null && annotationType.contentEquals(targetAnnotationSimpleName);
             }
 
-            if (actualAnnotationType.equals(expectedAnnotationType)) {
+            if (isMatching) {
                 resultAnnotation = annotation;
                 break;
             }
@@ -163,14 +212,9 @@ public class JavaCompilerHelper {
     }
 
     private static String simpleNameOfAnnotation(String fullyQualifiedTypeOfAnnotation) {
-        String[] tokens = fullyQualifiedTypeOfAnnotation.split("[.]");
-
-        String result = fullyQualifiedTypeOfAnnotation;
-        if (tokens.length > 0) {
-            result = tokens[tokens.length - 1]; // last token should be the type's simple name
-        }
-
-        return result;
+        // last segment should be the type's simple name
+        final int lastDot = fullyQualifiedTypeOfAnnotation.lastIndexOf('.');
+        return fullyQualifiedTypeOfAnnotation.substring(lastDot + 1);
     }
 
 }
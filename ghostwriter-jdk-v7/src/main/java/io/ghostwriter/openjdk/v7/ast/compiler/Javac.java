@@ -7,6 +7,7 @@ import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.*;
+import com.sun.tools.javac.tree.TreeCopier;
 import com.sun.tools.javac.tree.TreeMaker;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.List;
@@ -139,7 +140,7 @@ public class Javac implements JavaCompiler {
     public JCExpression methodReturnType(JCMethodDecl method) {
         JCExpression resultTypeExpression = method.restype;
         JCExpression resultType = declarationType(resultTypeExpression);
-        Logger.note(getClass(), "methodReturnType", resultType.toString());
+        Logger.note(getClass(), "methodReturnType", resultType);
 
         return resultType;
     }
@@ -262,6 +263,14 @@ public class Javac implements JavaCompiler {
         return varDef;
     }
 
+    @Override
+    public JCVariableDecl variable(JCExpression type, String name, JCExpression value, JCTree parent) {
+        JCModifiers modifiers = make.Modifiers(0L);
+        JCVariableDecl varDef = make.VarDef(modifiers, name(name), type, value);
+        varDef.pos = parent.pos;
+        return varDef;
+    }
+
     @Override
     public JCVariableDecl catchParameter(String name, JCTree parent) {
         final JCExpression type = expression("java.lang.Throwable");
@@ -300,6 +309,16 @@ public class Javac implements JavaCompiler {
         return ifStatement;
     }
 
+    @Override
+    public JCLabeledStatement labelled(String label, JCStatement body) {
+        return make.Labelled(name(label), body);
+    }
+
+    @Override
+    public JCBreak breakStatement(String label) {
+        return make.Break(name(label));
+    }
+
     @Override
     public JCBlock block(List<JCStatement> statements) {
         return make.Block(0L, statements);
@@ -416,6 +435,9 @@ public class Javac implements JavaCompiler {
             case "boolean":
                 typeKind = TypeKind.BOOLEAN.ordinal();
                 break;
+            case "void":
+                typeKind = TypeKind.VOID.ordinal();
+                break;
             default:
                 throw new IllegalArgumentException("Unsupported or unknown primitive type: " + type);
         }
@@ -460,6 +482,49 @@ public class Javac implements JavaCompiler {
         return make.Indexed(indexed, index);
     }
 
+    @Override
+    public JCArrayTypeTree arrayType(JCExpression elementType) {
+        return make.TypeArray(elementType);
+    }
+
+    @Override
+    public JCVariableDecl staticFinalField(JCExpression type, String name, JCExpression value, JCTree parent) {
+        JCModifiers modifiers = make.Modifiers(Flags.STATIC | Flags.FINAL);
+        JCVariableDecl field = make.VarDef(modifiers, name(name), type, value);
+        field.pos = parent.pos;
+        return field;
+    }
+
+    @Override
+    public JCClassDecl staticNestedClass(String name, List<JCTree> members, JCTree parent) {
+        JCModifiers modifiers = make.Modifiers(Flags.STATIC | Flags.FINAL);
+        JCClassDecl classDecl = make.ClassDef(modifiers, name(name), List.<JCTypeParameter>nil(), null, List.<JCExpression>nil(), members);
+        classDecl.pos = parent.pos;
+        return classDecl;
+    }
+
+    @Override
+    public JCMethodDecl staticMethod(JCExpression returnType, String name, List<JCVariableDecl> parameters, JCBlock body, JCTree parent) {
+        JCModifiers modifiers = make.Modifiers(Flags.STATIC);
+        JCMethodDecl methodDecl = make.MethodDef(modifiers, name(name), returnType, List.<JCTypeParameter>nil(),
+                parameters, List.<JCExpression>nil(), body, null);
+        methodDecl.pos = parent.pos;
+        return methodDecl;
+    }
+
+    @Override
+    public JCVariableDecl parameter(JCExpression type, String name, JCTree parent) {
+        JCModifiers modifiers = make.Modifiers(Flags.PARAMETER);
+        JCVariableDecl parameter = make.VarDef(modifiers, name(name), type, null);
+        parameter.pos = parent.pos;
+        return parameter;
+    }
+
+    @Override
+    public <T extends JCTree> T copy(T tree) {
+        return new TreeCopier<Void>(make).copy(tree);
+    }
+
     @Override
     public String getOption(String option) {
         String ret = options.get(option);
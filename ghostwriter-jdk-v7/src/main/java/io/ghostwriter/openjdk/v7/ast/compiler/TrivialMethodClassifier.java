@@ -0,0 +1,169 @@
+package io.ghostwriter.openjdk.v7.ast.compiler;
+
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.common.TrivialMethodPolicy.Category;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recognizes the methods whose events are not worth their cost: accessors, setters, methods that delegate to a single
+ * call, methods returning a constant and builder methods. Annotation processing runs before attribution, so the
+ * classification is based on the shape of the method body alone. In a method without parameters, identifiers can only
+ * refer to fields (or constants), and in setters the assigned identifier is a field if it is not a parameter.
+ */
+public class TrivialMethodClassifier {
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private static final String THIS = "this";
+
+    private static final String SUPER = "super";
+
+    /**
+     * @param method method declaration
+     * @return the category of the method, or null if the method is not trivial
+     */
+    public Category classify(JCTree.JCMethodDecl method) {
+        if (method.body == null || CONSTRUCTOR_NAME.equals(method.getName().toString())) {
+            return null;
+        }
+        final List<JCTree.JCStatement> statements = method.body.getStatements();
+        if (statements.isEmpty()) {
+            return null;
+        }
+
+        final Set<String> parameters = new HashSet<>();
+        for (JCTree.JCVariableDecl parameter : method.getParameters()) {
+            parameters.add(parameter.getName().toString());
+        }
+
+        if (statements.size() == 1) {
+            return classifyStatement(method, statements.get(0), parameters);
+        }
+
+        // fields are assigned from the parameters, then the builder itself is returned
+        for (int i = 0; i < statements.size() - 1; i++) {
+            final JCTree.JCStatement statement = statements.get(i);
+            if (!(statement instanceof JCTree.JCExpressionStatement)
+                    || !isFieldAssignment(((JCTree.JCExpressionStatement) statement).getExpression(), parameters)) {
+                return null;
+            }
+        }
+        final JCTree.JCStatement lastStatement = statements.get(statements.size() - 1);
+        if (lastStatement instanceof JCTree.JCReturn && isThis(((JCTree.JCReturn) lastStatement).getExpression())) {
+            return Category.BUILDER;
+        }
+        return null;
+    }
+
+    private Category classifyStatement(JCTree.JCMethodDecl method, JCTree.JCStatement statement, Set<String> parameters) {
+        if (statement instanceof JCTree.JCReturn) {
+            final JCTree.JCExpression expression = skipParentheses(((JCTree.JCReturn) statement).getExpression());
+            if (expression == null) {
+                return null;
+            }
+            if (isConstant(expression)) {
+                return Category.CONSTANT;
+            }
+            if (parameters.isEmpty() && isField(expression, parameters)) {
+                return Category.ACCESSOR;
+            }
+            if (isDelegation(expression, parameters)) {
+                return Category.DELEGATE;
+            }
+            return null;
+        }
+
+        if (statement instanceof JCTree.JCExpressionStatement) {
+            final JCTree.JCExpression expression = ((JCTree.JCExpressionStatement) statement).getExpression();
+            if (isVoid(method) && isFieldAssignment(expression, parameters)) {
+                return Category.SETTER;
+            }
+            if (isDelegation(expression, parameters)) {
+                return Category.DELEGATE;
+            }
+        }
+        return null;
+    }
+
+    private static JCTree.JCExpression skipParentheses(JCTree.JCExpression expression) {
+        JCTree.JCExpression skipped = expression;
+        while (skipped instanceof JCTree.JCParens) {
+            skipped = ((JCTree.JCParens) skipped).getExpression();
+        }
+        return skipped;
+    }
+
+    private static boolean isVoid(JCTree.JCMethodDecl method) {
+        final JCTree returnType = method.getReturnType();
+        return returnType != null && returnType.getKind() == Tree.Kind.PRIMITIVE_TYPE && "void".equals(returnType.toString());
+    }
+
+    private static boolean isConstant(JCTree.JCExpression expression) {
+        if (expression instanceof JCTree.JCLiteral) {
+            return true;
+        }
+        return expression.getKind() == Tree.Kind.UNARY_MINUS
+                && ((JCTree.JCUnary) expression).getExpression() instanceof JCTree.JCLiteral;
+    }
+
+    private static boolean isThis(JCTree.JCExpression expression) {
+        return expression instanceof JCTree.JCIdent && THIS.equals(((JCTree.JCIdent) expression).getName().toString());
+    }
+
+    private static boolean isField(JCTree.JCExpression expression, Set<String> parameters) {
+        if (expression instanceof JCTree.JCIdent) {
+            final String name = ((JCTree.JCIdent) expression).getName().toString();
+            return !THIS.equals(name) && !parameters.contains(name);
+        }
+        if (expression instanceof JCTree.JCFieldAccess) {
+            return isThis(((JCTree.JCFieldAccess) expression).getExpression());
+        }
+        return false;
+    }
+
+    private static boolean isParameter(JCTree.JCExpression expression, Set<String> parameters) {
+        return expression instanceof JCTree.JCIdent && parameters.contains(((JCTree.JCIdent) expression).getName().toString());
+    }
+
+    private static boolean isFieldAssignment(JCTree.JCExpression expression, Set<String> parameters) {
+        if (!(expression instanceof JCTree.JCAssign)) {
+            return false;
+        }
+        final JCTree.JCAssign assignment = (JCTree.JCAssign) expression;
+        return isField(assignment.getVariable(), parameters) && isParameter(skipParentheses(assignment.getExpression()), parameters);
+    }
+
+    private static boolean isDelegation(JCTree.JCExpression expression, Set<String> parameters) {
+        if (!(expression instanceof JCTree.JCMethodInvocation)) {
+            return false;
+        }
+        final JCTree.JCMethodInvocation invocation = (JCTree.JCMethodInvocation) expression;
+        final JCTree.JCExpression method = invocation.getMethodSelect();
+        if (method instanceof JCTree.JCFieldAccess) {
+            // this.call(), super.call(), delegate.call(), this.delegate.call() or Type.call()
+            final JCTree.JCExpression target = ((JCTree.JCFieldAccess) method).getExpression();
+            final boolean isSimpleTarget = target instanceof JCTree.JCIdent || isField(target, parameters);
+            if (!isSimpleTarget) {
+                return false;
+            }
+        } else if (!(method instanceof JCTree.JCIdent) || SUPER.equals(((JCTree.JCIdent) method).getName().toString())
+                || THIS.equals(((JCTree.JCIdent) method).getName().toString())) {
+            return false;
+        }
+
+        for (JCTree.JCExpression argument : invocation.getArguments()) {
+            final JCTree.JCExpression skippedArgument = skipParentheses(argument);
+            final boolean isSimpleArgument = skippedArgument instanceof JCTree.JCIdent || isConstant(skippedArgument)
+                    || isField(skippedArgument, parameters);
+            if (!isSimpleArgument) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
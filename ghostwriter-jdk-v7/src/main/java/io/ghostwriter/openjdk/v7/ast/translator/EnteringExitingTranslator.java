@@ -10,8 +10,8 @@ import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.common.Logger;
 import io.ghostwriter.openjdk.v7.model.Method;
 import io.ghostwriter.openjdk.v7.model.Parameter;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
 
-import java.util.ArrayList;
 import java.util.Objects;
 
 public class EnteringExitingTranslator extends TreeTranslator implements Translator<Method> {
@@ -22,13 +22,16 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
 
     private final JavaCompilerHelper helper;
 
+    private final MetadataHolder metadata;
+
     private Method method;
 
     private boolean isProcessingNestedClass;
     
-    public EnteringExitingTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    public EnteringExitingTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
         this.javac = Objects.requireNonNull(javac);
         this.helper = Objects.requireNonNull(helper);
+        this.metadata = Objects.requireNonNull(metadata);
         // NOTE(snorbi07): Potential "cleaner" solution would be to move the MethodDeclarationCollector logic here as well.
         this.isProcessingNestedClass = false; // by default we process the methods of a top level class
     }
@@ -83,12 +86,35 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
         return io.ghostwriter.openjdk.v7.common.RuntimeHandler.ENTERING.toString();
     }
 
+    protected String getFixedArityEnteringHandler() {
+        return io.ghostwriter.openjdk.v7.common.RuntimeHandler.FIXED_ARITY_ENTERING.toString();
+    }
+
     protected String getExitingHandler() {
         return io.ghostwriter.openjdk.v7.common.RuntimeHandler.EXITING.toString();
     }
 
     protected JCTree.JCExpressionStatement enteringExpression(Method model) {
-        String enteringHandler = getEnteringHandler();
+        JCTree.JCExpression site = metadata.site(model);
+        return enteringExpression(model, site, model.getParameters());
+    }
+
+    /**
+     * Methods with only a few traced parameters call one of the fixed-arity entering hooks, that receive the parameter
+     * values as separate arguments. This way no argument array is allocated on each invocation.
+     * Methods with more parameters fall back to the array based entering call.
+     * In both cases the parameter names are part of the static site of the method.
+     *
+     * @param model      method that is being instrumented
+     * @param site       reference to the static site of the method or lambda
+     * @param parameters parameters of the instrumented method or lambda
+     * @return entering call for the given method
+     */
+    protected JCTree.JCExpressionStatement enteringExpression(Method model, JCTree.JCExpression site, java.util.List<Parameter> parameters) {
+        final java.util.List<Parameter> tracedParameters = helper.tracedParameters(parameters);
+        final boolean isFixedArity = tracedParameters.size() <= GhostWriterHooks.MAX_FIXED_ARITY;
+
+        String enteringHandler = isFixedArity ? getFixedArityEnteringHandler() : getEnteringHandler();
         if (enteringHandler == null || "".equals(enteringHandler)) {
             Logger.error(getClass(), "enteringExpression", "invalid fully qualified name for 'entering' handler: " + String.valueOf(enteringHandler));
         }
@@ -99,16 +125,26 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
         JCTree.JCExpression thisOrClass = helper.methodContext(model);
         handlerArguments.add(thisOrClass);
 
-        JCTree.JCLiteral methodName = helper.methodName(model);
-        handlerArguments.add(methodName);
+        handlerArguments.add(site);
 
-        JCTree.JCExpression methodArguments = enteringHandlerParameterArray(model.getParameters());
-        handlerArguments.add(methodArguments);
+        if (isFixedArity) {
+            for (Parameter parameter : tracedParameters) {
+                handlerArguments.add(argumentExpression(parameter));
+            }
+        }
+        else {
+            JCTree.JCExpression methodArguments = enteringHandlerParameterArray(tracedParameters);
+            handlerArguments.add(methodArguments);
+        }
 
         return javac.call(enteringHandlerExpression, handlerArguments.toList());
     }
 
     protected JCTree.JCExpressionStatement exitingExpression(Method model) {
+        return exitingExpression(model, metadata.site(model));
+    }
+
+    protected JCTree.JCExpressionStatement exitingExpression(Method model, JCTree.JCExpression site) {
         String exitingHandler = getExitingHandler();
         if (exitingHandler == null || "".equals(exitingHandler)) {
             Logger.error(getClass(), "exitingExpression", "invalid fully qualified name for 'exiting' handler: " + String.valueOf(exitingHandler));
@@ -120,8 +156,7 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
         JCTree.JCExpression thisOrClass = helper.methodContext(model);
         handlerArguments.add(thisOrClass);
 
-        JCTree.JCLiteral methodName = helper.methodName(model);
-        handlerArguments.add(methodName);
+        handlerArguments.add(site);
 
         return javac.call(exitingHandlerExpression, handlerArguments.toList());
     }
@@ -129,11 +164,9 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
     protected JCTree.JCExpression enteringHandlerParameterArray(java.util.List<Parameter> parameters) {
         ListBuffer<JCTree.JCExpression> lb = new ListBuffer<>();
 
-        final java.util.List<Parameter> filteredParameters = filterExcludedParameters(parameters);
-        for (Parameter parameter : filteredParameters) {
-            JCTree.JCLiteral argumentName = javac.literal(parameter.getName());
+        // parameter names are part of the site, only the values are passed
+        for (Parameter parameter : parameters) {
             JCTree.JCExpression argumentValue = argumentExpression(parameter);
-            lb.add(argumentName);
             lb.add(argumentValue);
         }
 
@@ -149,18 +182,6 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
         return argumentsArray;
     }
 
-    private java.util.List<Parameter> filterExcludedParameters(java.util.List<Parameter> parameters) {
-        java.util.List<Parameter> filteredParameters = new ArrayList<>();
-        for (Parameter parameter : parameters) {
-            final JCTree.JCVariableDecl representation = parameter.representation();
-            if (!helper.isExcluded(representation)) {
-                filteredParameters.add(parameter);
-            }
-        }
-
-        return filteredParameters;
-    }
-
     protected JCTree.JCExpression argumentExpression(Parameter parameter) {
         String argName = parameter.getName();
 
@@ -182,4 +203,8 @@ public class EnteringExitingTranslator extends TreeTranslator implements Transla
     protected JavaCompilerHelper getJavacHelper() {
         return helper;
     }
+
+    protected MetadataHolder getMetadata() {
+        return metadata;
+    }
 }
@@ -0,0 +1,100 @@
+package io.ghostwriter.openjdk.v7.ast.translator;
+
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.model.Method;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+
+import java.util.Objects;
+
+/**
+ * Wraps every runtime hook call of the instrumented method in a check of a local flag, that is initialized once
+ * at the beginning of the method from {@link GhostWriterHooks#isEnabled()}. When tracing is disabled at runtime,
+ * the argument capturing, boxing and the call itself are skipped. Reading the flag once per invocation ensures that
+ * the entering and exiting events of an invocation are either both reported or both skipped.
+ *
+ * With a sampling interval the flag is initialized from {@link GhostWriterHooks#isSampled(int)} instead, so only a
+ * sample of the invocations report events, and every event of a sampled invocation is reported.
+ *
+ * Has to run after all the other event instrumentation steps, since it only guards the hook calls already present.
+ */
+public class EventGuardTranslator extends TreeTranslator implements Translator<Method> {
+
+    static final String GUARD_VARIABLE_NAME = "$tracingEnabled_";
+
+    private static final String HOOKS_CLASS_NAME = GhostWriterHooks.class.getName();
+
+    private final JavaCompiler javac;
+
+    private final int samplingInterval;
+
+    public EventGuardTranslator(JavaCompiler javac) {
+        this(javac, 1);
+    }
+
+    /**
+     * @param samplingInterval average number of invocations per traced invocation, every invocation is traced if it is 1
+     */
+    public EventGuardTranslator(JavaCompiler javac, int samplingInterval) {
+        this.javac = Objects.requireNonNull(javac);
+        this.samplingInterval = samplingInterval;
+    }
+
+    @Override
+    public void translate(Method model) {
+        final JCTree.JCMethodDecl representation = model.representation();
+        representation.body.accept(this);
+
+        final JCTree.JCMethodInvocation isEnabled;
+        if (samplingInterval > 1) {
+            isEnabled = javac.apply(javac.expression(HOOKS_CLASS_NAME + ".isSampled"),
+                    List.<JCTree.JCExpression>of(javac.literal(samplingInterval)));
+        }
+        else {
+            isEnabled = javac.apply(javac.expression(HOOKS_CLASS_NAME + ".isEnabled"), List.<JCTree.JCExpression>nil());
+        }
+        final JCTree.JCVariableDecl guard = javac.finalVariable(javac.primitiveType("boolean"), GUARD_VARIABLE_NAME,
+                isEnabled, representation);
+        representation.body.stats = representation.body.stats.prepend(guard);
+    }
+
+    @Override
+    public void visitExec(JCTree.JCExpressionStatement statement) {
+        if (isHookCall(statement)) {
+            result = javac.ifCondition(javac.identifier(GUARD_VARIABLE_NAME), statement);
+            return;
+        }
+        super.visitExec(statement);
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        // Skip nested anonymous inner class expressions, their methods are instrumented and guarded separately.
+        result = tree;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+        // Skip nested class declarations, their methods are instrumented and guarded separately.
+        result = jcClassDecl;
+    }
+
+    static boolean isHookCall(JCTree.JCExpressionStatement statement) {
+        if (!(statement.expr instanceof JCTree.JCMethodInvocation)) {
+            return false;
+        }
+
+        final JCTree.JCExpression method = ((JCTree.JCMethodInvocation) statement.expr).meth;
+        if (!(method instanceof JCTree.JCFieldAccess)) {
+            return false;
+        }
+
+        final Name qualifier = TreeInfo.fullName(((JCTree.JCFieldAccess) method).selected);
+        return qualifier != null && qualifier.contentEquals(HOOKS_CLASS_NAME);
+    }
+
+}
@@ -0,0 +1,175 @@
+package io.ghostwriter.openjdk.v7.ast.translator;
+
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.ListBuffer;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.common.RuntimeHandler;
+import io.ghostwriter.openjdk.v7.model.Method;
+import io.ghostwriter.openjdk.v7.model.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Replaces the runtime hook calls of the instrumented method with calls of static helper methods generated into the
+ * {@link MetadataHolder}, see {@link MetadataHolder#outlined(String, JCTree.JCExpression, List, boolean)}.
+ * A guarded hook call {@code if ($tracingEnabled_) GhostWriterHooks.exiting(this, site$N)} becomes
+ * {@code $GhostWriterMetadata.exiting$N(this, $tracingEnabled_)}, which is fewer bytes in every copy of the
+ * finally block. Primitive parameters are passed to the entering helper without boxing, so the helper calls the same
+ * entering overload as the original call.
+ *
+ * Only the hooks with a fixed signature are outlined (entering, exiting, onError and timeout). The type of the returned
+ * and assigned values is not known before attribution, so returning and valueChange calls are left in place.
+ * Has to run after the {@link EventGuardTranslator}.
+ */
+public class HookOutliningTranslator extends TreeTranslator implements Translator<Method> {
+
+    private static final String OBJECT_TYPE = "java.lang.Object";
+
+    private static final String THROWABLE_TYPE = "java.lang.Throwable";
+
+    private final JavaCompiler javac;
+
+    private final MetadataHolder metadata;
+
+    private Method model;
+
+    public HookOutliningTranslator(JavaCompiler javac, MetadataHolder metadata) {
+        this.javac = Objects.requireNonNull(javac);
+        this.metadata = Objects.requireNonNull(metadata);
+    }
+
+    @Override
+    public void translate(Method model) {
+        this.model = Objects.requireNonNull(model);
+        final JCTree.JCMethodDecl representation = model.representation();
+        representation.body = translate(representation.body);
+    }
+
+    @Override
+    public void visitIf(JCTree.JCIf jcIf) {
+        if (isGuardedHookCall(jcIf)) {
+            final JCTree.JCExpressionStatement outlined = outlined((JCTree.JCExpressionStatement) jcIf.thenpart, true);
+            if (outlined != null) {
+                result = outlined;
+                return;
+            }
+        }
+        super.visitIf(jcIf);
+    }
+
+    @Override
+    public void visitExec(JCTree.JCExpressionStatement statement) {
+        if (EventGuardTranslator.isHookCall(statement)) {
+            final JCTree.JCExpressionStatement outlined = outlined(statement, false);
+            if (outlined != null) {
+                result = outlined;
+                return;
+            }
+        }
+        super.visitExec(statement);
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        // Skip nested anonymous inner class expressions, their methods are instrumented separately.
+        result = tree;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+        // Skip nested class declarations, their methods are instrumented separately.
+        result = jcClassDecl;
+    }
+
+    private boolean isGuardedHookCall(JCTree.JCIf jcIf) {
+        final boolean isGuardCondition = jcIf.cond instanceof JCTree.JCIdent
+                && ((JCTree.JCIdent) jcIf.cond).name.contentEquals(EventGuardTranslator.GUARD_VARIABLE_NAME);
+        return isGuardCondition
+                && jcIf.elsepart == null
+                && jcIf.thenpart instanceof JCTree.JCExpressionStatement
+                && EventGuardTranslator.isHookCall((JCTree.JCExpressionStatement) jcIf.thenpart);
+    }
+
+    private JCTree.JCExpressionStatement outlined(JCTree.JCExpressionStatement statement, boolean isGuarded) {
+        final JCTree.JCMethodInvocation hookCall = (JCTree.JCMethodInvocation) statement.expr;
+        final com.sun.tools.javac.util.List<JCTree.JCExpression> arguments = hookCall.args;
+        // every hook receives the source and the site as first arguments
+        if (arguments.size() < 2) {
+            return null;
+        }
+
+        final JCTree.JCExpression source = arguments.get(0);
+        final JCTree.JCExpression site = arguments.get(1);
+        final com.sun.tools.javac.util.List<JCTree.JCExpression> hookArguments = arguments.tail.tail;
+
+        final List<JCTree.JCExpression> argumentTypes = argumentTypes(TreeInfo.fullName(hookCall.meth).toString(), hookArguments);
+        if (argumentTypes == null) {
+            return null;
+        }
+
+        final String hook = ((JCTree.JCFieldAccess) hookCall.meth).name.toString();
+        final JCTree.JCExpression helperMethod = metadata.outlined(hook, site, argumentTypes, isGuarded);
+        if (helperMethod == null) {
+            return null;
+        }
+
+        ListBuffer<JCTree.JCExpression> helperArguments = new ListBuffer<>();
+        helperArguments.add(source);
+        if (isGuarded) {
+            helperArguments.add(javac.identifier(EventGuardTranslator.GUARD_VARIABLE_NAME));
+        }
+        for (JCTree.JCExpression hookArgument : hookArguments) {
+            helperArguments.add(hookArgument);
+        }
+
+        return javac.call(helperMethod, helperArguments.toList());
+    }
+
+    /**
+     * @return types of the hook arguments following the site, or {@code null} if the hook is not outlined
+     */
+    private List<JCTree.JCExpression> argumentTypes(String handler, com.sun.tools.javac.util.List<JCTree.JCExpression> hookArguments) {
+        if (RuntimeHandler.FIXED_ARITY_ENTERING.toString().equals(handler)) {
+            final List<JCTree.JCExpression> types = new ArrayList<>();
+            for (JCTree.JCExpression argument : hookArguments) {
+                types.add(enteringArgumentType(argument));
+            }
+            return types;
+        }
+        else if (RuntimeHandler.ENTERING.toString().equals(handler)) {
+            return Collections.<JCTree.JCExpression>singletonList(javac.arrayType(javac.expression(OBJECT_TYPE)));
+        }
+        else if (RuntimeHandler.EXITING.toString().equals(handler)) {
+            return Collections.emptyList();
+        }
+        else if (RuntimeHandler.ON_ERROR.toString().equals(handler)) {
+            return Collections.singletonList(javac.expression(THROWABLE_TYPE));
+        }
+        else if (RuntimeHandler.TIMEOUT.toString().equals(handler)) {
+            return Arrays.<JCTree.JCExpression>asList(javac.primitiveType("long"), javac.primitiveType("long"));
+        }
+
+        return null;
+    }
+
+    private JCTree.JCExpression enteringArgumentType(JCTree.JCExpression argument) {
+        if (argument instanceof JCTree.JCIdent) {
+            final String name = ((JCTree.JCIdent) argument).name.toString();
+            for (Parameter parameter : model.getParameters()) {
+                final JCTree.JCExpression declaredType = parameter.representation().vartype;
+                if (parameter.getName().equals(name) && declaredType != null && javac.isPrimitiveType(declaredType)) {
+                    return javac.primitiveType(declaredType.toString());
+                }
+            }
+        }
+
+        return javac.expression(OBJECT_TYPE);
+    }
+
+}
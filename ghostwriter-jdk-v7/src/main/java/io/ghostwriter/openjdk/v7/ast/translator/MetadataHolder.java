@@ -0,0 +1,369 @@
+package io.ghostwriter.openjdk.v7.ast.translator;
+
+import com.sun.source.tree.LineMap;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.ListBuffer;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+import io.ghostwriter.openjdk.v7.common.Logger;
+import io.ghostwriter.openjdk.v7.model.Clazz;
+import io.ghostwriter.openjdk.v7.model.Method;
+import io.ghostwriter.openjdk.v7.model.Parameter;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Collects the static metadata - the {@link Site} descriptors of the instrumented methods - that the instrumented code
+ * of a top level class refers to. The metadata is materialized as a nested class of the top level class, so it is
+ * created once during class initialization instead of on every runtime hook call.
+ * The holder is nested in the top level class, since anonymous, local and inner classes cannot declare static fields.
+ * Optionally the holder also contains the static helper methods that runtime hook calls are outlined to, see
+ * {@link #outlined(String, JCTree.JCExpression, List, boolean)}.
+ */
+public class MetadataHolder {
+
+    public static final String HOLDER_CLASS_NAME = "$GhostWriterMetadata";
+
+    private static final String SITE_FIELD_PREFIX = "site$";
+
+    private static final String PENDING_SITE_FIELD_NAME = SITE_FIELD_PREFIX + "pending";
+
+    private static final String OBJECT_TYPE = "java.lang.Object";
+
+    private static final String SOURCE_PARAMETER_NAME = "source";
+
+    private static final String ENABLED_PARAMETER_NAME = "enabled";
+
+    private static final String ARGUMENT_PARAMETER_PREFIX = "arg";
+
+    private static final String STRING_TYPE = "java.lang.String";
+
+    private static final int UNKNOWN_LINE = -1;
+
+    private final JavaCompiler javac;
+
+    private final JavaCompilerHelper helper;
+
+    private final JCTree.JCClassDecl topLevelClass;
+
+    private final LineMap lineMap;
+
+    private final String holderClassName;
+
+    // all translation steps of a method (or lambda) share the same site, the declaration identifies the site
+    private final Map<JCTree, String> siteFields = new IdentityHashMap<>();
+
+    // values of siteFields, to recognize the references to the site fields
+    private final Set<String> siteFieldNames = new HashSet<>();
+
+    // references returned by pendingSite, in request order, trees are compared by identity
+    private final Map<JCTree.JCFieldAccess, PendingSite> pendingSites = new LinkedHashMap<>();
+
+    private final Set<String> outlinedMethods = new HashSet<>();
+
+    private final List<JCTree> members = new ArrayList<>();
+
+    // the declaration (site) or name (outlined method) each member was generated for, needed for rollbacks
+    private final List<Object> memberKeys = new ArrayList<>();
+
+    /**
+     * @param javac         compiler abstraction used for code generation
+     * @param helper        helper for deducing the traced parameters
+     * @param topLevelClass class that will contain the generated metadata
+     * @param lineMap       line mapping of the compilation unit, or {@code null} if not available
+     */
+    public MetadataHolder(JavaCompiler javac, JavaCompilerHelper helper, JCTree.JCClassDecl topLevelClass, LineMap lineMap) {
+        this.javac = Objects.requireNonNull(javac);
+        this.helper = Objects.requireNonNull(helper);
+        this.topLevelClass = Objects.requireNonNull(topLevelClass);
+        this.lineMap = lineMap;
+        this.holderClassName = new Clazz(topLevelClass).getFullyQualifiedClassName() + "." + HOLDER_CLASS_NAME;
+    }
+
+    /**
+     * Returns a reference to the static {@link Site} of the given method.
+     *
+     * @param model instrumented method
+     * @return expression referring to the generated site
+     */
+    public JCTree.JCExpression site(Method model) {
+        final JCTree.JCMethodDecl representation = model.representation();
+        return site(model, model.getName(), representation, model.getParameters());
+    }
+
+    /**
+     * Returns a reference to the static {@link Site} of a method-like declaration, such as a lambda expression.
+     *
+     * @param model       enclosing method of the declaration
+     * @param name        name that is reported to the runtime handlers
+     * @param declaration AST node of the declaration, it identifies the site
+     * @param parameters  parameters of the declaration, in declaration order
+     * @return expression referring to the generated site
+     */
+    public JCTree.JCExpression site(Method model, String name, JCTree declaration, List<Parameter> parameters) {
+        return javac.expression(holderClassName + "." + registeredSiteField(model, name, declaration, parameters));
+    }
+
+    /**
+     * Returns a reference to the static {@link Site} of the given method, without registering the site if it is not
+     * registered yet, see {@link #pendingSite(Method, String, JCTree, List)}.
+     *
+     * @param model instrumented method
+     * @return expression referring to the site, it is valid after {@link #registerPendingSites(JCTree)}
+     */
+    public JCTree.JCExpression pendingSite(Method model) {
+        final JCTree.JCMethodDecl representation = model.representation();
+        return pendingSite(model, model.getName(), representation, model.getParameters());
+    }
+
+    /**
+     * Variant of {@link #site(Method, String, JCTree, List)} for translation steps that run earlier than the position
+     * of their sites in the numbering. The site is registered by {@link #registerPendingSites(JCTree)}, so the fields
+     * are numbered as if the step ran after the ones that call {@code site} in the meantime.
+     *
+     * @param model       enclosing method of the declaration
+     * @param name        name that is reported to the runtime handlers
+     * @param declaration AST node of the declaration, it identifies the site
+     * @param parameters  parameters of the declaration, in declaration order
+     * @return expression referring to the site, it is valid after {@link #registerPendingSites(JCTree)}
+     */
+    public JCTree.JCExpression pendingSite(Method model, String name, JCTree declaration, List<Parameter> parameters) {
+        final String fieldName = siteFields.get(declaration);
+        if (fieldName != null) {
+            return javac.expression(holderClassName + "." + fieldName);
+        }
+
+        final JCTree.JCFieldAccess reference = (JCTree.JCFieldAccess) javac.expression(holderClassName + "." + PENDING_SITE_FIELD_NAME);
+        pendingSites.put(reference, new PendingSite(model, name, declaration, parameters));
+        return reference;
+    }
+
+    /**
+     * Registers the sites of the pending references, in the order the references appear in the given tree, and points
+     * the references to the registered fields. References that are not part of the tree are registered afterwards, in
+     * the order they were requested.
+     *
+     * @param tree tree that contains the pending references, usually the instrumented method
+     */
+    public void registerPendingSites(JCTree tree) {
+        if (pendingSites.isEmpty()) {
+            return;
+        }
+
+        new TreeScanner() {
+            @Override
+            public void visitSelect(JCTree.JCFieldAccess fieldAccess) {
+                final PendingSite pendingSite = pendingSites.remove(fieldAccess);
+                if (pendingSite != null) {
+                    register(fieldAccess, pendingSite);
+                }
+                super.visitSelect(fieldAccess);
+            }
+        }.scan(tree);
+
+        for (Map.Entry<JCTree.JCFieldAccess, PendingSite> entry : pendingSites.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+        pendingSites.clear();
+    }
+
+    /**
+     * Returns a reference to a static helper method of the holder, that calls the given runtime hook with the given
+     * site. Calling the helper instead of the hook keeps the site reference and the guard check of the event out of
+     * the instrumented method, which reduces its bytecode size.
+     * The helper has the signature {@code static void hook$N(Object source, [boolean enabled,] arguments...)}, where
+     * the arguments are the ones that follow the site in the hook call.
+     *
+     * @param hook          simple name of the {@link GhostWriterHooks} method
+     * @param site          site reference returned by one of the {@code site} methods
+     * @param argumentTypes types of the hook arguments that follow the site
+     * @param isGuarded     whether the helper receives the enabled flag of the invocation and checks it before the call
+     * @return expression referring to the helper method, or {@code null} if the site does not belong to this holder
+     */
+    public JCTree.JCExpression outlined(String hook, JCTree.JCExpression site, List<JCTree.JCExpression> argumentTypes, boolean isGuarded) {
+        final String siteFieldName = siteFieldName(site);
+        if (siteFieldName == null) {
+            return null;
+        }
+
+        final String methodName = hook + "$" + siteFieldName.substring(SITE_FIELD_PREFIX.length());
+        if (!outlinedMethods.contains(methodName)) {
+            outlinedMethods.add(methodName);
+            addMember(methodName, outlinedMethod(methodName, hook, siteFieldName, argumentTypes, isGuarded));
+        }
+
+        return javac.expression(holderClassName + "." + methodName);
+    }
+
+    /**
+     * @return state of the holder that can be restored with {@link #rollback(int)}
+     */
+    public int checkpoint() {
+        return members.size();
+    }
+
+    /**
+     * Discards the metadata that was generated since the given checkpoint. Used when the instrumentation of a method is
+     * discarded and the method is instrumented again.
+     *
+     * @param checkpoint value returned by {@link #checkpoint()}
+     */
+    public void rollback(int checkpoint) {
+        pendingSites.clear();
+        for (int i = members.size() - 1; i >= checkpoint; --i) {
+            final Object key = memberKeys.remove(i);
+            members.remove(i);
+            final String siteFieldName = siteFields.remove(key);
+            if (siteFieldName != null) {
+                siteFieldNames.remove(siteFieldName);
+            }
+            outlinedMethods.remove(key);
+        }
+    }
+
+    /**
+     * Adds the holder class to the top level class, in case any metadata was requested during instrumentation.
+     */
+    public void inject() {
+        if (members.isEmpty()) {
+            return;
+        }
+
+        final ListBuffer<JCTree> holderMembers = new ListBuffer<>();
+        for (JCTree member : members) {
+            holderMembers.add(member);
+        }
+
+        final JCTree.JCClassDecl holder = javac.staticNestedClass(HOLDER_CLASS_NAME, holderMembers.toList(), topLevelClass);
+        topLevelClass.defs = topLevelClass.defs.append(holder);
+        Logger.note(getClass(), "inject", holderClassName, " with ", members.size(), " entries");
+    }
+
+    private String registeredSiteField(Method model, String name, JCTree declaration, List<Parameter> parameters) {
+        String fieldName = siteFields.get(declaration);
+        if (fieldName == null) {
+            fieldName = SITE_FIELD_PREFIX + siteFields.size();
+            siteFields.put(declaration, fieldName);
+            siteFieldNames.add(fieldName);
+            addMember(declaration, siteField(fieldName, model, name, declaration, parameters));
+        }
+
+        return fieldName;
+    }
+
+    private void register(JCTree.JCFieldAccess reference, PendingSite pendingSite) {
+        final String fieldName = registeredSiteField(pendingSite.model, pendingSite.name, pendingSite.declaration, pendingSite.parameters);
+        reference.name = javac.name(fieldName);
+    }
+
+    private void addMember(Object key, JCTree member) {
+        memberKeys.add(key);
+        members.add(member);
+    }
+
+    private String siteFieldName(JCTree.JCExpression site) {
+        if (!(site instanceof JCTree.JCFieldAccess)) {
+            return null;
+        }
+
+        final String fieldName = ((JCTree.JCFieldAccess) site).name.toString();
+        return siteFieldNames.contains(fieldName) ? fieldName : null;
+    }
+
+    private JCTree.JCMethodDecl outlinedMethod(String methodName, String hook, String siteFieldName,
+                                               List<JCTree.JCExpression> argumentTypes, boolean isGuarded) {
+        ListBuffer<JCTree.JCVariableDecl> parameters = new ListBuffer<>();
+        ListBuffer<JCTree.JCExpression> hookArguments = new ListBuffer<>();
+
+        parameters.add(javac.parameter(javac.expression(OBJECT_TYPE), SOURCE_PARAMETER_NAME, topLevelClass));
+        hookArguments.add(javac.identifier(SOURCE_PARAMETER_NAME));
+        hookArguments.add(javac.identifier(siteFieldName));
+        if (isGuarded) {
+            parameters.add(javac.parameter(javac.primitiveType("boolean"), ENABLED_PARAMETER_NAME, topLevelClass));
+        }
+        for (int i = 0; i < argumentTypes.size(); ++i) {
+            final String argumentName = ARGUMENT_PARAMETER_PREFIX + i;
+            parameters.add(javac.parameter(argumentTypes.get(i), argumentName, topLevelClass));
+            hookArguments.add(javac.identifier(argumentName));
+        }
+
+        final JCTree.JCExpression hookMethod = javac.expression(GhostWriterHooks.class.getName() + "." + hook);
+        JCTree.JCStatement hookCall = javac.call(hookMethod, hookArguments.toList());
+        if (isGuarded) {
+            hookCall = javac.ifCondition(javac.identifier(ENABLED_PARAMETER_NAME), hookCall);
+        }
+
+        final JCTree.JCBlock body = javac.block(com.sun.tools.javac.util.List.of(hookCall));
+        return javac.staticMethod(javac.primitiveType("void"), methodName, parameters.toList(), body, topLevelClass);
+    }
+
+    private JCTree.JCVariableDecl siteField(String fieldName, Method model, String name, JCTree declaration, List<Parameter> parameters) {
+        ListBuffer<JCTree.JCExpression> names = new ListBuffer<>();
+        for (Parameter parameter : helper.tracedParameters(parameters)) {
+            names.add(javac.literal(parameter.getName()));
+        }
+        JCTree.JCNewArray namesArray = javac.array(javac.expression(STRING_TYPE));
+        namesArray.elems = names.toList();
+
+        ListBuffer<JCTree.JCExpression> arguments = new ListBuffer<>();
+        arguments.add(javac.literal(model.getClazz().getFullyQualifiedClassName()));
+        arguments.add(javac.literal(name));
+        arguments.add(javac.literal(signature(parameters)));
+        arguments.add(namesArray);
+        arguments.add(javac.literal(lineOf(declaration)));
+
+        final String siteType = Site.class.getName();
+        final JCTree.JCMethodInvocation register = javac.apply(javac.expression(siteType + ".register"), arguments.toList());
+        return javac.staticFinalField(javac.expression(siteType), fieldName, register, topLevelClass);
+    }
+
+    private static String signature(List<Parameter> parameters) {
+        final StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < parameters.size(); ++i) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            // types as declared in the source, implicitly typed lambda parameters have no declared type
+            final JCTree.JCExpression declaredType = parameters.get(i).representation().vartype;
+            sb.append(declaredType == null ? "?" : declaredType.toString());
+        }
+        return sb.append(")").toString();
+    }
+
+    private int lineOf(JCTree declaration) {
+        if (lineMap == null) {
+            return UNKNOWN_LINE;
+        }
+        return (int) lineMap.getLineNumber(declaration.pos);
+    }
+
+    private static final class PendingSite {
+
+        private final Method model;
+
+        private final String name;
+
+        private final JCTree declaration;
+
+        private final List<Parameter> parameters;
+
+        PendingSite(Method model, String name, JCTree declaration, List<Parameter> parameters) {
+            this.model = model;
+            this.name = name;
+            this.declaration = declaration;
+            this.parameters = parameters;
+        }
+
+    }
+
+}
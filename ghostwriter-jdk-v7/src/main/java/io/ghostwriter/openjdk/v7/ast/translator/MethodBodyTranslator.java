@@ -0,0 +1,153 @@
+package io.ghostwriter.openjdk.v7.ast.translator;
+
+
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.List;
+import io.ghostwriter.openjdk.v7.model.Method;
+
+import java.util.Objects;
+
+/**
+ * Applies the block wrapping, the return expression mutation extraction, the value change tracing and the return
+ * value capturing to the method body in a single traversal. The translation steps are the ones implemented by
+ * {@link WrapInBlockTranslator}, {@link ReturnExpressionMutationExtractionTranslator}, {@link ValueChangeTranslator}
+ * and {@link ReturningTranslator}, this class only drives them, so the result is the same as running them one after
+ * the other.
+ * The statements of each block are processed in the original step order before the nested blocks are visited:
+ * single statement bodies are wrapped when their parent construct is visited, so the nested blocks already exist by
+ * the time they are reached.
+ * Nested classes are not traced by the value change and returning steps, so only the block wrapping and the mutation
+ * extraction are applied to them, with a separate traversal.
+ */
+public class MethodBodyTranslator extends TreeTranslator implements Translator<Method> {
+
+    private final WrapInBlockTranslator wrapInBlockTranslator;
+
+    private final ReturnExpressionMutationExtractionTranslator mutationExtractionTranslator;
+
+    private final ValueChangeTranslator valueChangeTranslator;
+
+    private final ReturningTranslator returningTranslator;
+
+    /**
+     * @param wrapInBlockTranslator        block wrapping step
+     * @param mutationExtractionTranslator return expression mutation extraction step, or {@code null} if value changes are not traced
+     * @param valueChangeTranslator        value change tracing step, or {@code null} if value changes are not traced
+     * @param returningTranslator          return value capturing step, or {@code null} if returning events are not traced
+     */
+    public MethodBodyTranslator(WrapInBlockTranslator wrapInBlockTranslator,
+                                ReturnExpressionMutationExtractionTranslator mutationExtractionTranslator,
+                                ValueChangeTranslator valueChangeTranslator,
+                                ReturningTranslator returningTranslator) {
+        this.wrapInBlockTranslator = Objects.requireNonNull(wrapInBlockTranslator);
+        this.mutationExtractionTranslator = mutationExtractionTranslator;
+        this.valueChangeTranslator = valueChangeTranslator;
+        this.returningTranslator = returningTranslator;
+    }
+
+    @Override
+    public void translate(Method model) {
+        Objects.requireNonNull(model);
+        if (mutationExtractionTranslator != null) {
+            mutationExtractionTranslator.setModel(model);
+        }
+        if (valueChangeTranslator != null) {
+            valueChangeTranslator.setProcessedMethod(model);
+        }
+        if (returningTranslator != null) {
+            returningTranslator.setEnclosingMethod(model);
+        }
+
+        JCTree.JCMethodDecl representation = model.representation();
+        representation.accept(this);
+    }
+
+    @Override
+    public void visitForLoop(JCTree.JCForLoop forLoop) {
+        forLoop.body = wrapInBlockTranslator.wrappedBody(forLoop.body);
+        if (valueChangeTranslator != null) {
+            valueChangeTranslator.captureLoopVariableChanges(forLoop);
+        }
+        super.visitForLoop(forLoop);
+    }
+
+    @Override
+    public void visitForeachLoop(JCTree.JCEnhancedForLoop forEachLoop) {
+        forEachLoop.body = wrapInBlockTranslator.wrappedBody(forEachLoop.body);
+        if (valueChangeTranslator != null) {
+            valueChangeTranslator.captureLoopVariableChanges(forEachLoop);
+        }
+        super.visitForeachLoop(forEachLoop);
+    }
+
+    @Override
+    public void visitIf(JCTree.JCIf ifStatement) {
+        ifStatement.thenpart = wrapInBlockTranslator.wrappedBody(ifStatement.getThenStatement());
+        JCTree.JCStatement elseStatement = ifStatement.getElseStatement();
+        if (elseStatement != null) {
+            ifStatement.elsepart = wrapInBlockTranslator.wrappedBody(elseStatement);
+        }
+        super.visitIf(ifStatement);
+    }
+
+    @Override
+    public void visitTry(JCTree.JCTry tryExpression) {
+        if (valueChangeTranslator != null) {
+            valueChangeTranslator.captureResourceInitializations(tryExpression);
+        }
+        super.visitTry(tryExpression);
+    }
+
+    @Override
+    public void visitBlock(JCTree.JCBlock block) {
+        block.stats = instrumentedStatements(block.getStatements());
+        super.visitBlock(block);
+    }
+
+    @Override
+    public void visitCase(JCTree.JCCase caseStatement) {
+        caseStatement.stats = instrumentedStatements(caseStatement.getStatements());
+        super.visitCase(caseStatement);
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        translateWithoutTracing(tree);
+        result = tree;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+        translateWithoutTracing(jcClassDecl);
+        result = jcClassDecl;
+    }
+
+    /**
+     * Applies only the steps that do not emit runtime events to the given subtree. Used for the parts of the method
+     * that are instrumented separately, such as nested classes.
+     *
+     * @param tree subtree of the method body
+     */
+    protected void translateWithoutTracing(JCTree tree) {
+        tree.accept(wrapInBlockTranslator);
+        if (mutationExtractionTranslator != null) {
+            tree.accept(mutationExtractionTranslator);
+        }
+    }
+
+    private List<JCTree.JCStatement> instrumentedStatements(List<JCTree.JCStatement> statements) {
+        List<JCTree.JCStatement> instrumentedStatements = statements;
+        if (mutationExtractionTranslator != null) {
+            instrumentedStatements = mutationExtractionTranslator.createBodyWithResultCapture(instrumentedStatements);
+        }
+        if (valueChangeTranslator != null) {
+            instrumentedStatements = valueChangeTranslator.instrumentValueChangeTracing(instrumentedStatements);
+        }
+        if (returningTranslator != null) {
+            instrumentedStatements = returningTranslator.instrumentReturnCapture(instrumentedStatements);
+        }
+        return instrumentedStatements;
+    }
+
+}
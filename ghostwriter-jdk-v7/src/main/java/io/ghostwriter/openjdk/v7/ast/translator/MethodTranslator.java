@@ -3,6 +3,9 @@ package io.ghostwriter.openjdk.v7.ast.translator;
 
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.openjdk.v7.ast.collector.MutatedVariableAnalysis;
+import io.ghostwriter.openjdk.v7.ast.compiler.BytecodeSizeEstimator;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.common.Instrumenter;
@@ -17,6 +20,8 @@ public class MethodTranslator implements Translator<Method> {
 
     private final JavaCompilerHelper helper;
 
+    private final MetadataHolder metadata;
+
     private final boolean doTraceValueChanges;
 
     private final boolean doTraceErrors;
@@ -25,44 +30,65 @@ public class MethodTranslator implements Translator<Method> {
 
     private final Integer shortMethodLimit;
 
-    public MethodTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    private final boolean doGuardEvents;
+
+    private final boolean doOutlineEvents;
+
+    private final Integer bytecodeBudget;
+
+    private final boolean doReportBytecodeSize;
+
+    private final boolean doLowerToSingleExit;
+
+    private final Integer samplingInterval;
+
+    public MethodTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata, InstrumentationSettings settings) {
         this.javac = Objects.requireNonNull(javac, "Must provide a valid instance of " + JavaCompiler.class.getSimpleName());
         this.helper = Objects.requireNonNull(helper, "Must provide a valid instance of " + JavaCompilerHelper.class.getSimpleName());
+        this.metadata = Objects.requireNonNull(metadata, "Must provide a valid instance of " + MetadataHolder.class.getSimpleName());
+        Objects.requireNonNull(settings, "Must provide a valid instance of " + InstrumentationSettings.class.getSimpleName());
 
 
-        final String envValueChange = javac.getOption(Instrumenter.Option.GHOSTWRITER_TRACE_VALUE_CHANGE);
-        doTraceValueChanges = envValueChange == null ? true : Boolean.parseBoolean(envValueChange);
-        Logger.note(getClass(), "<init>", "instrument value change tracing: " + doTraceValueChanges);
+        doTraceValueChanges = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_TRACE_VALUE_CHANGE, true);
+        Logger.note(getClass(), "<init>", "instrument value change tracing: ", doTraceValueChanges);
 
 
-        final String envTraceError = javac.getOption(Instrumenter.Option.GHOSTWRITER_TRACE_ON_ERROR);
-        doTraceErrors = envTraceError == null ? true : Boolean.parseBoolean(envTraceError);
-        Logger.note(getClass(), "<init>", "instrument value error tracing: " + doTraceErrors);
+        doTraceErrors = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_TRACE_ON_ERROR, true);
+        Logger.note(getClass(), "<init>", "instrument value error tracing: ", doTraceErrors);
 
 
-        final String envReturning = javac.getOption(Instrumenter.Option.GHOSTWRITER_TRACE_RETURNING);
-        this.doTraceReturning = envReturning == null ? true : Boolean.parseBoolean(envReturning);
-        Logger.note(getClass(), "<init>", "instrument method returning tracing: " + doTraceReturning);
+        this.doTraceReturning = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_TRACE_RETURNING, true);
+        Logger.note(getClass(), "<init>", "instrument method returning tracing: ", doTraceReturning);
 
 
-        final String envShortMethodLimit = javac.getOption(Instrumenter.Option.GHOSTWRITER_SHORT_METHOD_LIMIT);
-        shortMethodLimit = envShortMethodLimit == null ? null : parseIntegerJavacArg(envShortMethodLimit, Instrumenter.Option.GHOSTWRITER_SHORT_METHOD_LIMIT);
-    }
+        shortMethodLimit = settings.getInteger(Instrumenter.Option.GHOSTWRITER_SHORT_METHOD_LIMIT);
 
+        doGuardEvents = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_GUARD_EVENTS, false);
+        Logger.note(getClass(), "<init>", "instrument runtime event guards: ", doGuardEvents);
 
-    private static int parseIntegerJavacArg(String argument, String argumentName) {
-        try {
-            return Integer.parseInt(argument);
-        }
-        catch(NumberFormatException e) {
-            throw new IllegalStateException("Invalid integer is provided for " + argumentName + ". value = " + argument);
-        }
+        doOutlineEvents = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_OUTLINE_EVENTS, false);
+        Logger.note(getClass(), "<init>", "outline runtime event calls: ", doOutlineEvents);
+
+        bytecodeBudget = settings.getInteger(Instrumenter.Option.GHOSTWRITER_BYTECODE_BUDGET);
+        Logger.note(getClass(), "<init>", "bytecode growth budget: ", bytecodeBudget);
+
+        doReportBytecodeSize = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_BYTECODE_REPORT, false);
+
+        doLowerToSingleExit = settings.getBoolean(Instrumenter.Option.GHOSTWRITER_SINGLE_EXIT, false);
+        Logger.note(getClass(), "<init>", "single exit lowering: ", doLowerToSingleExit);
+
+        samplingInterval = settings.getInteger(Instrumenter.Option.GHOSTWRITER_SAMPLING_INTERVAL);
+        Logger.note(getClass(), "<init>", "sampling interval: ", samplingInterval);
     }
 
     private boolean isShortMethodLimitEnabled() {
         return shortMethodLimit != null;
     }
 
+    private boolean isBytecodeBudgetEnabled() {
+        return bytecodeBudget != null;
+    }
+
     protected boolean doTraceValueChanges() {
         return doTraceValueChanges;
     }
@@ -81,6 +107,30 @@ public class MethodTranslator implements Translator<Method> {
         return doTraceReturning;
     }
 
+    protected boolean doGuardEvents() {
+        return doGuardEvents;
+    }
+
+    protected boolean doOutlineEvents() {
+        return doOutlineEvents;
+    }
+
+    protected boolean doLowerToSingleExit() {
+        return doLowerToSingleExit;
+    }
+
+    /**
+     * @return average number of invocations per traced invocation, the Sampled annotation of the method takes
+     * precedence over the GHOSTWRITER_SAMPLING_INTERVAL option
+     */
+    protected int getSamplingInterval(Method model) {
+        final Integer annotatedInterval = helper.getSamplingInterval(model.representation());
+        if (annotatedInterval != null) {
+            return annotatedInterval;
+        }
+        return samplingInterval == null ? 1 : samplingInterval;
+    }
+
     protected boolean doCaptureTimeouts(Method model) {
         final JCMethodDecl methodDecl = model.representation();
         final JCTree.JCAnnotation timeoutAnnotation = helper.getTimeoutAnnotation(methodDecl);
@@ -91,7 +141,8 @@ public class MethodTranslator implements Translator<Method> {
     /**
      * After instrumentation, the method will have a structure like one presented here:
      * <p>
-     * GW.enteringStatement(...)
+     * final boolean enabled = GW.isEnabled() (or GW.isSampled(interval) if the method is sampled)
+     * if (enabled) GW.enteringStatement(...)
      * try {
      * ... original method body
      * ... GW.returning(...)
@@ -102,6 +153,10 @@ public class MethodTranslator implements Translator<Method> {
      * finally {
      * GW.exitingStatement(...)
      * }
+     * <p>
+     * If a bytecode budget is configured and the estimated growth of the method exceeds it, the instrumentation is
+     * discarded and the method is instrumented again with entering and exiting events only. This way small and hot
+     * methods are less likely to be pushed over the inlining thresholds of the JIT compiler.
      *
      * @param model - method that will be instrumented
      */
@@ -121,79 +176,154 @@ public class MethodTranslator implements Translator<Method> {
             return;
         }
 
-        // ensure that various transformation steps 
-        transformToBlockConstructs(model);
+        final boolean doEstimateBytecodeSize = isBytecodeBudgetEnabled() || doReportBytecodeSize;
+        final int originalSize = doEstimateBytecodeSize ? bytecodeSizeEstimator().estimate(representation) : 0;
+        // keep a pristine copy of the body, in case the instrumentation has to be redone within the budget
+        final JCTree.JCBlock originalBody = isBytecodeBudgetEnabled() ? javac.copy(body) : null;
+        final int metadataCheckpoint = metadata.checkpoint();
+
+        instrument(model, false);
+
+        boolean isReduced = false;
+        int instrumentedSize = doEstimateBytecodeSize ? bytecodeSizeEstimator().estimate(representation) : 0;
+        if (isBytecodeBudgetEnabled() && instrumentedSize - originalSize > bytecodeBudget) {
+            representation.body = originalBody;
+            metadata.rollback(metadataCheckpoint);
+            instrument(model, true);
+            isReduced = true;
+            instrumentedSize = bytecodeSizeEstimator().estimate(representation);
+        }
 
-        // first and foremost we have to do the value tracing, otherwise all other instrumentation codes could be affected, since this step really does instrumentation all over the place
-        // NOTE: possible workaround to this restriction is to only apply the value change instrumentation to the original method body and not to the instrumented one.
-        if (doTraceValueChanges()) {
-            // we modify the body of the method to trace each assignment operator (for sure that is a value change!)
-            traceValueChanges(model);
+        String fullyQualifiedClassName = model.getClazz().getFullyQualifiedClassName();
+        if (doReportBytecodeSize) {
+            reportBytecodeSize(fullyQualifiedClassName + "." + model.getName(), originalSize, instrumentedSize, isReduced);
         }
 
+        // we print out the instrumented code for debugging purposes
+        Logger.note(getClass(), "translate", "(", fullyQualifiedClassName, ")", representation);
+    }
+
+    /**
+     * Applies the instrumentation steps to the method body.
+     *
+     * @param model     - method that will be instrumented
+     * @param isReduced - if set, only the entering and exiting events are instrumented
+     */
+    protected void instrument(Method model, boolean isReduced) {
+        JCMethodDecl representation = model.representation();
+
+        // first and foremost we have to transform the original method body, otherwise all other instrumentation codes could be affected, since the value tracing really does instrumentation all over the place
+        // the block wrapping, the value change tracing and the return capturing is done in a single traversal
+        transformMethodBody(model, !isReduced && doTraceValueChanges(), !isReduced && doTraceReturning());
+
         if (doTraceEnteringExiting()) {
             // modify the method body to have an entering and exiting call triggered
             traceEnteringExiting(model);
         }
 
-        if (doTraceReturning()) {
-            // modify the method body to capture return calls
-            traceReturn(model);
-        }
+        // the returning events request their sites during the body traversal, they are registered only now, in the
+        // order of the return statements, so the site fields are numbered as when returning was a separate step
+        metadata.registerPendingSites(representation);
 
         // in case of annotated methods, trace timeout events as well
-        if (doCaptureTimeouts(model)) {
+        if (!isReduced && doCaptureTimeouts(model)) {
             traceTimeout(model);
         }
 
         // modify the method body to capture and trace unexpected errors
-        if (doTraceErrors()) {
+        if (!isReduced && doTraceErrors()) {
             traceErrors(model);
         }
 
+        // funnel the return statements through a single exit, so the finally block is not copied for each of them,
+        // has to be done after the returning events are instrumented
+        if (doLowerToSingleExit()) {
+            lowerToSingleExit(model);
+        }
+
+        // skip all events of the invocation with a single check if tracing is disabled at runtime or the invocation
+        // is not sampled, has to be done after all event instrumentation steps
+        if (doGuardEvents() || getSamplingInterval(model) > 1) {
+            guardEvents(model);
+        }
+
+        // move the hook calls into static helpers of the metadata holder, has to be done after the guarding
+        if (doOutlineEvents()) {
+            outlineEvents(model);
+        }
+
         // if we are dealing with a constructor, we must ensure that the 1st statement of the body is the
         // original call to super(...) or this(...)
         if (helper.isConstructor(representation)) {
             transformConstructor(model);
         }
+    }
 
-        // we print out the instrumented code for debugging purposes
-        String fullyQualifiedClassName = model.getClazz().getFullyQualifiedClassName();
-        Logger.note(getClass(), "translate", "(" + fullyQualifiedClassName + ")" + representation.toString());
+    private void reportBytecodeSize(String method, int originalSize, int instrumentedSize, boolean isReduced) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(method).append(": ").append(originalSize).append(" -> ").append(instrumentedSize).append(" bytes (estimated)");
+        if (isReduced) {
+            sb.append(", budget of ").append(bytecodeBudget).append(" bytes exceeded, only entering and exiting is traced");
+        }
+        Logger.info(getClass(), "translate", sb.toString());
     }
 
     protected void traceEnteringExiting(Method model) {
-        Translator<Method> enteringExitingTranslator = new EnteringExitingTranslator(javac, helper);
+        Translator<Method> enteringExitingTranslator = new EnteringExitingTranslator(javac, helper, metadata);
         enteringExitingTranslator.translate(model);
     }
 
-    protected void traceReturn(Method model) {
-        final ReturningTranslator returningTranslator = new ReturningTranslator(javac, helper);
-        returningTranslator.translate(model);
-    }
-
     protected void traceTimeout(Method model) {
-        final TimeoutTranslator timeoutTranslator = new TimeoutTranslator(javac, helper);
+        final TimeoutTranslator timeoutTranslator = new TimeoutTranslator(javac, helper, metadata);
         timeoutTranslator.translate(model);
     }
 
     protected void traceErrors(Method model) {
-        Translator<Method> onErrorTranslator = new OnErrorTranslator(javac, helper);
+        Translator<Method> onErrorTranslator = new OnErrorTranslator(javac, helper, metadata);
         onErrorTranslator.translate(model);
     }
 
     /**
-     * Destructive procedure that modifies the method body to contain a 'change' event signal after each assignment operator.
-     * The new assigned value and the right-hand-side receiver name are sent to the runtime component.
-     * Assignment tracking is done after the assignment expression executed successfully.
+     * Destructive procedure that ensures that all if,for,foreach,... constructs of the method body are using a block
+     * instead of a single statement, otherwise adding the necessary API calls can lead to syntax errors.
+     * Optionally the method body is also modified to contain a 'change' event signal after each assignment operator and
+     * a 'returning' event signal before each return statement. For value changes, the new assigned value and the
+     * right-hand-side receiver name are sent to the runtime component. Assignment tracking is done after the assignment
+     * expression executed successfully.
+     * All of these steps are applied in a single traversal of the method body.
      *
-     * @param model - method representation that gets modified
+     * @param model               - method representation that gets modified
+     * @param doTraceValueChanges - whether value change events are instrumented
+     * @param doTraceReturning    - whether returning events are instrumented
      */
-    protected void traceValueChanges(Method model) {
-        ReturnExpressionMutationExtractionTranslator returnExpressionTranslator = new ReturnExpressionMutationExtractionTranslator(javac, helper);
-        returnExpressionTranslator.translate(model);
-        ValueChangeTranslator valueChangeTranslator = new ValueChangeTranslator(javac, helper);
-        valueChangeTranslator.translate(model);
+    protected void transformMethodBody(Method model, boolean doTraceValueChanges, boolean doTraceReturning) {
+        // every expression of the body is analysed for mutations only once, the result is shared by the steps
+        MutatedVariableAnalysis mutatedVariableAnalysis = new MutatedVariableAnalysis(javac, helper);
+        MethodBodyTranslator methodBodyTranslator = new MethodBodyTranslator(
+                new WrapInBlockTranslator(javac),
+                doTraceValueChanges ? new ReturnExpressionMutationExtractionTranslator(javac, helper, mutatedVariableAnalysis) : null,
+                doTraceValueChanges ? new ValueChangeTranslator(javac, helper, metadata, mutatedVariableAnalysis) : null,
+                doTraceReturning ? new ReturningTranslator(javac, helper, metadata) : null);
+        methodBodyTranslator.translate(model);
+    }
+
+    protected void lowerToSingleExit(Method model) {
+        Translator<Method> singleExitTranslator = new SingleExitTranslator(javac);
+        singleExitTranslator.translate(model);
+    }
+
+    protected void guardEvents(Method model) {
+        Translator<Method> eventGuardTranslator = new EventGuardTranslator(javac, getSamplingInterval(model));
+        eventGuardTranslator.translate(model);
+    }
+
+    protected void outlineEvents(Method model) {
+        Translator<Method> hookOutliningTranslator = new HookOutliningTranslator(javac, metadata);
+        hookOutliningTranslator.translate(model);
+    }
+
+    protected BytecodeSizeEstimator bytecodeSizeEstimator() {
+        return new BytecodeSizeEstimator();
     }
 
     protected void transformConstructor(Method model) {
@@ -202,13 +332,6 @@ public class MethodTranslator implements Translator<Method> {
         constructorTranslator.translate(model);
     }
 
-    protected void transformToBlockConstructs(Method model) {
-        // ensure that all if,for,while,foreach,... constructs are using a block instead of a single expression
-        // otherwise adding the necessary API calls can lead to syntax errors
-        WrapInBlockTranslator wrapInBlockTranslator = new WrapInBlockTranslator(javac);
-        wrapInBlockTranslator.translate(model);
-    }
-
     protected JavaCompiler getJavac() {
         return javac;
     }
@@ -217,4 +340,8 @@ public class MethodTranslator implements Translator<Method> {
         return helper;
     }
 
+    protected MetadataHolder getMetadata() {
+        return metadata;
+    }
+
 }
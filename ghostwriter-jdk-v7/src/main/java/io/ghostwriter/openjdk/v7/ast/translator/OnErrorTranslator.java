@@ -21,9 +21,12 @@ public class OnErrorTranslator implements Translator<Method> {
 
     private final JavaCompilerHelper compilerHelper;
 
-    public OnErrorTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    private final MetadataHolder metadata;
+
+    public OnErrorTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
         this.javac = Objects.requireNonNull(javac);
         this.compilerHelper = Objects.requireNonNull(helper);
+        this.metadata = Objects.requireNonNull(metadata);
     }
 
     @Override
@@ -111,8 +114,8 @@ public class OnErrorTranslator implements Translator<Method> {
         JCTree.JCExpression thisOrClass = compilerHelper.methodContext(model);
         handlerArguments.add(thisOrClass);
 
-        JCTree.JCLiteral methodName = compilerHelper.methodName(model);
-        handlerArguments.add(methodName);
+        JCTree.JCExpression site = metadata.site(model);
+        handlerArguments.add(site);
 
         String exceptionVariableName = catchBlockParameterName(model);
         JCTree.JCExpression exceptionVariableIdentifier = javac.identifier(exceptionVariableName);
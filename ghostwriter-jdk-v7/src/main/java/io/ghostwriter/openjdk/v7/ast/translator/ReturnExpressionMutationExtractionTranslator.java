@@ -5,7 +5,7 @@ import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.List;
 import com.sun.tools.javac.util.ListBuffer;
-import io.ghostwriter.openjdk.v7.ast.collector.BlockBasedMutatedVariableCollector;
+import io.ghostwriter.openjdk.v7.ast.collector.MutatedVariableAnalysis;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.model.Method;
@@ -26,16 +26,27 @@ public class ReturnExpressionMutationExtractionTranslator extends TreeTranslator
 
     final private JavaCompilerHelper helper;
 
+    final private MutatedVariableAnalysis mutatedVariableAnalysis;
+
     private Method model;
 
     public ReturnExpressionMutationExtractionTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+        this(javac, helper, new MutatedVariableAnalysis(javac, helper));
+    }
+
+    /**
+     * @param mutatedVariableAnalysis analysis shared with the other translation steps of the same method body
+     */
+    public ReturnExpressionMutationExtractionTranslator(JavaCompiler javac, JavaCompilerHelper helper,
+                                                        MutatedVariableAnalysis mutatedVariableAnalysis) {
         this.javac = javac;
         this.helper = helper;
+        this.mutatedVariableAnalysis = Objects.requireNonNull(mutatedVariableAnalysis);
     }
 
     @Override
     public void translate(Method model) {
-        this.model = Objects.requireNonNull(model);
+        setModel(Objects.requireNonNull(model));
         JCTree.JCMethodDecl representation = model.representation();
         representation.accept(this);
     }
@@ -58,7 +69,7 @@ public class ReturnExpressionMutationExtractionTranslator extends TreeTranslator
         super.visitCase(caseStatement);
     }
 
-    private List<JCTree.JCStatement> createBodyWithResultCapture(List<JCTree.JCStatement> statements) {
+    protected List<JCTree.JCStatement> createBodyWithResultCapture(List<JCTree.JCStatement> statements) {
         ListBuffer<JCTree.JCStatement> newBody = new ListBuffer<>();
         for (JCTree.JCStatement statement : statements) {
             processStatement(statement, newBody);
@@ -105,9 +116,8 @@ public class ReturnExpressionMutationExtractionTranslator extends TreeTranslator
     }
 
     private boolean doesContainMutations(JCTree.JCReturn returnStatement) {
-        java.util.List<JCTree.JCExpression> valueChangeExpressions =
-                new BlockBasedMutatedVariableCollector(returnStatement, javac, helper).toList();
-        return !valueChangeExpressions.isEmpty();
+        // the return expression is moved to the capture variable, so the value change step reuses this result
+        return !mutatedVariableAnalysis.mutatedVariables(returnStatement).isEmpty();
     }
 
     protected JCTree.JCVariableDecl mutationCaptureVariable(JCTree.JCExpression value, String generatedCaptureName) {
@@ -125,6 +135,10 @@ public class ReturnExpressionMutationExtractionTranslator extends TreeTranslator
         return variable;
     }
 
+    protected void setModel(Method model) {
+        this.model = model;
+    }
+
     private String generateMutationCaptureVariableName() {
         final String uuidPart = UUID.randomUUID().toString().replaceAll("-", "_");
         return "$capturedReturnExpression_" + uuidPart;
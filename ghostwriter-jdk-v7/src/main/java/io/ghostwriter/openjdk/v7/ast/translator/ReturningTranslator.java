@@ -18,11 +18,14 @@ public class ReturningTranslator extends TreeTranslator implements Translator<Me
 
     private final JavaCompilerHelper helper;
 
+    private final MetadataHolder metadata;
+
     private Method enclosingMethod;
 
-    public ReturningTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    public ReturningTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
         this.javac = Objects.requireNonNull(javac);
         this.helper = Objects.requireNonNull(helper);
+        this.metadata = Objects.requireNonNull(metadata);
     }
 
     @Override
@@ -121,8 +124,8 @@ public class ReturningTranslator extends TreeTranslator implements Translator<Me
         final JCTree.JCExpression thisOrClass = returningExpressionContext();
         handlerArguments.add(thisOrClass);
 
-        final JCTree.JCLiteral methodName = returningExpressionMethodName();
-        handlerArguments.add(methodName);
+        final JCTree.JCExpression site = returningExpressionSite();
+        handlerArguments.add(site);
 
         final JCTree.JCExpression returningResult = returningResultExpression(javac.identifier(resultCaptureVariable));
         handlerArguments.add(returningResult);
@@ -137,7 +140,8 @@ public class ReturningTranslator extends TreeTranslator implements Translator<Me
     protected JCTree.JCExpression returningResultExpression(JCTree.JCExpression returnExpression) {
         final JCTree.JCExpression resultType = resultType();
         if (javac.isPrimitiveType(resultType)) {
-            // parameter cast required because of implicit conversions and boxing use cases (int -> Long) can lead to class cast exceptions
+            // parameter cast required because of implicit conversions and boxing use cases (int -> Long) can lead to class cast exceptions.
+            // it also makes sure that the primitive overload of the returning handler matching the result type is selected
             return javac.castToType(resultType, returnExpression);
         }
 
@@ -148,11 +152,13 @@ public class ReturningTranslator extends TreeTranslator implements Translator<Me
         return helper.methodContext(enclosingMethod);
     }
 
-    protected JCTree.JCLiteral returningExpressionMethodName() {
-        return helper.methodName(enclosingMethod);
+    protected JCTree.JCExpression returningExpressionSite() {
+        // registered after the entering and exiting events, like before the translation steps were fused
+        return metadata.pendingSite(enclosingMethod);
     }
 
     protected String getReturningHandler() {
+        // overloaded for each primitive type, the cast in returningResultExpression selects the matching variant
         return io.ghostwriter.openjdk.v7.common.RuntimeHandler.RETURNING.toString();
     }
 
@@ -172,4 +178,8 @@ public class ReturningTranslator extends TreeTranslator implements Translator<Me
         return helper;
     }
 
+    protected MetadataHolder getMetadata() {
+        return metadata;
+    }
+
 }
@@ -0,0 +1,126 @@
+package io.ghostwriter.openjdk.v7.ast.translator;
+
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.ListBuffer;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.model.Method;
+
+import javax.lang.model.type.TypeKind;
+import java.util.Objects;
+
+/**
+ * Funnels the return statements of the instrumented method through a single exit point. javac copies the finally block
+ * - containing the exiting and timeout events - at every return statement, so the size of the method grows with the
+ * number of returns. After the transformation the method body has a structure like the one presented here:
+ * <p>
+ * GW.entering(...)
+ * try {
+ * ResultType $result_;
+ * $exit_: {
+ * ... original method body, where 'return expr;' is replaced with '{ $result_ = expr; break $exit_; }'
+ * }
+ * return $result_;
+ * }
+ * catch (Throwable t) {
+ * ...
+ * }
+ * finally {
+ * ...
+ * }
+ * <p>
+ * This way the finally block is copied only twice, once for the single return (or the normal completion in case of
+ * void methods) and once for the exceptional completion. The events are not affected, since the returning events are
+ * instrumented before the return statements are replaced.
+ * Depends on EnteringExitingTranslator, that creates the try-finally block.
+ */
+public class SingleExitTranslator extends TreeTranslator implements Translator<Method> {
+
+    private static final String EXIT_LABEL = "$exit_";
+
+    private static final String RESULT_VARIABLE_NAME = "$result_";
+
+    private final JavaCompiler javac;
+
+    private int numberOfReturns;
+
+    public SingleExitTranslator(JavaCompiler javac) {
+        this.javac = Objects.requireNonNull(javac);
+    }
+
+    @Override
+    public void translate(Method model) {
+        final JCTree.JCMethodDecl representation = model.representation();
+        final JCTree.JCTry enteringExitingTry = findEnteringExitingTryConstruct(representation);
+
+        numberOfReturns = 0;
+        final JCTree.JCBlock methodBody = translate(enteringExitingTry.body);
+        if (numberOfReturns == 0) {
+            // the method body can only complete normally or exceptionally, the finally block is not duplicated
+            return;
+        }
+
+        final boolean hasResult = hasResult(representation);
+        ListBuffer<JCTree.JCStatement> statements = new ListBuffer<>();
+        if (hasResult) {
+            final JCTree.JCExpression resultType = javac.copy(representation.restype);
+            statements.add(javac.variable(resultType, RESULT_VARIABLE_NAME, null, representation));
+        }
+        statements.add(javac.labelled(EXIT_LABEL, methodBody));
+        if (hasResult) {
+            statements.add(javac.makeReturn(javac.identifier(RESULT_VARIABLE_NAME)));
+        }
+
+        enteringExitingTry.body = javac.block(statements.toList());
+    }
+
+    @Override
+    public void visitReturn(JCTree.JCReturn jcReturn) {
+        ++numberOfReturns;
+
+        ListBuffer<JCTree.JCStatement> statements = new ListBuffer<>();
+        if (jcReturn.expr != null) {
+            final JCTree.JCAssign storeResult = javac.assign(javac.identifier(RESULT_VARIABLE_NAME), jcReturn.expr);
+            statements.add(javac.execute(storeResult));
+        }
+        statements.add(javac.breakStatement(EXIT_LABEL));
+
+        result = javac.block(statements.toList());
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        // Skip nested anonymous inner class expressions, their return statements belong to their own methods.
+        result = tree;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl jcClassDecl) {
+        // Skip nested class declarations, their return statements belong to their own methods.
+        result = jcClassDecl;
+    }
+
+    private static boolean hasResult(JCTree.JCMethodDecl representation) {
+        final JCTree.JCExpression resultType = representation.restype;
+        if (resultType == null) {
+            // constructor
+            return false;
+        }
+
+        final boolean isVoid = resultType instanceof JCTree.JCPrimitiveTypeTree
+                && ((JCTree.JCPrimitiveTypeTree) resultType).getPrimitiveTypeKind() == TypeKind.VOID;
+        return !isVoid;
+    }
+
+    private static JCTree.JCTry findEnteringExitingTryConstruct(JCTree.JCMethodDecl representation) {
+        for (JCTree.JCStatement statement : representation.body.stats) {
+            if (statement instanceof JCTree.JCTry) {
+                return (JCTree.JCTry) statement;
+            }
+        }
+
+        // If this happens, most likely the EnteringExitingTranslator didn't get executed beforehand or it changed...
+        throw new IllegalArgumentException("Missing the entering/exiting block for the method:  " + representation.toString());
+    }
+
+}
@@ -19,9 +19,12 @@ public class TimeoutTranslator implements Translator<Method> {
 
     private final JavaCompilerHelper helper;
 
-    public TimeoutTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    private final MetadataHolder metadata;
+
+    public TimeoutTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
         this.javac = Objects.requireNonNull(javac);
         this.helper = Objects.requireNonNull(helper);
+        this.metadata = Objects.requireNonNull(metadata);
     }
 
     @Override
@@ -89,8 +92,8 @@ public class TimeoutTranslator implements Translator<Method> {
         JCTree.JCExpression thisOrClass = helper.methodContext(model);
         handlerArguments.add(thisOrClass);
 
-        JCTree.JCLiteral methodName = helper.methodName(model);
-        handlerArguments.add(methodName);
+        JCTree.JCExpression site = metadata.site(model);
+        handlerArguments.add(site);
 
         handlerArguments.add(javac.literal(timeoutThreshold));
 
@@ -5,8 +5,7 @@ import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.List;
 import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Name;
-import io.ghostwriter.openjdk.v7.ast.collector.BlockBasedMutatedVariableCollector;
-import io.ghostwriter.openjdk.v7.ast.collector.Collector;
+import io.ghostwriter.openjdk.v7.ast.collector.MutatedVariableAnalysis;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.common.Logger;
@@ -21,16 +20,30 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
 
     private final JavaCompilerHelper helper;
 
+    private final MetadataHolder metadata;
+
+    private final MutatedVariableAnalysis mutatedVariableAnalysis;
+
     private Method processedMethod;
 
-    public ValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
+    public ValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
+        this(javac, helper, metadata, new MutatedVariableAnalysis(javac, helper));
+    }
+
+    /**
+     * @param mutatedVariableAnalysis analysis shared with the other translation steps of the same method body
+     */
+    public ValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata,
+                                 MutatedVariableAnalysis mutatedVariableAnalysis) {
         this.javac = javac;
         this.helper = Objects.requireNonNull(helper);
+        this.metadata = Objects.requireNonNull(metadata);
+        this.mutatedVariableAnalysis = Objects.requireNonNull(mutatedVariableAnalysis);
     }
 
     @Override
     public void translate(Method model) {
-        processedMethod = Objects.requireNonNull(model);
+        setProcessedMethod(Objects.requireNonNull(model));
         JCTree.JCMethodDecl representation = processedMethod.representation();
         representation.accept(this);
     }
@@ -46,15 +59,24 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
 
     @Override
     public void visitForLoop(JCTree.JCForLoop forLoop) {
+        captureLoopVariableChanges(forLoop);
+        super.visitForLoop(forLoop);
+    }
+
+    @Override
+    public void visitForeachLoop(JCTree.JCEnhancedForLoop forEachLoop) {
+        captureLoopVariableChanges(forEachLoop);
+        super.visitForeachLoop(forEachLoop);
+    }
+
+    protected void captureLoopVariableChanges(JCTree.JCForLoop forLoop) {
         assert forLoop.body instanceof JCTree.JCBlock;
         JCTree.JCBlock body = (JCTree.JCBlock) forLoop.body; // with the call to 'WrapInBlockTranslator' we assure that it is a JCBlock
         List<JCTree.JCExpression> forLoopVariables = collectForLoopUpdateSectionMutatedVariables(forLoop);
         captureForLoopVariableChanges(forLoopVariables, body);
-        super.visitForLoop(forLoop);
     }
 
-    @Override
-    public void visitForeachLoop(JCTree.JCEnhancedForLoop forEachLoop) {
+    protected void captureLoopVariableChanges(JCTree.JCEnhancedForLoop forEachLoop) {
         assert forEachLoop.body instanceof JCTree.JCBlock;
         JCTree.JCBlock body = (JCTree.JCBlock) forEachLoop.body; // with the call to 'WrapInBlockTranslator' we assure that it is a JCBlock
         JCTree.JCVariableDecl variable = forEachLoop.getVariable();
@@ -62,7 +84,6 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
         final JCTree.JCExpression variableExpression = javac.expression(name.toString());
 
         captureForLoopVariableChanges(List.of(variableExpression), body);
-        super.visitForeachLoop(forEachLoop);
     }
 
     private void captureForLoopVariableChanges(List<JCTree.JCExpression> forLoopVariables, JCTree.JCBlock forBlock) {
@@ -108,7 +129,7 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
         ListBuffer<JCTree.JCExpression> forLoopVariables = new ListBuffer<>();
 
         for (JCTree.JCStatement statement : statements) {
-            Iterator<JCTree.JCExpression> variables = new BlockBasedMutatedVariableCollector(statement, javac, helper).iterator();
+            Iterator<JCTree.JCExpression> variables = mutatedVariableAnalysis.mutatedVariables(statement).iterator();
             if (!variables.hasNext()) {
                 throw new IllegalStateException("No variable declaration found for initializer statement: " + forLoop.toString());
             }
@@ -141,7 +162,7 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
         block.stats = instrumentValueChangeTracing(stats);
     }
 
-    private List<JCTree.JCStatement> instrumentValueChangeTracing(List<JCTree.JCStatement> statements) {
+    protected List<JCTree.JCStatement> instrumentValueChangeTracing(List<JCTree.JCStatement> statements) {
         ListBuffer<JCTree.JCStatement> instrumentedBody = new ListBuffer<>();
 
         for (JCTree.JCStatement statement : statements) {
@@ -149,8 +170,7 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
             instrumentedBody.add(statement);
 
             // find all assignment operators that should be traced after this statement is executed
-            Collector<JCTree.JCExpression> valueChangeCollector = new BlockBasedMutatedVariableCollector(statement, javac, helper);
-            for (JCTree.JCExpression variable : valueChangeCollector) {
+            for (JCTree.JCExpression variable : mutatedVariableAnalysis.mutatedVariables(statement)) {
                 captureValueChange(instrumentedBody, variable);
             }
         }
@@ -164,10 +184,16 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
     }
 
     protected String getValueChangeHandler() {
+        // the handler is overloaded for each primitive type, so javac selects the boxing-free variant based on the
+        // attributed type of the traced variable. Reference types resolve to the Object variant.
         return io.ghostwriter.openjdk.v7.common.RuntimeHandler.VALUE_CHANGE.toString();
     }
 
     protected JCTree.JCExpressionStatement valueChangeExpression(Method model, JCTree.JCExpression variable) {
+        return valueChangeExpression(model, metadata.site(model), variable);
+    }
+
+    protected JCTree.JCExpressionStatement valueChangeExpression(Method model, JCTree.JCExpression site, JCTree.JCExpression variable) {
         String valueChangeHandler = getValueChangeHandler();
         if (valueChangeHandler == null || "".equals(valueChangeHandler)) {
             Logger.error(getClass(), "valueChangeExpression", "invalid fully qualified name for 'valueChange' handler: " + String.valueOf(valueChangeHandler));
@@ -179,8 +205,7 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
         JCTree.JCExpression thisOrClass = helper.methodContext(model);
         handlerArguments.add(thisOrClass);
 
-        JCTree.JCLiteral methodName = helper.methodName(model);
-        handlerArguments.add(methodName);
+        handlerArguments.add(site);
 
         JCTree.JCLiteral variableName = javac.literal(variable.toString());
         handlerArguments.add(variableName);
@@ -188,7 +213,7 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
 
         JCTree.JCExpressionStatement call = javac.call(valueChangeHandlerExpression, handlerArguments.toList());
 
-        Logger.note(getClass(), "valueChangeExpression", call.toString());
+        Logger.note(getClass(), "valueChangeExpression", call);
         return call;
     }
 
@@ -202,12 +227,15 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
 
     @Override
     public void visitTry(JCTree.JCTry tryExpression) {
+        captureResourceInitializations(tryExpression);
+        super.visitTry(tryExpression);
+    }
+
+    protected void captureResourceInitializations(JCTree.JCTry tryExpression) {
         List<? extends JCTree> resources = tryExpression.getResources();
         if (!resources.isEmpty()) {
             captureResourceInitializations(resources, tryExpression);
         }
-
-        super.visitTry(tryExpression);
     }
 
     private void captureResourceInitializations(List<? extends JCTree> resources, JCTree.JCTry tryExpression) {
@@ -229,12 +257,19 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
     }
 
     private void captureResourceInitialization(JCTree resource, ListBuffer<JCTree.JCStatement> instrumentedBody) {
-        BlockBasedMutatedVariableCollector resourceMutationCollector = new BlockBasedMutatedVariableCollector(resource, javac, helper);
-        for (JCTree.JCExpression mutation : resourceMutationCollector) {
+        for (JCTree.JCExpression mutation : mutatedVariableAnalysis.mutatedVariables(resource)) {
             captureValueChange(instrumentedBody, mutation);
         }
     }
 
+    protected Method getProcessedMethod() {
+        return processedMethod;
+    }
+
+    protected void setProcessedMethod(Method processedMethod) {
+        this.processedMethod = processedMethod;
+    }
+
     protected JavaCompiler getJavac() {
         return javac;
     }
@@ -243,6 +278,10 @@ public class ValueChangeTranslator extends TreeTranslator implements Translator<
         return helper;
     }
 
+    protected MetadataHolder getMetadata() {
+        return metadata;
+    }
+
 }
 
 
@@ -34,6 +34,40 @@ public enum Logger {
         messager.printMessage(Diagnostic.Kind.NOTE, output);
     }
 
+    /**
+     * Display a message that is concatenated from the given parts, if verbose logging is enabled.
+     * The parts are only converted to strings if the message is displayed, so AST nodes and other objects with an
+     * expensive string representation can be passed without building the message up front.
+     *
+     * @param type         - class that produced the message
+     * @param method       - method that produced the message
+     * @param messageParts - parts of the message to display
+     */
+    public static void note(Class<?> type, String method, Object... messageParts) {
+        if (!doVerboseLogging) {
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (Object part : messageParts) {
+            sb.append(part);
+        }
+        note(type, method, sb.toString());
+    }
+
+    /**
+     * Display a message regardless of the verbose logging setting.
+     *
+     * @param type    - class that produced the message
+     * @param method  - method that produced the message
+     * @param message - message to display
+     */
+    public static void info(Class<?> type, String method, String message) {
+        validateState();
+        String output = format(type, method, message);
+        messager.printMessage(Diagnostic.Kind.NOTE, output);
+    }
+
     public static void warning(Class<?> type, String method, String message) {
         validateState();
         String output = format(type, method, message);
@@ -1,14 +1,16 @@
 package io.ghostwriter.openjdk.v7.common;
 
-import io.ghostwriter.GhostWriter;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
 
+// The generated code calls the GhostWriterHooks, that pass the events with the static Site of the method to the GhostWriter API
 public enum RuntimeHandler {
-    ENTERING(GhostWriter.class.getName() + ".entering"),
-    RETURNING(GhostWriter.class.getName() + ".returning"),
-    EXITING(GhostWriter.class.getName() + ".exiting"),
-    VALUE_CHANGE(GhostWriter.class.getName() + ".valueChange"),
-    ON_ERROR(GhostWriter.class.getName() + ".onError"),
-    TIMEOUT(GhostWriter.class.getName() + ".timeout");
+    ENTERING(GhostWriterHooks.class.getName() + ".enteringWithArguments"),
+    RETURNING(GhostWriterHooks.class.getName() + ".returning"),
+    EXITING(GhostWriterHooks.class.getName() + ".exiting"),
+    VALUE_CHANGE(GhostWriterHooks.class.getName() + ".valueChange"),
+    ON_ERROR(GhostWriterHooks.class.getName() + ".onError"),
+    TIMEOUT(GhostWriterHooks.class.getName() + ".timeout"),
+    FIXED_ARITY_ENTERING(GhostWriterHooks.class.getName() + ".entering");
 
     private final String fullyQualifiedName;
 
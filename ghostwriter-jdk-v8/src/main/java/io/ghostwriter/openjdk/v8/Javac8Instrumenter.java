@@ -1,8 +1,10 @@
 package io.ghostwriter.openjdk.v8;
 
 import com.sun.source.util.Trees;
+import io.ghostwriter.common.InstrumentationSettings;
 import io.ghostwriter.openjdk.v7.Javac7Instrumenter;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.ast.translator.Translator;
 import io.ghostwriter.openjdk.v7.model.Method;
 import io.ghostwriter.openjdk.v8.ast.compiler.Javac;
@@ -19,11 +21,12 @@ public class Javac8Instrumenter extends Javac7Instrumenter {
         final Javac javac8 = new Javac(processingEnv);
         setJavac(javac8);
         setJavacHelper(new JavaCompilerHelper(javac8));
+        initializeSettings(processingEnv);
         initializeFromEnv(processingEnv);
     }
 
     @Override
-    protected Translator<Method> getMethodTranslator() {
-        return new LambdaAwareMethodTranslator(getJavac(), getJavacHelper());
+    protected Translator<Method> getMethodTranslator(MetadataHolder metadata, InstrumentationSettings classSettings) {
+        return new LambdaAwareMethodTranslator(getJavac(), getJavacHelper(), metadata, classSettings);
     }
 }
@@ -58,6 +58,12 @@ public class Javac extends io.ghostwriter.openjdk.v7.ast.compiler.Javac {
             case "boolean":
                 result = make.TypeIdent(TypeTag.BOOLEAN);
                 break;
+            case "char":
+                result = make.TypeIdent(TypeTag.CHAR);
+                break;
+            case "void":
+                result = make.TypeIdent(TypeTag.VOID);
+                break;
             default:
                 throw new IllegalArgumentException("Unsupported or unknown primitive type: " + type);
         }
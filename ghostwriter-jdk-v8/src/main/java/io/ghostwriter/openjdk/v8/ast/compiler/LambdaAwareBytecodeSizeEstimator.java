@@ -0,0 +1,24 @@
+package io.ghostwriter.openjdk.v8.ast.compiler;
+
+import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.openjdk.v7.ast.compiler.BytecodeSizeEstimator;
+
+
+public class LambdaAwareBytecodeSizeEstimator extends BytecodeSizeEstimator {
+
+    // invokedynamic instruction
+    private static final int LAMBDA = 5;
+
+    @Override
+    public void visitLambda(JCTree.JCLambda jcLambda) {
+        // the body of the lambda is compiled into a separate synthetic method
+        add(LAMBDA);
+    }
+
+    @Override
+    public void visitReference(JCTree.JCMemberReference jcMemberReference) {
+        add(LAMBDA);
+        scan(jcMemberReference.expr);
+    }
+
+}
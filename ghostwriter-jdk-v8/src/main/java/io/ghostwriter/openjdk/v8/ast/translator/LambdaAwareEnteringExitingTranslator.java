@@ -2,12 +2,11 @@ package io.ghostwriter.openjdk.v8.ast.translator;
 
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.List;
-import com.sun.tools.javac.util.ListBuffer;
 import io.ghostwriter.openjdk.v7.ast.collector.ParameterCollector;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
 import io.ghostwriter.openjdk.v7.ast.translator.EnteringExitingTranslator;
-import io.ghostwriter.openjdk.v7.common.Logger;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.model.Method;
 import io.ghostwriter.openjdk.v7.model.Parameter;
 
@@ -16,8 +15,8 @@ public class LambdaAwareEnteringExitingTranslator extends EnteringExitingTransla
 
     private JCTree.JCLambda visitedLambda = null;
 
-    public LambdaAwareEnteringExitingTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
-        super(javac, helper);
+    public LambdaAwareEnteringExitingTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
+        super(javac, helper, metadata);
     }
 
     @Override
@@ -62,49 +61,22 @@ public class LambdaAwareEnteringExitingTranslator extends EnteringExitingTransla
     }
 
     private JCTree.JCExpressionStatement exitingLambdaExpression(Method model, JCTree.JCLambda visitedLambda) {
-        String exitingHandler = getExitingHandler();
-        if (exitingHandler == null || "".equals(exitingHandler)) {
-            Logger.error(getClass(), "exitingLambdaExpression",
-                    "invalid fully qualified name for 'exiting' handler: " + String.valueOf(exitingHandler));
-        }
-
-        JCTree.JCExpression exitingHandlerExpression = getJavac().expression(exitingHandler);
-        ListBuffer<JCTree.JCExpression> handlerArguments = new ListBuffer<>();
-
-        JCTree.JCExpression thisOrClass = getJavacHelper().methodContext(model);
-        handlerArguments.add(thisOrClass);
-
-        final String lambdaName = Lambdas.nameFor(model, visitedLambda);
-        JCTree.JCLiteral methodName = getJavac().literal(lambdaName);
-        handlerArguments.add(methodName);
+        final java.util.List<Parameter> lambdaParameters
+                = new ParameterCollector(getJavac(), visitedLambda).toList();
 
-        return getJavac().call(exitingHandlerExpression, handlerArguments.toList());
+        return exitingExpression(model, lambdaSite(model, visitedLambda, lambdaParameters));
     }
 
     protected JCTree.JCExpressionStatement enteringLambdaExpression(Method model, JCTree.JCLambda visitedLambda) {
-        String enteringHandler = getEnteringHandler();
-        if (enteringHandler == null || "".equals(enteringHandler)) {
-            Logger.error(getClass(), "enteringLambdaExpression",
-                    "invalid fully qualified name for 'entering' handler: " + String.valueOf(enteringHandler));
-        }
-
-        JCTree.JCExpression enteringHandlerExpression = getJavac().expression(enteringHandler);
-        ListBuffer<JCTree.JCExpression> handlerArguments = new ListBuffer<>();
-
-        JCTree.JCExpression thisOrClass = getJavacHelper().methodContext(model);
-        handlerArguments.add(thisOrClass);
-
-        final String lambdaName = Lambdas.nameFor(model, visitedLambda);
-        JCTree.JCLiteral methodName = getJavac().literal(lambdaName);
-        handlerArguments.add(methodName);
-
         final java.util.List<Parameter> lambdaParameters
                 = new ParameterCollector(getJavac(), visitedLambda).toList();
 
-        JCTree.JCExpression methodArguments = enteringHandlerParameterArray(lambdaParameters);
-        handlerArguments.add(methodArguments);
+        return enteringExpression(model, lambdaSite(model, visitedLambda, lambdaParameters), lambdaParameters);
+    }
 
-        return getJavac().call(enteringHandlerExpression, handlerArguments.toList());
+    private JCTree.JCExpression lambdaSite(Method model, JCTree.JCLambda visitedLambda, java.util.List<Parameter> lambdaParameters) {
+        final String lambdaName = Lambdas.nameFor(model, visitedLambda);
+        return getMetadata().site(model, lambdaName, visitedLambda, lambdaParameters);
     }
 
 }
@@ -0,0 +1,61 @@
+package io.ghostwriter.openjdk.v8.ast.translator;
+
+import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.openjdk.v7.ast.translator.MethodBodyTranslator;
+import io.ghostwriter.openjdk.v7.ast.translator.ReturnExpressionMutationExtractionTranslator;
+import io.ghostwriter.openjdk.v7.model.Method;
+
+
+public class LambdaAwareMethodBodyTranslator extends MethodBodyTranslator {
+
+    private final LambdaAwareWrapInBlockTranslator wrapInBlockTranslator;
+
+    private final LambdaAwareValueChangeTranslator valueChangeTranslator;
+
+    private final LambdaAwareReturningTranslator returningTranslator;
+
+    public LambdaAwareMethodBodyTranslator(LambdaAwareWrapInBlockTranslator wrapInBlockTranslator,
+                                           ReturnExpressionMutationExtractionTranslator mutationExtractionTranslator,
+                                           LambdaAwareValueChangeTranslator valueChangeTranslator,
+                                           LambdaAwareReturningTranslator returningTranslator) {
+        super(wrapInBlockTranslator, mutationExtractionTranslator, valueChangeTranslator, returningTranslator);
+        this.wrapInBlockTranslator = wrapInBlockTranslator;
+        this.valueChangeTranslator = valueChangeTranslator;
+        this.returningTranslator = returningTranslator;
+    }
+
+    @Override
+    public void translate(Method model) {
+        if (Lambdas.doInstrumentLambdas()) {
+            // Expression lambdas are turned into block lambdas by the wrapping. The mutation analysis of the enclosing
+            // statement treats the two forms differently (blocks are separate scopes), so all lambdas have to be
+            // wrapped before the first statement is analysed, just like when the wrapping was a separate step.
+            model.representation().accept(wrapInBlockTranslator);
+        }
+        super.translate(model);
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda jcLambda) {
+        if (!Lambdas.doInstrumentLambdas()) {
+            // no events are traced in the lambda, it only gets the same structural changes as nested classes
+            translateWithoutTracing(jcLambda);
+            result = jcLambda;
+            return;
+        }
+
+        setVisitedLambda(jcLambda);
+        super.visitLambda(jcLambda);
+        setVisitedLambda(null);
+    }
+
+    private void setVisitedLambda(JCTree.JCLambda visitedLambda) {
+        if (valueChangeTranslator != null) {
+            valueChangeTranslator.setVisitedLambda(visitedLambda);
+        }
+        if (returningTranslator != null) {
+            returningTranslator.setVisitedLambda(visitedLambda);
+        }
+    }
+
+}
@@ -1,48 +1,50 @@
 package io.ghostwriter.openjdk.v8.ast.translator;
 
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.openjdk.v7.ast.collector.MutatedVariableAnalysis;
+import io.ghostwriter.openjdk.v7.ast.compiler.BytecodeSizeEstimator;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.ast.translator.MethodTranslator;
 import io.ghostwriter.openjdk.v7.ast.translator.ReturnExpressionMutationExtractionTranslator;
 import io.ghostwriter.openjdk.v7.model.Method;
+import io.ghostwriter.openjdk.v8.ast.compiler.LambdaAwareBytecodeSizeEstimator;
 
 
 public class LambdaAwareMethodTranslator extends MethodTranslator {
 
-    public LambdaAwareMethodTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
-        super(javac, helper);
-    }
-
-    @Override
-    protected void transformToBlockConstructs(Method model) {
-        final LambdaAwareWrapInBlockTranslator wrapInBlockTranslator =
-                new LambdaAwareWrapInBlockTranslator(getJavac());
-        wrapInBlockTranslator.translate(model);
+    public LambdaAwareMethodTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata, InstrumentationSettings settings) {
+        super(javac, helper, metadata, settings);
     }
 
     @Override
     protected void traceEnteringExiting(Method model) {
         LambdaAwareEnteringExitingTranslator enteringExitingTranslator =
-                new LambdaAwareEnteringExitingTranslator(getJavac(), getHelper());
+                new LambdaAwareEnteringExitingTranslator(getJavac(), getHelper(), getMetadata());
         enteringExitingTranslator.translate(model);
     }
 
     @Override
-    protected void traceReturn(Method model) {
-        LambdaAwareReturningTranslator returningTranslator =
-                new LambdaAwareReturningTranslator(getJavac(), getHelper());
-        returningTranslator.translate(model);
+    protected void transformMethodBody(Method model, boolean doTraceValueChanges, boolean doTraceReturning) {
+        MutatedVariableAnalysis mutatedVariableAnalysis = new MutatedVariableAnalysis(getJavac(), getHelper());
+        LambdaAwareMethodBodyTranslator methodBodyTranslator = new LambdaAwareMethodBodyTranslator(
+                new LambdaAwareWrapInBlockTranslator(getJavac()),
+                doTraceValueChanges ? new ReturnExpressionMutationExtractionTranslator(getJavac(), getHelper(), mutatedVariableAnalysis) : null,
+                doTraceValueChanges ? new LambdaAwareValueChangeTranslator(getJavac(), getHelper(), getMetadata(), mutatedVariableAnalysis) : null,
+                doTraceReturning ? new LambdaAwareReturningTranslator(getJavac(), getHelper(), getMetadata()) : null);
+        methodBodyTranslator.translate(model);
+    }
+
+    @Override
+    protected void lowerToSingleExit(Method model) {
+        LambdaAwareSingleExitTranslator singleExitTranslator = new LambdaAwareSingleExitTranslator(getJavac());
+        singleExitTranslator.translate(model);
     }
 
     @Override
-    protected void traceValueChanges(Method model) {
-        ReturnExpressionMutationExtractionTranslator returnExpressionTranslator =
-                new ReturnExpressionMutationExtractionTranslator(getJavac(), getHelper());
-        returnExpressionTranslator.translate(model);
-
-        LambdaAwareValueChangeTranslator valueChangeTranslator =
-                new LambdaAwareValueChangeTranslator(getJavac(), getHelper());
-        valueChangeTranslator.translate(model);
+    protected BytecodeSizeEstimator bytecodeSizeEstimator() {
+        return new LambdaAwareBytecodeSizeEstimator();
     }
 
 }
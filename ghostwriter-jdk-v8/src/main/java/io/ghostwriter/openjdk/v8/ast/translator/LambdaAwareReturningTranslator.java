@@ -1,8 +1,10 @@
 package io.ghostwriter.openjdk.v8.ast.translator;
 
 import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.openjdk.v7.ast.collector.ParameterCollector;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.ast.translator.ReturningTranslator;
 
 
@@ -10,8 +12,8 @@ public class LambdaAwareReturningTranslator extends ReturningTranslator {
 
     private JCTree.JCLambda visitedLambda = null;
 
-    public LambdaAwareReturningTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
-        super(javac, helper);
+    public LambdaAwareReturningTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
+        super(javac, helper, metadata);
     }
 
     @Override
@@ -34,16 +36,21 @@ public class LambdaAwareReturningTranslator extends ReturningTranslator {
     }
 
     @Override
-    protected JCTree.JCLiteral returningExpressionMethodName() {
+    protected JCTree.JCExpression returningExpressionSite() {
         if (visitedLambda == null) {
-            return super.returningExpressionMethodName();
+            return super.returningExpressionSite();
         }
-        return returningExpressionLambdaName();
+        return returningExpressionLambdaSite();
     }
 
-    private JCTree.JCLiteral returningExpressionLambdaName() {
+    private JCTree.JCExpression returningExpressionLambdaSite() {
         final String lambdaName = Lambdas.nameFor(getEnclosingMethod(), visitedLambda);
-        return getJavac().literal(lambdaName);
+        return getMetadata().pendingSite(getEnclosingMethod(), lambdaName, visitedLambda,
+                new ParameterCollector(getJavac(), visitedLambda).toList());
+    }
+
+    protected void setVisitedLambda(JCTree.JCLambda visitedLambda) {
+        this.visitedLambda = visitedLambda;
     }
 
 }
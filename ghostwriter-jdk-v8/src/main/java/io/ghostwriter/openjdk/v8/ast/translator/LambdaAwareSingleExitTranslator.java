@@ -0,0 +1,20 @@
+package io.ghostwriter.openjdk.v8.ast.translator;
+
+import com.sun.tools.javac.tree.JCTree;
+import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
+import io.ghostwriter.openjdk.v7.ast.translator.SingleExitTranslator;
+
+
+public class LambdaAwareSingleExitTranslator extends SingleExitTranslator {
+
+    public LambdaAwareSingleExitTranslator(JavaCompiler javac) {
+        super(javac);
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda jcLambda) {
+        // return statements of a lambda body belong to the lambda, not to the enclosing method
+        result = jcLambda;
+    }
+
+}
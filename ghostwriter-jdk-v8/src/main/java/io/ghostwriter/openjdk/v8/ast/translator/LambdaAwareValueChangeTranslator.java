@@ -2,19 +2,25 @@ package io.ghostwriter.openjdk.v8.ast.translator;
 
 
 import com.sun.tools.javac.tree.JCTree;
-import com.sun.tools.javac.util.ListBuffer;
+import io.ghostwriter.openjdk.v7.ast.collector.MutatedVariableAnalysis;
+import io.ghostwriter.openjdk.v7.ast.collector.ParameterCollector;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompiler;
 import io.ghostwriter.openjdk.v7.ast.compiler.JavaCompilerHelper;
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
 import io.ghostwriter.openjdk.v7.ast.translator.ValueChangeTranslator;
-import io.ghostwriter.openjdk.v7.common.Logger;
 import io.ghostwriter.openjdk.v7.model.Method;
 
 public class LambdaAwareValueChangeTranslator extends ValueChangeTranslator {
 
     private JCTree.JCLambda visitedLambda;
 
-    public LambdaAwareValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper) {
-        super(javac, helper);
+    public LambdaAwareValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata) {
+        super(javac, helper, metadata);
+    }
+
+    public LambdaAwareValueChangeTranslator(JavaCompiler javac, JavaCompilerHelper helper, MetadataHolder metadata,
+                                            MutatedVariableAnalysis mutatedVariableAnalysis) {
+        super(javac, helper, metadata, mutatedVariableAnalysis);
     }
 
     @Override
@@ -44,29 +50,15 @@ public class LambdaAwareValueChangeTranslator extends ValueChangeTranslator {
             return super.valueChangeExpression(model, variable);
         }
 
-        String valueChangeHandler = getValueChangeHandler();
-        if (valueChangeHandler == null || "".equals(valueChangeHandler)) {
-            Logger.error(getClass(), "valueChangeExpression", "invalid fully qualified name for 'valueChange' handler: " + String.valueOf(valueChangeHandler));
-        }
-
-        JCTree.JCExpression valueChangeHandlerExpression = getJavac().expression(valueChangeHandler);
-        ListBuffer<JCTree.JCExpression> handlerArguments = new ListBuffer<>();
-
-        JCTree.JCExpression thisOrClass = getHelper().methodContext(model);
-        handlerArguments.add(thisOrClass);
-
         final String lambdaName = Lambdas.nameFor(model, visitedLambda);
-        JCTree.JCLiteral methodName = getJavac().literal(lambdaName);
-        handlerArguments.add(methodName);
+        final JCTree.JCExpression site = getMetadata().site(model, lambdaName, visitedLambda,
+                new ParameterCollector(getJavac(), visitedLambda).toList());
 
-        JCTree.JCLiteral variableName = getJavac().literal(variable.toString());
-        handlerArguments.add(variableName);
-        handlerArguments.add(variable);
-
-        JCTree.JCExpressionStatement call = getJavac().call(valueChangeHandlerExpression, handlerArguments.toList());
+        return valueChangeExpression(model, site, variable);
+    }
 
-        Logger.note(getClass(), "valueChangeExpression", call.toString());
-        return call;
+    protected void setVisitedLambda(JCTree.JCLambda visitedLambda) {
+        this.visitedLambda = visitedLambda;
     }
 
 }
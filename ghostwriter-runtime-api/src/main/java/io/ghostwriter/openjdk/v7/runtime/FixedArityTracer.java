@@ -0,0 +1,25 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.Tracer;
+
+/**
+ * Optional extension of the {@link Tracer} interface for runtime implementations that want to receive
+ * {@code entering} events without the {@code Object[]} that the generic API requires.
+ * The names of the traced parameters are available through {@link Site#getParameterNames()}.
+ *
+ * If the tracer does not implement this interface, the events are delivered through the generic
+ * {@link Tracer#entering(Object, String, Object...)} call.
+ */
+public interface FixedArityTracer extends Tracer {
+
+    void entering0(Object source, Site site);
+
+    void entering1(Object source, Site site, Object arg0);
+
+    void entering2(Object source, Site site, Object arg0, Object arg1);
+
+    void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2);
+
+    void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3);
+
+}
@@ -0,0 +1,491 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.GhostWriter;
+import io.ghostwriter.Tracer;
+import io.ghostwriter.TracerProvider;
+import io.ghostwriter.annotation.Exclude;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runtime hooks that the instrumented code calls instead of the generic {@link GhostWriter} API.
+ * Each hook receives the static {@link Site} of the instrumented method instead of the method name and
+ * the specialized variants avoid the heap allocations that the generic signatures would force on every call.
+ *
+ * If the tracer of the provider installed with {@link #setTracerProvider} implements {@link SiteTracer},
+ * {@link FixedArityTracer} or {@link PrimitiveTracer} the events are dispatched to it directly, otherwise the hooks
+ * rebuild the arguments that the generic API expects and forward the call to {@link GhostWriter}. This way existing
+ * {@link Tracer} implementations receive exactly the same events as before. The generic API does not expose its
+ * provider, so a provider installed only with {@link GhostWriter#setTracerProvider} or by its service loader receives
+ * every event through the generic API.
+ */
+// the bootstrap build instruments GhostWriter with itself, the hooks must not trigger additional events
+@Exclude
+public final class GhostWriterHooks {
+
+    /**
+     * Methods with at most this many traced parameters are instrumented with a fixed-arity entering call.
+     * Methods with more parameters fall back to the array based {@link #enteringWithArguments} call.
+     * The argument of a method with a single primitive parameter is passed without boxing, the compiler selects the
+     * overload of its type. With two or more parameters the arguments are passed as {@code Object}s, since an overload
+     * for every combination of the primitive types is not feasible.
+     */
+    public static final int MAX_FIXED_ARITY = 4;
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    /**
+     * Target of the enabled flag, a constant method handle that is replaced when the flag is toggled. The JIT compiler
+     * folds the constant into the compiled code of the instrumented methods, so reading the flag costs nothing, and
+     * deoptimizes the dependent code when the target changes.
+     */
+    private static final MutableCallSite ENABLED = new MutableCallSite(MethodHandles.constant(boolean.class, true));
+
+    private static final MethodHandle IS_ENABLED = ENABLED.dynamicInvoker();
+
+    // the provider that was installed through the hooks, null if the events are forwarded to the generic API
+    private static volatile TracerProvider<?> tracerProvider = null;
+
+    private GhostWriterHooks() {
+        throw new UnsupportedOperationException("class is not designed for instantiation");
+    }
+
+    /**
+     * Instrumented code reads the flag once at the beginning of each invocation, so while tracing is disabled
+     * the events of the invocation - including the capturing of their arguments - are skipped by a single branch.
+     *
+     * @return whether the instrumented code should report events
+     */
+    public static boolean isEnabled() {
+        try {
+            return (boolean) IS_ENABLED.invokeExact();
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("failed to read the enabled flag", e);
+        }
+    }
+
+    /**
+     * Sampled variant of {@link #isEnabled()}, instrumented code with a sampling interval reads it once at the
+     * beginning of each invocation. The decision is random instead of counting the invocations, so the threads do not
+     * contend on a shared counter and periodic call patterns do not bias the sample.
+     *
+     * @param samplingInterval average number of invocations per traced invocation, at least 1
+     * @return whether the instrumented code should report the events of the invocation
+     */
+    public static boolean isSampled(int samplingInterval) {
+        return isEnabled() && (samplingInterval <= 1 || ThreadLocalRandom.current().nextInt(samplingInterval) == 0);
+    }
+
+    /**
+     * Enables or disables the event reporting of the instrumented code. The change applies to invocations that start
+     * after the call, invocations that are already running keep reporting consistently with their entering event.
+     * Toggling the flag invalidates the compiled code that depends on it, so it is meant for occasional changes and
+     * not for switching the tracing on and off around individual calls.
+     *
+     * @param isEnabled whether the instrumented code should report events
+     */
+    public static void setEnabled(boolean isEnabled) {
+        synchronized (ENABLED) {
+            if (isEnabled != isEnabled()) {
+                ENABLED.setTarget(MethodHandles.constant(boolean.class, isEnabled));
+                MutableCallSite.syncAll(new MutableCallSite[]{ENABLED});
+            }
+        }
+    }
+
+    /**
+     * Installs the tracer provider for both the generic API and the specialized hooks. A provider that replaces it has
+     * to be installed with this method as well, the hooks keep dispatching the specialized events to this provider
+     * otherwise.
+     *
+     * @param tracerProvider provider of the runtime implementation that should receive the events
+     */
+    public static void setTracerProvider(TracerProvider<?> tracerProvider) {
+        synchronized (GhostWriterHooks.class) {
+            GhostWriter.setTracerProvider(tracerProvider);
+            GhostWriterHooks.tracerProvider = tracerProvider;
+        }
+    }
+
+    /**
+     * @return the tracer of the provider installed through the hooks, {@code null} if the events are forwarded to the
+     * generic API
+     */
+    private static Tracer tracer() {
+        final TracerProvider<?> installed = tracerProvider;
+        return installed == null ? null : installed.getTracer();
+    }
+
+    public static void entering(Object source, Site site) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof FixedArityTracer) {
+            ((FixedArityTracer) tracer).entering0(source, site);
+            return;
+        }
+
+        GhostWriter.entering(source, site.getMethodName(), NO_PARAMETERS);
+    }
+
+    public static void entering(Object source, Site site, Object arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof FixedArityTracer) {
+            ((FixedArityTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        final String[] names = site.getParameterNames();
+        GhostWriter.entering(source, site.getMethodName(), names[0], arg0);
+    }
+
+    public static void entering(Object source, Site site, int arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, long arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, double arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, float arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, boolean arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, char arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, short arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, byte arg0) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).entering1(source, site, arg0);
+            return;
+        }
+
+        entering(source, site, (Object) arg0);
+    }
+
+    public static void entering(Object source, Site site, Object arg0, Object arg1) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof FixedArityTracer) {
+            ((FixedArityTracer) tracer).entering2(source, site, arg0, arg1);
+            return;
+        }
+
+        final String[] names = site.getParameterNames();
+        GhostWriter.entering(source, site.getMethodName(), names[0], arg0, names[1], arg1);
+    }
+
+    public static void entering(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof FixedArityTracer) {
+            ((FixedArityTracer) tracer).entering3(source, site, arg0, arg1, arg2);
+            return;
+        }
+
+        final String[] names = site.getParameterNames();
+        GhostWriter.entering(source, site.getMethodName(), names[0], arg0, names[1], arg1, names[2], arg2);
+    }
+
+    public static void entering(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof FixedArityTracer) {
+            ((FixedArityTracer) tracer).entering4(source, site, arg0, arg1, arg2, arg3);
+            return;
+        }
+
+        final String[] names = site.getParameterNames();
+        GhostWriter.entering(source, site.getMethodName(), names[0], arg0, names[1], arg1, names[2], arg2, names[3], arg3);
+    }
+
+    /**
+     * Entering hook of methods with more than {@link #MAX_FIXED_ARITY} traced parameters.
+     * Not an overload of {@code entering}, since a single array typed parameter would resolve to this variant.
+     *
+     * @param source    the instance or class of the traced method
+     * @param site      the traced method
+     * @param arguments values of the traced parameters in declaration order
+     */
+    public static void enteringWithArguments(Object source, Site site, Object[] arguments) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).entering(source, site, arguments);
+            return;
+        }
+
+        final String[] names = site.getParameterNames();
+        final Object[] parameters = new Object[2 * arguments.length];
+        for (int i = 0; i < arguments.length; ++i) {
+            parameters[2 * i] = names[i];
+            parameters[2 * i + 1] = arguments[i];
+        }
+        GhostWriter.entering(source, site.getMethodName(), parameters);
+    }
+
+    public static void exiting(Object source, Site site) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).exiting(source, site);
+            return;
+        }
+
+        GhostWriter.exiting(source, site.getMethodName());
+    }
+
+    public static void onError(Object source, Site site, Throwable error) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).onError(source, site, error);
+            return;
+        }
+
+        GhostWriter.onError(source, site.getMethodName(), error);
+    }
+
+    public static void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).timeout(source, site, timeoutThreshold, timeout);
+            return;
+        }
+
+        GhostWriter.timeout(source, site.getMethodName(), timeoutThreshold, timeout);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, Object value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        GhostWriter.valueChange(source, site.getMethodName(), variable, value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, int value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, long value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, double value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, float value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, boolean value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, char value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, short value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void valueChange(Object source, Site site, String variable, byte value) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).valueChange(source, site, variable, value);
+            return;
+        }
+
+        valueChange(source, site, variable, (Object) value);
+    }
+
+    public static void returning(Object source, Site site, Object returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof SiteTracer) {
+            ((SiteTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        GhostWriter.returning(source, site.getMethodName(), returnValue);
+    }
+
+    public static void returning(Object source, Site site, int returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, long returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, double returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, float returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, boolean returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, char returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, short returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+    public static void returning(Object source, Site site, byte returnValue) {
+        final Tracer tracer = tracer();
+        if (tracer instanceof PrimitiveTracer) {
+            ((PrimitiveTracer) tracer).returning(source, site, returnValue);
+            return;
+        }
+
+        returning(source, site, (Object) returnValue);
+    }
+
+}
@@ -0,0 +1,194 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracer that only counts the invocations of the traced methods. The counts it writes can be used as the
+ * {@code GHOSTWRITER_HOT_METHODS} profile of the next build, so the methods that are called too often are not traced
+ * with every event:
+ * <pre>
+ * final InvocationCountingTracer tracer = new InvocationCountingTracer();
+ * GhostWriterHooks.setTracerProvider(new TracerProvider&lt;InvocationCountingTracer&gt;() { ... });
+ * ...
+ * tracer.write(writer);
+ * </pre>
+ * Events that arrive through the hooks are counted by their {@link Site} in an array, other events (for example the
+ * ones of the bytecode instrumentation) are counted by the class of the source and the method name.
+ */
+@Exclude
+public final class InvocationCountingTracer implements SiteTracer, FixedArityTracer {
+
+    private final Object sitesLock = new Object();
+
+    private volatile AtomicLongArray siteCounts = new AtomicLongArray(0);
+
+    private final ConcurrentMap<String, AtomicLong> methodCounts = new ConcurrentHashMap<>();
+
+    private final long startNanos = System.nanoTime();
+
+    private void count(Object source, Site site) {
+        final AtomicLongArray counts = siteCounts;
+        if (site.getId() < counts.length()) {
+            counts.incrementAndGet(site.getId());
+            return;
+        }
+        if (site.getClassName().isEmpty()) {
+            // anonymous classes do not have a qualified name, their methods are counted by the class of the source
+            count(source, site.getMethodName());
+            return;
+        }
+        synchronized (sitesLock) {
+            if (site.getId() >= siteCounts.length()) {
+                siteCounts = grow(siteCounts, Math.max(Site.count(), site.getId() + 1));
+            }
+        }
+        siteCounts.incrementAndGet(site.getId());
+    }
+
+    private static AtomicLongArray grow(AtomicLongArray counts, int length) {
+        // increments that arrive while copying can be lost, the counts are only used to find the frequent methods
+        final AtomicLongArray grownCounts = new AtomicLongArray(length);
+        for (int i = 0; i < counts.length(); i++) {
+            grownCounts.set(i, counts.get(i));
+        }
+        return grownCounts;
+    }
+
+    private void count(Object source, String method) {
+        final String className = source instanceof Class ? ((Class<?>) source).getName() : source.getClass().getName();
+        final String key = className + "#" + method;
+        AtomicLong count = methodCounts.get(key);
+        if (count == null) {
+            final AtomicLong newCount = new AtomicLong();
+            count = methodCounts.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return invocation count of each method that was called, keyed by class#method
+     */
+    public Map<String, Long> getCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        final AtomicLongArray currentSiteCounts = siteCounts;
+        for (int id = 0; id < currentSiteCounts.length(); id++) {
+            final long count = currentSiteCounts.get(id);
+            if (count > 0) {
+                final Site site = Site.byId(id);
+                add(counts, site.getClassName() + "#" + site.getMethodName(), count);
+            }
+        }
+        for (Map.Entry<String, AtomicLong> methodCount : methodCounts.entrySet()) {
+            add(counts, methodCount.getKey(), methodCount.getValue().get());
+        }
+        return counts;
+    }
+
+    private static void add(Map<String, Long> counts, String method, long count) {
+        // overloaded methods share the name, their counts are summed
+        final Long previousCount = counts.get(method);
+        counts.put(method, previousCount == null ? count : previousCount + count);
+    }
+
+    /**
+     * Writes the counts in the format of the GHOSTWRITER_HOT_METHODS profile, together with the time since the tracer
+     * was created, so the profile can be used with a threshold of calls per second.
+     */
+    public void write(Writer writer) throws IOException {
+        final double durationSeconds = (System.nanoTime() - startNanos) / 1e9;
+        writer.write("# GhostWriter invocation counts\n");
+        writer.write("# duration=" + durationSeconds + "\n");
+        for (Map.Entry<String, Long> count : getCounts().entrySet()) {
+            writer.write(count.getKey() + " " + count.getValue() + "\n");
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void entering0(Object source, Site site) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, Object arg0) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering2(Object source, Site site, Object arg0, Object arg1) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering(Object source, Site site, Object[] arguments) {
+        count(source, site);
+    }
+
+    @Override
+    public void entering(Object source, String method, Object... params) {
+        count(source, method);
+    }
+
+    @Override
+    public void exiting(Object source, Site site) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, Object value) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, Object returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, Site site, Throwable error) {
+    }
+
+    @Override
+    public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+    }
+
+    @Override
+    public void exiting(Object source, String method) {
+    }
+
+    @Override
+    public void valueChange(Object source, String method, String variable, Object newValue) {
+    }
+
+    @Override
+    public <T> void returning(Object source, String method, T returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+    }
+
+}
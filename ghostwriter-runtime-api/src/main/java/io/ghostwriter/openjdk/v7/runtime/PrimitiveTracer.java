@@ -0,0 +1,67 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.Tracer;
+
+/**
+ * Optional extension of the {@link Tracer} interface for runtime implementations that want to receive
+ * {@code entering}, {@code valueChange} and {@code returning} events of primitive values without boxing them.
+ * The instrumented code relies on the overload resolution of the compiler, so the overload matching the declared type
+ * of the variable or the return type of the method is called.
+ * The {@code entering1} overloads receive the argument of methods with a single primitive parameter, the arguments of
+ * methods with more parameters are boxed, see {@link GhostWriterHooks#MAX_FIXED_ARITY}.
+ *
+ * If the tracer does not implement this interface, the events are boxed and delivered through the
+ * {@link FixedArityTracer}, {@link SiteTracer} or generic {@link Tracer} calls.
+ */
+public interface PrimitiveTracer extends Tracer {
+
+    void entering1(Object source, Site site, int arg0);
+
+    void entering1(Object source, Site site, long arg0);
+
+    void entering1(Object source, Site site, double arg0);
+
+    void entering1(Object source, Site site, float arg0);
+
+    void entering1(Object source, Site site, boolean arg0);
+
+    void entering1(Object source, Site site, char arg0);
+
+    void entering1(Object source, Site site, short arg0);
+
+    void entering1(Object source, Site site, byte arg0);
+
+
+    void valueChange(Object source, Site site, String variable, int value);
+
+    void valueChange(Object source, Site site, String variable, long value);
+
+    void valueChange(Object source, Site site, String variable, double value);
+
+    void valueChange(Object source, Site site, String variable, float value);
+
+    void valueChange(Object source, Site site, String variable, boolean value);
+
+    void valueChange(Object source, Site site, String variable, char value);
+
+    void valueChange(Object source, Site site, String variable, short value);
+
+    void valueChange(Object source, Site site, String variable, byte value);
+
+    void returning(Object source, Site site, int returnValue);
+
+    void returning(Object source, Site site, long returnValue);
+
+    void returning(Object source, Site site, double returnValue);
+
+    void returning(Object source, Site site, float returnValue);
+
+    void returning(Object source, Site site, boolean returnValue);
+
+    void returning(Object source, Site site, char returnValue);
+
+    void returning(Object source, Site site, short returnValue);
+
+    void returning(Object source, Site site, byte returnValue);
+
+}
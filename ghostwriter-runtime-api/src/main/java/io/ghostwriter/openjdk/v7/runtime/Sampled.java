@@ -0,0 +1,25 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Traces only a random sample of the invocations of the annotated method, overriding the sampling interval set by
+ * {@code GHOSTWRITER_SAMPLING_INTERVAL}. The sampling decision is made once, at the beginning of each invocation, so
+ * the events of a sampled invocation are complete and an invocation that is not sampled does not call any hook.
+ *
+ * Example: {@code @Sampled(1000)} traces one of every thousand invocations on average, {@code @Sampled(1)} traces
+ * every invocation.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Sampled {
+
+    /**
+     * @return the average number of invocations per traced invocation, has to be an integer literal
+     */
+    int value();
+
+}
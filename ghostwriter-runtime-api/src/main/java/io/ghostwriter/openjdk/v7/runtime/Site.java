@@ -0,0 +1,127 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.Arrays;
+
+/**
+ * Static descriptor of an instrumented method or lambda. The instrumenter generates a single instance for each
+ * instrumented site, it is created once during the initialization of the enclosing top level class.
+ *
+ * Each site gets a dense, zero based identifier, so runtime implementations can keep their per-site state in arrays
+ * indexed by {@link #getId()} instead of looking it up by the method name.
+ */
+@Exclude
+public final class Site {
+
+    private static final int INITIAL_REGISTRY_CAPACITY = 256;
+
+    private static final Object REGISTRY_LOCK = new Object();
+
+    // grown by doubling, only the first count elements are registered sites
+    private static volatile Site[] registry = new Site[INITIAL_REGISTRY_CAPACITY];
+
+    // written after the site is stored, so a reader that sees the count also sees the sites below it
+    private static volatile int count = 0;
+
+    private final int id;
+
+    private final String className;
+
+    private final String methodName;
+
+    private final String signature;
+
+    private final String[] parameterNames;
+
+    private final int line;
+
+    private Site(int id, String className, String methodName, String signature, String[] parameterNames, int line) {
+        this.id = id;
+        this.className = className;
+        this.methodName = methodName;
+        this.signature = signature;
+        this.parameterNames = parameterNames;
+        this.line = line;
+    }
+
+    /**
+     * Called by the code generated by the instrumenter, there is no need to call it directly.
+     *
+     * @param className      fully qualified name of the enclosing class, empty for anonymous classes
+     * @param methodName     name that is reported to the runtime handlers
+     * @param signature      parameter types of the method as declared in the source
+     * @param parameterNames names of the traced parameters, in declaration order
+     * @param line           source line of the declaration or -1 if not known
+     * @return the registered site
+     */
+    public static Site register(String className, String methodName, String signature, String[] parameterNames, int line) {
+        synchronized (REGISTRY_LOCK) {
+            final int id = count;
+            Site[] sites = registry;
+            if (id == sites.length) {
+                sites = Arrays.copyOf(sites, 2 * sites.length);
+                registry = sites;
+            }
+            final Site site = new Site(id, className, methodName, signature, parameterNames, line);
+            sites[id] = site;
+            count = id + 1;
+            return site;
+        }
+    }
+
+    /**
+     * @param id identifier of a registered site
+     * @return site with the given identifier
+     */
+    public static Site byId(int id) {
+        if (id < 0 || id >= count) {
+            throw new ArrayIndexOutOfBoundsException(id);
+        }
+        return registry[id];
+    }
+
+    /**
+     * Number of sites registered so far. Identifiers of registered sites are always smaller than this value.
+     *
+     * @return number of the registered sites
+     */
+    public static int count() {
+        return count;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * The returned array is shared between all events of the site, it must not be modified.
+     *
+     * @return names of the traced parameters in declaration order
+     */
+    public String[] getParameterNames() {
+        return parameterNames;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + methodName + signature + ":" + line;
+    }
+
+}
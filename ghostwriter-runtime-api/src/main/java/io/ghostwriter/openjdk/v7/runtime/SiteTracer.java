@@ -0,0 +1,35 @@
+package io.ghostwriter.openjdk.v7.runtime;
+
+import io.ghostwriter.Tracer;
+
+/**
+ * Optional extension of the {@link Tracer} interface for runtime implementations that want to identify the source of
+ * the events by their {@link Site} instead of the method name. Since every site has a dense identifier, per-site state
+ * can be kept in arrays instead of hash maps keyed by strings.
+ *
+ * If the tracer does not implement this interface, the events are delivered through the generic
+ * {@link Tracer} calls.
+ */
+public interface SiteTracer extends Tracer {
+
+    /**
+     * Receives the {@code entering} event of methods with more traced parameters than what {@link FixedArityTracer}
+     * supports. The parameter names are available through {@link Site#getParameterNames()}.
+     *
+     * @param source    the instance or class of the traced method
+     * @param site      the traced method
+     * @param arguments values of the traced parameters in declaration order
+     */
+    void entering(Object source, Site site, Object[] arguments);
+
+    void exiting(Object source, Site site);
+
+    void valueChange(Object source, Site site, String variable, Object value);
+
+    void returning(Object source, Site site, Object returnValue);
+
+    void onError(Object source, Site site, Throwable error);
+
+    void timeout(Object source, Site site, long timeoutThreshold, long timeout);
+
+}
@@ -0,0 +1,426 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.FixedArityTracer;
+import io.ghostwriter.openjdk.v7.runtime.PrimitiveTracer;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.openjdk.v7.runtime.SiteTracer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Encodes every event into {@link TraceRecord}s and passes them to {@link #write}. Primitive values are stored by their
+ * bits and objects by their class and identity hash code, so the traced values are not retained and, once the names
+ * are known, encoding an event does not allocate.
+ * <p>
+ * Events of the generic API are identified by the class of the source and the method name, the events of the annotation
+ * processor are received through the site based calls.
+ */
+@Exclude
+public abstract class BinaryEventTracer implements SiteTracer, FixedArityTracer, PrimitiveTracer {
+
+    private final SymbolTable symbols;
+
+    private final ClassValue<ConcurrentMap<String, Integer>> methodSymbols = new ClassValue<ConcurrentMap<String, Integer>>() {
+        @Override
+        protected ConcurrentMap<String, Integer> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Object siteParametersLock = new Object();
+
+    // symbols of the parameter names indexed by the identifier of the site, null marks the sites that were not seen yet
+    private volatile AtomicReferenceArray<int[]> siteParameters = new AtomicReferenceArray<>(0);
+
+    protected BinaryEventTracer(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * @return names that the written records refer to
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Stores a single record, called on the thread that reported the event.
+     *
+     * @param header   kind, value type and site of the record
+     * @param nanoTime time of the event
+     * @param aux      event specific value, see {@link TraceRecord}
+     * @param payload  encoded value
+     */
+    protected abstract void write(long header, long nanoTime, long aux, long payload);
+
+    private int methodSymbol(Object source, String method) {
+        final Class<?> type = source instanceof Class ? (Class<?>) source : source.getClass();
+        final ConcurrentMap<String, Integer> typeMethods = methodSymbols.get(type);
+        final Integer symbol = typeMethods.get(method);
+        if (symbol != null) {
+            return symbol;
+        }
+        final int addedSymbol = symbols.intern(type.getName() + "#" + method);
+        typeMethods.putIfAbsent(method, addedSymbol);
+        return addedSymbol;
+    }
+
+    private int[] parameterSymbols(Site site) {
+        final AtomicReferenceArray<int[]> currentSiteParameters = siteParameters;
+        final int id = site.getId();
+        if (id < currentSiteParameters.length()) {
+            final int[] parameterSymbols = currentSiteParameters.get(id);
+            if (parameterSymbols != null) {
+                return parameterSymbols;
+            }
+        }
+
+        synchronized (siteParametersLock) {
+            if (id >= siteParameters.length()) {
+                final AtomicReferenceArray<int[]> grown = new AtomicReferenceArray<>(Math.max(Site.count(), id + 1));
+                for (int i = 0; i < siteParameters.length(); i++) {
+                    grown.set(i, siteParameters.get(i));
+                }
+                siteParameters = grown;
+            }
+            if (siteParameters.get(id) == null) {
+                final String[] parameterNames = site.getParameterNames();
+                final int[] parameterSymbols = new int[parameterNames.length];
+                for (int i = 0; i < parameterNames.length; i++) {
+                    parameterSymbols[i] = symbols.intern(parameterNames[i]);
+                }
+                siteParameters.set(id, parameterSymbols);
+            }
+            return siteParameters.get(id);
+        }
+    }
+
+    private static int valueType(Object value) {
+        if (value == null) {
+            return TraceRecord.VALUE_NULL;
+        }
+        if (value instanceof Integer) {
+            return TraceRecord.VALUE_INT;
+        }
+        if (value instanceof Long) {
+            return TraceRecord.VALUE_LONG;
+        }
+        if (value instanceof Double) {
+            return TraceRecord.VALUE_DOUBLE;
+        }
+        if (value instanceof Float) {
+            return TraceRecord.VALUE_FLOAT;
+        }
+        if (value instanceof Boolean) {
+            return TraceRecord.VALUE_BOOLEAN;
+        }
+        if (value instanceof Character) {
+            return TraceRecord.VALUE_CHAR;
+        }
+        if (value instanceof Short) {
+            return TraceRecord.VALUE_SHORT;
+        }
+        if (value instanceof Byte) {
+            return TraceRecord.VALUE_BYTE;
+        }
+        return TraceRecord.VALUE_REFERENCE;
+    }
+
+    private long payload(int valueType, Object value) {
+        switch (valueType) {
+            case TraceRecord.VALUE_REFERENCE:
+                return ((long) symbols.intern(value.getClass().getName()) << 32) | (System.identityHashCode(value) & 0xffffffffL);
+            case TraceRecord.VALUE_INT:
+                return (Integer) value;
+            case TraceRecord.VALUE_LONG:
+                return (Long) value;
+            case TraceRecord.VALUE_DOUBLE:
+                return Double.doubleToRawLongBits((Double) value);
+            case TraceRecord.VALUE_FLOAT:
+                return Float.floatToRawIntBits((Float) value);
+            case TraceRecord.VALUE_BOOLEAN:
+                return (Boolean) value ? 1 : 0;
+            case TraceRecord.VALUE_CHAR:
+                return (Character) value;
+            case TraceRecord.VALUE_SHORT:
+                return (Short) value;
+            case TraceRecord.VALUE_BYTE:
+                return (Byte) value;
+            default:
+                return 0;
+        }
+    }
+
+    private void writeValue(int kind, int id, boolean hasSite, long nanoTime, long aux, Object value) {
+        final int valueType = valueType(value);
+        final long valueHeader = hasSite ? TraceRecord.header(kind, valueType, id) : TraceRecord.methodHeader(kind, valueType, id);
+        write(valueHeader, nanoTime, aux, payload(valueType, value));
+    }
+
+    private void writeArgument(Site site, long nanoTime, int index, Object value) {
+        writeValue(TraceRecord.ARGUMENT, site.getId(), true, nanoTime, parameterSymbols(site)[index], value);
+    }
+
+    private void writePrimitiveArgument(Site site, long nanoTime, int valueType, long payload) {
+        write(TraceRecord.header(TraceRecord.ARGUMENT, valueType, site.getId()), nanoTime, parameterSymbols(site)[0], payload);
+    }
+
+    private void writeSite(int kind, Site site, long aux, long payload) {
+        write(TraceRecord.header(kind, TraceRecord.VALUE_NONE, site.getId()), System.nanoTime(), aux, payload);
+    }
+
+    private void writePrimitive(int kind, int valueType, Site site, long aux, long payload) {
+        write(TraceRecord.header(kind, valueType, site.getId()), System.nanoTime(), aux, payload);
+    }
+
+    @Override
+    public void entering0(Object source, Site site) {
+        writeSite(TraceRecord.ENTERING, site, 0, 0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, Object arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writeArgument(site, nanoTime, 0, arg0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, int arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_INT, arg0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, long arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_LONG, arg0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, double arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_DOUBLE, Double.doubleToRawLongBits(arg0));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, float arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_FLOAT, Float.floatToRawIntBits(arg0));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, boolean arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_BOOLEAN, arg0 ? 1 : 0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, char arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_CHAR, arg0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, short arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_SHORT, arg0);
+    }
+
+    @Override
+    public void entering1(Object source, Site site, byte arg0) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 1, 0);
+        writePrimitiveArgument(site, nanoTime, TraceRecord.VALUE_BYTE, arg0);
+    }
+
+    @Override
+    public void entering2(Object source, Site site, Object arg0, Object arg1) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 2, 0);
+        writeArgument(site, nanoTime, 0, arg0);
+        writeArgument(site, nanoTime, 1, arg1);
+    }
+
+    @Override
+    public void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 3, 0);
+        writeArgument(site, nanoTime, 0, arg0);
+        writeArgument(site, nanoTime, 1, arg1);
+        writeArgument(site, nanoTime, 2, arg2);
+    }
+
+    @Override
+    public void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, 4, 0);
+        writeArgument(site, nanoTime, 0, arg0);
+        writeArgument(site, nanoTime, 1, arg1);
+        writeArgument(site, nanoTime, 2, arg2);
+        writeArgument(site, nanoTime, 3, arg3);
+    }
+
+    @Override
+    public void entering(Object source, Site site, Object[] arguments) {
+        final long nanoTime = System.nanoTime();
+        write(TraceRecord.header(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, site.getId()), nanoTime, arguments.length, 0);
+        for (int i = 0; i < arguments.length; i++) {
+            writeArgument(site, nanoTime, i, arguments[i]);
+        }
+    }
+
+    @Override
+    public void exiting(Object source, Site site) {
+        writeSite(TraceRecord.EXITING, site, 0, 0);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, Object value) {
+        writeValue(TraceRecord.VALUE_CHANGE, site.getId(), true, System.nanoTime(), symbols.intern(variable), value);
+    }
+
+    @Override
+    public void returning(Object source, Site site, Object returnValue) {
+        writeValue(TraceRecord.RETURNING, site.getId(), true, System.nanoTime(), 0, returnValue);
+    }
+
+    @Override
+    public void onError(Object source, Site site, Throwable error) {
+        writeValue(TraceRecord.ON_ERROR, site.getId(), true, System.nanoTime(), 0, error);
+    }
+
+    @Override
+    public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+        writeSite(TraceRecord.TIMEOUT, site, timeoutThreshold, timeout);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, int value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_INT, site, symbols.intern(variable), value);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, long value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_LONG, site, symbols.intern(variable), value);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, double value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_DOUBLE, site, symbols.intern(variable), Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, float value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_FLOAT, site, symbols.intern(variable), Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, boolean value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_BOOLEAN, site, symbols.intern(variable), value ? 1 : 0);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, char value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_CHAR, site, symbols.intern(variable), value);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, short value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_SHORT, site, symbols.intern(variable), value);
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, byte value) {
+        writePrimitive(TraceRecord.VALUE_CHANGE, TraceRecord.VALUE_BYTE, site, symbols.intern(variable), value);
+    }
+
+    @Override
+    public void returning(Object source, Site site, int returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_INT, site, 0, returnValue);
+    }
+
+    @Override
+    public void returning(Object source, Site site, long returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_LONG, site, 0, returnValue);
+    }
+
+    @Override
+    public void returning(Object source, Site site, double returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_DOUBLE, site, 0, Double.doubleToRawLongBits(returnValue));
+    }
+
+    @Override
+    public void returning(Object source, Site site, float returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_FLOAT, site, 0, Float.floatToRawIntBits(returnValue));
+    }
+
+    @Override
+    public void returning(Object source, Site site, boolean returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_BOOLEAN, site, 0, returnValue ? 1 : 0);
+    }
+
+    @Override
+    public void returning(Object source, Site site, char returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_CHAR, site, 0, returnValue);
+    }
+
+    @Override
+    public void returning(Object source, Site site, short returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_SHORT, site, 0, returnValue);
+    }
+
+    @Override
+    public void returning(Object source, Site site, byte returnValue) {
+        writePrimitive(TraceRecord.RETURNING, TraceRecord.VALUE_BYTE, site, 0, returnValue);
+    }
+
+    @Override
+    public void entering(Object source, String method, Object... params) {
+        final long nanoTime = System.nanoTime();
+        final int symbol = methodSymbol(source, method);
+        // the generic API passes the parameters as name and value pairs
+        final int argumentCount = params.length / 2;
+        write(TraceRecord.methodHeader(TraceRecord.ENTERING, TraceRecord.VALUE_NONE, symbol), nanoTime, argumentCount, 0);
+        for (int i = 0; i < argumentCount; i++) {
+            final String name = String.valueOf(params[2 * i]);
+            writeValue(TraceRecord.ARGUMENT, symbol, false, nanoTime, symbols.intern(name), params[2 * i + 1]);
+        }
+    }
+
+    @Override
+    public void exiting(Object source, String method) {
+        write(TraceRecord.methodHeader(TraceRecord.EXITING, TraceRecord.VALUE_NONE, methodSymbol(source, method)), System.nanoTime(), 0, 0);
+    }
+
+    @Override
+    public void valueChange(Object source, String method, String variable, Object newValue) {
+        writeValue(TraceRecord.VALUE_CHANGE, methodSymbol(source, method), false, System.nanoTime(), symbols.intern(variable), newValue);
+    }
+
+    @Override
+    public <T> void returning(Object source, String method, T returnValue) {
+        writeValue(TraceRecord.RETURNING, methodSymbol(source, method), false, System.nanoTime(), 0, returnValue);
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+        writeValue(TraceRecord.ON_ERROR, methodSymbol(source, method), false, System.nanoTime(), 0, error);
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        write(TraceRecord.methodHeader(TraceRecord.TIMEOUT, TraceRecord.VALUE_NONE, methodSymbol(source, method)), System.nanoTime(), timeoutThreshold, timeout);
+    }
+
+}
@@ -0,0 +1,166 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+/**
+ * Call tree of a single thread, built from its {@code entering} and {@code exiting} events on a {@link ShadowStack}
+ * of the nodes. The children of a node are found in an open addressing table keyed by the parent node and the method,
+ * so a call of a known path does not allocate, regardless of the number of children.
+ * <p>
+ * The tree is limited to {@code maxNodes} nodes, the calls of the paths that do not fit are measured on detached nodes
+ * and only counted as truncated. An exit that does not match the top frame closes the frames above the matching one
+ * at the same time, those methods did not report their exit, for example because the tracer was installed while they
+ * were running.
+ */
+@Exclude
+final class CallTree {
+
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    private final long threadId;
+
+    private final String threadName;
+
+    private final int maxNodes;
+
+    private final ShadowStack<CallTreeNode> stack;
+
+    private final CallTreeNode root = new CallTreeNode(0, -1, null);
+
+    private long[] keys = new long[INITIAL_TABLE_SIZE];
+
+    private CallTreeNode[] nodes = new CallTreeNode[INITIAL_TABLE_SIZE];
+
+    private int nodeCount = 1;
+
+    private long truncatedCalls;
+
+    CallTree(Thread owner, int maxNodes, int maxDepth) {
+        this.threadId = owner.getId();
+        this.threadName = owner.getName();
+        this.maxNodes = maxNodes;
+        this.stack = new ShadowStack<>(maxDepth);
+    }
+
+    private static long key(CallTreeNode parent, int frame) {
+        // the index is shifted by one, so no key is 0, which marks the empty slots
+        return (long) (parent.getIndex() + 1) << 32 | frame & 0xffffffffL;
+    }
+
+    private static int slot(long key, int mask) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private CallTreeNode child(CallTreeNode parent, int frame) {
+        if (parent.getIndex() < 0) {
+            truncatedCalls++;
+            return new CallTreeNode(-1, frame, parent);
+        }
+        final long key = key(parent, frame);
+        final int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return nodes[slot];
+            }
+            slot = slot + 1 & mask;
+        }
+
+        if (nodeCount == maxNodes) {
+            truncatedCalls++;
+            return new CallTreeNode(-1, frame, parent);
+        }
+        final CallTreeNode child = new CallTreeNode(nodeCount++, frame, parent);
+        keys[slot] = key;
+        nodes[slot] = child;
+        // at most half of the slots are used, so the probes stay short
+        if (nodeCount * 2 > keys.length) {
+            grow();
+        }
+        return child;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final CallTreeNode[] oldNodes = nodes;
+        keys = new long[oldKeys.length * 2];
+        nodes = new CallTreeNode[oldKeys.length * 2];
+        final int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = slot + 1 & mask;
+                }
+                keys[slot] = oldKeys[i];
+                nodes[slot] = oldNodes[i];
+            }
+        }
+    }
+
+    private CallTreeNode top() {
+        final int depth = stack.getDepth();
+        return depth == 0 ? root : stack.getFrame(depth - 1);
+    }
+
+    void enter(int frame, long nanoTime) {
+        if (stack.isOverflowed() || stack.getDepth() == stack.getMaxDepth()) {
+            // only counted by the stack, the matching exit leaves the overflow
+            stack.enter(null, nanoTime);
+            truncatedCalls++;
+            return;
+        }
+        stack.enter(child(top(), frame), nanoTime);
+    }
+
+    void exit(int frame, long nanoTime) {
+        if (stack.isOverflowed()) {
+            stack.exit(null, nanoTime);
+            return;
+        }
+        int index = stack.getDepth() - 1;
+        while (index >= 0 && stack.getFrame(index).getFrame() != frame) {
+            index--;
+        }
+        if (index == -1) {
+            return;
+        }
+
+        while (stack.getDepth() > index) {
+            final CallTreeNode node = stack.getFrame(stack.getDepth() - 1);
+            stack.exit(node, nanoTime);
+            node.exited(stack.inclusiveNanos, stack.exclusiveNanos, stack.isExitFailed);
+        }
+    }
+
+    /**
+     * Marks the running call of the method as failed, if it is the top frame.
+     */
+    void fail(int frame) {
+        final CallTreeNode node = top();
+        if (!stack.isOverflowed() && node != root && node.getFrame() == frame) {
+            stack.fail(node);
+        }
+    }
+
+    CallTreeNode getRoot() {
+        return root;
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+    String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return number of the calls that are not part of the tree, because the tree or the stack was full
+     */
+    long getTruncatedCalls() {
+        return truncatedCalls;
+    }
+
+}
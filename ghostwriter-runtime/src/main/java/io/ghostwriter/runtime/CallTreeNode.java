@@ -0,0 +1,101 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+/**
+ * A call path of the {@link CallTree}: the method of the frame called from the path of the parent node. A recursive
+ * method has a node for each level of the recursion. The counters are only written by the thread of the tree, other
+ * threads may see values that are a few calls behind.
+ */
+@Exclude
+final class CallTreeNode {
+
+    private final int index;
+
+    private final int frame;
+
+    private final CallTreeNode parent;
+
+    private final CallTreeNode nextSibling;
+
+    // the children are prepended, the volatile write publishes the complete node to the exporting threads
+    private volatile CallTreeNode firstChild;
+
+    private long calls;
+
+    private long errors;
+
+    private long inclusiveNanos;
+
+    private long exclusiveNanos;
+
+    /**
+     * @param index  position of the node in the tree, -1 for a node that is not stored in the tree
+     * @param frame  identifier of the method in the {@link SymbolTable} of the tracer, -1 for the root
+     * @param parent node of the caller, {@code null} for the root
+     */
+    CallTreeNode(int index, int frame, CallTreeNode parent) {
+        this.index = index;
+        this.frame = frame;
+        this.parent = parent;
+        if (parent != null && index >= 0) {
+            this.nextSibling = parent.firstChild;
+            parent.firstChild = this;
+        }
+        else {
+            this.nextSibling = null;
+        }
+    }
+
+    void exited(long inclusiveNanos, long exclusiveNanos, boolean isFailed) {
+        calls++;
+        if (isFailed) {
+            errors++;
+        }
+        this.inclusiveNanos += inclusiveNanos;
+        this.exclusiveNanos += exclusiveNanos;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getFrame() {
+        return frame;
+    }
+
+    CallTreeNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the most recently added child, the others are reached with {@link #getNextSibling()}
+     */
+    CallTreeNode getFirstChild() {
+        return firstChild;
+    }
+
+    CallTreeNode getNextSibling() {
+        return nextSibling;
+    }
+
+    long getCalls() {
+        return calls;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    long getInclusiveNanos() {
+        return inclusiveNanos;
+    }
+
+    /**
+     * @return time of the calls without the instrumented methods that they called
+     */
+    long getExclusiveNanos() {
+        return exclusiveNanos;
+    }
+
+}
@@ -0,0 +1,430 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.FixedArityTracer;
+import io.ghostwriter.openjdk.v7.runtime.PrimitiveTracer;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.openjdk.v7.runtime.SiteTracer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracer that builds the exact call tree of each thread from the {@code entering} and {@code exiting} events, without
+ * sampling: every path of instrumented methods is a node with its number of calls, failed calls and the inclusive and
+ * exclusive time of the calls. The methods are interned in a {@link SymbolTable}, a call of a known path does not
+ * allocate. A recursive call is a new level of the path, and an error thrown through the methods is paired the same
+ * way, because the instrumented methods report their exit after the {@code onError} event.
+ * <p>
+ * The trees are exported in the collapsed stack format of the FlameGraph tools with
+ * {@link #writeCollapsedStacks(Writer)} and in the trace event format of the Chrome tracing tools with
+ * {@link #writeChromeTrace(Writer)}. Each thread keeps its tree for the lifetime of the tracer, limited to
+ * {@code maxNodes} paths and {@code maxDepth} frames, the calls beyond the limits are only counted. The trees can be
+ * exported while the threads are running, the calls that are in progress are left out, but the completed calls below
+ * them are exported.
+ */
+@Exclude
+public final class CallTreeTracer implements SiteTracer, FixedArityTracer, PrimitiveTracer {
+
+    public static final int DEFAULT_MAX_NODES = 65536;
+
+    public static final int DEFAULT_MAX_DEPTH = 1024;
+
+    private final int maxNodes;
+
+    private final int maxDepth;
+
+    private final SymbolTable frames = new SymbolTable();
+
+    private final Object framesLock = new Object();
+
+    // identifiers of the frames shifted by one, 0 marks the sites that were not seen yet
+    private volatile int[] siteFrames = new int[0];
+
+    private final ClassValue<ConcurrentMap<String, Integer>> methodFrames = new ClassValue<ConcurrentMap<String, Integer>>() {
+        @Override
+        protected ConcurrentMap<String, Integer> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final List<CallTree> trees = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<CallTree> threadTree = new ThreadLocal<CallTree>() {
+        @Override
+        protected CallTree initialValue() {
+            final CallTree tree = new CallTree(Thread.currentThread(), maxNodes, maxDepth);
+            trees.add(tree);
+            return tree;
+        }
+    };
+
+    public CallTreeTracer() {
+        this(DEFAULT_MAX_NODES, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxNodes number of the call paths that are kept for each thread
+     * @param maxDepth number of the frames of a thread that are paired
+     */
+    public CallTreeTracer(int maxNodes, int maxDepth) {
+        if (maxNodes < 2 || maxDepth < 1) {
+            throw new IllegalArgumentException("The call tree needs at least 2 nodes and a positive stack depth: " + maxNodes + ", " + maxDepth);
+        }
+        this.maxNodes = maxNodes;
+        this.maxDepth = maxDepth;
+    }
+
+    private int frame(Site site) {
+        final int[] currentSiteFrames = siteFrames;
+        final int id = site.getId();
+        if (id < currentSiteFrames.length && currentSiteFrames[id] != 0) {
+            return currentSiteFrames[id] - 1;
+        }
+
+        synchronized (framesLock) {
+            if (id >= siteFrames.length) {
+                siteFrames = Arrays.copyOf(siteFrames, Math.max(Site.count(), id + 1));
+            }
+            if (siteFrames[id] == 0) {
+                siteFrames[id] = frames.intern(site.getClassName() + "#" + site.getMethodName()) + 1;
+            }
+            return siteFrames[id] - 1;
+        }
+    }
+
+    private int frame(Object source, String method) {
+        final Class<?> type = source instanceof Class ? (Class<?>) source : source.getClass();
+        final ConcurrentMap<String, Integer> typeMethods = methodFrames.get(type);
+        final Integer frame = typeMethods.get(method);
+        if (frame != null) {
+            return frame;
+        }
+        final int addedFrame = frames.intern(type.getName() + "#" + method);
+        typeMethods.putIfAbsent(method, addedFrame);
+        return addedFrame;
+    }
+
+    private void enter(int frame) {
+        threadTree.get().enter(frame, System.nanoTime());
+    }
+
+    private void exit(int frame) {
+        final long nanoTime = System.nanoTime();
+        threadTree.get().exit(frame, nanoTime);
+    }
+
+    private void fail(int frame) {
+        threadTree.get().fail(frame);
+    }
+
+    /**
+     * Writes a line for each call path with its exclusive time in nanoseconds, the frames separated by ';', for example
+     * {@code Main#main;Service#handle;Dao#query 1200}. The paths of every thread are merged. The output is the input of
+     * {@code flamegraph.pl --countname=ns}.
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        final Map<String, Long> stacks = new LinkedHashMap<>();
+        for (CallTree tree : trees) {
+            collapse(tree.getRoot(), new StringBuilder(), stacks);
+        }
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            writer.write(stack.getKey() + " " + stack.getValue() + "\n");
+        }
+        writer.flush();
+    }
+
+    private void collapse(CallTreeNode parent, StringBuilder path, Map<String, Long> stacks) {
+        final int parentLength = path.length();
+        for (CallTreeNode node : children(parent)) {
+            if (parentLength > 0) {
+                path.append(';');
+            }
+            path.append(frames.get(node.getFrame()));
+            // a frame that is still running for the first time has no line, only its completed children
+            final long exclusiveNanos = node.getExclusiveNanos();
+            if (exclusiveNanos > 0) {
+                final String stack = path.toString();
+                final Long mergedNanos = stacks.get(stack);
+                stacks.put(stack, mergedNanos == null ? exclusiveNanos : mergedNanos + exclusiveNanos);
+            }
+            collapse(node, path, stacks);
+            path.setLength(parentLength);
+        }
+    }
+
+    /**
+     * Writes the trees as a JSON trace that the Chrome tracing tools (chrome://tracing, Perfetto) display as a flame
+     * chart with a row for each thread. The calls of a path are merged into a single complete ("X") event that lasts
+     * for their total inclusive time, the children of a node are laid out one after the other from the start of their
+     * parent in the order they were first called. The timestamps are relative, they do not show when the calls happened.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+        boolean isFirst = true;
+        for (CallTree tree : trees) {
+            if (!isFirst) {
+                writer.write(',');
+            }
+            isFirst = false;
+            writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tree.getThreadId()
+                    + ",\"args\":{\"name\":" + jsonString(tree.getThreadName()) + "}}");
+            layout(tree.getRoot(), tree.getThreadId(), 0, writer);
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /**
+     * @return end of the children of the parent node
+     */
+    private long layout(CallTreeNode parent, long threadId, long startNanos, Writer writer) throws IOException {
+        long childStartNanos = startNanos;
+        for (CallTreeNode node : children(parent)) {
+            // a frame that is still running for the first time has no event, its completed children take its place
+            if (node.getCalls() > 0) {
+                // the timestamps of the format are in microseconds
+                writer.write(String.format(Locale.ROOT,
+                        ",\n{\"name\":%s,\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"calls\":%d,\"errors\":%d,\"self\":%.3f}}",
+                        jsonString(frames.get(node.getFrame())), threadId, childStartNanos / 1e3,
+                        node.getInclusiveNanos() / 1e3, node.getCalls(), node.getErrors(), node.getExclusiveNanos() / 1e3));
+            }
+            final long childrenEndNanos = layout(node, threadId, childStartNanos, writer);
+            childStartNanos = Math.max(childStartNanos + node.getInclusiveNanos(), childrenEndNanos);
+        }
+        return childStartNanos;
+    }
+
+    private static List<CallTreeNode> children(CallTreeNode parent) {
+        final List<CallTreeNode> children = new ArrayList<>();
+        for (CallTreeNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            // the children are prepended
+            children.add(child);
+        }
+        Collections.reverse(children);
+        return children;
+    }
+
+    private static String jsonString(String value) {
+        final StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char character = value.charAt(i);
+            if (character == '"' || character == '\\') {
+                json.append('\\').append(character);
+            }
+            else if (character < 0x20) {
+                json.append(String.format("\\u%04x", (int) character));
+            }
+            else {
+                json.append(character);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * @return number of the calls that are not part of the trees, because a tree had {@code maxNodes} paths or the
+     * stack of the thread was deeper than {@code maxDepth} frames
+     */
+    public long getTruncatedCalls() {
+        long truncatedCalls = 0;
+        for (CallTree tree : trees) {
+            truncatedCalls += tree.getTruncatedCalls();
+        }
+        return truncatedCalls;
+    }
+
+    @Override
+    public void entering0(Object source, Site site) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, Object arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, int arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, long arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, double arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, float arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, boolean arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, char arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, short arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, byte arg0) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering2(Object source, Site site, Object arg0, Object arg1) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void entering(Object source, Site site, Object[] arguments) {
+        enter(frame(site));
+    }
+
+    @Override
+    public void exiting(Object source, Site site) {
+        exit(frame(site));
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, Object value) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, Object returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, Site site, Throwable error) {
+        fail(frame(site));
+    }
+
+    @Override
+    public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, int value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, long value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, double value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, float value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, boolean value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, char value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, short value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, byte value) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, int returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, long returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, double returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, float returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, boolean returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, char returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, short returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, byte returnValue) {
+    }
+
+    @Override
+    public void entering(Object source, String method, Object... params) {
+        enter(frame(source, method));
+    }
+
+    @Override
+    public void exiting(Object source, String method) {
+        exit(frame(source, method));
+    }
+
+    @Override
+    public void valueChange(Object source, String method, String variable, Object newValue) {
+    }
+
+    @Override
+    public <T> void returning(Object source, String method, T returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+        fail(frame(source, method));
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+    }
+
+}
@@ -0,0 +1,97 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The most recent {@link TraceRecord}s of a thread. The owner thread overwrites the oldest record when the history is
+ * full, other threads can take a consistent copy of the history while the owner keeps writing.
+ */
+@Exclude
+final class EventHistory {
+
+    private final long[] records;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final long threadId;
+
+    private final WeakReference<Thread> owner;
+
+    // number of the records written so far, only written by the owner
+    private final AtomicLong count = new AtomicLong();
+
+    // identity of the last error whose history was dumped, only used by the owner
+    private int lastDumpedError;
+
+    /**
+     * @param capacity number of records, a power of two
+     */
+    EventHistory(int capacity, Thread owner) {
+        this.records = new long[capacity * TraceRecord.WORDS];
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threadId = owner.getId();
+        this.owner = new WeakReference<>(owner);
+    }
+
+    /**
+     * Called by the owner thread only.
+     */
+    void write(long header, long nanoTime, long aux, long payload) {
+        final long position = count.get();
+        final int offset = (int) (position & mask) * TraceRecord.WORDS;
+        records[offset] = header;
+        records[offset + 1] = nanoTime;
+        records[offset + 2] = aux;
+        records[offset + 3] = payload;
+        count.lazySet(position + 1);
+    }
+
+    /**
+     * Passes the records of the history to the handler, oldest first. If the owner writes while the history is
+     * copied, the records that it could have overwritten are left out.
+     *
+     * @return number of the records passed to the handler
+     */
+    int replay(TraceRecord record, TraceRecordHandler handler) {
+        final long end = count.get();
+        final long[] copy = records.clone();
+        final long start = Math.max(0, count.get() - capacity);
+        for (long position = start; position < end; position++) {
+            final int offset = (int) (position & mask) * TraceRecord.WORDS;
+            record.set(threadId, copy[offset], copy[offset + 1], copy[offset + 2], copy[offset + 3]);
+            handler.handle(record);
+        }
+        return (int) Math.max(0, end - start);
+    }
+
+    /**
+     * Called by the owner thread only. An error is reported by each method that it leaves, only the first report
+     * should dump the history.
+     *
+     * @return whether the error is different from the one that was dumped last
+     */
+    boolean isNewError(Throwable error) {
+        final int identity = System.identityHashCode(error);
+        if (identity == lastDumpedError) {
+            return false;
+        }
+        lastDumpedError = identity;
+        return true;
+    }
+
+    boolean isOwnerAlive() {
+        final Thread thread = owner.get();
+        return thread != null && thread.isAlive();
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+}
@@ -0,0 +1,17 @@
+package io.ghostwriter.runtime;
+
+/**
+ * Receives the history of a thread that the {@link FlightRecorderTracer} dumps. Dumps are never interleaved, each
+ * {@link #begin} is followed by the records of the history, oldest first, and then by {@link #end()}.
+ */
+public interface FlightRecordHandler extends TraceRecordHandler {
+
+    /**
+     * @param threadId thread of the history
+     * @param trigger  reason of the dump, for example the error that was thrown
+     */
+    void begin(long threadId, String trigger);
+
+    void end();
+
+}
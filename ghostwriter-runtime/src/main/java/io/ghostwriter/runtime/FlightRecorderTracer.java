@@ -0,0 +1,163 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracer that keeps only the most recent events of each thread and dumps them when they are needed: when an
+ * {@code onError} or {@code timeout} event is reported, or on demand with {@link #dump(String)}. In the steady state an
+ * event costs as much as writing its binary {@link TraceRecord} into the history of the thread, nothing is serialized.
+ * Arguments and values are kept as summaries, primitives by their value and objects by their class and identity hash
+ * code, so the history does not retain the traced objects.
+ * <p>
+ * An error that is not caught is reported by every instrumented method that it leaves, its history is only dumped when
+ * it is reported first. The later reports are still recorded and show up in the next dump.
+ * <p>
+ * The histories of the threads that finished are kept for the next {@link #dump(String)}, but only the last
+ * {@link #RETAINED_FINISHED_HISTORIES} of them, the older ones are released when a new thread reports its first event.
+ */
+@Exclude
+public final class FlightRecorderTracer extends BinaryEventTracer {
+
+    public static final int DEFAULT_HISTORY_SIZE = 256;
+
+    public static final int RETAINED_FINISHED_HISTORIES = 16;
+
+    private final int historySize;
+
+    private final FlightRecordHandler handler;
+
+    private final List<EventHistory> histories = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<EventHistory> threadHistory = new ThreadLocal<EventHistory>() {
+        @Override
+        protected EventHistory initialValue() {
+            final EventHistory history = new EventHistory(historySize, Thread.currentThread());
+            releaseFinishedHistories();
+            histories.add(history);
+            return history;
+        }
+    };
+
+    private final Object dumpLock = new Object();
+
+    public FlightRecorderTracer(FlightRecordHandler handler) {
+        this(DEFAULT_HISTORY_SIZE, handler);
+    }
+
+    /**
+     * @param historySize number of the events that are kept for each thread, rounded up to a power of two
+     * @param handler     receives the dumped histories
+     */
+    public FlightRecorderTracer(int historySize, FlightRecordHandler handler) {
+        super(new SymbolTable());
+        if (historySize < 1 || historySize > 1 << 20) {
+            throw new IllegalArgumentException("Flight record history size must be between 1 and 2^20 events: " + historySize);
+        }
+        final int highestBit = Integer.highestOneBit(historySize);
+        this.historySize = highestBit == historySize ? historySize : highestBit << 1;
+        this.handler = handler;
+    }
+
+    // threads that come and go without a dump on demand would keep their histories otherwise
+    private void releaseFinishedHistories() {
+        int finishedHistories = 0;
+        for (EventHistory history : histories) {
+            if (!history.isOwnerAlive()) {
+                ++finishedHistories;
+            }
+        }
+        // the histories are in the order of the registration, the oldest ones are released first
+        for (EventHistory history : histories) {
+            if (finishedHistories <= RETAINED_FINISHED_HISTORIES) {
+                break;
+            }
+            if (!history.isOwnerAlive() && histories.remove(history)) {
+                --finishedHistories;
+            }
+        }
+    }
+
+    @Override
+    protected void write(long header, long nanoTime, long aux, long payload) {
+        threadHistory.get().write(header, nanoTime, aux, payload);
+    }
+
+    private void dump(EventHistory history, String trigger) {
+        final TraceRecord record = new TraceRecord(getSymbols());
+        synchronized (dumpLock) {
+            handler.begin(history.getThreadId(), trigger);
+            history.replay(record, handler);
+            handler.end();
+        }
+    }
+
+    private void dumpError(String method, Throwable error) {
+        final EventHistory history = threadHistory.get();
+        if (history.isNewError(error)) {
+            dump(history, "onError " + error + " in " + method);
+        }
+    }
+
+    /**
+     * Dumps the history of the calling thread.
+     *
+     * @param trigger reason of the dump that is passed to the handler
+     */
+    public void dumpCurrentThread(String trigger) {
+        dump(threadHistory.get(), trigger);
+    }
+
+    /**
+     * Dumps the history of every thread that reported an event. The histories of the other threads are copied while
+     * those threads keep running, the events that they overwrite during the copy are left out. The histories of the
+     * threads that finished are dumped once more and then released.
+     *
+     * @param trigger reason of the dump that is passed to the handler
+     */
+    public void dump(String trigger) {
+        for (EventHistory history : histories) {
+            final boolean isOwnerAlive = history.isOwnerAlive();
+            dump(history, trigger);
+            if (!isOwnerAlive) {
+                histories.remove(history);
+            }
+        }
+    }
+
+    /**
+     * @return number of the events that are kept for each thread
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    @Override
+    public void onError(Object source, Site site, Throwable error) {
+        super.onError(source, site, error);
+        dumpError(site.getClassName() + "#" + site.getMethodName(), error);
+    }
+
+    @Override
+    public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+        super.timeout(source, site, timeoutThreshold, timeout);
+        dumpCurrentThread("timeout of " + site.getClassName() + "#" + site.getMethodName() + " after " + timeout
+                + " ms, threshold " + timeoutThreshold + " ms");
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+        super.onError(source, method, error);
+        dumpError(method, error);
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        super.timeout(source, method, timeoutThreshold, timeout);
+        dumpCurrentThread("timeout of " + method + " after " + timeout + " ms, threshold " + timeoutThreshold + " ms");
+    }
+
+}
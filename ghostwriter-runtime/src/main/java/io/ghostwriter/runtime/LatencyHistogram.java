@@ -0,0 +1,77 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in nanoseconds: each power of two is split into 8 linear buckets, so a value is
+ * counted in a bucket whose bounds are within 12.5% of it. Every value of a long fits in the 488 buckets, the memory of
+ * the histogram does not depend on the number or range of the recorded values. Recording does not lock.
+ */
+@Exclude
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    public static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param nanos duration, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the smallest value that is counted in the bucket
+     */
+    public static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @return the largest value that is counted in the bucket
+     */
+    public static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    /**
+     * @return count of each bucket, values recorded during the copy may or may not be included
+     */
+    public long[] getCounts() {
+        final long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * @param sums count of each bucket, the counts of this histogram are added to them
+     */
+    void addCountsTo(long[] sums) {
+        for (int i = 0; i < BUCKETS; i++) {
+            sums[i] += counts.get(i);
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracer that appends the binary records of the events to memory mapped segment files. The records are stored in the
+ * page cache of the operating system as soon as they are written, so the trace of a JVM that was killed or crashed
+ * (for example by an {@code OutOfMemoryError} or a native crash) can still be read by the {@link TraceFileReader}.
+ * Data that was not flushed is only lost if the operating system itself stops.
+ * <p>
+ * The trace directory contains the segments ({@code trace-000000.gwt}, ...) and the {@code trace.symbols} file with the
+ * names and sites that the records refer to. Each segment has a fixed size, when it is full the next segment is created
+ * and only the last {@code maxSegments} segments are kept. Threads claim the space of their records with an atomic
+ * increment and write them without locking. The header of a record is written last, readers skip the records whose
+ * header is still empty.
+ */
+@Exclude
+public final class MappedFileTracer extends BinaryEventTracer implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    // the claimed positions of a full segment keep growing until it is replaced, they must not overflow
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    static final String SEGMENT_SUFFIX = ".gwt";
+
+    static final String SYMBOLS_FILE = "trace.symbols";
+
+    static final int MAGIC = 0x47575452;
+
+    static final int VERSION = 1;
+
+    // magic, version, record size, sequence, start time in millis and in nanos
+    static final int SEGMENT_HEADER_BYTES = 64;
+
+    // the thread id is stored with every record, unlike in the buffers of a single thread
+    static final int RECORD_BYTES = TraceRecord.BYTES + 8;
+
+    static final String SYMBOL_ENTRY = "S";
+
+    static final String SITE_ENTRY = "M";
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final long startNanos = System.nanoTime();
+
+    private final Object dictionaryLock = new Object();
+
+    private final OutputStream dictionary;
+
+    private final Deque<File> segmentFiles = new ArrayDeque<>();
+
+    private volatile Segment currentSegment;
+
+    private volatile boolean[] definedSites = new boolean[0];
+
+    private volatile boolean isClosed = false;
+
+    public MappedFileTracer(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * @param directory   directory of the trace, it must not contain another trace
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSegments number of the most recent segments that are kept
+     */
+    public MappedFileTracer(File directory, int segmentSize, int maxSegments) {
+        this(directory, segmentSize, maxSegments, new DictionaryWriter());
+    }
+
+    private MappedFileTracer(File directory, int segmentSize, int maxSegments, DictionaryWriter dictionaryWriter) {
+        super(new SymbolTable(dictionaryWriter));
+        if (segmentSize < SEGMENT_HEADER_BYTES + RECORD_BYTES || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Trace segments must be between " + (SEGMENT_HEADER_BYTES + RECORD_BYTES) + " and "
+                    + MAX_SEGMENT_SIZE + " bytes: " + segmentSize);
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("At least 2 trace segments have to be kept, so the segment that is being filled is not deleted: " + maxSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Could not create the trace directory: " + directory);
+        }
+        if (new File(directory, SYMBOLS_FILE).exists()) {
+            throw new IllegalStateException("The directory already contains a trace, use a separate directory for each run: " + directory);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        try {
+            this.dictionary = new FileOutputStream(new File(directory, SYMBOLS_FILE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the trace symbols: " + directory, e);
+        }
+        dictionaryWriter.tracer = this;
+        this.currentSegment = createSegment(0);
+    }
+
+    /**
+     * Writes the symbols into the dictionary of the trace, the tracer is assigned after the table is created.
+     */
+    private static final class DictionaryWriter implements SymbolTable.Listener {
+
+        private MappedFileTracer tracer;
+
+        @Override
+        public void added(int id, String symbol) {
+            tracer.writeDictionaryEntry(SYMBOL_ENTRY + "\t" + id + "\t" + symbol);
+        }
+
+    }
+
+    private static final class Segment {
+
+        private final MappedByteBuffer buffer;
+
+        private final int sequence;
+
+        private final AtomicInteger position = new AtomicInteger(SEGMENT_HEADER_BYTES);
+
+        private Segment(MappedByteBuffer buffer, int sequence) {
+            this.buffer = buffer;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return offset of the claimed record, or -1 if the segment is full
+         */
+        private int claim() {
+            final int offset = position.getAndAdd(RECORD_BYTES);
+            return offset <= buffer.capacity() - RECORD_BYTES ? offset : -1;
+        }
+
+        private void write(int offset, long header, long threadId, long nanoTime, long aux, long payload) {
+            buffer.putLong(offset + 8, threadId);
+            buffer.putLong(offset + 16, nanoTime);
+            buffer.putLong(offset + 24, aux);
+            buffer.putLong(offset + 32, payload);
+            // a record with an empty header is skipped by the reader, the header marks the record as complete
+            buffer.putLong(offset, header);
+        }
+
+    }
+
+    private void writeDictionaryEntry(String entry) {
+        synchronized (dictionaryLock) {
+            if (isClosed) {
+                return;
+            }
+            try {
+                // unbuffered, each entry is handed to the operating system before the records can refer to it
+                dictionary.write((entry + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write the trace symbols: " + directory, e);
+            }
+        }
+    }
+
+    static File segmentFile(File directory, int sequence) {
+        return new File(directory, String.format("trace-%06d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private Segment createSegment(int sequence) {
+        final File file = segmentFile(directory, sequence);
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file, "rw")) {
+            // the new file is filled with zeros, so the unwritten records have an empty header
+            segmentFile.setLength(segmentSize);
+            final MappedByteBuffer buffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_BYTES);
+            buffer.putInt(12, sequence);
+            buffer.putLong(16, startMillis);
+            buffer.putLong(24, startNanos);
+            segmentFiles.addLast(file);
+            return new Segment(buffer, sequence);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the trace segment: " + file, e);
+        }
+    }
+
+    private synchronized void roll(Segment fullSegment) {
+        if (currentSegment != fullSegment || isClosed) {
+            return;
+        }
+        currentSegment = createSegment(fullSegment.sequence + 1);
+        while (segmentFiles.size() > maxSegments) {
+            final File oldestFile = segmentFiles.removeFirst();
+            if (!oldestFile.delete()) {
+                throw new IllegalStateException("Could not delete the trace segment: " + oldestFile);
+            }
+        }
+    }
+
+    private void defineSite(int siteId) {
+        final boolean[] sites = definedSites;
+        if (siteId < sites.length && sites[siteId]) {
+            return;
+        }
+
+        final Site site = Site.byId(siteId);
+        // the symbol is written to the dictionary before the site that refers to it
+        final int methodSymbol = getSymbols().intern(site.getClassName() + "#" + site.getMethodName());
+        synchronized (dictionaryLock) {
+            if (siteId >= definedSites.length) {
+                definedSites = Arrays.copyOf(definedSites, Math.max(Site.count(), siteId + 1));
+            }
+            if (!definedSites[siteId]) {
+                writeDictionaryEntry(SITE_ENTRY + "\t" + siteId + "\t" + methodSymbol + "\t" + site.getSignature() + "\t" + site.getLine());
+                definedSites[siteId] = true;
+            }
+        }
+    }
+
+    @Override
+    protected void write(long header, long nanoTime, long aux, long payload) {
+        if (isClosed) {
+            return;
+        }
+        if (TraceRecord.hasSite(header)) {
+            defineSite(TraceRecord.id(header));
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        while (true) {
+            final Segment segment = currentSegment;
+            final int offset = segment.claim();
+            if (offset != -1) {
+                segment.write(offset, header, threadId, nanoTime, aux, payload);
+                return;
+            }
+            roll(segment);
+        }
+    }
+
+    /**
+     * @return directory of the segments and the symbols
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the current segment to the disk, for example before the files are copied while the application runs.
+     */
+    public void force() {
+        currentSegment.buffer.force();
+    }
+
+    /**
+     * Stops recording and writes the current segment to the disk. Events reported after closing are ignored.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        force();
+        synchronized (dictionaryLock) {
+            dictionary.close();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counters of a single method, striped by thread: each thread updates the counters of its own stripe, so threads of
+ * different stripes do not contend on the same cache line. The latency histogram is striped the same way, the histogram
+ * of a stripe is only allocated when a thread of the stripe records its first duration. The stripes are summed when a
+ * snapshot is taken.
+ */
+@Exclude
+final class MethodStatistics {
+
+    private static final int COUNT = 0;
+
+    private static final int ERRORS = 1;
+
+    private static final int TIMEOUTS = 2;
+
+    private static final int INCLUSIVE_NANOS = 3;
+
+    private static final int EXCLUSIVE_NANOS = 4;
+
+    private static final int MAX_NANOS = 5;
+
+    // two cache lines for each stripe, the array is not aligned to the cache lines
+    private static final int STRIPE_LONGS = 16;
+
+    private final String method;
+
+    private final AtomicLongArray stripes;
+
+    private final int stripeCount;
+
+    private final AtomicReferenceArray<LatencyHistogram> histograms;
+
+    MethodStatistics(String method, int stripeCount) {
+        this.method = method;
+        this.stripeCount = stripeCount;
+        this.stripes = new AtomicLongArray(stripeCount * STRIPE_LONGS);
+        this.histograms = new AtomicReferenceArray<>(stripeCount);
+    }
+
+    private LatencyHistogram histogram(int stripe) {
+        final LatencyHistogram histogram = histograms.get(stripe);
+        if (histogram != null) {
+            return histogram;
+        }
+        // another thread of the stripe can allocate it at the same time, only one of them is kept
+        histograms.compareAndSet(stripe, null, new LatencyHistogram());
+        return histograms.get(stripe);
+    }
+
+    void exited(int stripe, long inclusiveNanos, long exclusiveNanos, boolean isFailed) {
+        final int offset = stripe * STRIPE_LONGS;
+        stripes.incrementAndGet(offset + COUNT);
+        if (isFailed) {
+            stripes.incrementAndGet(offset + ERRORS);
+        }
+        stripes.addAndGet(offset + INCLUSIVE_NANOS, inclusiveNanos);
+        stripes.addAndGet(offset + EXCLUSIVE_NANOS, exclusiveNanos);
+        long maxNanos = stripes.get(offset + MAX_NANOS);
+        while (inclusiveNanos > maxNanos && !stripes.compareAndSet(offset + MAX_NANOS, maxNanos, inclusiveNanos)) {
+            maxNanos = stripes.get(offset + MAX_NANOS);
+        }
+        histogram(stripe).record(inclusiveNanos);
+    }
+
+    void timedOut(int stripe) {
+        stripes.incrementAndGet(stripe * STRIPE_LONGS + TIMEOUTS);
+    }
+
+    MethodStatisticsSnapshot snapshot() {
+        long count = 0;
+        long errors = 0;
+        long timeouts = 0;
+        long inclusiveNanos = 0;
+        long exclusiveNanos = 0;
+        long maxNanos = 0;
+        final long[] histogram = new long[LatencyHistogram.BUCKETS];
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            final int offset = stripe * STRIPE_LONGS;
+            count += stripes.get(offset + COUNT);
+            errors += stripes.get(offset + ERRORS);
+            timeouts += stripes.get(offset + TIMEOUTS);
+            inclusiveNanos += stripes.get(offset + INCLUSIVE_NANOS);
+            exclusiveNanos += stripes.get(offset + EXCLUSIVE_NANOS);
+            maxNanos = Math.max(maxNanos, stripes.get(offset + MAX_NANOS));
+            final LatencyHistogram stripeHistogram = histograms.get(stripe);
+            if (stripeHistogram != null) {
+                stripeHistogram.addCountsTo(histogram);
+            }
+        }
+        return new MethodStatisticsSnapshot(method, count, errors, timeouts, inclusiveNanos, exclusiveNanos, maxNanos,
+                histogram);
+    }
+
+}
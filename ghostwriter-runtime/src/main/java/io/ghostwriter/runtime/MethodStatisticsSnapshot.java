@@ -0,0 +1,131 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+/**
+ * Statistics of a method at the time of the snapshot. The durations are inclusive (including the time spent in the
+ * instrumented methods that it called) unless stated otherwise. The counters are read one by one while the
+ * application is running, so they can be off by the calls that completed in the meantime.
+ */
+@Exclude
+public final class MethodStatisticsSnapshot {
+
+    private final String method;
+
+    private final long count;
+
+    private final long errorCount;
+
+    private final long timeoutCount;
+
+    private final long inclusiveNanos;
+
+    private final long exclusiveNanos;
+
+    private final long maxNanos;
+
+    private final long[] histogram;
+
+    MethodStatisticsSnapshot(String method, long count, long errorCount, long timeoutCount, long inclusiveNanos,
+                             long exclusiveNanos, long maxNanos, long[] histogram) {
+        this.method = method;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.timeoutCount = timeoutCount;
+        this.inclusiveNanos = inclusiveNanos;
+        this.exclusiveNanos = exclusiveNanos;
+        this.maxNanos = maxNanos;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @return class and method name separated by '#'
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return number of the completed calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of the calls that ended with an error
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return ratio of the calls that ended with an error, between 0 and 1
+     */
+    public double getErrorRate() {
+        return count == 0 ? 0 : (double) errorCount / count;
+    }
+
+    /**
+     * @return number of the calls that exceeded their {@code @Timeout} threshold
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getInclusiveNanos() {
+        return inclusiveNanos;
+    }
+
+    /**
+     * @return time spent in the method itself, without the instrumented methods that it called
+     */
+    public long getExclusiveNanos() {
+        return exclusiveNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : inclusiveNanos / count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param quantile between 0 and 1, for example 0.99
+     * @return upper bound of the histogram bucket of the quantile, at most the maximum duration
+     */
+    public long getPercentileNanos(double quantile) {
+        long total = 0;
+        for (long bucketCount : histogram) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulativeCount = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            cumulativeCount += histogram[bucket];
+            if (cumulativeCount >= rank) {
+                return Math.min(maxNanos, LatencyHistogram.upperBound(bucket));
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * @return count of each bucket of the {@link LatencyHistogram} of the inclusive durations
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return method + " calls=" + count + " errors=" + errorCount + " timeouts=" + timeoutCount
+                + " mean=" + getMeanNanos() + "ns max=" + maxNanos + "ns";
+    }
+
+}
@@ -0,0 +1,109 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single producer, single consumer queue of {@link TraceRecord}s that belongs to one thread. The owner
+ * thread writes the records, the drainer reads them, neither of them locks. If the drainer falls behind, the new
+ * records are dropped and counted instead of blocking the traced code.
+ */
+@Exclude
+final class RingBuffer {
+
+    private final long[] records;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final long threadId;
+
+    private final WeakReference<Thread> owner;
+
+    // index of the next record to read, only written by the drainer
+    private final AtomicLong head = new AtomicLong();
+
+    // index of the next record to write, only written by the owner
+    private final AtomicLong tail = new AtomicLong();
+
+    // last head seen by the owner, so the owner does not read the shared counter on every write
+    private long cachedHead;
+
+    private volatile long droppedCount;
+
+    /**
+     * @param capacity number of records, a power of two
+     */
+    RingBuffer(int capacity, Thread owner) {
+        this.records = new long[capacity * TraceRecord.WORDS];
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threadId = owner.getId();
+        this.owner = new WeakReference<>(owner);
+    }
+
+    /**
+     * Called by the owner thread only.
+     *
+     * @return false if the buffer was full and the record was dropped
+     */
+    boolean write(long header, long nanoTime, long aux, long payload) {
+        final long position = tail.get();
+        if (position - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (position - cachedHead >= capacity) {
+                // single writer, the increment does not have to be atomic
+                droppedCount = droppedCount + 1;
+                return false;
+            }
+        }
+
+        final int offset = (int) (position & mask) * TraceRecord.WORDS;
+        records[offset] = header;
+        records[offset + 1] = nanoTime;
+        records[offset + 2] = aux;
+        records[offset + 3] = payload;
+        // publishes the record to the drainer
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Called by a single drainer at a time.
+     *
+     * @return number of the records passed to the handler
+     */
+    int drain(TraceRecord record, TraceRecordHandler handler) {
+        final long start = head.get();
+        final long end = tail.get();
+        for (long position = start; position < end; position++) {
+            final int offset = (int) (position & mask) * TraceRecord.WORDS;
+            record.set(threadId, records[offset], records[offset + 1], records[offset + 2], records[offset + 3]);
+            handler.handle(record);
+        }
+        // frees the space of the read records for the owner
+        head.lazySet(end);
+        return (int) (end - start);
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    boolean isOwnerAlive() {
+        final Thread thread = owner.get();
+        return thread != null && thread.isAlive();
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracer that writes the binary {@link TraceRecord}s of the events into a preallocated ring buffer of the reporting
+ * thread. Threads never share a buffer, so writing an event does not lock and does not allocate, the only shared state
+ * is the registration of a buffer at the first event of a thread.
+ * <p>
+ * The records are consumed by calling {@link #drain}, usually from the background thread of the
+ * {@link RingBufferTracerProvider}. If a buffer is full, the events of its thread are dropped until the drainer catches
+ * up, see {@link #getDroppedCount()}. The {@code entering} event and its arguments are separate records, so the
+ * arguments of an event can be dropped on their own.
+ */
+@Exclude
+public final class RingBufferTracer extends BinaryEventTracer {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final int capacity;
+
+    private final List<RingBuffer> buffers = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<RingBuffer> threadBuffer = new ThreadLocal<RingBuffer>() {
+        @Override
+        protected RingBuffer initialValue() {
+            final RingBuffer buffer = new RingBuffer(capacity, Thread.currentThread());
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    private final Object drainLock = new Object();
+
+    private final AtomicLong droppedCountOfFinishedThreads = new AtomicLong();
+
+    private final TraceRecord record;
+
+    public RingBufferTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of records in the buffer of each thread, rounded up to a power of two
+     */
+    public RingBufferTracer(int capacity) {
+        super(new SymbolTable());
+        if (capacity < 1 || capacity > 1 << 26) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^26 records: " + capacity);
+        }
+        final int highestBit = Integer.highestOneBit(capacity);
+        this.capacity = highestBit == capacity ? capacity : highestBit << 1;
+        this.record = new TraceRecord(getSymbols());
+    }
+
+    @Override
+    protected void write(long header, long nanoTime, long aux, long payload) {
+        threadBuffer.get().write(header, nanoTime, aux, payload);
+    }
+
+    /**
+     * Passes the records written since the previous call to the handler, in the order they were written by each thread.
+     * Records of different threads are not ordered, use {@link TraceRecord#getNanoTime()} to merge them. The buffers of
+     * the threads that finished are released once they are drained.
+     *
+     * @param handler receives the records on the calling thread
+     * @return number of the drained records
+     */
+    public int drain(TraceRecordHandler handler) {
+        synchronized (drainLock) {
+            int drainedCount = 0;
+            for (RingBuffer buffer : buffers) {
+                final boolean isOwnerAlive = buffer.isOwnerAlive();
+                drainedCount += buffer.drain(record, handler);
+                // the owner cannot write anymore, so the buffer stays empty
+                if (!isOwnerAlive) {
+                    droppedCountOfFinishedThreads.addAndGet(buffer.getDroppedCount());
+                    buffers.remove(buffer);
+                }
+            }
+            return drainedCount;
+        }
+    }
+
+    /**
+     * @return number of the records that were dropped because the buffer of their thread was full
+     */
+    public long getDroppedCount() {
+        long droppedCount = droppedCountOfFinishedThreads.get();
+        for (RingBuffer buffer : buffers) {
+            droppedCount += buffer.getDroppedCount();
+        }
+        return droppedCount;
+    }
+
+    /**
+     * @return number of records in the buffer of each thread
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.TracerProvider;
+import io.ghostwriter.annotation.Exclude;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides a {@link RingBufferTracer} together with a daemon thread that drains its buffers into a handler:
+ * <pre>
+ * final RingBufferTracerProvider provider = new RingBufferTracerProvider(handler);
+ * GhostWriterHooks.setTracerProvider(provider);
+ * ...
+ * provider.close();
+ * </pre>
+ * The drainer sleeps for the poll interval whenever there was nothing to drain. Closing the provider stops the thread
+ * and passes the remaining records to the handler.
+ */
+@Exclude
+public final class RingBufferTracerProvider implements TracerProvider<RingBufferTracer>, Closeable {
+
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1;
+
+    private final RingBufferTracer tracer;
+
+    private final TraceRecordHandler handler;
+
+    private final long pollIntervalMillis;
+
+    private final Thread drainer;
+
+    private volatile boolean isRunning = true;
+
+    public RingBufferTracerProvider(TraceRecordHandler handler) {
+        this(new RingBufferTracer(), handler, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param tracer             tracer whose buffers are drained
+     * @param handler            receives the records on the drainer thread
+     * @param pollIntervalMillis sleep time of the drainer after it found all buffers empty
+     */
+    public RingBufferTracerProvider(RingBufferTracer tracer, TraceRecordHandler handler, long pollIntervalMillis) {
+        this.tracer = tracer;
+        this.handler = handler;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainContinuously();
+            }
+        }, "ghostwriter-ring-buffer-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    private void drainContinuously() {
+        while (isRunning) {
+            if (tracer.drain(handler) > 0) {
+                continue;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public RingBufferTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Stops the drainer thread and drains the records that were written until now.
+     */
+    @Override
+    public void close() {
+        // the drainer is not interrupted, the handler could be writing to an interruptible channel
+        isRunning = false;
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tracer.drain(handler);
+    }
+
+}
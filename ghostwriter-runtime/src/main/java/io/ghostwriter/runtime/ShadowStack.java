@@ -0,0 +1,123 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the instrumented methods that a thread is executing, rebuilt from the {@code entering} and {@code exiting}
+ * events. Each frame keeps its start time and the time spent in the methods that it called, so the inclusive and
+ * exclusive duration of a method are known when it exits. Used by a single thread, the arrays only grow until the
+ * deepest stack of the thread is reached.
+ * <p>
+ * Frames deeper than the maximum depth are counted but not stored, their exits only decrease the count. An exit that
+ * does not match the top frame closes the frames above the matching one, those methods did not report their exit, for
+ * example because the tracer was installed while they were running.
+ */
+@Exclude
+final class ShadowStack<T> {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final int maxDepth;
+
+    private Object[] frames = new Object[INITIAL_DEPTH];
+
+    private long[] startNanos = new long[INITIAL_DEPTH];
+
+    private long[] childNanos = new long[INITIAL_DEPTH];
+
+    private boolean[] isFailed = new boolean[INITIAL_DEPTH];
+
+    private int depth;
+
+    private int overflowDepth;
+
+    // results of the last exit, read by the caller right after exit() returned true
+    long inclusiveNanos;
+
+    long exclusiveNanos;
+
+    boolean isExitFailed;
+
+    ShadowStack(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    void enter(T frame, long nanoTime) {
+        if (depth == maxDepth) {
+            overflowDepth++;
+            return;
+        }
+        if (depth == frames.length) {
+            final int grownDepth = Math.min(maxDepth, depth * 2);
+            frames = Arrays.copyOf(frames, grownDepth);
+            startNanos = Arrays.copyOf(startNanos, grownDepth);
+            childNanos = Arrays.copyOf(childNanos, grownDepth);
+            isFailed = Arrays.copyOf(isFailed, grownDepth);
+        }
+        frames[depth] = frame;
+        startNanos[depth] = nanoTime;
+        childNanos[depth] = 0;
+        isFailed[depth] = false;
+        depth++;
+    }
+
+    /**
+     * @return whether a frame of the method was closed, its durations are in the fields of the stack
+     */
+    boolean exit(T frame, long nanoTime) {
+        if (overflowDepth > 0) {
+            overflowDepth--;
+            return false;
+        }
+        int index = depth - 1;
+        while (index >= 0 && frames[index] != frame) {
+            index--;
+        }
+        if (index == -1) {
+            return false;
+        }
+
+        inclusiveNanos = nanoTime - startNanos[index];
+        exclusiveNanos = Math.max(0, inclusiveNanos - childNanos[index]);
+        isExitFailed = isFailed[index];
+        // releases the frames, so the stack does not retain the methods
+        Arrays.fill(frames, index, depth, null);
+        depth = index;
+        if (index > 0) {
+            childNanos[index - 1] += inclusiveNanos;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the top frame of the method as failed, an error was thrown out of it.
+     */
+    void fail(T frame) {
+        if (overflowDepth == 0 && depth > 0 && frames[depth - 1] == frame) {
+            isFailed[depth - 1] = true;
+        }
+    }
+
+    /**
+     * @return whether the stack is deeper than the maximum depth, the next exit does not close a stored frame
+     */
+    boolean isOverflowed() {
+        return overflowDepth > 0;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    @SuppressWarnings("unchecked")
+    T getFrame(int index) {
+        return (T) frames[index];
+    }
+
+}
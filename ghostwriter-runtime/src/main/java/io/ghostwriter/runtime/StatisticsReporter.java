@@ -0,0 +1,73 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the report of a {@link StatisticsTracer} periodically from a daemon thread:
+ * <pre>
+ * final StatisticsTracer tracer = new StatisticsTracer();
+ * GhostWriterHooks.setTracerProvider(...);
+ * final StatisticsReporter reporter = new StatisticsReporter(tracer, writer, 1, TimeUnit.MINUTES);
+ * </pre>
+ * The statistics are cumulative, each report contains every call since the tracer was created.
+ */
+@Exclude
+public final class StatisticsReporter implements Closeable {
+
+    private final StatisticsTracer tracer;
+
+    private final Writer writer;
+
+    private final ScheduledExecutorService executor;
+
+    public StatisticsReporter(StatisticsTracer tracer, Writer writer, long period, TimeUnit unit) {
+        this.tracer = tracer;
+        this.writer = writer;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ghostwriter-statistics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, period, period, unit);
+    }
+
+    private void report() {
+        try {
+            tracer.writeReport(writer);
+        } catch (IOException e) {
+            // the reports are stopped, the application keeps running
+            throw new IllegalStateException("Could not write the GhostWriter method statistics", e);
+        }
+    }
+
+    /**
+     * Stops the periodic reports and writes the final one.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tracer.writeReport(writer);
+    }
+
+}
@@ -0,0 +1,394 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.FixedArityTracer;
+import io.ghostwriter.openjdk.v7.runtime.PrimitiveTracer;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.openjdk.v7.runtime.SiteTracer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracer that aggregates the events instead of recording them: the number of calls, errors and timeouts of each
+ * method, the sum of their inclusive and exclusive durations and a {@link LatencyHistogram} of the inclusive
+ * durations. The {@code entering} and {@code exiting} events are paired on a {@link ShadowStack} of the thread, the
+ * exclusive duration of a method is its inclusive duration without the instrumented methods that it called.
+ * <p>
+ * The counters and the histograms are striped by thread and updated without locks, values and arguments are ignored.
+ * The memory does not depend on the number of events: the statistics of at most {@code maxMethods} methods are kept
+ * (the remaining methods are counted together), and the stack of each thread is limited to {@code maxDepth} frames. The
+ * statistics are available through {@link #snapshot()}, {@link #writeReport(Writer)} and the {@link StatisticsReporter}.
+ */
+@Exclude
+public final class StatisticsTracer implements SiteTracer, FixedArityTracer, PrimitiveTracer {
+
+    public static final int DEFAULT_MAX_METHODS = 16384;
+
+    public static final int DEFAULT_MAX_DEPTH = 1024;
+
+    static final String OTHER_METHODS = "<other methods>";
+
+    private static final int MAX_STRIPES = 16;
+
+    private final int maxMethods;
+
+    private final int maxDepth;
+
+    private final int stripeCount;
+
+    private final Object methodsLock = new Object();
+
+    private final List<MethodStatistics> methods = new CopyOnWriteArrayList<>();
+
+    private final MethodStatistics otherMethods;
+
+    private volatile MethodStatistics[] siteMethods = new MethodStatistics[0];
+
+    private final ClassValue<ConcurrentMap<String, MethodStatistics>> genericMethods = new ClassValue<ConcurrentMap<String, MethodStatistics>>() {
+        @Override
+        protected ConcurrentMap<String, MethodStatistics> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState(new ShadowStack<MethodStatistics>(maxDepth),
+                    (int) Thread.currentThread().getId() & (stripeCount - 1));
+        }
+    };
+
+    private static final class ThreadState {
+
+        private final ShadowStack<MethodStatistics> stack;
+
+        private final int stripe;
+
+        private ThreadState(ShadowStack<MethodStatistics> stack, int stripe) {
+            this.stack = stack;
+            this.stripe = stripe;
+        }
+
+    }
+
+    public StatisticsTracer() {
+        this(DEFAULT_MAX_METHODS, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxMethods number of the methods whose statistics are kept separately
+     * @param maxDepth   number of the frames of a thread that are paired
+     */
+    public StatisticsTracer(int maxMethods, int maxDepth) {
+        if (maxMethods < 1 || maxDepth < 1) {
+            throw new IllegalArgumentException("The number of methods and the stack depth must be positive: " + maxMethods + ", " + maxDepth);
+        }
+        this.maxMethods = maxMethods;
+        this.maxDepth = maxDepth;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final int highestBit = Integer.highestOneBit(processors);
+        this.stripeCount = Math.min(MAX_STRIPES, highestBit == processors ? processors : highestBit << 1);
+        this.otherMethods = new MethodStatistics(OTHER_METHODS, stripeCount);
+    }
+
+    private MethodStatistics addMethod(String method) {
+        if (methods.size() >= maxMethods) {
+            if (!methods.contains(otherMethods)) {
+                methods.add(otherMethods);
+            }
+            return otherMethods;
+        }
+        final MethodStatistics statistics = new MethodStatistics(method, stripeCount);
+        methods.add(statistics);
+        return statistics;
+    }
+
+    private MethodStatistics statistics(Site site) {
+        final MethodStatistics[] currentSiteMethods = siteMethods;
+        final int id = site.getId();
+        if (id < currentSiteMethods.length && currentSiteMethods[id] != null) {
+            return currentSiteMethods[id];
+        }
+
+        synchronized (methodsLock) {
+            if (id >= siteMethods.length) {
+                siteMethods = Arrays.copyOf(siteMethods, Math.max(Site.count(), id + 1));
+            }
+            if (siteMethods[id] == null) {
+                siteMethods[id] = addMethod(site.getClassName() + "#" + site.getMethodName());
+            }
+            return siteMethods[id];
+        }
+    }
+
+    private MethodStatistics statistics(Object source, String method) {
+        final Class<?> type = source instanceof Class ? (Class<?>) source : source.getClass();
+        final ConcurrentMap<String, MethodStatistics> typeMethods = genericMethods.get(type);
+        final MethodStatistics statistics = typeMethods.get(method);
+        if (statistics != null) {
+            return statistics;
+        }
+
+        synchronized (methodsLock) {
+            final MethodStatistics addedStatistics = typeMethods.get(method);
+            if (addedStatistics != null) {
+                return addedStatistics;
+            }
+            final MethodStatistics newStatistics = addMethod(type.getName() + "#" + method);
+            typeMethods.put(method, newStatistics);
+            return newStatistics;
+        }
+    }
+
+    private void enter(MethodStatistics statistics) {
+        threadState.get().stack.enter(statistics, System.nanoTime());
+    }
+
+    private void exit(MethodStatistics statistics) {
+        final long nanoTime = System.nanoTime();
+        final ThreadState state = threadState.get();
+        final ShadowStack<MethodStatistics> stack = state.stack;
+        if (stack.exit(statistics, nanoTime)) {
+            statistics.exited(state.stripe, stack.inclusiveNanos, stack.exclusiveNanos, stack.isExitFailed);
+        }
+    }
+
+    private void fail(MethodStatistics statistics) {
+        threadState.get().stack.fail(statistics);
+    }
+
+    private void timeout(MethodStatistics statistics) {
+        statistics.timedOut(threadState.get().stripe);
+    }
+
+    /**
+     * @return statistics of the methods that were called, ordered by their total inclusive duration, longest first
+     */
+    public List<MethodStatisticsSnapshot> snapshot() {
+        final List<MethodStatisticsSnapshot> snapshots = new ArrayList<>();
+        for (MethodStatistics statistics : methods) {
+            snapshots.add(statistics.snapshot());
+        }
+        Collections.sort(snapshots, new Comparator<MethodStatisticsSnapshot>() {
+            @Override
+            public int compare(MethodStatisticsSnapshot first, MethodStatisticsSnapshot second) {
+                return Long.compare(second.getInclusiveNanos(), first.getInclusiveNanos());
+            }
+        });
+        return snapshots;
+    }
+
+    /**
+     * Writes the snapshot as a table, durations of a single call in microseconds and the totals in milliseconds.
+     */
+    public void writeReport(Writer writer) throws IOException {
+        final List<MethodStatisticsSnapshot> snapshots = snapshot();
+        writer.write("GhostWriter method statistics, " + snapshots.size() + " methods\n");
+        writer.write(String.format("%10s %8s %7s %10s %10s %10s %10s %12s %12s  %s%n", "calls", "errors", "error%",
+                "mean(us)", "p50(us)", "p99(us)", "max(us)", "incl(ms)", "excl(ms)", "method"));
+        for (MethodStatisticsSnapshot snapshot : snapshots) {
+            writer.write(String.format("%10d %8d %6.2f%% %10.1f %10.1f %10.1f %10.1f %12.3f %12.3f  %s%n",
+                    snapshot.getCount(), snapshot.getErrorCount(), snapshot.getErrorRate() * 100,
+                    snapshot.getMeanNanos() / 1e3, snapshot.getPercentileNanos(0.5) / 1e3,
+                    snapshot.getPercentileNanos(0.99) / 1e3, snapshot.getMaxNanos() / 1e3,
+                    snapshot.getInclusiveNanos() / 1e6, snapshot.getExclusiveNanos() / 1e6, snapshot.getMethod()));
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void entering0(Object source, Site site) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, Object arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, int arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, long arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, double arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, float arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, boolean arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, char arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, short arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering1(Object source, Site site, byte arg0) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering2(Object source, Site site, Object arg0, Object arg1) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void entering(Object source, Site site, Object[] arguments) {
+        enter(statistics(site));
+    }
+
+    @Override
+    public void exiting(Object source, Site site) {
+        exit(statistics(site));
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, Object value) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, Object returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, Site site, Throwable error) {
+        fail(statistics(site));
+    }
+
+    @Override
+    public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+        timeout(statistics(site));
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, int value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, long value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, double value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, float value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, boolean value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, char value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, short value) {
+    }
+
+    @Override
+    public void valueChange(Object source, Site site, String variable, byte value) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, int returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, long returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, double returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, float returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, boolean returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, char returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, short returnValue) {
+    }
+
+    @Override
+    public void returning(Object source, Site site, byte returnValue) {
+    }
+
+    @Override
+    public void entering(Object source, String method, Object... params) {
+        enter(statistics(source, method));
+    }
+
+    @Override
+    public void exiting(Object source, String method) {
+        exit(statistics(source, method));
+    }
+
+    @Override
+    public void valueChange(Object source, String method, String variable, Object newValue) {
+    }
+
+    @Override
+    public <T> void returning(Object source, String method, T returnValue) {
+    }
+
+    @Override
+    public void onError(Object source, String method, Throwable error) {
+        fail(statistics(source, method));
+    }
+
+    @Override
+    public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        timeout(statistics(source, method));
+    }
+
+}
@@ -0,0 +1,101 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dense identifiers of the names that the binary trace records refer to: variable and parameter names, class names of
+ * the values and the methods of the events that are reported without a site. A name is added once, looking up a name
+ * that is already known does not allocate.
+ */
+@Exclude
+public final class SymbolTable {
+
+    /**
+     * Receives the names in the order of their identifiers, for example to store them next to the records.
+     */
+    public interface Listener {
+
+        /**
+         * Called while the table is locked, before the identifier is returned to any thread.
+         */
+        void added(int id, String symbol);
+
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Object symbolsLock = new Object();
+
+    private final Listener listener;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // grown by doubling, only the first size elements are known names
+    private volatile String[] symbols = new String[INITIAL_CAPACITY];
+
+    // written after the name is stored, so a reader that sees the size also sees the names below it
+    private volatile int size = 0;
+
+    public SymbolTable() {
+        this(null);
+    }
+
+    public SymbolTable(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param symbol name to look up
+     * @return identifier of the name, the name is added if it was not known
+     */
+    public int intern(String symbol) {
+        final Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (symbolsLock) {
+            final Integer addedId = ids.get(symbol);
+            if (addedId != null) {
+                return addedId;
+            }
+            final int newId = size;
+            if (listener != null) {
+                listener.added(newId, symbol);
+            }
+            String[] currentSymbols = symbols;
+            if (newId == currentSymbols.length) {
+                currentSymbols = Arrays.copyOf(currentSymbols, 2 * currentSymbols.length);
+                symbols = currentSymbols;
+            }
+            currentSymbols[newId] = symbol;
+            // the name has to be readable before its identifier is published
+            size = newId + 1;
+            ids.put(symbol, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * @param id identifier returned by {@link #intern(String)}
+     * @return the name with the given identifier
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new ArrayIndexOutOfBoundsException(id);
+        }
+        return symbols[id];
+    }
+
+    /**
+     * @return number of the known names, identifiers are always smaller than this value
+     */
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the dumps of the {@link FlightRecorderTracer} as text, one record per line.
+ */
+@Exclude
+public final class TextFlightRecordHandler implements FlightRecordHandler {
+
+    private final Writer writer;
+
+    public TextFlightRecordHandler(Writer writer) {
+        this.writer = writer;
+    }
+
+    private void write(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write the GhostWriter flight record", e);
+        }
+    }
+
+    @Override
+    public void begin(long threadId, String trigger) {
+        write("GhostWriter flight record of thread " + threadId + ": " + trigger);
+    }
+
+    @Override
+    public void handle(TraceRecord record) {
+        write("    " + record);
+    }
+
+    @Override
+    public void end() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write the GhostWriter flight record", e);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the trace written by the {@link MappedFileTracer}, including the trace of a JVM that did not close the tracer.
+ * The sites of the writing JVM are not registered in the reading one, so the records that refer to a site are converted
+ * to refer to the class#method symbol of the site, {@link TraceRecord#getMethod()} and the other names work the same.
+ * <p>
+ * The trace can be printed with {@code java io.ghostwriter.runtime.TraceFileReader <trace directory>}.
+ */
+@Exclude
+public final class TraceFileReader {
+
+    private final File directory;
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    private final Map<Integer, Integer> siteMethods = new HashMap<>();
+
+    private long startMillis;
+
+    private long startNanos;
+
+    /**
+     * @param directory directory of a trace
+     * @throws IOException if the symbols of the trace cannot be read
+     */
+    public TraceFileReader(File directory) throws IOException {
+        this.directory = directory;
+        readSymbols(new File(directory, MappedFileTracer.SYMBOLS_FILE));
+    }
+
+    private void readSymbols(File file) throws IOException {
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        // the last entry is incomplete if the writer stopped while writing it
+        final int end = content.lastIndexOf('\n');
+        if (end == -1) {
+            return;
+        }
+        for (String entry : content.substring(0, end).split("\n")) {
+            final String[] fields = entry.split("\t", -1);
+            if (MappedFileTracer.SYMBOL_ENTRY.equals(fields[0])) {
+                final int id = Integer.parseInt(fields[1]);
+                if (symbols.intern(fields[2]) != id) {
+                    throw new IllegalStateException("Corrupted trace symbols, unexpected symbol identifier: " + entry);
+                }
+            }
+            else if (MappedFileTracer.SITE_ENTRY.equals(fields[0])) {
+                siteMethods.put(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+            }
+            else {
+                throw new IllegalStateException("Corrupted trace symbols, unknown entry: " + entry);
+            }
+        }
+    }
+
+    private File[] segmentFiles() {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(MappedFileTracer.SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        // the sequence number is zero padded, so the names are ordered by the sequence
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Passes the records of every segment to the handler, the oldest segment first. The records of a segment are in
+     * the order their threads claimed them, which is the order of their time within a thread.
+     *
+     * @return number of the records that were read
+     * @throws IOException if a segment cannot be read
+     */
+    public long read(TraceRecordHandler handler) throws IOException {
+        final TraceRecord record = new TraceRecord(symbols);
+        long recordCount = 0;
+        for (File file : segmentFiles()) {
+            recordCount += readSegment(file, record, handler);
+        }
+        return recordCount;
+    }
+
+    private long readSegment(File file, TraceRecord record, TraceRecordHandler handler) throws IOException {
+        final ByteBuffer buffer;
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file, "r")) {
+            buffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segmentFile.length());
+        }
+        if (buffer.capacity() < MappedFileTracer.SEGMENT_HEADER_BYTES || buffer.getInt(0) != MappedFileTracer.MAGIC) {
+            throw new IllegalStateException("Not a GhostWriter trace segment: " + file);
+        }
+        if (buffer.getInt(4) != MappedFileTracer.VERSION || buffer.getInt(8) != MappedFileTracer.RECORD_BYTES) {
+            throw new IllegalStateException("Unsupported trace segment version " + buffer.getInt(4) + ": " + file);
+        }
+        startMillis = buffer.getLong(16);
+        startNanos = buffer.getLong(24);
+
+        long recordCount = 0;
+        for (int offset = MappedFileTracer.SEGMENT_HEADER_BYTES; offset <= buffer.capacity() - MappedFileTracer.RECORD_BYTES;
+             offset += MappedFileTracer.RECORD_BYTES) {
+            final long header = buffer.getLong(offset);
+            // never written, or the writer stopped before completing it
+            if (header == 0) {
+                continue;
+            }
+            record.set(buffer.getLong(offset + 8), methodHeader(header), buffer.getLong(offset + 16),
+                    buffer.getLong(offset + 24), buffer.getLong(offset + 32));
+            handler.handle(record);
+            recordCount++;
+        }
+        return recordCount;
+    }
+
+    private long methodHeader(long header) {
+        if (!TraceRecord.hasSite(header)) {
+            return header;
+        }
+        final Integer methodSymbol = siteMethods.get(TraceRecord.id(header));
+        if (methodSymbol == null) {
+            throw new IllegalStateException("Corrupted trace, unknown site: " + TraceRecord.id(header));
+        }
+        return TraceRecord.withMethod(header, methodSymbol);
+    }
+
+    /**
+     * @return names of the trace
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @param nanoTime time of a record, see {@link TraceRecord#getNanoTime()}
+     * @return the time of the record in milliseconds since the epoch, available after the segments were read
+     */
+    public long toEpochMillis(long nanoTime) {
+        return startMillis + (nanoTime - startNanos) / 1000000;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java " + TraceFileReader.class.getName() + " <trace directory>");
+            System.exit(1);
+        }
+        final TraceFileReader reader = new TraceFileReader(new File(args[0]));
+        reader.read(new TraceRecordHandler() {
+            @Override
+            public void handle(TraceRecord record) {
+                System.out.println(record);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,240 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+
+/**
+ * Fixed layout binary record of a single event, four 64 bit words:
+ * <pre>
+ * header   | kind (8 bits) | value type (8 bits) | method flag (1 bit) | unused (15 bits) | site or method id (32 bits) |
+ * time     | System.nanoTime() of the event                                                                         |
+ * aux      | event specific: argument count, symbol of the variable or argument name, timeout threshold            |
+ * payload  | the value: raw bits of primitives, class symbol (high 32 bits) and identity hash code of objects      |
+ * </pre>
+ * The {@code entering} event is followed by an {@link #ARGUMENT} record for each traced parameter. Events that are
+ * reported with a {@link Site} refer to it by its identifier, events of the generic API refer to the
+ * {@code class#method} name in the {@link SymbolTable} and have the method flag set. Names are always symbols, so
+ * writing a record does not allocate.
+ * <p>
+ * Readers receive the same instance for every record, it is only valid until the handler returns.
+ */
+@Exclude
+public final class TraceRecord {
+
+    public static final int WORDS = 4;
+
+    public static final int BYTES = WORDS * 8;
+
+    public static final int ENTERING = 1;
+
+    public static final int ARGUMENT = 2;
+
+    public static final int EXITING = 3;
+
+    public static final int VALUE_CHANGE = 4;
+
+    public static final int RETURNING = 5;
+
+    public static final int ON_ERROR = 6;
+
+    public static final int TIMEOUT = 7;
+
+    public static final int VALUE_NONE = 0;
+
+    public static final int VALUE_NULL = 1;
+
+    public static final int VALUE_REFERENCE = 2;
+
+    public static final int VALUE_INT = 3;
+
+    public static final int VALUE_LONG = 4;
+
+    public static final int VALUE_DOUBLE = 5;
+
+    public static final int VALUE_FLOAT = 6;
+
+    public static final int VALUE_BOOLEAN = 7;
+
+    public static final int VALUE_CHAR = 8;
+
+    public static final int VALUE_SHORT = 9;
+
+    public static final int VALUE_BYTE = 10;
+
+    private static final long METHOD_FLAG = 1L << 47;
+
+    private static final String[] KIND_NAMES = {
+            "unknown", "entering", "argument", "exiting", "valueChange", "returning", "onError", "timeout"
+    };
+
+    private final SymbolTable symbols;
+
+    private long threadId;
+
+    private long header;
+
+    private long nanoTime;
+
+    private long aux;
+
+    private long payload;
+
+    public TraceRecord(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    static long header(int kind, int valueType, int siteId) {
+        return ((long) kind << 56) | ((long) valueType << 48) | (siteId & 0xffffffffL);
+    }
+
+    static long methodHeader(int kind, int valueType, int methodSymbol) {
+        return header(kind, valueType, methodSymbol) | METHOD_FLAG;
+    }
+
+    static boolean hasSite(long header) {
+        return (header & METHOD_FLAG) == 0;
+    }
+
+    static int id(long header) {
+        return (int) header;
+    }
+
+    /**
+     * @return the header of the same event, referring to the method symbol instead of the site
+     */
+    static long withMethod(long header, int methodSymbol) {
+        return (header & 0xffffffff00000000L) | (methodSymbol & 0xffffffffL) | METHOD_FLAG;
+    }
+
+    /**
+     * Called by the readers to point the record to the next event.
+     */
+    public void set(long threadId, long header, long nanoTime, long aux, long payload) {
+        this.threadId = threadId;
+        this.header = header;
+        this.nanoTime = nanoTime;
+        this.aux = aux;
+        this.payload = payload;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public int getKind() {
+        return (int) (header >>> 56);
+    }
+
+    public int getValueType() {
+        return (int) (header >>> 48) & 0xff;
+    }
+
+    /**
+     * @return whether the event was reported with a {@link Site}, see {@link #getSite()}
+     */
+    public boolean hasSite() {
+        return hasSite(header);
+    }
+
+    /**
+     * @return identifier of the site, or the symbol of the class#method name if the event has no site
+     */
+    public int getId() {
+        return id(header);
+    }
+
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    public long getAux() {
+        return aux;
+    }
+
+    public long getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the site of the event, or null if it was reported through the generic API
+     */
+    public Site getSite() {
+        return hasSite() ? Site.byId(getId()) : null;
+    }
+
+    /**
+     * @return class and method name of the event separated by '#'
+     */
+    public String getMethod() {
+        if (!hasSite()) {
+            return symbols.get(getId());
+        }
+        final Site site = getSite();
+        return site.getClassName() + "#" + site.getMethodName();
+    }
+
+    /**
+     * @return name of the variable of a {@link #VALUE_CHANGE} or of the parameter of an {@link #ARGUMENT} record
+     */
+    public String getName() {
+        final int kind = getKind();
+        return kind == VALUE_CHANGE || kind == ARGUMENT ? symbols.get((int) aux) : null;
+    }
+
+    /**
+     * @return class name of a {@link #VALUE_REFERENCE} value, for example the type of the error of {@link #ON_ERROR}
+     */
+    public String getValueClassName() {
+        return getValueType() == VALUE_REFERENCE ? symbols.get((int) (payload >>> 32)) : null;
+    }
+
+    /**
+     * Decodes the value of the record, primitives are boxed and objects are described by their class name and
+     * identity hash code, for example {@code java.lang.String@1b6d3586}.
+     *
+     * @return the value of the record, null if the record has no value or the value was null
+     */
+    public Object getValue() {
+        switch (getValueType()) {
+            case VALUE_REFERENCE:
+                return getValueClassName() + "@" + Integer.toHexString((int) payload);
+            case VALUE_INT:
+                return (int) payload;
+            case VALUE_LONG:
+                return payload;
+            case VALUE_DOUBLE:
+                return Double.longBitsToDouble(payload);
+            case VALUE_FLOAT:
+                return Float.intBitsToFloat((int) payload);
+            case VALUE_BOOLEAN:
+                return payload != 0;
+            case VALUE_CHAR:
+                return (char) payload;
+            case VALUE_SHORT:
+                return (short) payload;
+            case VALUE_BYTE:
+                return (byte) payload;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final int kind = getKind();
+        final StringBuilder description = new StringBuilder();
+        description.append(threadId).append(' ').append(nanoTime).append(' ')
+                .append(kind < KIND_NAMES.length ? KIND_NAMES[kind] : KIND_NAMES[0]).append(' ').append(getMethod());
+        if (getName() != null) {
+            description.append(' ').append(getName());
+        }
+        if (kind == TIMEOUT) {
+            description.append(' ').append(aux).append(' ').append(payload);
+        }
+        else if (getValueType() != VALUE_NONE) {
+            description.append(" = ").append(getValue());
+        }
+        return description.toString();
+    }
+
+}
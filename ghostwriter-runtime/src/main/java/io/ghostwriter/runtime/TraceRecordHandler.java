@@ -0,0 +1,13 @@
+package io.ghostwriter.runtime;
+
+/**
+ * Consumes the records that a reader decodes, for example the drainer of the {@link RingBufferTracer}.
+ */
+public interface TraceRecordHandler {
+
+    /**
+     * @param record the next record, the instance is reused for the following records
+     */
+    void handle(TraceRecord record);
+
+}
@@ -0,0 +1,219 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallTreeTracerTest {
+
+    private static final String CLASS = CallTreeTracerTest.class.getName();
+
+    private static final Site MAIN = Site.register(CLASS, "main", "()", new String[0], 10);
+
+    private static final Site CHILD = Site.register(CLASS, "child", "()", new String[0], 20);
+
+    private static final Pattern COMPLETE_EVENT = Pattern.compile(
+            "\\{\"name\":\"([^\"]*)\",\"ph\":\"X\",\"pid\":1,\"tid\":\\d+,\"ts\":([0-9.]+),\"dur\":([0-9.]+),\"args\":\\{\"calls\":(\\d+),\"errors\":(\\d+),");
+
+    @Test
+    public void testRecursiveCallsAreLevelsOfThePath() throws IOException, InterruptedException {
+        final CallTreeTracer tracer = new CallTreeTracer();
+        for (int i = 0; i < 2; i++) {
+            tracer.entering0(this, MAIN);
+            tracer.entering(this, "recursive");
+            tracer.entering(this, "recursive");
+            tracer.entering0(this, CHILD);
+            TimeUnit.MILLISECONDS.sleep(5);
+            tracer.exiting(this, CHILD);
+            tracer.exiting(this, "recursive");
+            tracer.exiting(this, "recursive");
+            tracer.exiting(this, MAIN);
+        }
+
+        final Map<String, Long> stacks = collapsedStacks(tracer);
+        final String leaf = CLASS + "#main;" + CLASS + "#recursive;" + CLASS + "#recursive;" + CLASS + "#child";
+        assertTrue(stacks.toString(), stacks.get(leaf) >= TimeUnit.MILLISECONDS.toNanos(10));
+        for (String stack : stacks.keySet()) {
+            assertTrue(stack, leaf.startsWith(stack));
+        }
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        assertEquals(3, events.size());
+        assertEquals(2, events.get(CLASS + "#main")[0]);
+        assertEquals(4, events.get(CLASS + "#recursive")[0]);
+        assertEquals(2, events.get(CLASS + "#child")[0]);
+    }
+
+    @Test
+    public void testErrorsAreCountedByEveryMethodTheyLeave() throws IOException {
+        final CallTreeTracer tracer = new CallTreeTracer();
+        tracer.entering0(this, MAIN);
+        tracer.entering(this, "caller");
+        tracer.entering0(this, CHILD);
+        final IllegalStateException error = new IllegalStateException();
+        tracer.onError(this, CHILD, error);
+        tracer.exiting(this, CHILD);
+        tracer.onError(this, "caller", error);
+        tracer.exiting(this, "caller");
+        // caught by main, the next call succeeds
+        tracer.entering0(this, CHILD);
+        tracer.exiting(this, CHILD);
+        tracer.exiting(this, MAIN);
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        assertEquals(3, events.size());
+        assertEquals(0, events.get(CLASS + "#main")[1]);
+        assertEquals(1, events.get(CLASS + "#caller")[1]);
+        assertEquals(2, events.get(CLASS + "#child")[0]);
+        assertEquals(1, events.get(CLASS + "#child")[1]);
+    }
+
+    @Test
+    public void testExitClosesTheFramesThatDidNotExit() throws IOException {
+        final CallTreeTracer tracer = new CallTreeTracer();
+        tracer.entering0(this, MAIN);
+        tracer.entering0(this, CHILD);
+        tracer.entering(this, "uninstrumentedExit");
+        tracer.exiting(this, MAIN);
+        // the tracer was installed during the call
+        tracer.exiting(this, "installedLater");
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        assertEquals(3, events.size());
+        assertEquals(1, events.get(CLASS + "#uninstrumentedExit")[0]);
+        assertEquals(1, events.get(CLASS + "#child")[0]);
+        assertEquals(1, events.get(CLASS + "#main")[0]);
+    }
+
+    @Test
+    public void testTreeIsBoundedByTheLimits() throws IOException {
+        final CallTreeTracer tracer = new CallTreeTracer(3, 2);
+        tracer.entering0(this, MAIN);
+        for (int i = 0; i < 3; i++) {
+            tracer.entering(this, "method" + i);
+            // deeper than the stack limit
+            tracer.entering0(this, CHILD);
+            tracer.exiting(this, CHILD);
+            tracer.exiting(this, "method" + i);
+        }
+        tracer.exiting(this, MAIN);
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        assertEquals(2, events.size());
+        assertEquals(1, events.get(CLASS + "#method0")[0]);
+        assertEquals(1, events.get(CLASS + "#main")[0]);
+        assertEquals(5, tracer.getTruncatedCalls());
+    }
+
+    @Test
+    public void testCompletedCallsOfRunningFramesAreExported() throws IOException, InterruptedException {
+        final CallTreeTracer tracer = new CallTreeTracer();
+        tracer.entering0(this, MAIN);
+        tracer.entering(this, "requestLoop");
+        for (int i = 0; i < 2; i++) {
+            tracer.entering0(this, CHILD);
+            tracer.entering(this, "query");
+            TimeUnit.MILLISECONDS.sleep(1);
+            tracer.exiting(this, "query");
+            TimeUnit.MILLISECONDS.sleep(1);
+            tracer.exiting(this, CHILD);
+        }
+
+        final Map<String, Long> stacks = collapsedStacks(tracer);
+        final String child = CLASS + "#main;" + CLASS + "#requestLoop;" + CLASS + "#child";
+        assertEquals(stacks.toString(), 2, stacks.size());
+        assertTrue(stacks.toString(), stacks.containsKey(child));
+        assertTrue(stacks.toString(), stacks.containsKey(child + ";" + CLASS + "#query"));
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(CLASS + "#child")[0]);
+        assertEquals(2, events.get(CLASS + "#query")[0]);
+        assertEquals(events.get(CLASS + "#child")[2], events.get(CLASS + "#query")[2]);
+
+        tracer.exiting(this, "requestLoop");
+        tracer.exiting(this, MAIN);
+        assertEquals(4, completeEvents(tracer).size());
+    }
+
+    @Test
+    public void testChromeTraceLaysOutTheChildrenInsideTheirParent() throws IOException, InterruptedException {
+        final CallTreeTracer tracer = new CallTreeTracer();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Object source = CallTreeTracerTest.this;
+                tracer.entering0(source, MAIN);
+                tracer.entering(source, "first");
+                tracer.exiting(source, "first");
+                tracer.entering(source, "second");
+                tracer.exiting(source, "second");
+                tracer.exiting(source, MAIN);
+            }
+        }, "worker \"1\"");
+        thread.start();
+        thread.join();
+
+        final String trace = chromeTrace(tracer);
+        assertTrue(trace, trace.startsWith("{\"displayTimeUnit\":\"ns\",\"traceEvents\":["));
+        assertTrue(trace, trace.endsWith("\n]}\n"));
+        assertTrue(trace, trace.contains("\"args\":{\"name\":\"worker \\\"1\\\"\"}"));
+
+        final Map<String, long[]> events = completeEvents(tracer);
+        final long[] main = events.get(CLASS + "#main");
+        final long[] first = events.get(CLASS + "#first");
+        final long[] second = events.get(CLASS + "#second");
+        assertEquals(main[2], first[2]);
+        assertEquals(first[2] + first[3], second[2]);
+        assertTrue(second[2] + second[3] <= main[2] + main[3]);
+    }
+
+    private static Map<String, Long> collapsedStacks(CallTreeTracer tracer) throws IOException {
+        final StringWriter output = new StringWriter();
+        tracer.writeCollapsedStacks(output);
+        final Map<String, Long> stacks = new LinkedHashMap<>();
+        for (String line : output.toString().split("\n")) {
+            final int separator = line.lastIndexOf(' ');
+            stacks.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+        }
+        return stacks;
+    }
+
+    private static String chromeTrace(CallTreeTracer tracer) throws IOException {
+        final StringWriter output = new StringWriter();
+        tracer.writeChromeTrace(output);
+        return output.toString();
+    }
+
+    /**
+     * @return calls, errors, start and duration in nanoseconds of the complete events by their name, the calls and
+     * errors of the paths that end in the same method are summed, the start and duration are of the first path
+     */
+    private static Map<String, long[]> completeEvents(CallTreeTracer tracer) throws IOException {
+        final Map<String, long[]> events = new LinkedHashMap<>();
+        final Matcher matcher = COMPLETE_EVENT.matcher(chromeTrace(tracer));
+        while (matcher.find()) {
+            final long[] event = events.get(matcher.group(1));
+            if (event == null) {
+                events.put(matcher.group(1), new long[]{Long.parseLong(matcher.group(4)), Long.parseLong(matcher.group(5)),
+                        Math.round(Double.parseDouble(matcher.group(2)) * 1e3), Math.round(Double.parseDouble(matcher.group(3)) * 1e3)});
+            }
+            else {
+                event[0] += Long.parseLong(matcher.group(4));
+                event[1] += Long.parseLong(matcher.group(5));
+            }
+        }
+        return events;
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderTracerTest {
+
+    private static final Site SITE = Site.register(FlightRecorderTracerTest.class.getName(), "traced", "(int)",
+            new String[]{"value"}, 12);
+
+    private static final String METHOD = FlightRecorderTracerTest.class.getName() + "#traced";
+
+    @Test
+    public void testOnlyTheLastEventsAreDumpedOnError() {
+        final RecordingHandler handler = new RecordingHandler();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer(4, handler);
+        for (int i = 0; i < 10; i++) {
+            tracer.entering1(this, SITE, i);
+            tracer.exiting(this, SITE);
+        }
+        assertTrue("Nothing is dumped without an error", handler.dumps.isEmpty());
+
+        tracer.onError(this, SITE, new IllegalStateException("failed"));
+
+        assertEquals(1, handler.dumps.size());
+        final List<String> dump = handler.dumps.get(0);
+        assertEquals("onError java.lang.IllegalStateException: failed in " + METHOD, dump.get(0));
+        assertEquals(5, dump.size());
+        assertEquals("entering " + METHOD, dump.get(1));
+        assertEquals("argument " + METHOD + " value = 9", dump.get(2));
+        assertEquals("exiting " + METHOD, dump.get(3));
+        assertTrue(dump.get(4), dump.get(4).startsWith("onError " + METHOD + " = java.lang.IllegalStateException@"));
+    }
+
+    @Test
+    public void testErrorIsDumpedOnlyByTheFirstMethodItLeaves() {
+        final RecordingHandler handler = new RecordingHandler();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer(16, handler);
+        final IllegalArgumentException error = new IllegalArgumentException();
+        tracer.onError(this, SITE, error);
+        tracer.exiting(this, SITE);
+        tracer.onError(this, "caller", error);
+        tracer.exiting(this, "caller");
+        assertEquals(1, handler.dumps.size());
+
+        tracer.onError(this, "caller", new IllegalArgumentException());
+        assertEquals(2, handler.dumps.size());
+        assertEquals(6, handler.dumps.get(1).size());
+    }
+
+    @Test
+    public void testTimeoutDumpsTheHistory() {
+        final StringWriter output = new StringWriter();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer(8, new TextFlightRecordHandler(output));
+        tracer.entering0(this, SITE);
+        tracer.timeout(this, SITE, 100, 250);
+
+        final String[] lines = output.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(": timeout of " + METHOD + " after 250 ms, threshold 100 ms"));
+        assertTrue(lines[1], lines[1].endsWith("entering " + METHOD));
+        assertTrue(lines[2], lines[2].endsWith("timeout " + METHOD + " 100 250"));
+    }
+
+    @Test
+    public void testHistoriesOfOtherThreadsAreDumpedOnDemand() throws InterruptedException {
+        final RecordingHandler handler = new RecordingHandler();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer(8, handler);
+        tracer.returning(this, SITE, 1);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tracer.returning(this, SITE, 2);
+                tracer.returning(this, SITE, 3);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        tracer.dump("requested");
+        assertEquals(2, handler.dumps.size());
+        assertEquals(2, handler.dumps.get(0).size());
+        assertEquals(3, handler.dumps.get(1).size());
+        assertEquals("returning " + METHOD + " = 3", handler.dumps.get(1).get(2));
+
+        // the history of the finished thread is released after it was dumped
+        tracer.dump("requested");
+        assertEquals(3, handler.dumps.size());
+    }
+
+    @Test
+    public void testOnlyTheLastHistoriesOfFinishedThreadsAreRetained() throws InterruptedException {
+        final RecordingHandler handler = new RecordingHandler();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer(8, handler);
+        final int threadCount = FlightRecorderTracer.RETAINED_FINISHED_HISTORIES + 10;
+        for (int i = 0; i < threadCount; i++) {
+            final int value = i;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    tracer.returning(this, SITE, value);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        tracer.dump("requested");
+        // the history of the last thread is registered after the earlier ones were released
+        assertEquals(FlightRecorderTracer.RETAINED_FINISHED_HISTORIES + 1, handler.dumps.size());
+        final List<String> lastDump = handler.dumps.get(handler.dumps.size() - 1);
+        assertEquals("returning " + METHOD + " = " + (threadCount - 1), lastDump.get(1));
+    }
+
+    private static final class RecordingHandler implements FlightRecordHandler {
+
+        private final List<List<String>> dumps = new ArrayList<>();
+
+        @Override
+        public void begin(long threadId, String trigger) {
+            final List<String> dump = new ArrayList<>();
+            dump.add(trigger);
+            dumps.add(dump);
+        }
+
+        @Override
+        public void handle(TraceRecord record) {
+            final String description = record.toString();
+            dumps.get(dumps.size() - 1).add(description.substring(description.indexOf(' ', description.indexOf(' ') + 1) + 1));
+        }
+
+        @Override
+        public void end() {
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileTracerTest {
+
+    private static final Site SITE = Site.register(MappedFileTracerTest.class.getName(), "traced", "(String)",
+            new String[]{"name"}, 21);
+
+    private static final int RECORDS_PER_SEGMENT = 10;
+
+    private static final int SEGMENT_SIZE = MappedFileTracer.SEGMENT_HEADER_BYTES + RECORDS_PER_SEGMENT * MappedFileTracer.RECORD_BYTES;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("ghostwriter-trace").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testEventsAreReadBackFromTheSegments() throws IOException {
+        final MappedFileTracer tracer = new MappedFileTracer(new File(directory, "run"), SEGMENT_SIZE, 4);
+        tracer.entering1(this, SITE, "first");
+        tracer.valueChange(this, SITE, "count", 3L);
+        tracer.onError(this, SITE, new IllegalArgumentException());
+        tracer.exiting(this, SITE);
+        tracer.timeout(this, "generic", 100, 250);
+        tracer.close();
+        // ignored once the tracer is closed
+        tracer.exiting(this, SITE);
+
+        final List<String> events = readEvents(new File(directory, "run"));
+        final String method = MappedFileTracerTest.class.getName() + "#traced";
+        assertEquals(6, events.size());
+        assertEquals("entering " + method, events.get(0));
+        assertTrue(events.get(1), events.get(1).startsWith("argument " + method + " name = java.lang.String@"));
+        assertEquals("valueChange " + method + " count = 3", events.get(2));
+        assertTrue(events.get(3), events.get(3).startsWith("onError " + method + " = java.lang.IllegalArgumentException@"));
+        assertEquals("exiting " + method, events.get(4));
+        assertEquals("timeout " + MappedFileTracerTest.class.getName() + "#generic 100 250", events.get(5));
+    }
+
+    @Test
+    public void testOnlyTheLastSegmentsAreKept() throws IOException {
+        final MappedFileTracer tracer = new MappedFileTracer(directory, SEGMENT_SIZE, 2);
+        for (int i = 0; i < 3 * RECORDS_PER_SEGMENT + 5; i++) {
+            tracer.returning(this, SITE, i);
+        }
+        tracer.close();
+
+        final List<String> events = readEvents(directory);
+        assertEquals(RECORDS_PER_SEGMENT + 5, events.size());
+        assertEquals("returning " + MappedFileTracerTest.class.getName() + "#traced = " + 2 * RECORDS_PER_SEGMENT, events.get(0));
+        assertTrue(new File(directory, "trace-000003.gwt").exists());
+        assertTrue(!new File(directory, "trace-000001.gwt").exists());
+    }
+
+    @Test
+    public void testTraceOfAHaltedJvmCanBeRead() throws IOException, InterruptedException {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                HaltingApplication.class.getName(), directory.getAbsolutePath())
+                .redirectErrorStream(true)
+                .start();
+        assertEquals(HaltingApplication.EXIT_CODE, process.waitFor());
+
+        final List<String> events = readEvents(directory);
+        assertEquals(HaltingApplication.EVENT_COUNT, events.size());
+        assertEquals("valueChange " + HaltingApplication.class.getName() + "#run i = " + (HaltingApplication.EVENT_COUNT - 1),
+                events.get(events.size() - 1));
+    }
+
+    private static List<String> readEvents(File directory) throws IOException {
+        final List<String> events = new ArrayList<>();
+        new TraceFileReader(directory).read(new TraceRecordHandler() {
+            @Override
+            public void handle(TraceRecord record) {
+                final String description = record.toString();
+                events.add(description.substring(description.indexOf(' ', description.indexOf(' ') + 1) + 1));
+            }
+        });
+        return events;
+    }
+
+    /**
+     * Stops the JVM without closing the tracer or running the shutdown hooks, the same way as a crash.
+     */
+    public static final class HaltingApplication {
+
+        private static final int EVENT_COUNT = 1000;
+
+        private static final int EXIT_CODE = 3;
+
+        public static void main(String[] args) {
+            final MappedFileTracer tracer = new MappedFileTracer(new File(args[0]));
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                tracer.valueChange(HaltingApplication.class, "run", "i", i);
+            }
+            Runtime.getRuntime().halt(EXIT_CODE);
+        }
+
+    }
+
+}
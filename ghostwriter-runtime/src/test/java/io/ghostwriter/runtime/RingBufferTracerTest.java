@@ -0,0 +1,166 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTracerTest {
+
+    private static final Site SITE = Site.register(RingBufferTracerTest.class.getName(), "traced", "(int, String)",
+            new String[]{"count", "name"}, 42);
+
+    @Test
+    public void testEventsAreDecodedFromTheRecords() {
+        final RingBufferTracer tracer = new RingBufferTracer(16);
+        tracer.entering2(this, SITE, 7, "seven");
+        tracer.valueChange(this, SITE, "ratio", 0.5);
+        tracer.returning(this, SITE, true);
+        tracer.onError(this, SITE, new IllegalStateException());
+        tracer.timeout(this, SITE, 10, 20);
+        tracer.exiting(this, SITE);
+
+        final List<String> events = new ArrayList<>();
+        final int drainedCount = tracer.drain(new TraceRecordHandler() {
+            @Override
+            public void handle(TraceRecord record) {
+                assertEquals(Thread.currentThread().getId(), record.getThreadId());
+                assertEquals(SITE.getId(), record.getId());
+                events.add(withoutThreadAndTime(record));
+            }
+        });
+
+        final String method = RingBufferTracerTest.class.getName() + "#traced";
+        assertEquals(8, drainedCount);
+        assertEquals("entering " + method, events.get(0));
+        assertEquals("argument " + method + " count = 7", events.get(1));
+        assertTrue(events.get(2), events.get(2).startsWith("argument " + method + " name = java.lang.String@"));
+        assertEquals("valueChange " + method + " ratio = 0.5", events.get(3));
+        assertEquals("returning " + method + " = true", events.get(4));
+        assertTrue(events.get(5), events.get(5).startsWith("onError " + method + " = java.lang.IllegalStateException@"));
+        assertEquals("timeout " + method + " 10 20", events.get(6));
+        assertEquals("exiting " + method, events.get(7));
+    }
+
+    @Test
+    public void testPrimitiveArgumentIsStoredByItsBits() {
+        final RingBufferTracer tracer = new RingBufferTracer(16);
+        tracer.entering1(this, SITE, 'x');
+        tracer.entering1(this, SITE, -1.5);
+
+        final List<String> events = new ArrayList<>();
+        tracer.drain(new TraceRecordHandler() {
+            @Override
+            public void handle(TraceRecord record) {
+                events.add(withoutThreadAndTime(record));
+            }
+        });
+
+        final String method = RingBufferTracerTest.class.getName() + "#traced";
+        assertEquals(4, events.size());
+        assertEquals("argument " + method + " count = x", events.get(1));
+        assertEquals("argument " + method + " count = -1.5", events.get(3));
+    }
+
+    @Test
+    public void testGenericEventsReferToTheMethodName() {
+        final RingBufferTracer tracer = new RingBufferTracer(16);
+        tracer.entering(this, "generic", "value", 3L);
+        tracer.exiting(RingBufferTracerTest.class, "generic");
+
+        final List<TraceRecord> records = new ArrayList<>();
+        tracer.drain(new TraceRecordHandler() {
+            @Override
+            public void handle(TraceRecord record) {
+                assertTrue(!record.hasSite());
+                assertNull(record.getSite());
+                assertEquals(RingBufferTracerTest.class.getName() + "#generic", record.getMethod());
+                if (record.getKind() == TraceRecord.ARGUMENT) {
+                    assertEquals("value", record.getName());
+                    assertEquals(3L, record.getValue());
+                }
+                records.add(record);
+            }
+        });
+        assertEquals(3, records.size());
+    }
+
+    @Test
+    public void testRecordsAreDroppedIfTheBufferIsFull() {
+        final RingBufferTracer tracer = new RingBufferTracer(3);
+        assertEquals(4, tracer.getCapacity());
+        for (int i = 0; i < 10; i++) {
+            tracer.exiting(this, SITE);
+        }
+
+        assertEquals(6, tracer.getDroppedCount());
+        assertEquals(4, tracer.drain(new CountingHandler()));
+        tracer.exiting(this, SITE);
+        assertEquals(1, tracer.drain(new CountingHandler()));
+    }
+
+    @Test
+    public void testConcurrentThreadsAreDrainedInOrder() throws InterruptedException {
+        final int threadCount = 4;
+        final int eventsPerThread = 100000;
+        final CountingHandler handler = new CountingHandler();
+        final RingBufferTracerProvider provider = new RingBufferTracerProvider(new RingBufferTracer(1 << 10), handler, 1);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int event = 0; event < eventsPerThread; event++) {
+                        provider.getTracer().valueChange(this, SITE, "event", event);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        provider.close();
+
+        final long droppedCount = provider.getTracer().getDroppedCount();
+        assertEquals(threadCount * eventsPerThread, handler.count + droppedCount);
+        assertEquals(threadCount, handler.lastValues.size());
+        assertTrue("Records of a thread are out of order", handler.isOrdered);
+    }
+
+    private static String withoutThreadAndTime(TraceRecord record) {
+        final String description = record.toString();
+        return description.substring(description.indexOf(' ', description.indexOf(' ') + 1) + 1);
+    }
+
+    private static final class CountingHandler implements TraceRecordHandler {
+
+        private final Map<Long, Long> lastValues = new HashMap<>();
+
+        private long count;
+
+        private boolean isOrdered = true;
+
+        @Override
+        public void handle(TraceRecord record) {
+            count++;
+            final Long lastValue = lastValues.get(record.getThreadId());
+            if (lastValue != null && lastValue >= record.getPayload()) {
+                isOrdered = false;
+            }
+            lastValues.put(record.getThreadId(), record.getPayload());
+        }
+
+    }
+
+}
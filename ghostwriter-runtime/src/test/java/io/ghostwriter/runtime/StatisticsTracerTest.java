@@ -0,0 +1,181 @@
+package io.ghostwriter.runtime;
+
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsTracerTest {
+
+    private static final Site PARENT = Site.register(StatisticsTracerTest.class.getName(), "parent", "()", new String[0], 10);
+
+    private static final Site CHILD = Site.register(StatisticsTracerTest.class.getName(), "child", "()", new String[0], 20);
+
+    @Test
+    public void testNestedCallsAreSplitIntoInclusiveAndExclusiveTime() throws InterruptedException {
+        final StatisticsTracer tracer = new StatisticsTracer();
+        tracer.entering0(this, PARENT);
+        tracer.entering0(this, CHILD);
+        TimeUnit.MILLISECONDS.sleep(20);
+        tracer.exiting(this, CHILD);
+        tracer.entering0(this, CHILD);
+        tracer.exiting(this, CHILD);
+        tracer.exiting(this, PARENT);
+
+        final MethodStatisticsSnapshot parent = find(tracer, "parent");
+        final MethodStatisticsSnapshot child = find(tracer, "child");
+        assertEquals(1, parent.getCount());
+        assertEquals(2, child.getCount());
+        assertTrue("Child did not sleep: " + child, child.getInclusiveNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(child.getInclusiveNanos(), child.getExclusiveNanos());
+        assertEquals(parent.getInclusiveNanos() - child.getInclusiveNanos(), parent.getExclusiveNanos());
+        assertEquals(child.getMaxNanos(), child.getPercentileNanos(1.0));
+        assertTrue(child.getPercentileNanos(0.5) < TimeUnit.MILLISECONDS.toNanos(20));
+        // the longest total time is reported first
+        assertEquals(PARENT.getClassName() + "#parent", tracer.snapshot().get(0).getMethod());
+    }
+
+    @Test
+    public void testErrorsAndTimeoutsAreCountedPerCall() {
+        final StatisticsTracer tracer = new StatisticsTracer();
+        for (int i = 0; i < 4; i++) {
+            tracer.entering0(this, PARENT);
+            tracer.entering0(this, CHILD);
+            if (i == 0) {
+                // the error leaves both methods
+                final IllegalStateException error = new IllegalStateException();
+                tracer.onError(this, CHILD, error);
+                tracer.exiting(this, CHILD);
+                tracer.onError(this, PARENT, error);
+            }
+            else {
+                tracer.exiting(this, CHILD);
+            }
+            tracer.timeout(this, PARENT, 1, 2);
+            tracer.exiting(this, PARENT);
+        }
+
+        assertEquals(1, find(tracer, "child").getErrorCount());
+        assertEquals(0.25, find(tracer, "parent").getErrorRate(), 0.0);
+        assertEquals(4, find(tracer, "parent").getTimeoutCount());
+    }
+
+    @Test
+    public void testRecursiveCallsArePairedWithTheirOwnFrame() {
+        final StatisticsTracer tracer = new StatisticsTracer();
+        tracer.entering(this, "recursive");
+        tracer.entering(this, "recursive");
+        tracer.entering(this, "recursive");
+        tracer.exiting(this, "recursive");
+        tracer.exiting(this, "recursive");
+        tracer.exiting(this, "recursive");
+        // exit without an entering event, the tracer was installed during the call
+        tracer.exiting(this, "recursive");
+
+        final MethodStatisticsSnapshot recursive = find(tracer, "recursive");
+        assertEquals(3, recursive.getCount());
+        assertTrue(recursive.getExclusiveNanos() <= recursive.getInclusiveNanos());
+    }
+
+    @Test
+    public void testMemoryIsBoundedByTheLimits() {
+        final StatisticsTracer tracer = new StatisticsTracer(2, 2);
+        for (int i = 0; i < 5; i++) {
+            tracer.entering(this, "method" + i);
+            tracer.exiting(this, "method" + i);
+        }
+        tracer.entering(this, "method0");
+        tracer.entering(this, "method1");
+        // deeper than the stack limit, the call is not recorded
+        tracer.entering(this, "method0");
+        tracer.exiting(this, "method0");
+        tracer.exiting(this, "method1");
+        tracer.exiting(this, "method0");
+
+        final List<String> methods = new ArrayList<>();
+        for (MethodStatisticsSnapshot snapshot : tracer.snapshot()) {
+            methods.add(snapshot.getMethod());
+        }
+        assertEquals(3, methods.size());
+        assertEquals(3, find(tracer, StatisticsTracer.OTHER_METHODS).getCount());
+        assertEquals(2, find(tracer, "method0").getCount());
+        assertEquals(2, find(tracer, "method1").getCount());
+    }
+
+    @Test
+    public void testConcurrentCallsAreSummedAcrossStripes() throws InterruptedException {
+        final StatisticsTracer tracer = new StatisticsTracer();
+        final int callsPerThread = 10000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int call = 0; call < callsPerThread; call++) {
+                        tracer.entering0(this, PARENT);
+                        tracer.exiting(this, PARENT);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final MethodStatisticsSnapshot parent = find(tracer, "parent");
+        assertEquals(8 * callsPerThread, parent.getCount());
+        long histogramCount = 0;
+        for (long bucketCount : parent.getHistogram()) {
+            histogramCount += bucketCount;
+        }
+        assertEquals(8 * callsPerThread, histogramCount);
+    }
+
+    @Test
+    public void testHistogramsOfTheStripesAreSummed() {
+        final MethodStatistics statistics = new MethodStatistics("method", 4);
+        statistics.exited(0, 100, 100, false);
+        statistics.exited(3, 100, 100, false);
+        statistics.exited(3, 5000, 5000, false);
+
+        final long[] histogram = statistics.snapshot().getHistogram();
+        assertEquals(2, histogram[LatencyHistogram.bucket(100)]);
+        assertEquals(1, histogram[LatencyHistogram.bucket(5000)]);
+        assertEquals(3, statistics.snapshot().getCount());
+    }
+
+    @Test
+    public void testReportListsEveryMethod() throws IOException {
+        final StatisticsTracer tracer = new StatisticsTracer();
+        tracer.entering0(this, PARENT);
+        tracer.exiting(this, PARENT);
+        final StringWriter report = new StringWriter();
+        new StatisticsReporter(tracer, report, 1, TimeUnit.HOURS).close();
+
+        final String[] lines = report.toString().split("\n");
+        assertEquals("GhostWriter method statistics, 1 methods", lines[0]);
+        assertTrue(lines[1], lines[1].trim().startsWith("calls"));
+        assertTrue(lines[2], lines[2].trim().startsWith("1        0   0.00%"));
+        assertTrue(lines[2], lines[2].endsWith(PARENT.getClassName() + "#parent"));
+    }
+
+    private static MethodStatisticsSnapshot find(StatisticsTracer tracer, String method) {
+        for (MethodStatisticsSnapshot snapshot : tracer.snapshot()) {
+            if (snapshot.getMethod().endsWith(method)) {
+                return snapshot;
+            }
+        }
+        throw new AssertionError("No statistics of " + method + ": " + tracer.snapshot());
+    }
+
+}
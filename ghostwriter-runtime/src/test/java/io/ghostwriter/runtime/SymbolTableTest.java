@@ -0,0 +1,48 @@
+package io.ghostwriter.runtime;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testNamesKeepTheirIdentifiersWhileTheTableGrows() {
+        final List<String> added = new ArrayList<>();
+        final SymbolTable symbols = new SymbolTable(new SymbolTable.Listener() {
+            @Override
+            public void added(int id, String symbol) {
+                assertEquals(added.size(), id);
+                added.add(symbol);
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, symbols.intern("name" + i));
+        }
+        assertEquals(1000, symbols.size());
+        assertEquals(1000, added.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, symbols.intern("name" + i));
+            assertEquals("name" + i, symbols.get(i));
+        }
+        assertEquals(1000, symbols.size());
+    }
+
+    @Test
+    public void testUnknownIdentifierIsRejected() {
+        final SymbolTable symbols = new SymbolTable();
+        symbols.intern("name");
+        try {
+            symbols.get(1);
+            fail("Expected an exception for an identifier that was not returned by the table");
+        } catch (ArrayIndexOutOfBoundsException expected) {
+            // only the added names can be read, not the unused capacity
+        }
+    }
+
+}
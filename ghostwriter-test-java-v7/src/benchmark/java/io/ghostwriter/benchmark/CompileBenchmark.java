@@ -0,0 +1,218 @@
+package io.ghostwriter.benchmark;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the compile time overhead of the GhostWriter annotation processor on a large synthetic source set.
+ * The same sources are compiled in process with annotation processing disabled and with the GhostWriter annotation
+ * processor, the difference of the medians is the time spent on instrumentation.
+ * <p>
+ * Arguments (all optional): number of classes, number of statement groups per method, number of measured iterations.
+ * The processor path is passed with the {@code ghostwriter.benchmark.processorPath} system property, see the
+ * {@code compileBenchmark} Gradle task.
+ */
+public final class CompileBenchmark {
+
+    private static final String PROCESSOR_PATH_PROPERTY = "ghostwriter.benchmark.processorPath";
+
+    private static final String PACKAGE_NAME = "synthetic";
+
+    private static final int DEFAULT_NUMBER_OF_CLASSES = 500;
+
+    private static final int DEFAULT_STATEMENT_GROUPS = 20;
+
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    private static final int WARMUP_ITERATIONS = 2;
+
+    private static final int METHODS_PER_CLASS = 5;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private CompileBenchmark() {
+        // entry point only
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int numberOfClasses = intArgument(args, 0, DEFAULT_NUMBER_OF_CLASSES);
+        final int statementGroups = intArgument(args, 1, DEFAULT_STATEMENT_GROUPS);
+        final int iterations = intArgument(args, 2, DEFAULT_ITERATIONS);
+
+        final String processorPath = System.getProperty(PROCESSOR_PATH_PROPERTY);
+        if (processorPath == null || processorPath.isEmpty()) {
+            throw new IllegalStateException("Missing system property: " + PROCESSOR_PATH_PROPERTY);
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler found, the benchmark has to be run with a JDK");
+        }
+
+        final Path workingDirectory = Files.createTempDirectory("ghostwriter-compile-benchmark");
+        try {
+            final List<File> sources = generateSources(workingDirectory.resolve("src"), numberOfClasses, statementGroups);
+            final Path plainOutput = Files.createDirectories(workingDirectory.resolve("plain"));
+            final Path instrumentedOutput = Files.createDirectories(workingDirectory.resolve("instrumented"));
+
+            System.out.println("Compiling " + numberOfClasses + " classes, " + METHODS_PER_CLASS + " methods each, "
+                    + statementGroups + " statement groups per method");
+
+            for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+                compile(compiler, sources, processorPath, plainOutput, false);
+                compile(compiler, sources, processorPath, instrumentedOutput, true);
+            }
+
+            final long[] plain = new long[iterations];
+            final long[] instrumented = new long[iterations];
+            for (int i = 0; i < iterations; ++i) {
+                plain[i] = compile(compiler, sources, processorPath, plainOutput, false);
+                instrumented[i] = compile(compiler, sources, processorPath, instrumentedOutput, true);
+                System.out.println("iteration " + i + ": plain " + millis(plain[i]) + " ms, instrumented "
+                        + millis(instrumented[i]) + " ms");
+            }
+
+            final long plainMedian = median(plain);
+            final long instrumentedMedian = median(instrumented);
+            System.out.println("median: plain " + millis(plainMedian) + " ms, instrumented " + millis(instrumentedMedian)
+                    + " ms, annotation processing overhead " + millis(instrumentedMedian - plainMedian) + " ms");
+        }
+        finally {
+            deleteRecursively(workingDirectory);
+        }
+    }
+
+    private static long compile(JavaCompiler compiler, List<File> sources, String processorPath, Path output,
+                                boolean doInstrument) throws IOException {
+        final List<String> options = new ArrayList<>();
+        options.add("-d");
+        options.add(output.toString());
+        // the instrumented code refers to the runtime classes that are shipped with the annotation processor
+        options.add("-classpath");
+        options.add(processorPath);
+        if (doInstrument) {
+            options.add("-processorpath");
+            options.add(processorPath);
+        }
+        else {
+            options.add("-proc:none");
+        }
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            final Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sources);
+            final long start = System.nanoTime();
+            final boolean isSuccessful = compiler.getTask(null, fileManager, null, options, null, compilationUnits).call();
+            final long elapsed = System.nanoTime() - start;
+            if (!isSuccessful) {
+                throw new IllegalStateException("Compilation of the synthetic sources failed, instrumented: " + doInstrument);
+            }
+            return elapsed;
+        }
+    }
+
+    private static List<File> generateSources(Path sourceDirectory, int numberOfClasses, int statementGroups) throws IOException {
+        final Path packageDirectory = Files.createDirectories(sourceDirectory.resolve(PACKAGE_NAME));
+        final List<File> sources = new ArrayList<>();
+        for (int i = 0; i < numberOfClasses; ++i) {
+            final String className = "Synthetic" + i;
+            final Path source = packageDirectory.resolve(className + ".java");
+            try (Writer writer = Files.newBufferedWriter(source, StandardCharsets.UTF_8)) {
+                writer.write(syntheticClass(className, statementGroups));
+            }
+            sources.add(source.toFile());
+        }
+        return sources;
+    }
+
+    // The generated methods contain the constructs the instrumentation has to analyse: assignments, compound
+    // assignments, increments, array element updates, loops, conditionals, excluded locals and returns.
+    private static String syntheticClass(String className, int statementGroups) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        sb.append("public class ").append(className).append(" {\n\n");
+        sb.append("    private int count;\n\n");
+        sb.append("    private final int[] values = new int[").append(statementGroups).append("];\n\n");
+        sb.append("    public ").append(className).append("(int seed) {\n");
+        sb.append("        super();\n");
+        sb.append("        count = seed;\n");
+        sb.append("    }\n\n");
+
+        for (int method = 0; method < METHODS_PER_CLASS; ++method) {
+            sb.append("    public int method").append(method).append("(int limit, String name) {\n");
+            sb.append("        int total = name.length();\n");
+            sb.append("        int index = 0;\n");
+            for (int group = 0; group < statementGroups; ++group) {
+                sb.append("        for (int i = 0; i < limit; i++) {\n");
+                sb.append("            total += i * ").append(group + 1).append(";\n");
+                sb.append("        }\n");
+                sb.append("        if (total > limit) total--;\n");
+                sb.append("        else total = total * 2 + ").append(group).append(";\n");
+                sb.append("        values[index++] = total;\n");
+                sb.append("        @io.ghostwriter.annotation.Exclude int excluded").append(group).append(" = total;\n");
+                sb.append("        count++;\n");
+            }
+            sb.append("        if (limit < 0) {\n");
+            sb.append("            return count++;\n");
+            sb.append("        }\n");
+            sb.append("        return total + count;\n");
+            sb.append("    }\n\n");
+        }
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static int intArgument(String[] args, int index, int defaultValue) {
+        if (args.length <= index) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(args[index]);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer is provided as argument " + index + ": " + args[index]);
+        }
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.ghostwriter;
+
+import io.ghostwriter.openjdk.v7.ast.translator.MetadataHolder;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+// assuming outlining is enabled and the bytecode budget is set to 0
+public class BytecodeBudgetTest extends TestBase {
+
+    @Test
+    public void testMethodOverBudgetTracesOnlyEnteringAndExiting() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.enableValueChangeTracking();
+        methodWithResult(1, 2L);
+        inMemoryTracer.disableValueChangeTracking();
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodWithResult", new Parameter<>("first", 1), new Parameter<>("second", 2L))
+                .exiting("methodWithResult");
+    }
+
+    private long methodWithResult(int first, long second) {
+        long result = first + second;
+        return result;
+    }
+
+    @Test
+    public void testMethodOverBudgetDoesNotTraceErrors() {
+        fetchedPreparedInMemoryTracer();
+        try {
+            failingMethod();
+            Assert.fail("Expected an exception from failingMethod");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("failingMethod")
+                .exiting("failingMethod");
+    }
+
+    private void failingMethod() {
+        throw new IllegalStateException("failing on purpose");
+    }
+
+    @Test
+    public void testEventsAreOutlinedToTheMetadataHolder() throws ClassNotFoundException {
+        final Class<?> holder = Class.forName(BytecodeBudgetTest.class.getName() + "$" + MetadataHolder.HOLDER_CLASS_NAME);
+        boolean hasEnteringHelper = false;
+        boolean hasExitingHelper = false;
+        for (Method method : holder.getDeclaredMethods()) {
+            hasEnteringHelper |= method.getName().startsWith("entering$");
+            hasExitingHelper |= method.getName().startsWith("exiting$");
+        }
+
+        Assert.assertTrue("Missing outlined entering helper", hasEnteringHelper);
+        Assert.assertTrue("Missing outlined exiting helper", hasExitingHelper);
+    }
+
+    @Test
+    public void testNoHelpersAreLeftForDiscardedEvents() throws ClassNotFoundException {
+        final Class<?> holder = Class.forName(BytecodeBudgetTest.class.getName() + "$" + MetadataHolder.HOLDER_CLASS_NAME);
+        for (Method method : holder.getDeclaredMethods()) {
+            Assert.assertFalse("Unexpected helper: " + method.getName(), method.getName().startsWith("onError$"));
+        }
+    }
+
+}
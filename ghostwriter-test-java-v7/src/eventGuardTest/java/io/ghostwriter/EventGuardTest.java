@@ -0,0 +1,78 @@
+package io.ghostwriter;
+
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventGuardTest extends TestBase {
+
+    @After
+    public void enableTracing() {
+        GhostWriterHooks.setEnabled(true);
+    }
+
+    @Test
+    public void testDisabledTracingSkipsAllEvents() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.enableValueChangeTracking();
+        GhostWriterHooks.setEnabled(false);
+        methodWithEvents(42);
+        GhostWriterHooks.setEnabled(true);
+        inMemoryTracer.disableValueChangeTracking();
+
+        assertEquals("No events expected while tracing is disabled", 0, inMemoryTracer.numberOfMessages());
+    }
+
+    @Test
+    public void testReenabledTracingReportsEvents() {
+        fetchedPreparedInMemoryTracer();
+        GhostWriterHooks.setEnabled(false);
+        methodWithEvents(1);
+        GhostWriterHooks.setEnabled(true);
+        methodWithEvents(2);
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodWithEvents", new Parameter<>("value", 2))
+                .returning("methodWithEvents", 3)
+                .exiting("methodWithEvents");
+    }
+
+    private int methodWithEvents(int value) {
+        int result = value;
+        ++result;
+        return result;
+    }
+
+    @Test
+    public void testDisablingDuringInvocationKeepsEnteringExitingPaired() {
+        fetchedPreparedInMemoryTracer();
+        methodDisablingTracing();
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodDisablingTracing")
+                .exiting("methodDisablingTracing");
+    }
+
+    private void methodDisablingTracing() {
+        GhostWriterHooks.setEnabled(false);
+    }
+
+    @Test
+    public void testEnablingDuringInvocationDoesNotReportUnpairedExiting() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        GhostWriterHooks.setEnabled(false);
+        methodEnablingTracing();
+
+        assertEquals("No events expected for an invocation that started with tracing disabled", 0, inMemoryTracer.numberOfMessages());
+    }
+
+    private void methodEnablingTracing() {
+        GhostWriterHooks.setEnabled(true);
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.ghostwriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.test.TestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@Exclude
+public class HotMethodTest extends TestBase {
+
+    // assuming the hot-methods.txt profile of the test set is used with a threshold of 1000
+    public class ClassUnderTest {
+
+        public int countedMethod() {
+            int result = 1;
+            return result;
+        }
+
+        public int sampledMethod() {
+            int result = 2;
+            return result;
+        }
+
+        public int rarelyCalledMethod() {
+            List<Integer> values = new ArrayList<>();
+            values.add(3);
+            return values.get(0);
+        }
+    }
+
+    private InMemoryTracer inMemoryTracer;
+    private ClassUnderTest classUnderTest;
+
+    @Before
+    public void prepare() {
+        inMemoryTracer = fetchedPreparedInMemoryTracer();
+        classUnderTest = new ClassUnderTest();
+        inMemoryTracer.clearMessages();
+    }
+
+    @Test
+    public void countedMethodIsExcludedAboveThreshold() {
+        classUnderTest.countedMethod();
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void sampledMethodIsExcluded() {
+        classUnderTest.sampledMethod();
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void methodIsNotExcludedBelowThreshold() {
+        // the samples of the collapsed stacks belong to the top frame, which is ArrayList.add
+        classUnderTest.rarelyCalledMethod();
+        Assert.assertTrue(inMemoryTracer.numberOfMessages() > 0);
+    }
+}
@@ -0,0 +1,65 @@
+package io.ghostwriter;
+
+import io.ghostwriter.fullprofile.FullProfileClass;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+// assuming the profile file of the test set is used, see ghostwriter-profile.properties
+public class ProfileTest extends TestBase {
+
+    @Test
+    public void testErrorsOnlyProfileDoesNotTraceValueChangesAndReturning() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.enableValueChangeTracking();
+        methodWithResult(1, 2L);
+        inMemoryTracer.disableValueChangeTracking();
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodWithResult", new Parameter<>("first", 1), new Parameter<>("second", 2L))
+                .exiting("methodWithResult");
+    }
+
+    private long methodWithResult(int first, long second) {
+        long result = first + second;
+        return result;
+    }
+
+    @Test
+    public void testErrorsOnlyProfileTracesErrors() {
+        fetchedPreparedInMemoryTracer();
+        try {
+            failingMethod();
+            Assert.fail("Expected an exception from failingMethod");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("failingMethod")
+                .onError("failingMethod", IllegalStateException.class)
+                .exiting("failingMethod");
+    }
+
+    private void failingMethod() {
+        throw new IllegalStateException("failing on purpose");
+    }
+
+    @Test
+    public void testPackageOverrideUsesFullProfile() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.enableValueChangeTracking();
+        new FullProfileClass().methodWithResult(1, 2L);
+        inMemoryTracer.disableValueChangeTracking();
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodWithResult", new Parameter<>("first", 1), new Parameter<>("second", 2L))
+                .valueChange("methodWithResult", "result", 3L)
+                .returning("methodWithResult", 3L)
+                .exiting("methodWithResult");
+    }
+
+}
@@ -0,0 +1,14 @@
+package io.ghostwriter.fullprofile;
+
+/**
+ * Test class used for verifying the package overrides of the profile file.
+ * Its package uses the full profile, while the rest of the test set uses the errors-only profile
+ */
+public class FullProfileClass {
+
+    public long methodWithResult(int first, long second) {
+        long result = first + second;
+        return result;
+    }
+
+}
@@ -0,0 +1,81 @@
+package io.ghostwriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.Sampled;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@Exclude
+public class SamplingTest extends TestBase {
+
+    // assuming the sampling interval is set to 1000000000, so practically no invocation is sampled by default
+    public class ClassUnderTest {
+
+        public int rarelySampled(int value) {
+            int result = value * 2;
+            return result;
+        }
+
+        @Sampled(1)
+        public int alwaysSampled(int value) {
+            int result = value * 2;
+            return result;
+        }
+
+        @Sampled(value = 1)
+        public void alwaysSampledFailing() {
+            throw new IllegalStateException("failing on purpose");
+        }
+    }
+
+    private InMemoryTracer inMemoryTracer;
+    private ClassUnderTest classUnderTest;
+
+    @Before
+    public void prepare() {
+        inMemoryTracer = fetchedPreparedInMemoryTracer();
+        classUnderTest = new ClassUnderTest();
+        inMemoryTracer.clearMessages();
+    }
+
+    @Test
+    public void unsampledInvocationsSkipEveryEvent() {
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.rarelySampled(i);
+        }
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void sampledInvocationReportsEveryEvent() {
+        classUnderTest.alwaysSampled(3);
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("alwaysSampled", new Parameter<>("value", 3))
+                .returning("alwaysSampled", 6)
+                .exiting("alwaysSampled");
+    }
+
+    @Test
+    public void sampledInvocationReportsErrors() {
+        try {
+            classUnderTest.alwaysSampledFailing();
+            Assert.fail("Expected an exception from alwaysSampledFailing");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("alwaysSampledFailing")
+                .onError("alwaysSampledFailing", IllegalStateException.class)
+                .exiting("alwaysSampledFailing");
+    }
+}
@@ -0,0 +1,215 @@
+package io.ghostwriter;
+
+import io.ghostwriter.annotation.Timeout;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// assuming single exit lowering is enabled, the ExitingTest, TimeoutTest and OnErrorTest scenarios are run with it as well
+public class SingleExitTest extends TestBase {
+
+    @Test
+    public void testMethodWithMultipleReturns() {
+        fetchedPreparedInMemoryTracer();
+        assertEquals("negative", classify(-5));
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("classify", new Parameter<>("value", -5))
+                .returning("classify", "negative")
+                .exiting("classify");
+    }
+
+    @Test
+    public void testFallThroughToLastReturn() {
+        fetchedPreparedInMemoryTracer();
+        assertEquals("positive", classify(5));
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("classify", new Parameter<>("value", 5))
+                .returning("classify", "positive")
+                .exiting("classify");
+    }
+
+    private String classify(int value) {
+        if (value < 0) {
+            return "negative";
+        }
+        if (value == 0) {
+            return "zero";
+        }
+        return "positive";
+    }
+
+    @Test
+    public void testReturnFromNestedLoop() {
+        fetchedPreparedInMemoryTracer();
+        final int index = indexOf(Arrays.asList("a", "b", "c"), "b");
+        assertEquals(1, index);
+
+        MessageSequenceAsserter.messageSequence()
+                .any()
+                .returning("indexOf", 1)
+                .exiting("indexOf");
+    }
+
+    private int indexOf(List<String> values, String value) {
+        for (int i = 0; i < values.size(); ++i) {
+            while (true) {
+                if (values.get(i).equals(value)) {
+                    return i;
+                }
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testReturnFromSwitch() {
+        assertEquals(1, fromSwitch('a'));
+        assertEquals(2, fromSwitch('b'));
+        assertEquals(0, fromSwitch('z'));
+    }
+
+    private int fromSwitch(char c) {
+        switch (c) {
+            case 'a':
+                return 1;
+            case 'b':
+                return 2;
+            default:
+                break;
+        }
+        return 0;
+    }
+
+    @Test
+    public void testEarlyReturnOfVoidMethod() {
+        fetchedPreparedInMemoryTracer();
+        voidMethodWithEarlyReturn(true);
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("voidMethodWithEarlyReturn", new Parameter<>("returnEarly", true))
+                .exiting("voidMethodWithEarlyReturn")
+                .empty();
+    }
+
+    private void voidMethodWithEarlyReturn(boolean returnEarly) {
+        if (returnEarly) {
+            return;
+        }
+        throw new IllegalStateException("should have returned early");
+    }
+
+    @Test
+    public void testReturnThroughNestedFinally() {
+        final StringBuilder sb = new StringBuilder();
+        assertEquals("result", returnThroughFinally(sb));
+        assertEquals("finally", sb.toString());
+    }
+
+    private String returnThroughFinally(StringBuilder sb) {
+        try {
+            return "result";
+        }
+        finally {
+            sb.append("finally");
+        }
+    }
+
+    @Test
+    public void testErrorInMethodWithMultipleReturns() {
+        fetchedPreparedInMemoryTracer();
+        try {
+            failOrReturn(true);
+            fail("Expected an exception from failOrReturn");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("failOrReturn", new Parameter<>("doFail", true))
+                .onError("failOrReturn", IllegalArgumentException.class)
+                .exiting("failOrReturn");
+    }
+
+    private int failOrReturn(boolean doFail) {
+        if (!doFail) {
+            return 1;
+        }
+        if (doFail) {
+            throw new IllegalArgumentException("failing on purpose");
+        }
+        return 2;
+    }
+
+    @Timeout(threshold = 5)
+    public long timeSensitiveWithEarlyReturn(boolean returnEarly) {
+        if (returnEarly) {
+            return 0L;
+        }
+        try {
+            Thread.sleep(25);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return 1L;
+    }
+
+    @Test
+    public void testTimeoutWithMultipleReturns() {
+        fetchedPreparedInMemoryTracer();
+        assertEquals(1L, timeSensitiveWithEarlyReturn(false));
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("timeSensitiveWithEarlyReturn", new Parameter<>("returnEarly", false))
+                .returning("timeSensitiveWithEarlyReturn", 1L)
+                .timeout("timeSensitiveWithEarlyReturn", 5)
+                .exiting("timeSensitiveWithEarlyReturn");
+    }
+
+    @Test
+    public void testGenericResult() {
+        assertEquals("first", firstOrDefault(Arrays.asList("first", "second"), "default"));
+        assertEquals("default", firstOrDefault(Arrays.<String>asList(), "default"));
+    }
+
+    private <T> T firstOrDefault(List<T> values, T defaultValue) {
+        if (values.isEmpty()) {
+            return defaultValue;
+        }
+        return values.get(0);
+    }
+
+    @Test
+    public void testConstructorWithEarlyReturn() {
+        assertTrue(new EarlyReturningConstructor(true).isInitialized);
+        assertTrue(new EarlyReturningConstructor(false).isInitialized);
+    }
+
+    private static class EarlyReturningConstructor {
+
+        private boolean isInitialized;
+
+        EarlyReturningConstructor(boolean returnEarly) {
+            super();
+            isInitialized = true;
+            if (returnEarly) {
+                return;
+            }
+            isInitialized = !returnEarly;
+        }
+
+    }
+
+}
@@ -2,12 +2,14 @@ package io.ghostwriter;
 
 import io.ghostwriter.excluded.ExcludedPackageClass;
 import io.ghostwriter.excluded.nested.ExcludedNestedPackageClass;
+import io.ghostwriter.patterns.ExcludedByPatternClass;
 import io.ghostwriter.test.TestBase;
 import org.junit.Test;
 
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class EnvironmentExcludeTest extends TestBase {
 
@@ -43,4 +45,27 @@ public class EnvironmentExcludeTest extends TestBase {
         assertEquals("Class excluded by environment should not produce GW events!",
                 Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
     }
+
+    @Test
+    public void testExcludedByPatternClass() {
+        final InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.clearMessages();
+        ExcludedByPatternClass someVal = new ExcludedByPatternClass();
+        someVal.meaningOfLife();
+        assertEquals("Class matching an exclude pattern should not produce GW events!",
+                Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void testMethodExcludedByPattern() {
+        final InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        PatternExcludedMethods someVal = new PatternExcludedMethods();
+        inMemoryTracer.clearMessages();
+        someVal.secretValue();
+        assertEquals("Method matching an exclude pattern should not produce GW events!",
+                Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+
+        someVal.publicValue();
+        assertTrue("Other methods of the class should produce GW events!", inMemoryTracer.numberOfMessages() > 0);
+    }
 }
@@ -0,0 +1,228 @@
+package io.ghostwriter;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.message.EnteringMessage;
+import io.ghostwriter.message.Message;
+import io.ghostwriter.openjdk.v7.runtime.FixedArityTracer;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.test.TestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FixedArityEnteringTest extends TestBase {
+
+    private RecordingTracer recordingTracer;
+
+    @Before
+    public void installRecordingTracer() {
+        recordingTracer = new RecordingTracer();
+        GhostWriterHooks.setTracerProvider(recordingTracer);
+    }
+
+    @After
+    public void restoreInMemoryTracer() {
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+    }
+
+    @Test
+    public void testMethodWithNoParametersUsesFixedArityEntering() {
+        methodWithNoParameters();
+        final Entering entering = recordingTracer.lastEntering("methodWithNoParameters");
+        assertEquals(0, entering.arity);
+        assertEquals(0, entering.arguments.length);
+    }
+
+    private void methodWithNoParameters() {
+        // instrument code tested here
+    }
+
+    @Test
+    public void testMethodWithFourParametersUsesFixedArityEntering() {
+        methodWithFourParameters(1, "two", 3L, true);
+        final Entering entering = recordingTracer.lastEntering("methodWithFourParameters");
+        assertEquals(4, entering.arity);
+        assertArrayEquals(new String[]{"first", "second", "third", "fourth"}, entering.parameterNames);
+        assertArrayEquals(new Object[]{1, "two", 3L, true}, entering.arguments);
+    }
+
+    private void methodWithFourParameters(int first, String second, long third, boolean fourth) {
+        assert first > 0 && second != null && third > 0 && fourth;
+    }
+
+    @Test
+    public void testParameterNamesAreSharedBetweenInvocations() {
+        methodWithTwoParameters(1, 2);
+        final String[] namesOfFirstCall = recordingTracer.lastEntering("methodWithTwoParameters").parameterNames;
+        methodWithTwoParameters(3, 4);
+        final Entering secondCall = recordingTracer.lastEntering("methodWithTwoParameters");
+        assertSame("Parameter names should be part of the static site", namesOfFirstCall, secondCall.parameterNames);
+        assertArrayEquals(new Object[]{3, 4}, secondCall.arguments);
+    }
+
+    private void methodWithTwoParameters(int x, int y) {
+        assert x != y;
+    }
+
+    @Test
+    public void testMethodWithManyParametersFallsBackToVarargsEntering() {
+        methodWithFiveParameters(1, 2, 3, 4, 5);
+        final Entering entering = recordingTracer.lastEntering("methodWithFiveParameters");
+        assertEquals(-1, entering.arity);
+        assertArrayEquals(new Object[]{"a", 1, "b", 2, "c", 3, "d", 4, "e", 5}, entering.arguments);
+    }
+
+    private void methodWithFiveParameters(int a, int b, int c, int d, int e) {
+        assert a + b + c + d + e > 0;
+    }
+
+    @Test
+    public void testFixedArityEnteringFallsBackToGenericTracer() {
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        methodWithTwoParameters(5, 6);
+        // pop the unused exitingMessage
+        inMemoryTracer.popMessage();
+        Message<?> message = inMemoryTracer.popMessage();
+        assertTrue("Invalid message type: " + message.getClass(), message instanceof EnteringMessage);
+
+        Object[] parameters = ((EnteringMessage) message).getPayload().getParameters();
+        assertArrayEquals(new Object[]{"x", 5, "y", 6}, parameters);
+    }
+
+    @Test
+    public void testTracerInstalledThroughGenericApiReceivesGenericEntering() {
+        // the hooks forward the events of a provider that does not implement the extension interfaces
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+        final RecordingTracer installedTracer = new RecordingTracer();
+        GhostWriter.setTracerProvider(installedTracer);
+        methodWithTwoParameters(7, 8);
+        final Entering entering = installedTracer.lastEntering("methodWithTwoParameters");
+        assertEquals(-1, entering.arity);
+        assertArrayEquals(new Object[]{"x", 7, "y", 8}, entering.arguments);
+    }
+
+    @Test
+    public void testReplacedTracerProviderNoLongerReceivesEvents() {
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        methodWithNoParameters();
+        assertTrue("The replaced tracer should not receive events", !recordingTracer.hasEntering("methodWithNoParameters"));
+        // pop the unused exitingMessage
+        inMemoryTracer.popMessage();
+        Message<?> message = inMemoryTracer.popMessage();
+        assertTrue("Invalid message type: " + message.getClass(), message instanceof EnteringMessage);
+    }
+
+    @Exclude
+    private static final class Entering {
+
+        private final String method;
+
+        private final int arity;
+
+        private final String[] parameterNames;
+
+        private final Object[] arguments;
+
+        Entering(String method, int arity, String[] parameterNames, Object... arguments) {
+            this.method = method;
+            this.arity = arity;
+            this.parameterNames = parameterNames;
+            this.arguments = arguments;
+        }
+
+    }
+
+    @Exclude
+    private static final class RecordingTracer implements FixedArityTracer, TracerProvider<RecordingTracer> {
+
+        private final List<Entering> enterings = new ArrayList<>();
+
+        boolean hasEntering(String method) {
+            for (Entering entering : enterings) {
+                if (entering.method.equals(method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Entering lastEntering(String method) {
+            for (int i = enterings.size() - 1; i >= 0; --i) {
+                final Entering entering = enterings.get(i);
+                if (entering.method.equals(method)) {
+                    return entering;
+                }
+            }
+            throw new AssertionError("No entering event for method: " + method + ", got: " + enterings.size() + " events");
+        }
+
+        @Override
+        public RecordingTracer getTracer() {
+            return this;
+        }
+
+        @Override
+        public void entering0(Object source, Site site) {
+            enterings.add(new Entering(site.getMethodName(), 0, site.getParameterNames()));
+        }
+
+        @Override
+        public void entering1(Object source, Site site, Object arg0) {
+            enterings.add(new Entering(site.getMethodName(), 1, site.getParameterNames(), arg0));
+        }
+
+        @Override
+        public void entering2(Object source, Site site, Object arg0, Object arg1) {
+            enterings.add(new Entering(site.getMethodName(), 2, site.getParameterNames(), arg0, arg1));
+        }
+
+        @Override
+        public void entering3(Object source, Site site, Object arg0, Object arg1, Object arg2) {
+            enterings.add(new Entering(site.getMethodName(), 3, site.getParameterNames(), arg0, arg1, arg2));
+        }
+
+        @Override
+        public void entering4(Object source, Site site, Object arg0, Object arg1, Object arg2, Object arg3) {
+            enterings.add(new Entering(site.getMethodName(), 4, site.getParameterNames(), arg0, arg1, arg2, arg3));
+        }
+
+        @Override
+        public void entering(Object source, String method, Object... params) {
+            enterings.add(new Entering(method, -1, null, Arrays.copyOf(params, params.length)));
+        }
+
+        @Override
+        public void exiting(Object source, String method) {
+        }
+
+        @Override
+        public void valueChange(Object source, String method, String variable, Object value) {
+        }
+
+        @Override
+        public <T> void returning(Object source, String method, T returnValue) {
+        }
+
+        @Override
+        public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        }
+
+        @Override
+        public void onError(Object source, String method, Throwable error) {
+        }
+
+    }
+
+}
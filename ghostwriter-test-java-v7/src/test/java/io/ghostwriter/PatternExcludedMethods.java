@@ -0,0 +1,17 @@
+package io.ghostwriter;
+
+/**
+ * Test class used for verifying that excluding methods of a class via method patterns works.
+ * The methods starting with "secret" should not be traced because they are excluded via environment settings
+ */
+public class PatternExcludedMethods {
+
+    public int secretValue() {
+        return 42;
+    }
+
+    public int publicValue() {
+        return 42;
+    }
+
+}
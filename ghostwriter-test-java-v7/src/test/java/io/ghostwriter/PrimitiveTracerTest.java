@@ -0,0 +1,327 @@
+package io.ghostwriter;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.openjdk.v7.runtime.PrimitiveTracer;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.test.TestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveTracerTest extends TestBase {
+
+    private RecordingTracer recordingTracer;
+
+    @Before
+    public void installRecordingTracer() {
+        recordingTracer = new RecordingTracer();
+        GhostWriterHooks.setTracerProvider(recordingTracer);
+    }
+
+    @After
+    public void restoreInMemoryTracer() {
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+    }
+
+    @Test
+    public void testPrimitiveValueChangesAreNotBoxed() {
+        primitiveAssignments();
+        final List<String> expected = new ArrayList<>();
+        expected.add("valueChange:int:i=1");
+        expected.add("valueChange:long:l=2");
+        expected.add("valueChange:double:d=3.0");
+        expected.add("valueChange:float:f=4.0");
+        expected.add("valueChange:boolean:z=true");
+        expected.add("valueChange:char:c=c");
+        expected.add("valueChange:short:s=5");
+        expected.add("valueChange:byte:b=6");
+        expected.add("valueChange:Object:boxed=7");
+        assertEquals(expected, recordingTracer.eventsOf("primitiveAssignments"));
+    }
+
+    private void primitiveAssignments() {
+        int i = 1;
+        long l = 2L;
+        double d = 3.0;
+        float f = 4.0f;
+        boolean z = true;
+        char c = 'c';
+        short s = 5;
+        byte b = 6;
+        Integer boxed = 7;
+        assert i + l + d + f + c + s + b + boxed > 0 && z;
+    }
+
+    @Test
+    public void testPrimitiveLoopCounterIsNotBoxed() {
+        loopCounter();
+        final List<String> events = recordingTracer.eventsOf("loopCounter");
+        assertTrue(events.toString(), events.contains("valueChange:int:i=0"));
+        assertTrue(events.toString(), events.contains("valueChange:int:i=1"));
+        assertTrue(events.toString(), events.contains("valueChange:long:sum=11"));
+        assertEquals("returning:long:11", recordingTracer.lastEventOf("loopCounter"));
+    }
+
+    private long loopCounter() {
+        long sum = 10L;
+        for (int i = 0; i < 2; ++i) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testPrimitiveReturnValueIsNotBoxed() {
+        primitiveResult();
+        objectResult();
+        assertEquals("returning:double:2.5", recordingTracer.lastEventOf("primitiveResult"));
+        assertEquals("returning:Object:result", recordingTracer.lastEventOf("objectResult"));
+    }
+
+    private double primitiveResult() {
+        return 2.5;
+    }
+
+    private String objectResult() {
+        return "result";
+    }
+
+    @Test
+    public void testSinglePrimitiveParameterIsNotBoxed() {
+        intParameter(1);
+        charParameter('c');
+        boxedParameter(2);
+        assertEquals("entering:int:value=1", recordingTracer.lastEventOf("intParameter"));
+        assertEquals("entering:char:value=c", recordingTracer.lastEventOf("charParameter"));
+        assertEquals("entering:Object:value=2", recordingTracer.lastEventOf("boxedParameter"));
+    }
+
+    private void intParameter(int value) {
+        assert value > 0;
+    }
+
+    private void charParameter(char value) {
+        assert value > 0;
+    }
+
+    private void boxedParameter(Integer value) {
+        assert value > 0;
+    }
+
+    @Test
+    public void testMultiplePrimitiveParametersAreBoxed() {
+        twoPrimitiveParameters(1, 2L);
+        // only the argument of a single parameter has primitive overloads, see GhostWriterHooks.MAX_FIXED_ARITY
+        assertEquals("entering:Object:x=1,y=2", recordingTracer.lastEventOf("twoPrimitiveParameters"));
+    }
+
+    private void twoPrimitiveParameters(int x, long y) {
+        assert x < y;
+    }
+
+    @Exclude
+    private static final class RecordingTracer implements PrimitiveTracer, TracerProvider<RecordingTracer> {
+
+        private final List<String> methods = new ArrayList<>();
+
+        private final List<String> events = new ArrayList<>();
+
+        List<String> eventsOf(String method) {
+            final List<String> result = new ArrayList<>();
+            for (int i = 0; i < methods.size(); ++i) {
+                if (methods.get(i).equals(method)) {
+                    result.add(events.get(i));
+                }
+            }
+            return result;
+        }
+
+        String lastEventOf(String method) {
+            final List<String> methodEvents = eventsOf(method);
+            return methodEvents.get(methodEvents.size() - 1);
+        }
+
+        private void valueChangeEvent(String method, String type, String variable, Object value) {
+            methods.add(method);
+            events.add("valueChange:" + type + ":" + variable + "=" + value);
+        }
+
+        private void enteringEvent(String method, String type, String parameters) {
+            methods.add(method);
+            events.add("entering:" + type + ":" + parameters);
+        }
+
+        private void returningEvent(String method, String type, Object value) {
+            methods.add(method);
+            events.add("returning:" + type + ":" + value);
+        }
+
+        @Override
+        public RecordingTracer getTracer() {
+            return this;
+        }
+
+        @Override
+        public void entering1(Object source, Site site, int arg0) {
+            enteringEvent(site.getMethodName(), "int", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, long arg0) {
+            enteringEvent(site.getMethodName(), "long", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, double arg0) {
+            enteringEvent(site.getMethodName(), "double", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, float arg0) {
+            enteringEvent(site.getMethodName(), "float", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, boolean arg0) {
+            enteringEvent(site.getMethodName(), "boolean", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, char arg0) {
+            enteringEvent(site.getMethodName(), "char", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, short arg0) {
+            enteringEvent(site.getMethodName(), "short", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void entering1(Object source, Site site, byte arg0) {
+            enteringEvent(site.getMethodName(), "byte", site.getParameterNames()[0] + "=" + arg0);
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, int value) {
+            valueChangeEvent(site.getMethodName(), "int", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, long value) {
+            valueChangeEvent(site.getMethodName(), "long", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, double value) {
+            valueChangeEvent(site.getMethodName(), "double", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, float value) {
+            valueChangeEvent(site.getMethodName(), "float", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, boolean value) {
+            valueChangeEvent(site.getMethodName(), "boolean", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, char value) {
+            valueChangeEvent(site.getMethodName(), "char", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, short value) {
+            valueChangeEvent(site.getMethodName(), "short", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, byte value) {
+            valueChangeEvent(site.getMethodName(), "byte", variable, String.valueOf(value));
+        }
+
+        @Override
+        public void valueChange(Object source, String method, String variable, Object value) {
+            valueChangeEvent(method, "Object", variable, value);
+        }
+
+        @Override
+        public void returning(Object source, Site site, int returnValue) {
+            returningEvent(site.getMethodName(), "int", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, long returnValue) {
+            returningEvent(site.getMethodName(), "long", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, double returnValue) {
+            returningEvent(site.getMethodName(), "double", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, float returnValue) {
+            returningEvent(site.getMethodName(), "float", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, boolean returnValue) {
+            returningEvent(site.getMethodName(), "boolean", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, char returnValue) {
+            returningEvent(site.getMethodName(), "char", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, short returnValue) {
+            returningEvent(site.getMethodName(), "short", String.valueOf(returnValue));
+        }
+
+        @Override
+        public void returning(Object source, Site site, byte returnValue) {
+            returningEvent(site.getMethodName(), "byte", String.valueOf(returnValue));
+        }
+
+        @Override
+        public <T> void returning(Object source, String method, T returnValue) {
+            returningEvent(method, "Object", returnValue);
+        }
+
+        @Override
+        public void entering(Object source, String method, Object... params) {
+            final StringBuilder parameters = new StringBuilder();
+            for (int i = 0; i < params.length; i += 2) {
+                if (i > 0) {
+                    parameters.append(',');
+                }
+                parameters.append(params[i]).append('=').append(params[i + 1]);
+            }
+            enteringEvent(method, "Object", parameters.toString());
+        }
+
+        @Override
+        public void exiting(Object source, String method) {
+        }
+
+        @Override
+        public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        }
+
+        @Override
+        public void onError(Object source, String method, Throwable error) {
+        }
+
+    }
+
+}
@@ -0,0 +1,226 @@
+package io.ghostwriter;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.openjdk.v7.runtime.Site;
+import io.ghostwriter.openjdk.v7.runtime.SiteTracer;
+import io.ghostwriter.test.TestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SiteTest extends TestBase {
+
+    private RecordingTracer recordingTracer;
+
+    @Before
+    public void installRecordingTracer() {
+        recordingTracer = new RecordingTracer();
+        GhostWriterHooks.setTracerProvider(recordingTracer);
+    }
+
+    @After
+    public void restoreInMemoryTracer() {
+        GhostWriterHooks.setTracerProvider(InMemoryTracerProvider.INSTANCE);
+    }
+
+    @Test
+    public void testSiteDescribesTheInstrumentedMethod() {
+        methodWithManyParameters(1, "b", 3L, 'd', 5.0);
+        final Site site = recordingTracer.siteOf("methodWithManyParameters");
+
+        assertEquals(SiteTest.class.getName(), site.getClassName());
+        assertEquals("(int, String, long, char, double)", site.getSignature());
+        assertArrayEquals(new String[]{"a", "b", "c", "d", "e"}, site.getParameterNames());
+        assertTrue("Missing source line: " + site, site.getLine() > 0);
+        assertSame(site, Site.byId(site.getId()));
+        assertTrue(site.getId() < Site.count());
+    }
+
+    @Test
+    public void testRegisteredSitesAreKeptWhenTheRegistryGrows() {
+        final List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            sites.add(Site.register(SiteTest.class.getName(), "generated" + i, "()", new String[0], i));
+        }
+
+        for (int i = 0; i < sites.size(); ++i) {
+            final Site site = sites.get(i);
+            assertEquals(sites.get(0).getId() + i, site.getId());
+            assertSame(site, Site.byId(site.getId()));
+        }
+        assertTrue(sites.get(sites.size() - 1).getId() < Site.count());
+    }
+
+    @Test
+    public void testEnteringWithManyParametersPassesOnlyTheValues() {
+        methodWithManyParameters(1, "b", 3L, 'd', 5.0);
+        final Object[] arguments = recordingTracer.argumentsOf("methodWithManyParameters");
+        assertArrayEquals(new Object[]{1, "b", 3L, 'd', 5.0}, arguments);
+    }
+
+    private void methodWithManyParameters(int a, String b, long c, char d, double e) {
+        assert a > 0 && b != null && c > 0 && d != 0 && e > 0;
+    }
+
+    @Test
+    public void testAllEventsOfAMethodShareTheSameSite() {
+        methodWithResult();
+        final List<String> events = recordingTracer.eventsOf("methodWithResult");
+        assertEquals(Arrays.asList("returning", "exiting"), events);
+        final List<Site> sites = recordingTracer.sitesOf("methodWithResult");
+        assertSame(sites.get(0), sites.get(1));
+    }
+
+    private String methodWithResult() {
+        return "result";
+    }
+
+    @Test
+    public void testDifferentMethodsHaveDifferentSites() {
+        methodWithResult();
+        methodWithManyParameters(1, "b", 3L, 'd', 5.0);
+        final Site first = recordingTracer.siteOf("methodWithResult");
+        final Site second = recordingTracer.siteOf("methodWithManyParameters");
+        assertNotEquals(first.getId(), second.getId());
+    }
+
+    @Test
+    public void testSiteTracerReceivesErrors() {
+        try {
+            failingMethod();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("onError", "exiting"), recordingTracer.eventsOf("failingMethod"));
+    }
+
+    private void failingMethod() {
+        throw new IllegalStateException("failing on purpose");
+    }
+
+    @Exclude
+    private static final class RecordingTracer implements SiteTracer, TracerProvider<RecordingTracer> {
+
+        private final List<Site> sites = new ArrayList<>();
+
+        private final List<String> events = new ArrayList<>();
+
+        private final List<Object[]> arguments = new ArrayList<>();
+
+        private void event(Site site, String event, Object[] eventArguments) {
+            sites.add(site);
+            events.add(event);
+            arguments.add(eventArguments);
+        }
+
+        List<String> eventsOf(String method) {
+            final List<String> result = new ArrayList<>();
+            for (int i = 0; i < sites.size(); ++i) {
+                if (sites.get(i).getMethodName().equals(method)) {
+                    result.add(events.get(i));
+                }
+            }
+            return result;
+        }
+
+        List<Site> sitesOf(String method) {
+            final List<Site> result = new ArrayList<>();
+            for (Site site : sites) {
+                if (site.getMethodName().equals(method)) {
+                    result.add(site);
+                }
+            }
+            return result;
+        }
+
+        Site siteOf(String method) {
+            final List<Site> methodSites = sitesOf(method);
+            if (methodSites.isEmpty()) {
+                throw new AssertionError("No events for method: " + method);
+            }
+            return methodSites.get(0);
+        }
+
+        Object[] argumentsOf(String method) {
+            for (int i = 0; i < sites.size(); ++i) {
+                if (sites.get(i).getMethodName().equals(method) && "entering".equals(events.get(i))) {
+                    return arguments.get(i);
+                }
+            }
+            throw new AssertionError("No entering event for method: " + method);
+        }
+
+        @Override
+        public RecordingTracer getTracer() {
+            return this;
+        }
+
+        @Override
+        public void entering(Object source, Site site, Object[] arguments) {
+            event(site, "entering", arguments);
+        }
+
+        @Override
+        public void exiting(Object source, Site site) {
+            event(site, "exiting", null);
+        }
+
+        @Override
+        public void valueChange(Object source, Site site, String variable, Object value) {
+            event(site, "valueChange", new Object[]{variable, value});
+        }
+
+        @Override
+        public void returning(Object source, Site site, Object returnValue) {
+            event(site, "returning", new Object[]{returnValue});
+        }
+
+        @Override
+        public void onError(Object source, Site site, Throwable error) {
+            event(site, "onError", new Object[]{error});
+        }
+
+        @Override
+        public void timeout(Object source, Site site, long timeoutThreshold, long timeout) {
+            event(site, "timeout", new Object[]{timeoutThreshold, timeout});
+        }
+
+        @Override
+        public void entering(Object source, String method, Object... params) {
+        }
+
+        @Override
+        public void exiting(Object source, String method) {
+        }
+
+        @Override
+        public void valueChange(Object source, String method, String variable, Object value) {
+        }
+
+        @Override
+        public <T> void returning(Object source, String method, T returnValue) {
+        }
+
+        @Override
+        public void onError(Object source, String method, Throwable error) {
+        }
+
+        @Override
+        public void timeout(Object source, String method, long timeoutThreshold, long timeout) {
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package io.ghostwriter;
+
+import io.ghostwriter.openjdk.v7.runtime.GhostWriterHooks;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The runtime event guards are not instrumented by default, the guarded code is tested by the eventGuardTest set.
+ */
+public class UnguardedEventsTest extends TestBase {
+
+    @After
+    public void enableTracing() {
+        GhostWriterHooks.setEnabled(true);
+    }
+
+    @Test
+    public void testDisabledTracingDoesNotAffectUnguardedCode() {
+        fetchedPreparedInMemoryTracer();
+        GhostWriterHooks.setEnabled(false);
+        methodWithEvents(1);
+        GhostWriterHooks.setEnabled(true);
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("methodWithEvents", new Parameter<>("value", 1))
+                .returning("methodWithEvents", 2)
+                .exiting("methodWithEvents");
+    }
+
+    private int methodWithEvents(int value) {
+        return value + 1;
+    }
+
+}
@@ -66,6 +66,29 @@ public class ValueChangeTest extends TestBase {
         return i;
     }
 
+    @Test
+    public void testIncrementNestedInOtherUnaryOperator() {
+        InMemoryTracer inMemoryTracer = fetchedPreparedInMemoryTracer();
+        inMemoryTracer.enableValueChangeTracking();
+        incrementNestedInOtherUnaryOperator();
+        inMemoryTracer.disableValueChangeTracking();
+
+        // only the incremented variable is traced, the enclosing negation is not a mutation and is not evaluated again
+        MessageSequenceAsserter.messageSequence()
+                .entering("incrementNestedInOtherUnaryOperator")
+                .valueChange("incrementNestedInOtherUnaryOperator", "i", 1)
+                .valueChange("incrementNestedInOtherUnaryOperator", "j", -1)
+                .valueChange("incrementNestedInOtherUnaryOperator", "i", 2)
+                .returning("incrementNestedInOtherUnaryOperator", 1)
+                .exiting("incrementNestedInOtherUnaryOperator");
+    }
+
+    public int incrementNestedInOtherUnaryOperator() {
+        int i = 1;
+        int j = -(i++);
+        return j + i;
+    }
+
 
     @Test
     public void testForIterationWithBody() {
@@ -0,0 +1,13 @@
+package io.ghostwriter.patterns;
+
+/**
+ * Test class used for verifying that excluding classes via glob patterns works.
+ * This class should not be traced because its name matches an exclude pattern of the environment settings
+ */
+public class ExcludedByPatternClass {
+
+    public int meaningOfLife() {
+        return 42;
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.ghostwriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.ghostwriter.annotation.Exclude;
+import io.ghostwriter.test.MessageSequenceAsserter;
+import io.ghostwriter.test.Parameter;
+import io.ghostwriter.test.TestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@Exclude
+public class TrivialMethodTest extends TestBase {
+
+    // assuming accessors, setters, constants and builders are skipped and delegates are errors-only
+    public class ClassUnderTest {
+
+        private int value;
+
+        private final List<String> names = Arrays.asList("first", "second");
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public ClassUnderTest withValue(int value) {
+            this.value = value;
+            return this;
+        }
+
+        public int answer() {
+            return 42;
+        }
+
+        public String name(int index) {
+            return names.get(index);
+        }
+
+        public int doubleValue() {
+            int result = value * 2;
+            return result;
+        }
+    }
+
+    private InMemoryTracer inMemoryTracer;
+    private ClassUnderTest classUnderTest;
+
+    @Before
+    public void prepare() {
+        inMemoryTracer = fetchedPreparedInMemoryTracer();
+        classUnderTest = new ClassUnderTest();
+        inMemoryTracer.clearMessages();
+    }
+
+    @Test
+    public void accessorIsSkipped() {
+        classUnderTest.getValue();
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void setterIsSkipped() {
+        classUnderTest.setValue(1);
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void builderIsSkipped() {
+        classUnderTest.withValue(1);
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void constantIsSkipped() {
+        classUnderTest.answer();
+        Assert.assertEquals(Collections.emptyList(), new ArrayList<>(inMemoryTracer.getMessages()));
+    }
+
+    @Test
+    public void delegateIsErrorsOnly() {
+        classUnderTest.name(1);
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("name", new Parameter<>("index", 1))
+                .exiting("name");
+    }
+
+    @Test
+    public void nonTrivialMethodIsFullyInstrumented() {
+        classUnderTest.doubleValue();
+
+        MessageSequenceAsserter.messageSequence()
+                .entering("doubleValue")
+                .returning("doubleValue", 0)
+                .exiting("doubleValue");
+    }
+}
@@ -0,0 +1,142 @@
+package io.ghostwriter;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Instruments the classes of a running application on demand, see {@link GhostWriterAgent#agentmain}. While the
+ * instrumentation is attached, the matching classes that are already loaded are retransformed and the ones loaded
+ * later are instrumented at load time. Detaching retransforms the same classes without instrumentation, which restores
+ * their original bytecode, so the application does not pay anything for the tracing afterwards.
+ * <p>
+ * Every retransformation stops the application threads at a safepoint, so the classes are retransformed in batches
+ * instead of all at once. The pause of every batch is measured and returned as the report of the operation.
+ */
+public final class DynamicInstrumentation {
+
+	// the agent classes are loaded once per JVM, every attach and detach request sees the same state
+	private static RetransformingTransformer activeTransformer;
+
+	private DynamicInstrumentation() {
+		throw new UnsupportedOperationException("class is not designed for instantiation");
+	}
+
+	/**
+	 * @param include   packages, classes and patterns to instrument, in the format of GHOSTWRITER_INCLUDE
+	 * @param batchSize number of classes retransformed at a single safepoint
+	 * @return report of the retransformation
+	 */
+	public static synchronized String attach(Instrumentation instrumentation, List<String> include, int batchSize) throws UnmodifiableClassException {
+		if (!instrumentation.isRetransformClassesSupported()) {
+			throw new IllegalStateException("The JVM does not support the retransformation of classes.");
+		}
+		if (include.isEmpty()) {
+			throw new IllegalArgumentException("At least one package or class has to be included.");
+		}
+		if (activeTransformer != null) {
+			// the transformer of the previous attach has to be removed, otherwise the classes would be instrumented twice
+			detach(instrumentation, batchSize);
+		}
+
+		final RetransformingTransformer transformer = new RetransformingTransformer(GhostWriterConfigurer.getRules(include), include);
+		instrumentation.addTransformer(transformer, true);
+		activeTransformer = transformer;
+
+		return "attach " + include + ": " + retransform(instrumentation, transformer, batchSize);
+	}
+
+	/**
+	 * @param batchSize number of classes retransformed at a single safepoint
+	 * @return report of the retransformation
+	 */
+	public static synchronized String detach(Instrumentation instrumentation, int batchSize) throws UnmodifiableClassException {
+		final RetransformingTransformer transformer = activeTransformer;
+		if (transformer == null) {
+			return "detach: GhostWriter is not attached";
+		}
+
+		// the classes are retransformed without the instrumentation, starting from their original class file
+		transformer.disable();
+		final String report = retransform(instrumentation, transformer, batchSize);
+		instrumentation.removeTransformer(transformer);
+		activeTransformer = null;
+		return "detach " + transformer.include + ": " + report;
+	}
+
+	private static String retransform(Instrumentation instrumentation, RetransformingTransformer transformer, int batchSize)
+			throws UnmodifiableClassException {
+		final List<Class<?>> classes = new ArrayList<>();
+		for (Class<?> loadedClass : instrumentation.getAllLoadedClasses()) {
+			if (instrumentation.isModifiableClass(loadedClass) && transformer.isMatching(loadedClass.getName())) {
+				classes.add(loadedClass);
+			}
+		}
+
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		final int batches = (classes.size() + batchSize - 1) / batchSize;
+		final long[] pauses = new long[batches];
+		for (int batch = 0; batch < batches; batch++) {
+			final List<Class<?>> batchClasses = classes.subList(batch * batchSize, Math.min(classes.size(), (batch + 1) * batchSize));
+			final long start = System.nanoTime();
+			instrumentation.retransformClasses(batchClasses.toArray(new Class<?>[batchClasses.size()]));
+			pauses[batch] = System.nanoTime() - start;
+		}
+
+		return report(classes.size(), pauses);
+	}
+
+	private static String report(int classes, long[] pauses) {
+		long total = 0;
+		for (long pause : pauses) {
+			total += pause;
+		}
+		final long[] sorted = Arrays.copyOf(pauses, pauses.length);
+		Arrays.sort(sorted);
+		final long median = sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+		final long max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+
+		return classes + " classes in " + pauses.length + " batches, total " + micros(total) + " us, median pause "
+				+ micros(median) + " us, max pause " + micros(max) + " us";
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+
+	private static final class RetransformingTransformer extends GhostWriterAgentTransformer {
+
+		private final InstrumentationRules rules;
+
+		private final List<String> include;
+
+		private volatile boolean isEnabled = true;
+
+		private RetransformingTransformer(InstrumentationRules rules, List<String> include) {
+			// retransformed classes depend on the attached configuration, there is no point in caching them
+			super(rules, null);
+			this.rules = rules;
+			this.include = include;
+		}
+
+		@Override
+		protected boolean isTransformed(String className, Class<?> classBeingRedefined) {
+			// the included classes are checked by the transformer
+			return isEnabled;
+		}
+
+		private boolean isMatching(String className) {
+			return !isExcluded(className.replace('.', '/')) && rules.isIncluded(className);
+		}
+
+		private void disable() {
+			isEnabled = false;
+		}
+
+	}
+
+}
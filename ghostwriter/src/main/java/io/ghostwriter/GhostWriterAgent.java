@@ -0,0 +1,102 @@
+package io.ghostwriter;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Java agent entry point, instruments the application classes while they are loaded:
+ * {@code java -javaagent:ghostwriter-<version>-agent.jar -jar application.jar}
+ * <p>
+ * The agent uses the same system properties and profile file as the {@link GhostWriterClassFileTransformer}. The instrumented classes are
+ * cached in the directory given by {@code GHOSTWRITER_CACHE_DIR}, which can be disabled with {@code GHOSTWRITER_CACHE=false}.
+ * <p>
+ * The agent can be attached to a running application as well, see {@link GhostWriterAttach}.
+ */
+public class GhostWriterAgent {
+
+	static final String ACTION_ARGUMENT = "action";
+
+	static final String ATTACH_ACTION = "attach";
+
+	static final String DETACH_ACTION = "detach";
+
+	static final String INCLUDE_ARGUMENT = "include";
+
+	static final String BATCH_SIZE_ARGUMENT = "batch";
+
+	static final String REPORT_ARGUMENT = "report";
+
+	static final int DEFAULT_BATCH_SIZE = 50;
+
+	public static void premain(String agentArgs, Instrumentation instrumentation) {
+		if (!GhostWriterConfigurer.isInstrumentationEnabled()) {
+			return;
+		}
+
+		final TransformedClassCache cache;
+		if (GhostWriterConfigurer.isCacheEnabled()) {
+			cache = new TransformedClassCache(GhostWriterConfigurer.getCacheDirectory(), GhostWriterConfigurer.getFingerprint());
+		} else {
+			cache = null;
+		}
+
+		instrumentation.addTransformer(new GhostWriterAgentTransformer(GhostWriterConfigurer.getRules(), cache));
+	}
+
+	/**
+	 * Entry point of the dynamic attach, the arguments are {@code key=value} pairs separated by semicolons:
+	 * {@code action=attach;include=com.example.orders,com.example.billing;batch=50;report=/tmp/report.txt}
+	 * or {@code action=detach}.
+	 */
+	public static void agentmain(String agentArgs, Instrumentation instrumentation) throws Exception {
+		final Map<String, String> arguments = parseArguments(agentArgs);
+		final String action = arguments.get(ACTION_ARGUMENT);
+		final int batchSize = arguments.containsKey(BATCH_SIZE_ARGUMENT)
+				? Integer.parseInt(arguments.get(BATCH_SIZE_ARGUMENT)) : DEFAULT_BATCH_SIZE;
+
+		final String report;
+		if (ATTACH_ACTION.equals(action)) {
+			final String include = arguments.get(INCLUDE_ARGUMENT);
+			if (include == null || include.isEmpty()) {
+				throw new IllegalArgumentException("Missing agent argument: " + INCLUDE_ARGUMENT);
+			}
+			report = DynamicInstrumentation.attach(instrumentation, Arrays.asList(include.split(",")), batchSize);
+		} else if (DETACH_ACTION.equals(action)) {
+			report = DynamicInstrumentation.detach(instrumentation, batchSize);
+		} else {
+			throw new IllegalArgumentException("Unsupported agent action: " + action);
+		}
+
+		final String reportFile = arguments.get(REPORT_ARGUMENT);
+		if (reportFile != null) {
+			writeReport(reportFile, report);
+		}
+	}
+
+	private static Map<String, String> parseArguments(String agentArgs) {
+		final Map<String, String> arguments = new HashMap<>();
+		if (agentArgs == null) {
+			return arguments;
+		}
+
+		for (String argument : agentArgs.split(";")) {
+			final int separator = argument.indexOf('=');
+			if (separator == -1) {
+				throw new IllegalArgumentException("Invalid agent argument, key=value is expected: " + argument);
+			}
+			arguments.put(argument.substring(0, separator), argument.substring(separator + 1));
+		}
+		return arguments;
+	}
+
+	private static void writeReport(String reportFile, String report) throws IOException {
+		Files.write(Paths.get(reportFile), report.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,98 @@
+package io.ghostwriter;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+import hu.advancedweb.scott.instrumentation.transformation.ScottClassTransformer;
+
+/**
+ * Applies the same instrumentation as the {@link GhostWriterClassFileTransformer} when the classes are loaded.
+ * Classes of the JDK, of the instrumentation itself and classes that are already instrumented are left unchanged.
+ */
+public class GhostWriterAgentTransformer implements ClassFileTransformer {
+
+	// internal names of the packages that must not be instrumented
+	private static final String[] EXCLUDED_PACKAGES = {
+			"java/", "javax/", "jdk/", "sun/", "com/sun/", "io/ghostwriter/", "hu/advancedweb/scott/", "org/objectweb/asm/"
+	};
+
+	private final InstrumentationRules rules;
+
+	private final TransformedClassCache cache;
+
+	// classes are loaded by multiple threads at the same time
+	private final ThreadLocal<ScottClassTransformer> transformers = new ThreadLocal<ScottClassTransformer>() {
+		@Override
+		protected ScottClassTransformer initialValue() {
+			return new ScottClassTransformer();
+		}
+	};
+
+	/**
+	 * @param rules         classes and methods to instrument
+	 * @param cache         cache of the instrumented classes, or null if the classes are instrumented at every start
+	 */
+	public GhostWriterAgentTransformer(InstrumentationRules rules, TransformedClassCache cache) {
+		this.rules = rules;
+		this.cache = cache;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+			ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+		// returning null keeps the class as it is
+		if (loader == null || className == null || isExcluded(className) || !isTransformed(className, classBeingRedefined)
+				|| !rules.isIncluded(className)) {
+			return null;
+		}
+
+		try {
+			if (cache == null) {
+				return instrument(classfileBuffer);
+			}
+
+			final String originalHash = InstrumentationManifest.hash(classfileBuffer);
+			final byte[] cachedClass = cache.get(originalHash);
+			if (cachedClass != null) {
+				return cachedClass;
+			}
+
+			final byte[] instrumentedClass = instrument(classfileBuffer);
+			// classes that are left unchanged are cached as well, so the check is not repeated at the next start
+			cache.put(originalHash, instrumentedClass != null ? instrumentedClass : classfileBuffer);
+			return instrumentedClass;
+		} catch (Exception e) {
+			// exceptions thrown by a transformer are ignored by the JVM, they would get lost without reporting them
+			System.err.println("GhostWriter Could not instrument: " + className);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @param className           internal name of the class
+	 * @param classBeingRedefined the class if it is redefined or retransformed, null if it is loaded
+	 * @return whether the class should be instrumented
+	 */
+	protected boolean isTransformed(String className, Class<?> classBeingRedefined) {
+		return classBeingRedefined == null;
+	}
+
+	private byte[] instrument(byte[] originalClass) throws Exception {
+		if (InstrumentationMarker.isInstrumented(originalClass)) {
+			// instrumented at build time
+			return null;
+		}
+		return InstrumentationMarker.mark(rules.transform(originalClass, transformers.get()));
+	}
+
+	protected static boolean isExcluded(String className) {
+		for (String excludedPackage : EXCLUDED_PACKAGES) {
+			if (className.startsWith(excludedPackage)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,73 @@
+package io.ghostwriter;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.sun.tools.attach.VirtualMachine;
+
+/**
+ * Command line tool for turning the tracing of a running application on and off:
+ * <pre>
+ * java -jar ghostwriter-&lt;version&gt;-agent.jar attach &lt;pid&gt; com.example.orders,com.example.billing [batch size]
+ * java -jar ghostwriter-&lt;version&gt;-agent.jar detach &lt;pid&gt; [batch size]
+ * </pre>
+ * The application has to run with the same user. The retransformation report of the application, including the
+ * safepoint pauses caused by the retransformation, is printed to the standard output.
+ * On Java 8 the {@code tools.jar} of the JDK has to be on the classpath.
+ */
+public class GhostWriterAttach {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: attach <pid> <included packages> [batch size] | detach <pid> [batch size]");
+		}
+
+		final String action = args[0];
+		final String pid = args[1];
+		final StringBuilder agentArgs = new StringBuilder(GhostWriterAgent.ACTION_ARGUMENT + "=" + action);
+		final int batchSizeIndex;
+		if (GhostWriterAgent.ATTACH_ACTION.equals(action)) {
+			if (args.length < 3) {
+				throw new IllegalArgumentException("The packages or classes to instrument are missing.");
+			}
+			agentArgs.append(';').append(GhostWriterAgent.INCLUDE_ARGUMENT).append('=').append(args[2]);
+			batchSizeIndex = 3;
+		} else if (GhostWriterAgent.DETACH_ACTION.equals(action)) {
+			batchSizeIndex = 2;
+		} else {
+			throw new IllegalArgumentException("Unsupported action: " + action);
+		}
+		if (args.length > batchSizeIndex) {
+			agentArgs.append(';').append(GhostWriterAgent.BATCH_SIZE_ARGUMENT).append('=').append(Integer.parseInt(args[batchSizeIndex]));
+		}
+
+		final Path report = Files.createTempFile("ghostwriter-attach", ".txt");
+		try {
+			agentArgs.append(';').append(GhostWriterAgent.REPORT_ARGUMENT).append('=').append(report.toAbsolutePath());
+
+			final VirtualMachine virtualMachine = VirtualMachine.attach(pid);
+			try {
+				// returns once the agentmain of the agent finished in the application
+				virtualMachine.loadAgent(agentJar(), agentArgs.toString());
+			} finally {
+				virtualMachine.detach();
+			}
+
+			System.out.println(new String(Files.readAllBytes(report), StandardCharsets.UTF_8));
+		} finally {
+			Files.deleteIfExists(report);
+		}
+	}
+
+	private static String agentJar() throws URISyntaxException {
+		final File agentJar = new File(GhostWriterAttach.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		if (!agentJar.isFile()) {
+			throw new IllegalStateException("The tool has to be started from the agent jar, found: " + agentJar);
+		}
+		return agentJar.getAbsolutePath();
+	}
+
+}
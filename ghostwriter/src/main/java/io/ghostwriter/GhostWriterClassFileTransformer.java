@@ -9,43 +9,171 @@ import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import hu.advancedweb.scott.instrumentation.transformation.ScottClassTransformer;
 
 
 public class GhostWriterClassFileTransformer {
 
+	/**
+	 * Instruments the class files of a directory in place if a single argument is given, or the classes of the jar given
+	 * as the first argument into the jar given as the second argument.
+	 */
 	public static void main(String[] args) throws IOException {
-		if (args.length != 1) {
-			throw new IllegalArgumentException("Exactly one argument is required.");
+		if (args.length != 1 && args.length != 2) {
+			throw new IllegalArgumentException("Either a class directory, or an input and an output jar is required.");
 		}
-		if (System.getProperty("GHOSTWRITER_INSTRUMENT") != null && !("true".equals(System.getProperty("GHOSTWRITER_INSTRUMENT")))) {
+		if (!GhostWriterConfigurer.isInstrumentationEnabled()) {
 			log("GhostWriter instrumentation is disabled.");
 			return;
 		}
-		final String rootPath = args[0];
+		if (args.length == 2) {
+			final JarInstrumenter jarInstrumenter = new JarInstrumenter(GhostWriterConfigurer.getRules(), GhostWriterConfigurer.getThreads());
+			log("GhostWriter instrumenting: " + args[0] + " -> " + args[1]);
+			jarInstrumenter.instrument(Paths.get(args[0]), Paths.get(args[1]));
+			return;
+		}
+
+		final Path root = Paths.get(args[0]).toAbsolutePath().normalize();
+		// the configuration is read from the system properties, which do not change during the instrumentation
+		final Map<Path, ClassResult> results = instrumentDirectory(root, GhostWriterConfigurer.getStateDirectory(root),
+				GhostWriterConfigurer.getRules(), GhostWriterConfigurer.getFingerprint(), GhostWriterConfigurer.getThreads());
+		for (Map.Entry<Path, ClassResult> result : results.entrySet()) {
+			report(result.getKey(), result.getValue());
+		}
+	}
+
+	/**
+	 * Instruments the class files of a directory in place and records them in the {@link InstrumentationManifest}.
+	 *
+	 * @param root           class output directory
+	 * @param stateDirectory directory of the manifest of the previous instrumentation
+	 * @param fingerprint    fingerprint of the configuration of the rules, see {@link GhostWriterConfigurer#getFingerprint()}
+	 * @param threads        number of the classes that are instrumented at the same time
+	 * @return result of every class file, in the order of the paths
+	 */
+	static Map<Path, ClassResult> instrumentDirectory(Path root, Path stateDirectory, InstrumentationRules rules,
+			String fingerprint, int threads) throws IOException {
+		final List<Path> classes = findClasses(root);
+		final InstrumentationManifest manifest = InstrumentationManifest.load(stateDirectory);
+		if (!manifest.isEmpty() && !manifest.isFingerprint(fingerprint)) {
+			log("GhostWriter configuration changed, instrumenting every class.");
+		}
+		final ClassInstrumentation instrumentation = new ClassInstrumentation(root, rules, manifest, manifest.isFingerprint(fingerprint));
+
+		final List<ClassResult> results;
+		if (threads <= 1) {
+			results = transformSequentially(classes, instrumentation);
+		} else {
+			results = transformInParallel(classes, instrumentation, threads);
+		}
+
+		final Map<Path, ClassResult> classResults = new LinkedHashMap<>();
+		final Map<String, InstrumentationManifest.Entry> entries = new TreeMap<>();
+		for (int i = 0; i < classes.size(); i++) {
+			final Path path = classes.get(i);
+			final ClassResult result = results.get(i);
+			classResults.put(path, result);
+			if (result.entry != null) {
+				entries.put(instrumentation.relativePath(path), result.entry);
+			}
+		}
+		manifest.save(fingerprint, entries);
+		return classResults;
+	}
+
+	private static List<Path> findClasses(Path root) throws IOException {
 		final PathMatcher classMatcher = FileSystems.getDefault().getPathMatcher("glob:**.class");
+		final List<Path> classes = new ArrayList<>();
 
-		Files.walkFileTree(Paths.get(rootPath), new SimpleFileVisitor<Path>() {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
 			@Override
 			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
 				if (attrs.isRegularFile() && classMatcher.matches(path)) {
-					transformClass(path);
+					classes.add(path);
 				}
 				return FileVisitResult.CONTINUE;
 			}
 		});
+
+		// the order of the directory walk is platform dependent, the reports should not be
+		Collections.sort(classes);
+		return classes;
+	}
+
+	private static List<ClassResult> transformSequentially(List<Path> classes, ClassInstrumentation instrumentation) {
+		final ScottClassTransformer transformer = new ScottClassTransformer();
+		final List<ClassResult> results = new ArrayList<>(classes.size());
+		for (Path path : classes) {
+			results.add(instrumentation.instrument(path, transformer));
+		}
+		return results;
+	}
+
+	private static List<ClassResult> transformInParallel(List<Path> classes, final ClassInstrumentation instrumentation, int threads) {
+		// every class file is read and written by a single task, so only the transformers have to be kept apart
+		final ThreadLocal<ScottClassTransformer> transformers = new ThreadLocal<ScottClassTransformer>() {
+			@Override
+			protected ScottClassTransformer initialValue() {
+				return new ScottClassTransformer();
+			}
+		};
+
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<ClassResult>> futures = new ArrayList<>(classes.size());
+			for (final Path path : classes) {
+				futures.add(workers.submit(new Callable<ClassResult>() {
+					@Override
+					public ClassResult call() {
+						return instrumentation.instrument(path, transformers.get());
+					}
+				}));
+			}
+
+			// results are reported in the order of the class files, regardless of which task finished first
+			final List<ClassResult> results = new ArrayList<>(classes.size());
+			for (Future<ClassResult> future : futures) {
+				results.add(await(future));
+			}
+			return results;
+		} finally {
+			workers.shutdownNow();
+		}
 	}
 
-	private static void transformClass(Path path) {
+	private static ClassResult await(Future<ClassResult> result) {
 		try {
-			log("GhostWriter instrumenting: " + path);
-			byte[] originalClass = Files.readAllBytes(path);
-			byte[] instrumentedClass = new ScottClassTransformer().transform(originalClass, GhostWriterConfigurer.getConfiguration());
-			Files.write(path, instrumentedClass);
-		} catch (Exception e) {
+			return result.get();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			return ClassResult.failed((Exception) cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("GhostWriter instrumentation was interrupted.", e);
+		}
+	}
+
+	private static void report(Path path, ClassResult result) {
+		if (result.failure != null) {
 			System.err.println("GhostWriter Could not instrument: " + path);
-			e.printStackTrace();
+			result.failure.printStackTrace();
+		} else {
+			log(result.status + ": " + path);
 		}
 	}
 
@@ -55,4 +183,117 @@ public class GhostWriterClassFileTransformer {
 		}
 	}
 
+	/**
+	 * Instruments a single class file, unless the manifest shows that it is already instrumented with the current configuration.
+	 * Can be called from multiple threads, each class file is processed by a single call.
+	 */
+	private static final class ClassInstrumentation {
+
+		private final Path root;
+
+		private final InstrumentationRules rules;
+
+		private final InstrumentationManifest manifest;
+
+		private final boolean isSameConfiguration;
+
+		private ClassInstrumentation(Path root, InstrumentationRules rules, InstrumentationManifest manifest, boolean isSameConfiguration) {
+			this.root = root;
+			this.rules = rules;
+			this.manifest = manifest;
+			this.isSameConfiguration = isSameConfiguration;
+		}
+
+		private ClassResult instrument(Path path, ScottClassTransformer transformer) {
+			try {
+				final byte[] classFile = Files.readAllBytes(path);
+				final InstrumentationManifest.Entry previous = manifest.get(relativePath(path));
+
+				if (previous != null && previous.getOutputHash().equals(InstrumentationManifest.hash(classFile))) {
+					// the class was not recompiled since the previous instrumentation
+					if (isSameConfiguration) {
+						return new ClassResult(ClassResult.UP_TO_DATE, previous, null);
+					}
+
+					final byte[] originalClass = manifest.loadOriginal(previous.getInputHash());
+					if (originalClass == null) {
+						return ClassResult.failed(new IllegalStateException(
+								"The original class file is missing, a clean build is required to apply the changed configuration."));
+					}
+					return transform(path, originalClass, previous.getInputHash(), transformer);
+				}
+
+				if (InstrumentationMarker.isInstrumented(classFile)) {
+					// instrumenting it again would report every event twice
+					return new ClassResult(ClassResult.ALREADY_INSTRUMENTED, null, null);
+				}
+
+				final String inputHash = manifest.storeOriginal(classFile);
+				return transform(path, classFile, inputHash, transformer);
+			} catch (Exception e) {
+				return ClassResult.failed(e);
+			}
+		}
+
+		private ClassResult transform(Path path, byte[] originalClass, String inputHash, ScottClassTransformer transformer) throws Exception {
+			final byte[] instrumentedClass = InstrumentationMarker.mark(rules.transform(originalClass, transformer));
+			Files.write(path, instrumentedClass);
+			final InstrumentationManifest.Entry entry = new InstrumentationManifest.Entry(inputHash, InstrumentationManifest.hash(instrumentedClass));
+			return new ClassResult(ClassResult.INSTRUMENTED, entry, null);
+		}
+
+		private String relativePath(Path path) {
+			// the manifest is independent of the platform specific separator
+			return root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+		}
+
+	}
+
+	static final class ClassResult {
+
+		static final String INSTRUMENTED = "GhostWriter instrumenting";
+
+		static final String UP_TO_DATE = "GhostWriter up to date";
+
+		static final String ALREADY_INSTRUMENTED = "GhostWriter skipping already instrumented class";
+
+		private final String status;
+
+		private final InstrumentationManifest.Entry entry;
+
+		private final Exception failure;
+
+		private ClassResult(String status, InstrumentationManifest.Entry entry, Exception failure) {
+			this.status = status;
+			this.entry = entry;
+			this.failure = failure;
+		}
+
+		private static ClassResult failed(Exception failure) {
+			return new ClassResult(null, null, failure);
+		}
+
+		/**
+		 * @return one of the status constants, or null if the class could not be instrumented
+		 */
+		String getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return the state recorded in the manifest, or null if the class is not recorded
+		 */
+		InstrumentationManifest.Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return the reason why the class could not be instrumented, or null
+		 */
+		Exception getFailure() {
+			return failure;
+		}
+
+	}
+
 }
@@ -1,39 +1,202 @@
 package io.ghostwriter;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import hu.advancedweb.scott.instrumentation.transformation.ScottClassTransformer;
 import hu.advancedweb.scott.instrumentation.transformation.config.Configuration;
+import io.ghostwriter.common.HotMethodProfile;
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.common.NameMatcher;
 
 public class GhostWriterConfigurer {
 
+	// versions of the tools that produce the instrumented classes, keep them in sync with build.gradle, the
+	// implementation version of the packages is not available in the agent jar that bundles the dependencies
+	static final String GHOSTWRITER_VERSION = "0.8.1";
+
+	static final String SCOTT_VERSION = "4.0.1";
+
+	// options that affect the instrumented classes
+	private static final String[] INSTRUMENTATION_PROPERTIES = {
+			"GHOSTWRITER_INCLUDE", "GHOSTWRITER_EXCLUDE", "GHOSTWRITER_ANNOTATED_ONLY", "GHOSTWRITER_EXCLUDE_METHODS",
+			"GHOSTWRITER_TRACE_RETURNING", "GHOSTWRITER_TRACE_ON_ERROR", "GHOSTWRITER_TRACE_VALUE_CHANGE",
+			"GHOSTWRITER_SHORT_METHOD_LIMIT", "GHOSTWRITER_INSTRUMENT", "GHOSTWRITER_TRIVIAL_METHODS"
+	};
+
+	// the system properties and the profile file are read once
+	private static InstrumentationSettings settings;
+
+	private static HotMethodProfile hotMethods;
+
+	/**
+	 * @return the options given by the system properties and the profile file of GHOSTWRITER_PROFILE_FILE
+	 */
+	public static synchronized InstrumentationSettings getSettings() {
+		if (settings == null) {
+			final Map<String, String> systemProperties = new HashMap<>();
+			for (String propertyKey : System.getProperties().stringPropertyNames()) {
+				systemProperties.put(propertyKey, System.getProperty(propertyKey));
+			}
+			settings = InstrumentationSettings.load(systemProperties);
+		}
+		return settings;
+	}
+
+	/**
+	 * @return the hot methods of the GHOSTWRITER_HOT_METHODS profile
+	 */
+	public static synchronized HotMethodProfile getHotMethods() {
+		if (hotMethods == null) {
+			hotMethods = HotMethodProfile.load(getSettings());
+		}
+		return hotMethods;
+	}
+
+	/**
+	 * @return configuration that selects the classes and methods by the prefixes given in the settings, the GhostWriter
+	 * tools use {@link #getRules()} instead, which supports patterns as well
+	 */
 	public static Configuration getConfiguration() {
+		final InstrumentationSettings settings = getSettings();
+		return configurationBuilder(settings)
+			.setInclude(getIncludes())
+			.setExclude(getPropertyConfig(settings, "GHOSTWRITER_EXCLUDE", new String[] {}))
+			.setExcludeMethodsByName(getExcludedMethods(settings))
+			.build();
+	}
+
+	/**
+	 * @param classSettings   settings of the class, see {@link InstrumentationSettings#forClass(String)}
+	 * @param className       qualified name of the class that is instrumented
+	 * @param excludedMethods names of the methods of the class that are not instrumented
+	 * @return configuration of a single class, selected by {@link InstrumentationRules}
+	 */
+	static Configuration getConfiguration(InstrumentationSettings classSettings, String className, List<String> excludedMethods) {
+		return configurationBuilder(classSettings)
+			.setInclude(Arrays.asList(className))
+			.setExclude(new ArrayList<String>())
+			.setExcludeMethodsByName(excludedMethods)
+			.build();
+	}
+
+	private static Configuration.Builder configurationBuilder(InstrumentationSettings settings) {
 		return new Configuration.Builder()
 			.setTrackerClass("io.ghostwriter.ScottRuntime")
-			.setInclude(getPropertyConfig("GHOSTWRITER_INCLUDE", new String[] {}))
-			.setExclude(getPropertyConfig("GHOSTWRITER_EXCLUDE", new String[] {}))
-			.setIncludeByAnnotation(setIfPropertyExists("GHOSTWRITER_ANNOTATED_ONLY", new String[] {"io.ghostwriter.annotation.Include"}))
+			.setIncludeByAnnotation(setIfPropertyExists(settings, "GHOSTWRITER_ANNOTATED_ONLY", new String[] {"io.ghostwriter.annotation.Include"}))
 			.setExcludeByAnnotation(Arrays.asList("io.ghostwriter.annotation.Exclude"))
-			.setExcludeMethodsByName(getPropertyConfig("GHOSTWRITER_EXCLUDE_METHODS", new String[] {"toString", "equals", "hashCode", "compareTo"}))
 			.setIncludeLambdas(false)
-			.setTrackReturn(getPropertyConfig("GHOSTWRITER_TRACE_RETURNING", true))
-			.setTrackUnhandledException(getPropertyConfig("GHOSTWRITER_TRACE_ON_ERROR", true))
-			.setTrackLocalVariableAssignments(getPropertyConfig("GHOSTWRITER_TRACE_VALUE_CHANGE", true))
+			.setTrackReturn(getPropertyConfig(settings, "GHOSTWRITER_TRACE_RETURNING", true))
+			.setTrackUnhandledException(getPropertyConfig(settings, "GHOSTWRITER_TRACE_ON_ERROR", true))
+			.setTrackLocalVariableAssignments(getPropertyConfig(settings, "GHOSTWRITER_TRACE_VALUE_CHANGE", true))
 			.setTrackLocalVariableIncrements(false)
 			.setTrackLocalVariablesAfterEveryMethodCall(false)
 			.setTrackFieldAssignments(false)
 			.setTrackFieldsAfterEveryMethodCall(false)
-			.setMinimumMethodLoc(getPropertyConfig("GHOSTWRITER_SHORT_METHOD_LIMIT", 0))
-			.setVerboseLogging("true".equalsIgnoreCase(System.getenv("GHOSTWRITER_VERBOSE")))
-			.build();
+			.setMinimumMethodLoc(getPropertyConfig(settings, "GHOSTWRITER_SHORT_METHOD_LIMIT", 0))
+			.setVerboseLogging("true".equalsIgnoreCase(System.getenv("GHOSTWRITER_VERBOSE")));
+	}
+
+	public static InstrumentationRules getRules() {
+		return getRules(getIncludes());
+	}
+
+	/**
+	 * @param include packages, classes and patterns to instrument, instead of the ones given by GHOSTWRITER_INCLUDE
+	 */
+	public static InstrumentationRules getRules(List<String> include) {
+		final InstrumentationSettings settings = getSettings();
+		// the classes are only instrumented if they are included explicitly
+		final NameMatcher matcher = new NameMatcher(false)
+			.includeAll(include)
+			.excludeAll(getPropertyConfig(settings, "GHOSTWRITER_EXCLUDE", new String[] {}));
+		for (String excludedMethod : getExcludedMethods(settings)) {
+			// method names without a class apply to every class
+			matcher.exclude(excludedMethod.contains("#") ? excludedMethod : "#" + excludedMethod);
+		}
+		return new InstrumentationRules(matcher, settings, getHotMethods());
 	}
 
-	private static List<String> getPropertyConfig(String propertyKey, final String[] defaultValues) {
-		final String property = System.getProperty(propertyKey);
+	/**
+	 * @return hash of every setting that affects the instrumented classes, a different value means that the classes
+	 * instrumented earlier have to be instrumented again
+	 */
+	public static String getFingerprint() {
+		final InstrumentationSettings settings = getSettings();
+		final StringBuilder sb = new StringBuilder();
+		appendInstrumentationProperties(sb, settings);
+		for (String overriddenPackage : settings.getOverriddenPackages()) {
+			sb.append("package ").append(overriddenPackage).append('\n');
+			appendInstrumentationProperties(sb, settings.forClass(overriddenPackage));
+		}
+		// the content of the hot method profile can change without changing its path
+		final HotMethodProfile hotMethods = getHotMethods();
+		sb.append("hot methods ").append(hotMethods.isDowngraded()).append(' ').append(hotMethods.getHotMethods()).append('\n');
+		// a different version of the tools can produce different classes for the same configuration
+		sb.append("ghostwriter ").append(GHOSTWRITER_VERSION).append('\n');
+		sb.append("scott ").append(SCOTT_VERSION).append('\n');
+		return InstrumentationManifest.hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void appendInstrumentationProperties(StringBuilder sb, InstrumentationSettings settings) {
+		for (String propertyKey : INSTRUMENTATION_PROPERTIES) {
+			sb.append(propertyKey).append('=').append(settings.getString(propertyKey)).append('\n');
+		}
+	}
+
+	/**
+	 * @param root class output directory that is instrumented
+	 * @return directory of the state of the incremental instrumentation, see {@link InstrumentationManifest}
+	 */
+	public static Path getStateDirectory(Path root) {
+		final String stateDirectory = getSettings().getString("GHOSTWRITER_STATE_DIR");
+		if (stateDirectory != null) {
+			return Paths.get(stateDirectory);
+		}
+		return root.resolveSibling(root.getFileName() + ".ghostwriter");
+	}
+
+	public static boolean isInstrumentationEnabled() {
+		return getPropertyConfig(getSettings(), "GHOSTWRITER_INSTRUMENT", true);
+	}
+
+	public static List<String> getIncludes() {
+		return getPropertyConfig(getSettings(), "GHOSTWRITER_INCLUDE", new String[] {});
+	}
+
+	private static List<String> getExcludedMethods(InstrumentationSettings settings) {
+		return getPropertyConfig(settings, "GHOSTWRITER_EXCLUDE_METHODS", new String[] {"toString", "equals", "hashCode", "compareTo"});
+	}
+
+	public static boolean isCacheEnabled() {
+		return getPropertyConfig(getSettings(), "GHOSTWRITER_CACHE", true);
+	}
+
+	/**
+	 * @return root directory of the {@link TransformedClassCache} used by the {@link GhostWriterAgent}
+	 */
+	public static Path getCacheDirectory() {
+		final String cacheDirectory = getSettings().getString("GHOSTWRITER_CACHE_DIR");
+		if (cacheDirectory != null) {
+			return Paths.get(cacheDirectory);
+		}
+		return Paths.get(System.getProperty("user.home"), ".ghostwriter", "cache");
+	}
+
+	/**
+	 * @return number of threads that instrument the class files, the classes are instrumented on the calling thread if it is 1
+	 */
+	public static int getThreads() {
+		return getPropertyConfig(getSettings(), "GHOSTWRITER_THREADS", 1);
+	}
+
+	private static List<String> getPropertyConfig(InstrumentationSettings settings, String propertyKey, final String[] defaultValues) {
+		final String property = settings.getString(propertyKey);
 
 		final String[] params;
 		if (property != null) {
@@ -45,30 +208,21 @@ public class GhostWriterConfigurer {
 		return Arrays.asList(params);
 	}
 
-	private static List<String> setIfPropertyExists(String propertyKey, final String[] values) {
-		if (System.getProperty(propertyKey) != null) {
+	private static List<String> setIfPropertyExists(InstrumentationSettings settings, String propertyKey, final String[] values) {
+		if (settings.getString(propertyKey) != null) {
 			return Arrays.asList(values);
 		} else {
 			return new ArrayList<String>();
 		}
 	}
 
-	private static boolean getPropertyConfig(String propertyKey, final boolean defaultValue) {
-		String propertyValue = System.getProperty(propertyKey);
-		if (propertyValue != null) {
-			return Boolean.parseBoolean(propertyValue);
-		} else {
-			return defaultValue;
-		}
+	private static boolean getPropertyConfig(InstrumentationSettings settings, String propertyKey, final boolean defaultValue) {
+		return settings.getBoolean(propertyKey, defaultValue);
 	}
 
-	private static int getPropertyConfig(String propertyKey, final int defaultValue) {
-		String propertyValue = System.getProperty(propertyKey);
-		if (propertyValue != null) {
-			return Integer.parseInt(propertyValue);
-		} else {
-			return defaultValue;
-		}
+	private static int getPropertyConfig(InstrumentationSettings settings, String propertyKey, final int defaultValue) {
+		final Integer propertyValue = settings.getInteger(propertyKey);
+		return propertyValue != null ? propertyValue : defaultValue;
 	}
 
 }
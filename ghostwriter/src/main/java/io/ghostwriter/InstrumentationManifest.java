@@ -0,0 +1,228 @@
+package io.ghostwriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * State of the previous instrumentation of a class output directory. For every instrumented class file it records the
+ * hash of the compiler output and the hash of the instrumented class, along with the fingerprint of the configuration
+ * that was used. The original compiler output is kept as well, keyed by its hash, so the classes can be instrumented
+ * again when the configuration changes, even if the compiler did not produce them again.
+ * <p>
+ * The state is stored next to the class output directory and not inside of it, so it does not end up in the archives.
+ */
+public class InstrumentationManifest {
+
+	private static final String FORMAT_VERSION = "1";
+
+	private static final String HEADER = "# GhostWriter instrumentation manifest, version ";
+
+	private static final String FINGERPRINT_PREFIX = "fingerprint=";
+
+	private static final String MANIFEST_FILE_NAME = "manifest";
+
+	private static final String ORIGINALS_DIRECTORY_NAME = "originals";
+
+	private static final String CLASS_FILE_EXTENSION = ".class";
+
+	private final Path stateDirectory;
+
+	private final String fingerprint;
+
+	private final Map<String, Entry> entries;
+
+	private InstrumentationManifest(Path stateDirectory, String fingerprint, Map<String, Entry> entries) {
+		this.stateDirectory = stateDirectory;
+		this.fingerprint = fingerprint;
+		this.entries = entries;
+	}
+
+	/**
+	 * @param stateDirectory directory of the manifest and the original class files
+	 * @return the manifest of the previous instrumentation, or an empty one if there was none or it cannot be read
+	 */
+	public static InstrumentationManifest load(Path stateDirectory) {
+		final Path manifestFile = stateDirectory.resolve(MANIFEST_FILE_NAME);
+		final Map<String, Entry> entries = new TreeMap<>();
+		if (!Files.isRegularFile(manifestFile)) {
+			return new InstrumentationManifest(stateDirectory, null, entries);
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+			final String header = reader.readLine();
+			final String fingerprintLine = reader.readLine();
+			if (!(HEADER + FORMAT_VERSION).equals(header) || fingerprintLine == null || !fingerprintLine.startsWith(FINGERPRINT_PREFIX)) {
+				// unknown format, start over
+				return new InstrumentationManifest(stateDirectory, null, entries);
+			}
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				// <input hash> <output hash> <relative path>, the path is the last one since it can contain spaces
+				final String[] columns = line.split(" ", 3);
+				if (columns.length != 3) {
+					return new InstrumentationManifest(stateDirectory, null, new TreeMap<String, Entry>());
+				}
+				entries.put(columns[2], new Entry(columns[0], columns[1]));
+			}
+			return new InstrumentationManifest(stateDirectory, fingerprintLine.substring(FINGERPRINT_PREFIX.length()), entries);
+		} catch (IOException e) {
+			System.err.println("GhostWriter could not read the instrumentation manifest, instrumenting every class: " + manifestFile);
+			return new InstrumentationManifest(stateDirectory, null, new TreeMap<String, Entry>());
+		}
+	}
+
+	public static String hash(byte[] content) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			final StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+		}
+	}
+
+	/**
+	 * @param fingerprint fingerprint of the current configuration
+	 * @return whether the recorded classes were instrumented with the same configuration
+	 */
+	public boolean isFingerprint(String fingerprint) {
+		return fingerprint.equals(this.fingerprint);
+	}
+
+	/**
+	 * @return whether there is no record of a previous instrumentation
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @param relativePath path of the class file, relative to the class output directory
+	 * @return the recorded state of the class file, or null if it was not instrumented yet
+	 */
+	public Entry get(String relativePath) {
+		return entries.get(relativePath);
+	}
+
+	/**
+	 * Stores the original compiler output of a class, so it can be instrumented again if the configuration changes.
+	 * Can be called from multiple threads.
+	 *
+	 * @return hash of the original class file
+	 */
+	public String storeOriginal(byte[] originalClass) throws IOException {
+		final String inputHash = hash(originalClass);
+		final Path original = originalPath(inputHash);
+		if (!Files.exists(original)) {
+			Files.createDirectories(original.getParent());
+			// identical classes are stored by multiple tasks at the same time, the rename keeps the stored file complete
+			final Path temporary = Files.createTempFile(original.getParent(), inputHash, ".tmp");
+			Files.write(temporary, originalClass);
+			Files.move(temporary, original, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		return inputHash;
+	}
+
+	/**
+	 * @return the original compiler output with the given hash, or null if it is not stored
+	 */
+	public byte[] loadOriginal(String inputHash) throws IOException {
+		final Path original = originalPath(inputHash);
+		if (!Files.isRegularFile(original)) {
+			return null;
+		}
+		return Files.readAllBytes(original);
+	}
+
+	/**
+	 * Writes the state of the current instrumentation and removes the original class files that are no longer referenced.
+	 *
+	 * @param fingerprint fingerprint of the configuration used for the instrumentation
+	 * @param entries     state of every instrumented class file, keyed by the relative path of the class file
+	 */
+	public void save(String fingerprint, Map<String, Entry> entries) throws IOException {
+		Files.createDirectories(stateDirectory);
+		final Path manifestFile = stateDirectory.resolve(MANIFEST_FILE_NAME);
+		try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+			writer.write(HEADER + FORMAT_VERSION);
+			writer.newLine();
+			writer.write(FINGERPRINT_PREFIX + fingerprint);
+			writer.newLine();
+			for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+				writer.write(entry.getValue().getInputHash() + " " + entry.getValue().getOutputHash() + " " + entry.getKey());
+				writer.newLine();
+			}
+		}
+
+		removeUnreferencedOriginals(entries.values());
+	}
+
+	private void removeUnreferencedOriginals(Collection<Entry> entries) throws IOException {
+		final Path originalsDirectory = stateDirectory.resolve(ORIGINALS_DIRECTORY_NAME);
+		if (!Files.isDirectory(originalsDirectory)) {
+			return;
+		}
+
+		final Set<Path> referenced = new HashSet<>();
+		for (Entry entry : entries) {
+			referenced.add(originalPath(entry.getInputHash()));
+		}
+
+		try (DirectoryStream<Path> originals = Files.newDirectoryStream(originalsDirectory)) {
+			for (Path original : originals) {
+				if (!referenced.contains(original)) {
+					Files.delete(original);
+				}
+			}
+		}
+	}
+
+	private Path originalPath(String inputHash) {
+		return stateDirectory.resolve(ORIGINALS_DIRECTORY_NAME).resolve(inputHash + CLASS_FILE_EXTENSION);
+	}
+
+	public static final class Entry {
+
+		private final String inputHash;
+
+		private final String outputHash;
+
+		public Entry(String inputHash, String outputHash) {
+			this.inputHash = inputHash;
+			this.outputHash = outputHash;
+		}
+
+		/**
+		 * @return hash of the compiler output
+		 */
+		public String getInputHash() {
+			return inputHash;
+		}
+
+		/**
+		 * @return hash of the instrumented class file
+		 */
+		public String getOutputHash() {
+			return outputHash;
+		}
+
+	}
+
+}
@@ -0,0 +1,71 @@
+package io.ghostwriter;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Marks instrumented classes with a custom class file attribute, so already instrumented classes can be recognized
+ * without any other state. The JVM ignores unknown class file attributes.
+ */
+public final class InstrumentationMarker {
+
+	private static final String ATTRIBUTE_NAME = "io.ghostwriter.Instrumented";
+
+	private InstrumentationMarker() {
+		throw new UnsupportedOperationException("class is not designed for instantiation");
+	}
+
+	public static boolean isInstrumented(byte[] classFile) {
+		final boolean[] isMarked = {false};
+		final ClassVisitor markerFinder = new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public void visitAttribute(Attribute attribute) {
+				if (ATTRIBUTE_NAME.equals(attribute.type)) {
+					isMarked[0] = true;
+				}
+			}
+		};
+		new ClassReader(classFile).accept(markerFinder, new Attribute[] {new MarkerAttribute()},
+				ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return isMarked[0];
+	}
+
+	public static byte[] mark(byte[] classFile) {
+		final ClassReader reader = new ClassReader(classFile);
+		// passing the reader to the writer copies the unchanged parts of the class file as they are
+		final ClassWriter writer = new ClassWriter(reader, 0);
+		reader.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+			@Override
+			public void visitEnd() {
+				super.visitAttribute(new MarkerAttribute());
+				super.visitEnd();
+			}
+		}, 0);
+		return writer.toByteArray();
+	}
+
+	private static final class MarkerAttribute extends Attribute {
+
+		private MarkerAttribute() {
+			super(ATTRIBUTE_NAME);
+		}
+
+		@Override
+		protected Attribute read(ClassReader classReader, int offset, int length, char[] charBuffer, int codeAttributeOffset, Label[] labels) {
+			return new MarkerAttribute();
+		}
+
+		@Override
+		protected ByteVector write(ClassWriter classWriter, byte[] code, int codeLength, int maxStack, int maxLocals) {
+			// the presence of the attribute is the information, it has no content
+			return new ByteVector();
+		}
+
+	}
+
+}
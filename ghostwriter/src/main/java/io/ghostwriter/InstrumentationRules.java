@@ -0,0 +1,119 @@
+package io.ghostwriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import hu.advancedweb.scott.instrumentation.transformation.ScottClassTransformer;
+import io.ghostwriter.common.HotMethodProfile;
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.common.NameMatcher;
+import io.ghostwriter.common.TrivialMethodPolicy;
+
+/**
+ * Decides which classes and methods are instrumented with a {@link NameMatcher}, so the include and exclude settings
+ * can contain glob and method patterns. The transformer only receives the classes that are included, together with
+ * the exact names of the methods of the class that are excluded, and the settings of the profile of its package.
+ * <p>
+ * The methods of the {@link HotMethodProfile} are excluded as well. Since the transformer is configured per class, if
+ * the hot methods are downgraded instead, every method of a class that has a hot method uses the errors-only profile.
+ * For the same reason, only the skip action of the {@link TrivialMethodPolicy} is supported, the trivial methods with
+ * the errors-only action are fully instrumented.
+ * Can be used from multiple threads.
+ */
+public final class InstrumentationRules {
+
+	private final NameMatcher matcher;
+
+	private final InstrumentationSettings settings;
+
+	private final HotMethodProfile hotMethods;
+
+	public InstrumentationRules(NameMatcher matcher, InstrumentationSettings settings, HotMethodProfile hotMethods) {
+		this.matcher = matcher;
+		this.settings = settings;
+		this.hotMethods = hotMethods;
+	}
+
+	/**
+	 * @param className qualified or internal name of the class
+	 */
+	public boolean isIncluded(String className) {
+		return matcher.isIncluded(className);
+	}
+
+	/**
+	 * @return the instrumented class, or the original class if it is not included
+	 */
+	public byte[] transform(byte[] originalClass, ScottClassTransformer transformer) throws Exception {
+		final ClassReader reader = new ClassReader(originalClass);
+		final String className = reader.getClassName().replace('/', '.');
+		final NameMatcher.Match match = matcher.match(className);
+		InstrumentationSettings classSettings = settings.forClass(className);
+		if (!match.isIncluded() || !classSettings.getBoolean("GHOSTWRITER_INSTRUMENT", true)) {
+			return originalClass;
+		}
+
+		final TrivialMethodPolicy trivialMethods = TrivialMethodPolicy.load(classSettings);
+		final List<TrivialMethodClassifier> methods = methods(reader, trivialMethods.isEnabled());
+		// the methods are excluded by name, a trivial method is only skipped if its overloads are skipped as well
+		final Set<String> notSkippedMethods = new HashSet<>();
+		for (TrivialMethodClassifier method : methods) {
+			if (trivialMethods.getAction(method.getCategory()) != TrivialMethodPolicy.Action.SKIP) {
+				notSkippedMethods.add(method.getName());
+			}
+		}
+
+		final List<String> excludedMethods = new ArrayList<>();
+		final Map<String, Integer> skippedTrivialMethods = new TreeMap<>();
+		boolean hasHotMethod = false;
+		for (TrivialMethodClassifier method : methods) {
+			final String methodName = method.getName();
+			final boolean isHot = hotMethods.isHot(className, methodName);
+			hasHotMethod |= isHot;
+			final boolean isExcluded = !match.isMethodIncluded(methodName) || (isHot && !hotMethods.isDowngraded());
+			final boolean isSkipped = !isExcluded && !notSkippedMethods.contains(methodName);
+			if (isSkipped) {
+				final String category = method.getCategory().toString();
+				final Integer count = skippedTrivialMethods.get(category);
+				skippedTrivialMethods.put(category, count == null ? 1 : count + 1);
+			}
+			if ((isExcluded || isSkipped) && !excludedMethods.contains(methodName)) {
+				excludedMethods.add(methodName);
+			}
+		}
+		if (hasHotMethod && hotMethods.isDowngraded()) {
+			classSettings = classSettings.withProfile(InstrumentationSettings.ERRORS_ONLY_PROFILE);
+		}
+		if (!skippedTrivialMethods.isEmpty() && "true".equalsIgnoreCase(System.getenv("GHOSTWRITER_VERBOSE"))) {
+			System.out.println("GhostWriter skipped trivial methods of " + className + ": " + skippedTrivialMethods);
+		}
+		return transformer.transform(originalClass, GhostWriterConfigurer.getConfiguration(classSettings, className, excludedMethods));
+	}
+
+	/**
+	 * @param doClassify whether the instructions of the methods are read, otherwise none of the methods is trivial
+	 */
+	private static List<TrivialMethodClassifier> methods(ClassReader reader, final boolean doClassify) {
+		final List<TrivialMethodClassifier> methods = new ArrayList<>();
+		reader.accept(new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				final TrivialMethodClassifier method = new TrivialMethodClassifier(access, name, descriptor);
+				methods.add(method);
+				return doClassify ? method : null;
+			}
+		}, doClassify ? ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES : ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return Collections.unmodifiableList(methods);
+	}
+
+}
@@ -0,0 +1,250 @@
+package io.ghostwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import hu.advancedweb.scott.instrumentation.transformation.ScottClassTransformer;
+
+/**
+ * Instruments the classes of a jar and writes the result to a new jar. The entries are written in the order of the
+ * input jar with their original metadata, the other entries - including the manifest - are copied unchanged, so the
+ * same input always produces the same output.
+ * <p>
+ * The classes are instrumented by a worker pool while the output is written. Only a bounded number of classes are
+ * processed ahead of the writer, the other entries are streamed directly from the input, so the memory use does not
+ * depend on the size of the archive.
+ */
+public class JarInstrumenter {
+
+	private static final String CLASS_FILE_EXTENSION = ".class";
+
+	private static final String MODULE_DESCRIPTOR = "module-info.class";
+
+	// classes that are instrumented ahead of the writer for each worker thread
+	private static final int PENDING_CLASSES_PER_THREAD = 4;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final InstrumentationRules rules;
+
+	private final int threads;
+
+	public JarInstrumenter(InstrumentationRules rules, int threads) {
+		this.rules = rules;
+		this.threads = Math.max(1, threads);
+	}
+
+	public void instrument(Path inputJar, Path outputJar) throws IOException {
+		final ThreadLocal<ScottClassTransformer> transformers = new ThreadLocal<ScottClassTransformer>() {
+			@Override
+			protected ScottClassTransformer initialValue() {
+				return new ScottClassTransformer();
+			}
+		};
+
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try (ZipFile input = new ZipFile(inputJar.toFile());
+				ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(outputJar))) {
+			output.setComment(input.getComment());
+
+			final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+			final int maxPendingClasses = threads * PENDING_CLASSES_PER_THREAD;
+			int pendingClasses = 0;
+
+			final Enumeration<? extends ZipEntry> entries = input.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				if (isSignatureFile(entry)) {
+					// the signature does not match the instrumented classes, the JVM would refuse to load them
+					System.err.println("GhostWriter removing the signature of the instrumented jar: " + entry.getName());
+					continue;
+				}
+
+				Future<InstrumentedClass> instrumentedClass = null;
+				if (isInstrumentedClass(entry)) {
+					instrumentedClass = workers.submit(new ClassTask(input, entry, transformers));
+					++pendingClasses;
+				}
+				pendingEntries.addLast(new PendingEntry(entry, instrumentedClass));
+
+				// entries are written in order, the writer only waits for the oldest class
+				while (pendingClasses > maxPendingClasses) {
+					if (writeEntry(input, output, pendingEntries.removeFirst())) {
+						--pendingClasses;
+					}
+				}
+			}
+
+			while (!pendingEntries.isEmpty()) {
+				writeEntry(input, output, pendingEntries.removeFirst());
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return whether the written entry was an instrumented class
+	 */
+	private boolean writeEntry(ZipFile input, ZipOutputStream output, PendingEntry pendingEntry) throws IOException {
+		final ZipEntry entry = pendingEntry.entry;
+		if (pendingEntry.instrumentedClass == null) {
+			output.putNextEntry(copyOf(entry));
+			try (InputStream content = input.getInputStream(entry)) {
+				copy(content, output);
+			}
+			output.closeEntry();
+			return false;
+		}
+
+		final InstrumentedClass result = await(entry, pendingEntry.instrumentedClass);
+		if (result.failure != null) {
+			// reported by the writer, so the failures are listed in the order of the entries
+			System.err.println("GhostWriter Could not instrument: " + entry.getName());
+			result.failure.printStackTrace();
+		}
+
+		final byte[] instrumentedClass = result.content;
+		final ZipEntry instrumentedEntry = copyOf(entry);
+		instrumentedEntry.setSize(instrumentedClass.length);
+		final CRC32 crc = new CRC32();
+		crc.update(instrumentedClass);
+		instrumentedEntry.setCrc(crc.getValue());
+
+		output.putNextEntry(instrumentedEntry);
+		output.write(instrumentedClass);
+		output.closeEntry();
+		return true;
+	}
+
+	private InstrumentedClass await(ZipEntry entry, Future<InstrumentedClass> instrumentedClass) throws IOException {
+		try {
+			return instrumentedClass.get();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IllegalStateException("Unexpected failure while instrumenting: " + entry.getName(), cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("GhostWriter instrumentation was interrupted.", e);
+		}
+	}
+
+	private static ZipEntry copyOf(ZipEntry entry) {
+		// keeps the name, time, extra fields, comment and the method of the entry
+		final ZipEntry copy = new ZipEntry(entry);
+		// the content is compressed again, which can result in a different size
+		copy.setCompressedSize(-1);
+		return copy;
+	}
+
+	private static void copy(InputStream from, OutputStream to) throws IOException {
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = from.read(buffer)) != -1) {
+			to.write(buffer, 0, read);
+		}
+	}
+
+	private static boolean isInstrumentedClass(ZipEntry entry) {
+		final String name = entry.getName();
+		return !entry.isDirectory() && name.endsWith(CLASS_FILE_EXTENSION) && !name.endsWith(MODULE_DESCRIPTOR);
+	}
+
+	private static boolean isSignatureFile(ZipEntry entry) {
+		final String name = entry.getName().toUpperCase(Locale.ROOT);
+		if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) != -1) {
+			return false;
+		}
+		return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+	}
+
+	private final class ClassTask implements Callable<InstrumentedClass> {
+
+		private final ZipFile input;
+
+		private final ZipEntry entry;
+
+		private final ThreadLocal<ScottClassTransformer> transformers;
+
+		private ClassTask(ZipFile input, ZipEntry entry, ThreadLocal<ScottClassTransformer> transformers) {
+			this.input = input;
+			this.entry = entry;
+			this.transformers = transformers;
+		}
+
+		@Override
+		public InstrumentedClass call() throws IOException {
+			final byte[] originalClass;
+			try (InputStream content = input.getInputStream(entry)) {
+				originalClass = readFully(content);
+			}
+
+			try {
+				if (InstrumentationMarker.isInstrumented(originalClass)) {
+					return new InstrumentedClass(originalClass, null);
+				}
+				return new InstrumentedClass(InstrumentationMarker.mark(rules.transform(originalClass, transformers.get())), null);
+			} catch (Exception e) {
+				// the class is copied unchanged
+				return new InstrumentedClass(originalClass, e);
+			}
+		}
+
+		private byte[] readFully(InputStream content) throws IOException {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : BUFFER_SIZE);
+			copy(content, buffer);
+			return buffer.toByteArray();
+		}
+
+	}
+
+	private static final class PendingEntry {
+
+		private final ZipEntry entry;
+
+		private final Future<InstrumentedClass> instrumentedClass;
+
+		private PendingEntry(ZipEntry entry, Future<InstrumentedClass> instrumentedClass) {
+			this.entry = entry;
+			this.instrumentedClass = instrumentedClass;
+		}
+
+	}
+
+	private static final class InstrumentedClass {
+
+		private final byte[] content;
+
+		private final Exception failure;
+
+		private InstrumentedClass(byte[] content, Exception failure) {
+			this.content = content;
+			this.failure = failure;
+		}
+
+	}
+
+}
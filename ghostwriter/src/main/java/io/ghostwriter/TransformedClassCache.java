@@ -0,0 +1,59 @@
+package io.ghostwriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * On-disk cache of instrumented classes, so only the first start of an application pays the cost of the instrumentation.
+ * The entries are keyed by the hash of the original class file and stored in a separate directory for each configuration
+ * fingerprint, so a configuration change never returns classes that were instrumented with the previous one.
+ * Can be used from multiple threads and multiple processes at the same time.
+ */
+public class TransformedClassCache {
+
+	private static final String CLASS_FILE_EXTENSION = ".class";
+
+	private final Path directory;
+
+	/**
+	 * @param cacheRoot   root directory of the cache, shared by every configuration
+	 * @param fingerprint fingerprint of the configuration, see {@link GhostWriterConfigurer#getFingerprint()}
+	 */
+	public TransformedClassCache(Path cacheRoot, String fingerprint) {
+		this.directory = cacheRoot.resolve(fingerprint);
+	}
+
+	/**
+	 * @return the instrumented class, or null if it is not cached
+	 */
+	public byte[] get(String originalHash) {
+		final Path entry = entryPath(originalHash);
+		try {
+			return Files.isRegularFile(entry) ? Files.readAllBytes(entry) : null;
+		} catch (IOException e) {
+			// the class is instrumented again
+			return null;
+		}
+	}
+
+	public void put(String originalHash, byte[] instrumentedClass) {
+		final Path entry = entryPath(originalHash);
+		try {
+			Files.createDirectories(directory);
+			// readers, including the ones in other processes, only see complete entries
+			final Path temporary = Files.createTempFile(directory, originalHash, ".tmp");
+			Files.write(temporary, instrumentedClass);
+			Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// the cache is only an optimization, the application works without it
+			System.err.println("GhostWriter could not cache the instrumented class: " + entry + " (" + e.getMessage() + ")");
+		}
+	}
+
+	private Path entryPath(String originalHash) {
+		return directory.resolve(originalHash + CLASS_FILE_EXTENSION);
+	}
+
+}
@@ -0,0 +1,216 @@
+package io.ghostwriter;
+
+import java.util.regex.Pattern;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import io.ghostwriter.common.TrivialMethodPolicy;
+
+/**
+ * Recognizes the trivial methods from their instructions, the same categories as the annotation processor recognizes
+ * from the source code, see {@code io.ghostwriter.openjdk.v7.ast.compiler.TrivialMethodClassifier}.
+ * <p>
+ * Each instruction is recorded as a single character, labels, line numbers and frames are ignored, and the categories
+ * are patterns over the recorded characters. Methods that read local variables other than their parameters, or use
+ * any instruction that is not listed below, are not trivial.
+ */
+public final class TrivialMethodClassifier extends MethodVisitor {
+
+	private static final char THIS = 't';
+
+	private static final char PARAMETER = 'p';
+
+	private static final char CONSTANT = 'c';
+
+	private static final char GET_FIELD = 'g';
+
+	private static final char GET_STATIC = 's';
+
+	private static final char PUT_FIELD = 'f';
+
+	private static final char PUT_STATIC = 'S';
+
+	private static final char INVOKE = 'i';
+
+	private static final char POP = 'x';
+
+	private static final char RETURN_VALUE = 'r';
+
+	private static final char RETURN = 'v';
+
+	private static final char OTHER = '?';
+
+	private static final Pattern CONSTANT_PATTERN = Pattern.compile("cr");
+
+	private static final Pattern ACCESSOR_PATTERN = Pattern.compile("tgr|sr");
+
+	private static final Pattern SETTER_PATTERN = Pattern.compile("tpfv|pSv");
+
+	private static final Pattern BUILDER_PATTERN = Pattern.compile("(tpf)+tr");
+
+	// the receiver and the arguments are parameters, fields or constants, the result can be returned or dropped
+	private static final Pattern DELEGATE_PATTERN = Pattern.compile("(t|tg|s|p|c)*i(r|v|xv)");
+
+	private final String name;
+
+	private final boolean isClassified;
+
+	private final boolean isStatic;
+
+	// local variable slots below this index are the parameters, including this
+	private final int parameterSlots;
+
+	private final StringBuilder instructions = new StringBuilder();
+
+	/**
+	 * @param access     access flags of the method
+	 * @param name       name of the method
+	 * @param descriptor descriptor of the method
+	 */
+	public TrivialMethodClassifier(int access, String name, String descriptor) {
+		super(Opcodes.ASM5);
+		this.name = name;
+		this.isStatic = (access & Opcodes.ACC_STATIC) != 0;
+		// constructors, static initializers and the methods generated by the compiler are never trivial
+		this.isClassified = !name.startsWith("<") && (access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0;
+		// the size of the arguments includes the slot of this
+		this.parameterSlots = (Type.getArgumentsAndReturnSizes(descriptor) >> 2) - (isStatic ? 1 : 0);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the category of the visited method, or null if the method is not trivial
+	 */
+	public TrivialMethodPolicy.Category getCategory() {
+		if (!isClassified || instructions.length() == 0 || instructions.indexOf(String.valueOf(OTHER)) != -1) {
+			return null;
+		}
+
+		final String recorded = instructions.toString();
+		final boolean hasParameters = parameterSlots > (isStatic ? 0 : 1);
+		if (CONSTANT_PATTERN.matcher(recorded).matches()) {
+			return TrivialMethodPolicy.Category.CONSTANT;
+		}
+		if (!hasParameters && ACCESSOR_PATTERN.matcher(recorded).matches()) {
+			return TrivialMethodPolicy.Category.ACCESSOR;
+		}
+		if (SETTER_PATTERN.matcher(recorded).matches()) {
+			return TrivialMethodPolicy.Category.SETTER;
+		}
+		if (BUILDER_PATTERN.matcher(recorded).matches()) {
+			return TrivialMethodPolicy.Category.BUILDER;
+		}
+		if (DELEGATE_PATTERN.matcher(recorded).matches()) {
+			return TrivialMethodPolicy.Category.DELEGATE;
+		}
+		return null;
+	}
+
+	@Override
+	public void visitInsn(int opcode) {
+		if (opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.DCONST_1) {
+			instructions.append(CONSTANT);
+		} else if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.ARETURN) {
+			instructions.append(RETURN_VALUE);
+		} else if (opcode == Opcodes.RETURN) {
+			instructions.append(RETURN);
+		} else if (opcode == Opcodes.POP || opcode == Opcodes.POP2) {
+			instructions.append(POP);
+		} else {
+			instructions.append(OTHER);
+		}
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand) {
+		instructions.append(opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH ? CONSTANT : OTHER);
+	}
+
+	@Override
+	public void visitLdcInsn(Object value) {
+		instructions.append(CONSTANT);
+	}
+
+	@Override
+	public void visitVarInsn(int opcode, int var) {
+		final boolean isLoad = opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+		if (!isLoad || var >= parameterSlots) {
+			instructions.append(OTHER);
+		} else if (!isStatic && var == 0) {
+			instructions.append(THIS);
+		} else {
+			instructions.append(PARAMETER);
+		}
+	}
+
+	@Override
+	public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+		switch (opcode) {
+			case Opcodes.GETFIELD:
+				instructions.append(GET_FIELD);
+				break;
+			case Opcodes.GETSTATIC:
+				instructions.append(GET_STATIC);
+				break;
+			case Opcodes.PUTFIELD:
+				instructions.append(PUT_FIELD);
+				break;
+			default:
+				instructions.append(PUT_STATIC);
+				break;
+		}
+	}
+
+	@Override
+	public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+		instructions.append(INVOKE);
+	}
+
+	@Override
+	public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethod, Object... bootstrapArguments) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitTypeInsn(int opcode, String type) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitJumpInsn(int opcode, Label label) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitIincInsn(int var, int increment) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label defaultLabel, Label... labels) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(Label defaultLabel, int[] keys, Label[] labels) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(String descriptor, int dimensions) {
+		instructions.append(OTHER);
+	}
+
+	@Override
+	public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+		instructions.append(OTHER);
+	}
+
+}
@@ -0,0 +1,65 @@
+package io.ghostwriter;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+
+import io.ghostwriter.common.HotMethodProfile;
+import io.ghostwriter.common.InstrumentationSettings;
+import io.ghostwriter.common.NameMatcher;
+
+/**
+ * Class files and rules shared by the tests of the build time instrumentation.
+ */
+final class ClassFileFixtures {
+
+	private ClassFileFixtures() {
+		throw new UnsupportedOperationException("class is not designed for instantiation");
+	}
+
+	/**
+	 * @return rules that leave every class unchanged, the classes are still marked as instrumented, so the tests do
+	 * not depend on the output of the transformer
+	 */
+	static InstrumentationRules noClassIncluded() {
+		final InstrumentationSettings settings = InstrumentationSettings.load(new HashMap<String, String>());
+		return new InstrumentationRules(new NameMatcher(false), settings, HotMethodProfile.load(settings));
+	}
+
+	/**
+	 * @return the class file of a compiled test class
+	 */
+	static byte[] classFile(Class<?> type) throws IOException {
+		try {
+			return Files.readAllBytes(Paths.get(type.getResource(type.getSimpleName() + ".class").toURI()));
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Invalid location of the class file of " + type.getName(), e);
+		}
+	}
+
+	static void deleteRecursively(Path directory) throws IOException {
+		if (!Files.exists(directory)) {
+			return;
+		}
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
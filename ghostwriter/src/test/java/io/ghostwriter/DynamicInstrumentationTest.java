@@ -0,0 +1,143 @@
+package io.ghostwriter;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.ghostwriter.fixture.Greeter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DynamicInstrumentationTest {
+
+	// any loaded classes outside of the packages of the JDK and of GhostWriter will do, the fake does not retransform them
+	private static final List<String> INCLUDE = Arrays.asList("org.junit");
+
+	private final RecordingInstrumentation recorder = new RecordingInstrumentation(
+			Assert.class, String.class, Test.class, Greeter.class, Before.class, After.class, BeforeClass.class);
+
+	private final Instrumentation instrumentation = recorder.proxy();
+
+	@After
+	public void detach() throws UnmodifiableClassException {
+		// the attached transformer is kept by the agent for the whole JVM
+		DynamicInstrumentation.detach(instrumentation, 1);
+	}
+
+	@Test
+	public void testMatchingClassesAreRetransformedInBatches() throws UnmodifiableClassException {
+		final String report = DynamicInstrumentation.attach(instrumentation, INCLUDE, 2);
+
+		assertTrue(report, report.startsWith("attach [org.junit]: 5 classes in 3 batches"));
+		assertEquals(Arrays.asList(2, 2, 1), recorder.batchSizes);
+		assertEquals(1, recorder.addedTransformers.size());
+		assertTrue("The transformer has to be able to retransform the loaded classes", recorder.isRetransformationRequested);
+	}
+
+	@Test
+	public void testDetachRetransformsTheSameClassesWithoutInstrumentation() throws Exception {
+		DynamicInstrumentation.attach(instrumentation, INCLUDE, 4);
+		recorder.batchSizes.clear();
+
+		final String report = DynamicInstrumentation.detach(instrumentation, 4);
+
+		assertTrue(report, report.startsWith("detach [org.junit]: 5 classes in 2 batches"));
+		assertEquals(Arrays.asList(4, 1), recorder.batchSizes);
+		assertEquals(recorder.addedTransformers, recorder.removedTransformers);
+		// the retransformation starts from the original class file, which the disabled transformer keeps unchanged
+		final ClassFileTransformer transformer = recorder.addedTransformers.get(0);
+		assertNull(transformer.transform(getClass().getClassLoader(), "org/junit/Assert", Assert.class, null, new byte[0]));
+	}
+
+	@Test
+	public void testAttachReplacesThePreviousTransformer() throws UnmodifiableClassException {
+		DynamicInstrumentation.attach(instrumentation, INCLUDE, 10);
+		DynamicInstrumentation.attach(instrumentation, INCLUDE, 10);
+
+		assertEquals(2, recorder.addedTransformers.size());
+		assertEquals(Arrays.asList(recorder.addedTransformers.get(0)), recorder.removedTransformers);
+		// attach, detach and attach again
+		assertEquals(Arrays.asList(5, 5, 5), recorder.batchSizes);
+	}
+
+	@Test
+	public void testDetachWithoutAttach() throws UnmodifiableClassException {
+		assertEquals("detach: GhostWriter is not attached", DynamicInstrumentation.detach(instrumentation, 1));
+		assertTrue(recorder.batchSizes.isEmpty());
+	}
+
+	@Test
+	public void testInvalidBatchSizeIsRejected() throws UnmodifiableClassException {
+		try {
+			DynamicInstrumentation.attach(instrumentation, INCLUDE, 0);
+			fail("Expected an exception for a batch without classes");
+		} catch (IllegalArgumentException expected) {
+			assertTrue(recorder.batchSizes.isEmpty());
+		}
+	}
+
+	/**
+	 * Records the calls of the instrumentation API. Implemented by a proxy, since the interface has methods that are
+	 * only available in newer Java versions.
+	 */
+	private static final class RecordingInstrumentation implements InvocationHandler {
+
+		private final Class<?>[] loadedClasses;
+
+		private final List<Integer> batchSizes = new ArrayList<>();
+
+		private final List<ClassFileTransformer> addedTransformers = new ArrayList<>();
+
+		private final List<ClassFileTransformer> removedTransformers = new ArrayList<>();
+
+		private boolean isRetransformationRequested;
+
+		private RecordingInstrumentation(Class<?>... loadedClasses) {
+			this.loadedClasses = loadedClasses;
+		}
+
+		private Instrumentation proxy() {
+			return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Instrumentation.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch (method.getName()) {
+				case "isRetransformClassesSupported":
+				case "isModifiableClass":
+					return true;
+				case "getAllLoadedClasses":
+					return loadedClasses.clone();
+				case "addTransformer":
+					addedTransformers.add((ClassFileTransformer) args[0]);
+					isRetransformationRequested = args.length == 2 && (Boolean) args[1];
+					return null;
+				case "removeTransformer":
+					removedTransformers.add((ClassFileTransformer) args[0]);
+					return true;
+				case "retransformClasses":
+					batchSizes.add(((Class<?>[]) args[0]).length);
+					return null;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,210 @@
+package io.ghostwriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.ghostwriter.GhostWriterClassFileTransformer.ClassResult;
+import io.ghostwriter.fixture.Counter;
+import io.ghostwriter.fixture.Greeter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GhostWriterClassFileTransformerTest {
+
+	private static final String GREETER_PATH = "io/ghostwriter/fixture/Greeter.class";
+
+	private static final String COUNTER_PATH = "io/ghostwriter/fixture/Counter.class";
+
+	private Path directory;
+
+	private Path root;
+
+	private Path stateDirectory;
+
+	@Before
+	public void createDirectories() throws IOException {
+		directory = Files.createTempDirectory("ghostwriter-classes");
+		root = directory.resolve("classes");
+		stateDirectory = directory.resolve("classes.ghostwriter");
+	}
+
+	@After
+	public void deleteDirectories() throws IOException {
+		ClassFileFixtures.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testInstrumentedClassIsRecordedInTheManifest() throws IOException {
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+
+		final ClassResult result = instrument("first", 1).get(greeter);
+
+		assertEquals(ClassResult.INSTRUMENTED, result.getStatus());
+		final byte[] instrumentedClass = Files.readAllBytes(greeter);
+		assertTrue(InstrumentationMarker.isInstrumented(instrumentedClass));
+		final InstrumentationManifest manifest = InstrumentationManifest.load(stateDirectory);
+		assertTrue(manifest.isFingerprint("first"));
+		final InstrumentationManifest.Entry entry = manifest.get(GREETER_PATH);
+		assertEquals(InstrumentationManifest.hash(ClassFileFixtures.classFile(Greeter.class)), entry.getInputHash());
+		assertEquals(InstrumentationManifest.hash(instrumentedClass), entry.getOutputHash());
+	}
+
+	@Test
+	public void testClassIsUpToDateWithTheSameConfiguration() throws IOException {
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+		instrument("first", 1);
+		final byte[] instrumentedClass = Files.readAllBytes(greeter);
+
+		final ClassResult result = instrument("first", 1).get(greeter);
+
+		assertEquals(ClassResult.UP_TO_DATE, result.getStatus());
+		assertArrayEquals(instrumentedClass, Files.readAllBytes(greeter));
+		assertNotNull("The class should stay in the manifest", InstrumentationManifest.load(stateDirectory).get(GREETER_PATH));
+	}
+
+	@Test
+	public void testChangedConfigurationInstrumentsTheOriginalClassAgain() throws IOException {
+		final byte[] originalClass = ClassFileFixtures.classFile(Greeter.class);
+		final Path greeter = write(GREETER_PATH, originalClass);
+		instrument("first", 1);
+		final byte[] instrumentedClass = Files.readAllBytes(greeter);
+
+		final ClassResult result = instrument("second", 1).get(greeter);
+
+		assertEquals(ClassResult.INSTRUMENTED, result.getStatus());
+		// instrumenting the instrumented class again would mark it twice
+		assertArrayEquals(instrumentedClass, Files.readAllBytes(greeter));
+		assertEquals(InstrumentationManifest.hash(originalClass), result.getEntry().getInputHash());
+		assertTrue(InstrumentationManifest.load(stateDirectory).isFingerprint("second"));
+	}
+
+	@Test
+	public void testChangedConfigurationFailsWithoutTheOriginalClass() throws IOException {
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+		instrument("first", 1);
+		ClassFileFixtures.deleteRecursively(stateDirectory.resolve("originals"));
+
+		final ClassResult result = instrument("second", 1).get(greeter);
+
+		assertNull(result.getStatus());
+		assertTrue(result.getFailure().toString(), result.getFailure() instanceof IllegalStateException);
+		assertNull("A class that is not instrumented with the current configuration should not be recorded",
+				InstrumentationManifest.load(stateDirectory).get(GREETER_PATH));
+	}
+
+	@Test
+	public void testRecompiledClassIsInstrumentedAgain() throws IOException {
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+		instrument("first", 1);
+		final byte[] recompiledClass = ClassFileFixtures.classFile(Counter.class);
+		write(GREETER_PATH, recompiledClass);
+
+		final ClassResult result = instrument("first", 1).get(greeter);
+
+		assertEquals(ClassResult.INSTRUMENTED, result.getStatus());
+		assertEquals(InstrumentationManifest.hash(recompiledClass), result.getEntry().getInputHash());
+	}
+
+	@Test
+	public void testAlreadyInstrumentedClassIsSkipped() throws IOException {
+		final byte[] instrumentedClass = InstrumentationMarker.mark(ClassFileFixtures.classFile(Greeter.class));
+		final Path greeter = write(GREETER_PATH, instrumentedClass);
+
+		final ClassResult result = instrument("first", 1).get(greeter);
+
+		assertEquals(ClassResult.ALREADY_INSTRUMENTED, result.getStatus());
+		assertArrayEquals(instrumentedClass, Files.readAllBytes(greeter));
+		assertNull(InstrumentationManifest.load(stateDirectory).get(GREETER_PATH));
+	}
+
+	@Test
+	public void testOriginalsOfRemovedClassesAreDeleted() throws IOException {
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+		final Path counter = write(COUNTER_PATH, ClassFileFixtures.classFile(Counter.class));
+		instrument("first", 1);
+		assertEquals(2, originals().size());
+
+		Files.delete(counter);
+		instrument("first", 1);
+
+		final List<String> originals = originals();
+		assertEquals(1, originals.size());
+		assertEquals(InstrumentationManifest.load(stateDirectory).get(GREETER_PATH).getInputHash() + ".class", originals.get(0));
+		assertTrue(Files.exists(greeter));
+	}
+
+	@Test
+	public void testParallelResultsAreInTheOrderOfTheClassFiles() throws IOException {
+		final List<Path> classes = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			// identical classes store the same original at the same time
+			final Class<?> type = i % 2 == 0 ? Greeter.class : Counter.class;
+			classes.add(write(String.format("io/ghostwriter/fixture/Class%02d.class", i), ClassFileFixtures.classFile(type)));
+		}
+
+		final Map<Path, ClassResult> results = instrument("first", 4);
+
+		assertEquals(classes, new ArrayList<>(results.keySet()));
+		for (Path path : classes) {
+			assertEquals(ClassResult.INSTRUMENTED, results.get(path).getStatus());
+			assertTrue(InstrumentationMarker.isInstrumented(Files.readAllBytes(path)));
+		}
+		assertEquals(2, originals().size());
+	}
+
+	@Test
+	public void testParallelFailureIsReportedForItsClassOnly() throws IOException {
+		final Path counter = write(COUNTER_PATH, ClassFileFixtures.classFile(Counter.class));
+		final byte[] invalidClass = "not a class file".getBytes(StandardCharsets.UTF_8);
+		final Path invalid = write("io/ghostwriter/fixture/Invalid.class", invalidClass);
+		final Path greeter = write(GREETER_PATH, ClassFileFixtures.classFile(Greeter.class));
+
+		final Map<Path, ClassResult> results = instrument("first", 4);
+
+		assertEquals(Arrays.asList(counter, greeter, invalid), new ArrayList<>(results.keySet()));
+		assertNotNull(results.get(invalid).getFailure());
+		assertArrayEquals("A class that cannot be instrumented should be left unchanged", invalidClass, Files.readAllBytes(invalid));
+		assertEquals(ClassResult.INSTRUMENTED, results.get(counter).getStatus());
+		assertEquals(ClassResult.INSTRUMENTED, results.get(greeter).getStatus());
+		final InstrumentationManifest manifest = InstrumentationManifest.load(stateDirectory);
+		assertNull(manifest.get("io/ghostwriter/fixture/Invalid.class"));
+		assertNotNull(manifest.get(GREETER_PATH));
+	}
+
+	private Path write(String relativePath, byte[] classFile) throws IOException {
+		final Path path = root.resolve(relativePath);
+		Files.createDirectories(path.getParent());
+		return Files.write(path, classFile);
+	}
+
+	private Map<Path, ClassResult> instrument(String fingerprint, int threads) throws IOException {
+		return GhostWriterClassFileTransformer.instrumentDirectory(root, stateDirectory, ClassFileFixtures.noClassIncluded(),
+				fingerprint, threads);
+	}
+
+	private List<String> originals() throws IOException {
+		final List<String> names = new ArrayList<>();
+		try (DirectoryStream<Path> originals = Files.newDirectoryStream(stateDirectory.resolve("originals"))) {
+			for (Path original : originals) {
+				names.add(original.getFileName().toString());
+			}
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,187 @@
+package io.ghostwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.ghostwriter.fixture.Counter;
+import io.ghostwriter.fixture.Greeter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JarInstrumenterTest {
+
+	private static final String GREETER_ENTRY = "io/ghostwriter/fixture/Greeter.class";
+
+	private static final String COUNTER_ENTRY = "io/ghostwriter/fixture/Counter.class";
+
+	private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] RESOURCE = "resource".getBytes(StandardCharsets.UTF_8);
+
+	private static final long ENTRY_TIME = 1500000000000L;
+
+	private Path directory;
+
+	private Path inputJar;
+
+	private Path outputJar;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("ghostwriter-jar");
+		inputJar = directory.resolve("input.jar");
+		outputJar = directory.resolve("output.jar");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		ClassFileFixtures.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testEntriesKeepTheirOrderWithoutTheSignature() throws IOException {
+		try (ZipOutputStream input = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+			writeEntry(input, "META-INF/MANIFEST.MF", MANIFEST, ZipEntry.DEFLATED);
+			writeEntry(input, "META-INF/SIGNER.SF", RESOURCE, ZipEntry.DEFLATED);
+			writeEntry(input, "META-INF/SIGNER.RSA", RESOURCE, ZipEntry.DEFLATED);
+			writeEntry(input, "io/ghostwriter/fixture/", new byte[0], ZipEntry.DEFLATED);
+			writeEntry(input, GREETER_ENTRY, ClassFileFixtures.classFile(Greeter.class), ZipEntry.DEFLATED);
+			writeEntry(input, "io/ghostwriter/fixture/resource.txt", RESOURCE, ZipEntry.DEFLATED);
+			writeEntry(input, COUNTER_ENTRY, ClassFileFixtures.classFile(Counter.class), ZipEntry.DEFLATED);
+			// a signature file is only recognized directly in META-INF
+			writeEntry(input, "META-INF/maven/SIGNER.SF", RESOURCE, ZipEntry.DEFLATED);
+		}
+
+		new JarInstrumenter(ClassFileFixtures.noClassIncluded(), 2).instrument(inputJar, outputJar);
+
+		try (ZipFile output = new ZipFile(outputJar.toFile())) {
+			assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "io/ghostwriter/fixture/", GREETER_ENTRY,
+					"io/ghostwriter/fixture/resource.txt", COUNTER_ENTRY, "META-INF/maven/SIGNER.SF"), entryNames(output));
+			assertArrayEquals(MANIFEST, content(output, "META-INF/MANIFEST.MF"));
+			assertArrayEquals(RESOURCE, content(output, "io/ghostwriter/fixture/resource.txt"));
+			assertTrue(InstrumentationMarker.isInstrumented(content(output, GREETER_ENTRY)));
+			assertTrue(InstrumentationMarker.isInstrumented(content(output, COUNTER_ENTRY)));
+			assertEquals(ENTRY_TIME, output.getEntry(GREETER_ENTRY).getTime());
+		}
+	}
+
+	@Test
+	public void testStoredEntriesStayStored() throws IOException {
+		try (ZipOutputStream input = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+			writeEntry(input, GREETER_ENTRY, ClassFileFixtures.classFile(Greeter.class), ZipEntry.STORED);
+			writeEntry(input, "io/ghostwriter/fixture/resource.txt", RESOURCE, ZipEntry.STORED);
+		}
+
+		new JarInstrumenter(ClassFileFixtures.noClassIncluded(), 1).instrument(inputJar, outputJar);
+
+		try (ZipFile output = new ZipFile(outputJar.toFile())) {
+			final ZipEntry instrumentedEntry = output.getEntry(GREETER_ENTRY);
+			final byte[] instrumentedClass = content(output, GREETER_ENTRY);
+			assertEquals(ZipEntry.STORED, instrumentedEntry.getMethod());
+			assertTrue(InstrumentationMarker.isInstrumented(instrumentedClass));
+			// the size and checksum of a stored entry are written in front of its content
+			assertEquals(instrumentedClass.length, instrumentedEntry.getSize());
+			assertEquals(crc(instrumentedClass), instrumentedEntry.getCrc());
+			assertEquals(ZipEntry.STORED, output.getEntry("io/ghostwriter/fixture/resource.txt").getMethod());
+			assertArrayEquals(RESOURCE, content(output, "io/ghostwriter/fixture/resource.txt"));
+		}
+	}
+
+	@Test
+	public void testClassThatCannotBeInstrumentedIsCopied() throws IOException {
+		final byte[] invalidClass = "not a class file".getBytes(StandardCharsets.UTF_8);
+		final byte[] instrumentedClass = InstrumentationMarker.mark(ClassFileFixtures.classFile(Counter.class));
+		try (ZipOutputStream input = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+			writeEntry(input, "io/ghostwriter/fixture/Invalid.class", invalidClass, ZipEntry.DEFLATED);
+			writeEntry(input, COUNTER_ENTRY, instrumentedClass, ZipEntry.DEFLATED);
+			writeEntry(input, GREETER_ENTRY, ClassFileFixtures.classFile(Greeter.class), ZipEntry.DEFLATED);
+		}
+
+		new JarInstrumenter(ClassFileFixtures.noClassIncluded(), 2).instrument(inputJar, outputJar);
+
+		try (ZipFile output = new ZipFile(outputJar.toFile())) {
+			assertArrayEquals(invalidClass, content(output, "io/ghostwriter/fixture/Invalid.class"));
+			assertArrayEquals("An instrumented class should not be instrumented again", instrumentedClass, content(output, COUNTER_ENTRY));
+			assertTrue(InstrumentationMarker.isInstrumented(content(output, GREETER_ENTRY)));
+		}
+	}
+
+	@Test
+	public void testSameInputProducesTheSameOutput() throws IOException {
+		try (ZipOutputStream input = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+			writeEntry(input, "META-INF/MANIFEST.MF", MANIFEST, ZipEntry.DEFLATED);
+			for (int i = 0; i < 20; i++) {
+				final byte[] classFile = ClassFileFixtures.classFile(i % 2 == 0 ? Greeter.class : Counter.class);
+				writeEntry(input, String.format("io/ghostwriter/fixture/Class%02d.class", i), classFile, ZipEntry.DEFLATED);
+			}
+		}
+		final Path secondOutputJar = directory.resolve("second.jar");
+
+		new JarInstrumenter(ClassFileFixtures.noClassIncluded(), 4).instrument(inputJar, outputJar);
+		new JarInstrumenter(ClassFileFixtures.noClassIncluded(), 1).instrument(inputJar, secondOutputJar);
+
+		assertArrayEquals(Files.readAllBytes(outputJar), Files.readAllBytes(secondOutputJar));
+		try (ZipFile output = new ZipFile(outputJar.toFile())) {
+			assertTrue(InstrumentationMarker.isInstrumented(content(output, "io/ghostwriter/fixture/Class19.class")));
+		}
+	}
+
+	private static void writeEntry(ZipOutputStream output, String name, byte[] content, int method) throws IOException {
+		final ZipEntry entry = new ZipEntry(name);
+		entry.setTime(ENTRY_TIME);
+		entry.setMethod(method);
+		if (method == ZipEntry.STORED) {
+			entry.setSize(content.length);
+			entry.setCrc(crc(content));
+		}
+		output.putNextEntry(entry);
+		output.write(content);
+		output.closeEntry();
+	}
+
+	private static long crc(byte[] content) {
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		return crc.getValue();
+	}
+
+	private static List<String> entryNames(ZipFile jar) {
+		final List<String> names = new ArrayList<>();
+		final Enumeration<? extends ZipEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			names.add(entries.nextElement().getName());
+		}
+		return names;
+	}
+
+	private static byte[] content(ZipFile jar, String name) throws IOException {
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (InputStream entryContent = jar.getInputStream(jar.getEntry(name))) {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = entryContent.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+		}
+		return content.toByteArray();
+	}
+
+}
@@ -0,0 +1,15 @@
+package io.ghostwriter.fixture;
+
+/**
+ * Class file that is instrumented by the tests, different from {@link Greeter}.
+ */
+public class Counter {
+
+	private int count;
+
+	public int increment() {
+		count++;
+		return count;
+	}
+
+}
@@ -0,0 +1,13 @@
+package io.ghostwriter.fixture;
+
+/**
+ * Class file that is instrumented by the tests.
+ */
+public class Greeter {
+
+	public String greet(String name) {
+		final String greeting = "Hello " + name;
+		return greeting;
+	}
+
+}